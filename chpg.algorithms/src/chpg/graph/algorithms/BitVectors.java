@@ -0,0 +1,138 @@
+package chpg.graph.algorithms;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Operations on bit vectors packed into long arrays, 64 bits per word, as
+ * used for the lattice values of bit vector dataflow problems. The bits of a
+ * vector of n bits are the low n bits of ceil(n / 64) words, and the unused high
+ * bits of the last word are kept clear.
+ */
+public final class BitVectors {
+
+	private BitVectors() {}
+
+	/**
+	 * Returns the number of words of a vector of the given number of bits
+	 * @param bits
+	 * @return
+	 */
+	public static int words(int bits) {
+		if(bits < 0) {
+			throw new IllegalArgumentException("Number of bits must be non-negative");
+		}
+		return (bits + 63) >>> 6;
+	}
+
+	/**
+	 * Returns a new vector of the given number of bits with all bits clear
+	 * @param bits
+	 * @return
+	 */
+	public static long[] create(int bits) {
+		return new long[words(bits)];
+	}
+
+	public static boolean get(long[] vector, int bit) {
+		return (vector[bit >>> 6] & (1L << bit)) != 0;
+	}
+
+	public static void set(long[] vector, int bit) {
+		vector[bit >>> 6] |= 1L << bit;
+	}
+
+	public static void clear(long[] vector, int bit) {
+		vector[bit >>> 6] &= ~(1L << bit);
+	}
+
+	/**
+	 * Sets the first bits of the given vector and clears the others
+	 * @param vector
+	 * @param bits
+	 */
+	public static void fill(long[] vector, int bits) {
+		Arrays.fill(vector, 0L);
+		int full = bits >>> 6;
+		Arrays.fill(vector, 0, full, -1L);
+		if((bits & 63) != 0) {
+			vector[full] = -1L >>> (64 - (bits & 63));
+		}
+	}
+
+	/**
+	 * Clears all bits of the given vector
+	 * @param vector
+	 */
+	public static void clearAll(long[] vector) {
+		Arrays.fill(vector, 0L);
+	}
+
+	/**
+	 * Sets into to the union of into and value, returns true if into changed
+	 * @param into
+	 * @param value
+	 * @return
+	 */
+	public static boolean union(long[] into, long[] value) {
+		boolean changed = false;
+		for(int i = 0; i < into.length; i++) {
+			long word = into[i] | value[i];
+			changed |= word != into[i];
+			into[i] = word;
+		}
+		return changed;
+	}
+
+	/**
+	 * Sets into to the intersection of into and value, returns true if into changed
+	 * @param into
+	 * @param value
+	 * @return
+	 */
+	public static boolean intersect(long[] into, long[] value) {
+		boolean changed = false;
+		for(int i = 0; i < into.length; i++) {
+			long word = into[i] & value[i];
+			changed |= word != into[i];
+			into[i] = word;
+		}
+		return changed;
+	}
+
+	/**
+	 * Sets into to gen | (in & ~kill), the transfer function of gen/kill problems
+	 * @param into
+	 * @param in
+	 * @param gen
+	 * @param kill
+	 */
+	public static void genKill(long[] into, long[] in, long[] gen, long[] kill) {
+		for(int i = 0; i < into.length; i++) {
+			into[i] = gen[i] | (in[i] & ~kill[i]);
+		}
+	}
+
+	/**
+	 * Returns the number of set bits
+	 * @param vector
+	 * @return
+	 */
+	public static int cardinality(long[] vector) {
+		int count = 0;
+		for(long word : vector) {
+			count += Long.bitCount(word);
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the given vector as a BitSet
+	 * @param vector
+	 * @return
+	 */
+	public static BitSet toBitSet(long[] vector) {
+		return BitSet.valueOf(vector);
+	}
+
+}
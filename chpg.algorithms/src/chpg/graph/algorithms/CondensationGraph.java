@@ -0,0 +1,149 @@
+package chpg.graph.algorithms;
+
+import java.util.concurrent.ForkJoinPool;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.GraphElementSet;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.index.AdjacencyIndex;
+import chpg.graph.schema.SchemaGraph;
+
+/**
+ * The condensation of a graph: a directed acyclic graph with one node per
+ * strongly connected component of the graph and an edge between two components
+ * if the graph has at least one edge from a member of the first to a member of
+ * the second.
+ *
+ * Each component node is tagged COMPONENT_NODE and links back to its members
+ * through the MEMBERS_ATTRIBUTE attribute. Component nodes of components that
+ * contain a cycle are also tagged CYCLIC_COMPONENT.
+ */
+public class CondensationGraph extends PropertyGraph {
+
+	/**
+	 * Used to tag the nodes of the condensation, one per strongly connected component
+	 */
+	public static final String COMPONENT_NODE = "scc";
+
+	/**
+	 * Used to tag the component nodes of components that contain a cycle (more
+	 * than one member or a member with an edge to itself)
+	 */
+	public static final String CYCLIC_COMPONENT = "cyclic-scc";
+
+	/**
+	 * Used to tag the edges between components
+	 */
+	public static final String CONDENSATION_EDGE = "scc-edge";
+
+	/**
+	 * The attribute of a component node that holds its component number
+	 */
+	public static final String COMPONENT_ATTRIBUTE = "component";
+
+	/**
+	 * The attribute of a component node that holds the set of its member nodes
+	 */
+	public static final String MEMBERS_ATTRIBUTE = "members";
+
+	private final StrongComponents components;
+	private final Node[] componentNodes;
+
+	/**
+	 * Constructs the condensation of the given graph
+	 * @param graph
+	 */
+	public CondensationGraph(Graph graph) {
+		this(graph, new StrongComponents(graph));
+	}
+
+	/**
+	 * Constructs the condensation of the given graph, computing its components in
+	 * parallel on the given pool
+	 * @param graph
+	 * @param pool
+	 */
+	public CondensationGraph(Graph graph, ForkJoinPool pool) {
+		this(graph, new StrongComponents(AdjacencyIndex.of(graph), pool));
+	}
+
+	/**
+	 * Constructs the condensation of the given graph from its components
+	 * @param graph
+	 * @param components the components of the adjacency index of the graph
+	 */
+	public CondensationGraph(Graph graph, StrongComponents components) {
+		super(graph instanceof PropertyGraph ? ((PropertyGraph) graph).getSchema() : new SchemaGraph());
+		this.components = components;
+		this.componentNodes = new Node[components.count()];
+		for(int c = 0; c < componentNodes.length; c++) {
+			Node node = new Node();
+			node.tags().add(COMPONENT_NODE);
+			if(components.isCyclic(c)) {
+				node.tags().add(CYCLIC_COMPONENT);
+			}
+			node.putAttr(COMPONENT_ATTRIBUTE, c);
+			node.putAttr(MEMBERS_ATTRIBUTE, components.getMembers(c));
+			componentNodes[c] = node;
+			nodes().add(node);
+		}
+		// one edge per pair of components, stamps tell the components already linked from the current one
+		AdjacencyIndex index = components.getIndex();
+		int[] linked = new int[componentNodes.length];
+		for(int c = 0; c < componentNodes.length; c++) {
+			for(int i = 0; i < components.size(c); i++) {
+				int member = components.member(c, i);
+				for(int j = 0; j < index.outDegree(member); j++) {
+					int successor = components.component(index.to(index.outEdge(member, j)));
+					if(successor != c && linked[successor] != c + 1) {
+						linked[successor] = c + 1;
+						Edge edge = new Edge(componentNodes[c], componentNodes[successor]);
+						edge.tags().add(CONDENSATION_EDGE);
+						edges().add(edge);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the strongly connected components of the condensed graph
+	 * @return
+	 */
+	public StrongComponents getComponents() {
+		return components;
+	}
+
+	/**
+	 * Returns the node of the given component
+	 * @param component
+	 * @return
+	 */
+	public Node getComponentNode(int component) {
+		return componentNodes[component];
+	}
+
+	/**
+	 * Returns the node of the component that contains the given node of the
+	 * condensed graph, or null if the node is not part of the condensed graph
+	 * @param member
+	 * @return
+	 */
+	public Node getComponentNode(Node member) {
+		int component = components.component(member);
+		return component < 0 ? null : componentNodes[component];
+	}
+
+	/**
+	 * Returns the members of the given component node
+	 * @param componentNode
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public GraphElementSet<Node> getMembers(Node componentNode) {
+		return (GraphElementSet<Node>) componentNode.getAttr(MEMBERS_ATTRIBUTE);
+	}
+
+}
@@ -0,0 +1,279 @@
+package chpg.graph.algorithms;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import chpg.graph.ExecutionContext;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.Node;
+
+/**
+ * Computes the dominance graphs, post-dominance graphs and control dependence
+ * graphs of many control flow graphs (for instance one per function of a
+ * program) in parallel on a fork join pool.
+ *
+ * Each control flow graph is an independent task. Workers read the shared
+ * schema of the graphs without modifying it, and each worker thread keeps one
+ * Dominators.Workspace whose scratch buffers are reused by all the graphs it
+ * processes, so that a task only allocates the arrays of its results. Results
+ * are streamed in the order in which the graphs complete.
+ *
+ * If the batch is evaluated within an ExecutionContext, the context is checked
+ * by the consuming thread while it waits for results, and pending tasks are
+ * cancelled once the context stops the evaluation or the stream is closed. The
+ * tasks themselves run on the threads of the pool, without the context.
+ */
+public class ControlDependenceBatch {
+
+	/**
+	 * The interval in milliseconds at which a waiting consumer checks its execution context
+	 */
+	private static final long CHECK_INTERVAL = 10;
+
+	/**
+	 * Scratch buffers of each worker thread, shared by all batches
+	 */
+	private static final ThreadLocal<Dominators.Workspace> WORKSPACES = new ThreadLocal<Dominators.Workspace>() {
+		@Override
+		protected Dominators.Workspace initialValue() {
+			return new Dominators.Workspace();
+		}
+	};
+
+	private final ForkJoinPool pool;
+	private final List<UniqueEntryExitGraph> graphs = new ArrayList<UniqueEntryExitGraph>();
+
+	/**
+	 * Constructs a batch that runs on the common fork join pool
+	 */
+	public ControlDependenceBatch() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructs a batch that runs on the given fork join pool
+	 * @param pool
+	 */
+	public ControlDependenceBatch(ForkJoinPool pool) {
+		if(pool == null) {
+			throw new IllegalArgumentException("Pool must be non-null");
+		}
+		this.pool = pool;
+	}
+
+	/**
+	 * Adds the given control flow graph to the batch and returns its position
+	 * @param graph
+	 * @return
+	 */
+	public int add(UniqueEntryExitGraph graph) {
+		if(graph == null) {
+			throw new IllegalArgumentException("Graph must be non-null");
+		}
+		graphs.add(graph);
+		return graphs.size() - 1;
+	}
+
+	/**
+	 * Adds the given control flow graphs to the batch
+	 * @param graphs
+	 */
+	public void addAll(Collection<? extends UniqueEntryExitGraph> graphs) {
+		for(UniqueEntryExitGraph graph : graphs) {
+			add(graph);
+		}
+	}
+
+	/**
+	 * Returns the control flow graphs of the batch
+	 * @return
+	 */
+	public List<UniqueEntryExitGraph> getGraphs() {
+		return Collections.unmodifiableList(graphs);
+	}
+
+	/**
+	 * Starts the computation of all graphs of the batch and returns their
+	 * results in the order in which they complete. Closing the stream cancels
+	 * the tasks that have not started.
+	 *
+	 * @return
+	 */
+	public Stream<Result> stream() {
+		final List<UniqueEntryExitGraph> graphs = new ArrayList<UniqueEntryExitGraph>(this.graphs);
+		final BlockingQueue<Result> completed = new LinkedBlockingQueue<Result>();
+		final List<Future<?>> tasks = new ArrayList<Future<?>>(graphs.size());
+		for(int i = 0; i < graphs.size(); i++) {
+			final int position = i;
+			tasks.add(pool.submit(() -> completed.add(compute(position, graphs.get(position)))));
+		}
+		final Runnable cancel = () -> {
+			for(Future<?> task : tasks) {
+				task.cancel(false);
+			}
+		};
+		Iterator<Result> results = new Iterator<Result>() {
+			private int remaining = graphs.size();
+
+			@Override
+			public boolean hasNext() {
+				return remaining > 0;
+			}
+
+			@Override
+			public Result next() {
+				if(remaining == 0) {
+					throw new NoSuchElementException();
+				}
+				Result result = take(completed, cancel);
+				remaining--;
+				return result;
+			}
+		};
+		Spliterator<Result> spliterator = Spliterators.spliterator(results, graphs.size(), Spliterator.NONNULL | Spliterator.SIZED);
+		return StreamSupport.stream(spliterator, false).onClose(cancel);
+	}
+
+	/**
+	 * Computes all graphs of the batch and returns their results in the order
+	 * the graphs were added
+	 *
+	 * @return
+	 */
+	public List<Result> evaluate() {
+		List<Result> results = new ArrayList<Result>(Collections.<Result>nCopies(graphs.size(), null));
+		try(Stream<Result> stream = stream()) {
+			stream.forEach(result -> results.set(result.getPosition(), result));
+		}
+		return results;
+	}
+
+	/**
+	 * Waits for the next completed result, checking the execution context of the current thread
+	 */
+	private static Result take(BlockingQueue<Result> completed, Runnable cancel) {
+		ExecutionContext context = ExecutionContext.current();
+		try {
+			while(true) {
+				Result result = completed.poll(CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+				if(result != null) {
+					return result;
+				}
+				if(context != null) {
+					context.check();
+				}
+			}
+		} catch (InterruptedException e) {
+			cancel.run();
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Batch evaluation was interrupted");
+		} catch (RuntimeException e) {
+			cancel.run();
+			throw e;
+		}
+	}
+
+	private static Result compute(int position, UniqueEntryExitGraph graph) {
+		try {
+			Dominators.Workspace workspace = WORKSPACES.get();
+			GraphElementHashSet<Node> noRoots = new GraphElementHashSet<Node>();
+			DominanceGraph dominanceGraph = new DominanceGraph(graph, DominanceGraph.dominators(graph, noRoots, false, workspace), false);
+			DominanceGraph postDominanceGraph = new DominanceGraph(graph, DominanceGraph.dominators(graph, noRoots, true, workspace), true);
+			ControlDependenceGraph controlDependenceGraph = new ControlDependenceGraph(graph, postDominanceGraph);
+			return new Result(position, graph, dominanceGraph, controlDependenceGraph, null);
+		} catch (RuntimeException | Error e) {
+			return new Result(position, graph, null, null, e);
+		}
+	}
+
+	/**
+	 * The graphs computed for one control flow graph of a batch
+	 */
+	public static class Result {
+		private final int position;
+		private final UniqueEntryExitGraph controlFlowGraph;
+		private final DominanceGraph dominanceGraph;
+		private final ControlDependenceGraph controlDependenceGraph;
+		private final Throwable error;
+
+		private Result(int position, UniqueEntryExitGraph controlFlowGraph, DominanceGraph dominanceGraph,
+				ControlDependenceGraph controlDependenceGraph, Throwable error) {
+			this.position = position;
+			this.controlFlowGraph = controlFlowGraph;
+			this.dominanceGraph = dominanceGraph;
+			this.controlDependenceGraph = controlDependenceGraph;
+			this.error = error;
+		}
+
+		/**
+		 * Returns the position of the control flow graph in the batch
+		 * @return
+		 */
+		public int getPosition() {
+			return position;
+		}
+
+		/**
+		 * Returns the control flow graph
+		 * @return
+		 */
+		public UniqueEntryExitGraph getControlFlowGraph() {
+			return controlFlowGraph;
+		}
+
+		/**
+		 * Returns the dominator tree and dominance frontiers, or null if the computation failed
+		 * @return
+		 */
+		public DominanceGraph getDominanceGraph() {
+			return dominanceGraph;
+		}
+
+		/**
+		 * Returns the post-dominator tree and post-dominance frontiers, or null if the computation failed
+		 * @return
+		 */
+		public DominanceGraph getPostDominanceGraph() {
+			return controlDependenceGraph == null ? null : controlDependenceGraph.getPostDominanceGraph();
+		}
+
+		/**
+		 * Returns the control dependence graph, or null if the computation failed
+		 * @return
+		 */
+		public ControlDependenceGraph getControlDependenceGraph() {
+			return controlDependenceGraph;
+		}
+
+		/**
+		 * Returns the exception that stopped the computation, or null if it succeeded
+		 * @return
+		 */
+		public Throwable getError() {
+			return error;
+		}
+
+		/**
+		 * Returns true if the graphs were computed
+		 * @return
+		 */
+		public boolean isSuccessful() {
+			return error == null;
+		}
+	}
+
+}
@@ -20,8 +20,19 @@ public class ControlDependenceGraph extends PropertyGraph {
 	 * @param graph
 	 */
 	public ControlDependenceGraph(UniqueEntryExitGraph graph) {
+		this(graph, new DominanceGraph(graph, true));
+	}
+	
+	/**
+	 * Constructs a control dependence graph from the given post-dominance graph
+	 * of the given control flow graph
+	 * 
+	 * @param graph
+	 * @param postDominanceGraph
+	 */
+	ControlDependenceGraph(UniqueEntryExitGraph graph, DominanceGraph postDominanceGraph) {
 		super(graph.getSchema(), graph.nodes());
-		this.dominanceGraph = new DominanceGraph(graph, true);
+		this.dominanceGraph = postDominanceGraph;
 		// create control dependence edges
 		for(Edge postDomFrontierEdge : dominanceGraph.edges(DominanceGraph.POST_DOMINANCE_FRONTIER_EDGE)) {
 			Edge controlDependenceEdge = new Edge(postDomFrontierEdge.to(), postDomFrontierEdge.from());
@@ -38,4 +49,11 @@ public class ControlDependenceGraph extends PropertyGraph {
 		return dominanceGraph.getUniqueEntryExitGraph();
 	}
 	
+	/**
+	 * Returns the post-dominance graph the control dependences were computed from
+	 */
+	public DominanceGraph getPostDominanceGraph() {
+		return dominanceGraph;
+	}
+	
 }
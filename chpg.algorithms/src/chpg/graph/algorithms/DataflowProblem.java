@@ -0,0 +1,81 @@
+package chpg.graph.algorithms;
+
+import chpg.graph.Node;
+
+/**
+ * A monotone dataflow problem over bit vector lattices (see BitVectors).
+ *
+ * Values flow along the edges of a control flow graph, forward from the entry
+ * or backward from the exit. The value flowing into a node is the meet of the
+ * values flowing out of its predecessors in the direction of the analysis (and
+ * of the boundary value at the entry or exit), and the transfer function of the
+ * node computes the value flowing out of it. The solver requires the transfer
+ * functions to be monotone and the lattice to have finite height, which holds
+ * for bit vectors of a fixed size.
+ */
+public interface DataflowProblem {
+
+	/**
+	 * The direction in which values flow
+	 */
+	public static enum Direction {
+		/**
+		 * Values flow along edges from the entry, for example reaching definitions
+		 */
+		FORWARD,
+		/**
+		 * Values flow against edges from the exit, for example liveness
+		 */
+		BACKWARD
+	}
+
+	/**
+	 * Returns the direction in which values flow
+	 * @return
+	 */
+	public Direction getDirection();
+
+	/**
+	 * Returns the number of bits of the lattice values
+	 * @return
+	 */
+	public int getBitCount();
+
+	/**
+	 * Sets into to the meet of into and value and returns true if into changed.
+	 * May problems use BitVectors.union, must problems BitVectors.intersect.
+	 * @param into
+	 * @param value
+	 * @return
+	 */
+	public boolean meet(long[] into, long[] value);
+
+	/**
+	 * Sets out to the value flowing out of the given node when in flows into it.
+	 * Every word of out must be written.
+	 * @param node
+	 * @param in
+	 * @param out
+	 */
+	public void transfer(Node node, long[] in, long[] out);
+
+	/**
+	 * Sets the given vector to the top of the lattice, the identity of the meet,
+	 * which is the initial value of every node. By default the empty set, the top
+	 * of union problems.
+	 * @param value
+	 */
+	public default void top(long[] value) {
+		BitVectors.clearAll(value);
+	}
+
+	/**
+	 * Sets the given vector to the value flowing into the entry (or exit for
+	 * backward problems) from outside of the graph. By default the empty set.
+	 * @param value
+	 */
+	public default void boundary(long[] value) {
+		BitVectors.clearAll(value);
+	}
+
+}
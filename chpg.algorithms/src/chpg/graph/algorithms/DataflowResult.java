@@ -0,0 +1,102 @@
+package chpg.graph.algorithms;
+
+import chpg.graph.Node;
+import chpg.graph.algorithms.DataflowProblem.Direction;
+import chpg.graph.index.AdjacencyIndex;
+
+/**
+ * The solution of a dataflow problem on a control flow graph (see DataflowSolver).
+ *
+ * Values are given in program order regardless of the direction of the
+ * analysis: the value before a node holds on entry to the node and the value
+ * after a node holds on exit from it. For a forward problem the value before a
+ * node is the meet of its predecessors and the value after is the result of its
+ * transfer function; for a backward problem it is the other way around.
+ */
+public class DataflowResult {
+
+	private final UniqueEntryExitGraph graph;
+	private final AdjacencyIndex index;
+	private final Direction direction;
+	private final long[][] before;
+	private final long[][] after;
+	private final long evaluations;
+
+	DataflowResult(UniqueEntryExitGraph graph, Direction direction, long[][] before, long[][] after, long evaluations) {
+		this.graph = graph;
+		this.index = graph.getAdjacencyIndex();
+		this.direction = direction;
+		this.before = before;
+		this.after = after;
+		this.evaluations = evaluations;
+	}
+
+	/**
+	 * Returns the control flow graph the problem was solved on
+	 * @return
+	 */
+	public UniqueEntryExitGraph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Returns the direction of the solved problem
+	 * @return
+	 */
+	public Direction getDirection() {
+		return direction;
+	}
+
+	/**
+	 * Returns a copy of the value on entry to the given node, or null if the node
+	 * is not part of the graph
+	 * @param node
+	 * @return
+	 */
+	public long[] getValueBefore(Node node) {
+		int ordinal = index.getNodeOrdinal(node);
+		return ordinal < 0 ? null : before[ordinal].clone();
+	}
+
+	/**
+	 * Returns a copy of the value on exit from the given node, or null if the node
+	 * is not part of the graph
+	 * @param node
+	 * @return
+	 */
+	public long[] getValueAfter(Node node) {
+		int ordinal = index.getNodeOrdinal(node);
+		return ordinal < 0 ? null : after[ordinal].clone();
+	}
+
+	/**
+	 * Returns true if the given bit is set on entry to the given node
+	 * @param node
+	 * @param bit
+	 * @return
+	 */
+	public boolean isSetBefore(Node node, int bit) {
+		int ordinal = index.getNodeOrdinal(node);
+		return ordinal >= 0 && BitVectors.get(before[ordinal], bit);
+	}
+
+	/**
+	 * Returns true if the given bit is set on exit from the given node
+	 * @param node
+	 * @param bit
+	 * @return
+	 */
+	public boolean isSetAfter(Node node, int bit) {
+		int ordinal = index.getNodeOrdinal(node);
+		return ordinal >= 0 && BitVectors.get(after[ordinal], bit);
+	}
+
+	/**
+	 * Returns the number of transfer function evaluations until the solution was reached
+	 * @return
+	 */
+	public long getEvaluations() {
+		return evaluations;
+	}
+
+}
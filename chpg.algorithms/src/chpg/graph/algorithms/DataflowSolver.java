@@ -0,0 +1,202 @@
+package chpg.graph.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
+
+import chpg.graph.ExecutionContext;
+import chpg.graph.Node.NodeDirection;
+import chpg.graph.algorithms.DataflowProblem.Direction;
+import chpg.graph.index.AdjacencyIndex;
+import chpg.graph.index.IndexedHeap;
+
+/**
+ * Solves monotone dataflow problems over control flow graphs with a worklist
+ * algorithm.
+ *
+ * Nodes are numbered in reverse postorder of a depth first search in the
+ * direction of the analysis, from the entry for forward problems and from the
+ * exit for backward problems (nodes the search does not reach are numbered
+ * after it by further searches). The worklist is a priority queue that always
+ * evaluates the pending node with the lowest number, so that a node is
+ * usually evaluated after all of its predecessors that are not reached over a
+ * back edge, and problems on reducible graphs stabilize after a few passes over
+ * each loop. Every node starts on the worklist with the top value, and the
+ * successors of a node are added again whenever its output changes.
+ *
+ * Independent control flow graphs (for instance one per function of a
+ * program) can be solved in parallel on a fork join pool (see solveAll).
+ */
+public final class DataflowSolver {
+
+	private static final int NONE = -1;
+
+	private DataflowSolver() {}
+
+	/**
+	 * Solves the given problem on the given control flow graph
+	 * @param graph
+	 * @param problem
+	 * @return
+	 */
+	public static DataflowResult solve(UniqueEntryExitGraph graph, DataflowProblem problem) {
+		if(graph == null) {
+			throw new IllegalArgumentException("Graph must be non-null");
+		}
+		if(problem == null) {
+			throw new IllegalArgumentException("Problem must be non-null");
+		}
+		if(problem.getDirection() == null) {
+			throw new IllegalArgumentException("Direction must be non-null");
+		}
+		AdjacencyIndex index = graph.getAdjacencyIndex();
+		boolean forward = problem.getDirection() == Direction.FORWARD;
+		NodeDirection flow = forward ? NodeDirection.OUT : NodeDirection.IN;
+		NodeDirection reverse = forward ? NodeDirection.IN : NodeDirection.OUT;
+		int root = index.getNodeOrdinal(forward ? graph.getEntryNode() : graph.getExitNode());
+		int nodeCount = index.nodeCount();
+		int words = BitVectors.words(problem.getBitCount());
+
+		int[] order = reversePostorder(index, root, flow);
+		long[][] in = new long[nodeCount][];
+		long[][] out = new long[nodeCount][];
+		IndexedHeap worklist = new IndexedHeap(nodeCount);
+		for(int node = 0; node < nodeCount; node++) {
+			in[node] = new long[words];
+			out[node] = new long[words];
+			problem.top(out[node]);
+			worklist.insertOrDecrease(node, order[node]);
+		}
+		long[] boundary = new long[words];
+		problem.boundary(boundary);
+		long[] scratch = new long[words];
+
+		long evaluations = 0;
+		while(!worklist.isEmpty()) {
+			ExecutionContext.checkpoint();
+			int node = worklist.poll();
+			evaluations++;
+			long[] value = in[node];
+			problem.top(value);
+			if(node == root) {
+				problem.meet(value, boundary);
+			}
+			for(int i = 0; i < index.degree(node, reverse); i++) {
+				problem.meet(value, out[index.opposite(index.edge(node, reverse, i), reverse)]);
+			}
+			problem.transfer(index.getNode(node), value, scratch);
+			if(!Arrays.equals(scratch, out[node])) {
+				// keep the previous output as the next scratch buffer
+				long[] previous = out[node];
+				out[node] = scratch;
+				scratch = previous;
+				for(int i = 0; i < index.degree(node, flow); i++) {
+					int successor = index.opposite(index.edge(node, flow, i), flow);
+					worklist.insertOrDecrease(successor, order[successor]);
+				}
+			}
+		}
+		return new DataflowResult(graph, problem.getDirection(), forward ? in : out, forward ? out : in, evaluations);
+	}
+
+	/**
+	 * Solves the problems of the given control flow graphs on the common fork
+	 * join pool and returns the results in the order of the graphs
+	 * @param graphs
+	 * @param problems a function returning the problem to solve on a graph
+	 * @return
+	 */
+	public static List<DataflowResult> solveAll(List<? extends UniqueEntryExitGraph> graphs, Function<? super UniqueEntryExitGraph, ? extends DataflowProblem> problems) {
+		return solveAll(graphs, problems, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Solves the problems of the given control flow graphs on the given fork
+	 * join pool and returns the results in the order of the graphs. Each graph
+	 * is an independent task, so the problems of different graphs must not share
+	 * mutable state. The tasks run on the threads of the pool, without the
+	 * execution context of the calling thread.
+	 *
+	 * @param graphs
+	 * @param problems a function returning the problem to solve on a graph
+	 * @param pool
+	 * @return
+	 */
+	public static List<DataflowResult> solveAll(List<? extends UniqueEntryExitGraph> graphs, final Function<? super UniqueEntryExitGraph, ? extends DataflowProblem> problems, ForkJoinPool pool) {
+		if(graphs == null || problems == null) {
+			throw new IllegalArgumentException("Graphs and problems must be non-null");
+		}
+		if(pool == null) {
+			throw new IllegalArgumentException("Pool must be non-null");
+		}
+		List<ForkJoinTask<DataflowResult>> tasks = new ArrayList<ForkJoinTask<DataflowResult>>(graphs.size());
+		for(final UniqueEntryExitGraph graph : graphs) {
+			tasks.add(pool.submit(() -> solve(graph, problems.apply(graph))));
+		}
+		List<DataflowResult> results = new ArrayList<DataflowResult>(tasks.size());
+		try {
+			for(ForkJoinTask<DataflowResult> task : tasks) {
+				results.add(task.join());
+			}
+		} finally {
+			for(ForkJoinTask<DataflowResult> task : tasks) {
+				task.cancel(false);
+			}
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the reverse postorder numbers of the node ordinals of a depth first
+	 * search in the given direction from the root (if any), continued from the
+	 * nodes not reached in ordinal order
+	 */
+	private static int[] reversePostorder(AdjacencyIndex index, int root, NodeDirection direction) {
+		int nodeCount = index.nodeCount();
+		int[] postorder = new int[nodeCount];
+		int[] stack = new int[nodeCount];
+		int[] positions = new int[nodeCount];
+		boolean[] visited = new boolean[nodeCount];
+		int count = 0;
+		for(int start = root == NONE ? 0 : NONE; start < nodeCount; start++) {
+			int first = start == NONE ? root : start;
+			if(visited[first]) {
+				continue;
+			}
+			int begin = count;
+			int size = 0;
+			visited[first] = true;
+			stack[size] = first;
+			positions[size++] = 0;
+			while(size > 0) {
+				int node = stack[size - 1];
+				if(positions[size - 1] < index.degree(node, direction)) {
+					int successor = index.opposite(index.edge(node, direction, positions[size - 1]++), direction);
+					if(!visited[successor]) {
+						visited[successor] = true;
+						stack[size] = successor;
+						positions[size++] = 0;
+					}
+				} else {
+					postorder[count++] = node;
+					size--;
+				}
+			}
+			// reverse the postorder of this search so that its nodes follow those of the previous searches
+			for(int i = begin, j = count - 1; i < j; i++, j--) {
+				int node = postorder[i];
+				postorder[i] = postorder[j];
+				postorder[j] = node;
+			}
+		}
+		int[] order = new int[nodeCount];
+		for(int i = 0; i < nodeCount; i++) {
+			order[postorder[i]] = i;
+		}
+		return order;
+	}
+
+}
@@ -24,25 +24,27 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 
 import chpg.graph.Edge;
 import chpg.graph.GraphElementHashSet;
 import chpg.graph.GraphElementSet;
 import chpg.graph.Node;
+import chpg.graph.Node.NodeDirection;
 import chpg.graph.PropertyGraph;
-
-import java.util.Set;
-import java.util.Stack;
+import chpg.graph.index.AdjacencyIndex;
 
 
 /**
- * An implementation of the O(n log n) Lengauer-Tarjan algorithm for building
- * the <a href="http://en.wikipedia.org/wiki/Dominator_%28graph_theory%29">dominator
- * tree</a> of a graph.
+ * The <a href="http://en.wikipedia.org/wiki/Dominator_%28graph_theory%29">dominator
+ * tree</a> and dominance frontiers of a graph.
+ * 
+ * Dominators are computed on the dense node ordinals of the graph's adjacency
+ * index with the array based Semi-NCA algorithm (see Dominators), and the
+ * results are converted to nodes and edges at the end.
  */
 public class DominanceGraph extends PropertyGraph {
 	
@@ -97,41 +99,24 @@ public class DominanceGraph extends PropertyGraph {
 	private UniqueEntryExitGraph uniqueEntryExitGraph;
 	
 	/**
-	 * If true edges in the graph should be interpreted as being in the reverse direction, 
-	 * this is useful for computing post-dominance (https://en.wikipedia.org/wiki/Dominator_(graph_theory)#Postdominance)
-	 */
-	private boolean invertEdges = false;
-	
-	/**
-	 * Semidominator numbers by block.
-	 */
-	private Map<Node, Integer> semi = new HashMap<Node, Integer>();
-
-	/**
-	 * Parents by block.
-	 */
-	private Map<Node, Node> parent = new HashMap<Node, Node>();
-
-	/**
-	 * Predecessors by block.
+	 * Dominators computed on the node ordinals of the graph
 	 */
-	private Multimap<Node> pred = new Multimap<Node>();
+	private Dominators dominators;
 
 	/**
-	 * Blocks in DFS order; used to look up a block from its semidominator
-	 * numbering.
+	 * Blocks in DFS preorder
 	 */
-	private ArrayList<Node> vertex = new ArrayList<Node>();
+	private List<Node> vertex;
 
 	/**
-	 * Blocks by semidominator block.
+	 * Semidominator numbers by block, built on demand.
 	 */
-	private Multimap<Node> bucket = new Multimap<Node>();
+	private Map<Node, Integer> semi = null;
 
 	/**
-	 * idominator map, built iteratively.
+	 * idominator map
 	 */
-	private Map<Node, Node> idom = new HashMap<Node, Node>();
+	private Map<Node, Node> idom;
 
 	/**
 	 * Dominance frontiers of this dominator tree, built on demand.
@@ -142,25 +127,6 @@ public class DominanceGraph extends PropertyGraph {
 	 * Dominator tree, built on demand from the idominator map.
 	 */
 	private Multimap<Node> dominatorTree = null;
-
-	/**
-	 * Auxiliary data structure used by the O(m log n) eval/link implementation:
-	 * ancestor relationships in the forest (the processed tree as it's built back
-	 * up).
-	 */
-	private Map<Node, Node> ancestor = new HashMap<Node, Node>();
-
-	/**
-	 * Auxiliary data structure used by the O(m log n) eval/link implementation:
-	 * node with least semidominator seen during traversal of a path from node to
-	 * subtree root in the forest.
-	 */
-	private Map<Node, Node> label = new HashMap<Node, Node>();
-
-	/**
-	 * A topological traversal of the dominator tree, built on demand.
-	 */
-	private LinkedList<Node> topologicalTraversalImpl = null;
 	
 	/**
 	 * Constructs a dominance graph from the given graph's unique root
@@ -183,18 +149,31 @@ public class DominanceGraph extends PropertyGraph {
 	 *                    this is useful for computing post-dominance (https://en.wikipedia.org/wiki/Dominator_(graph_theory)#Postdominance)
 	 */
 	public DominanceGraph(UniqueEntryExitGraph uniqueEntryExitGraph, GraphElementSet<Node> explicitRoots, boolean invertEdges) {
+		this(uniqueEntryExitGraph, dominators(uniqueEntryExitGraph, explicitRoots, invertEdges, new Dominators.Workspace()), invertEdges);
+	}
+
+	/**
+	 * Constructs a dominance graph from dominators computed for the given graph
+	 * 
+	 * @param uniqueEntryExitGraph
+	 * @param dominators dominators computed on the adjacency index of the given graph
+	 * @param invertEdges true if the dominators are post-dominators
+	 */
+	DominanceGraph(UniqueEntryExitGraph uniqueEntryExitGraph, Dominators dominators, boolean invertEdges) {
 		super(uniqueEntryExitGraph.getSchema(), uniqueEntryExitGraph.nodes());
 		this.uniqueEntryExitGraph = uniqueEntryExitGraph;
-		this.invertEdges = invertEdges;
-		GraphElementSet<Node> roots = new GraphElementHashSet<Node>();
-		roots.add(uniqueEntryExitGraph.getEntryNode());
-		roots.addAll(explicitRoots);
-		if(invertEdges) {
-			this.dfs(new GraphElementHashSet<Node>(uniqueEntryExitGraph.getExitNode()));
-		} else {
-			this.dfs(roots);
+		this.dominators = dominators;
+		AdjacencyIndex index = dominators.getIndex();
+		this.vertex = new ArrayList<Node>(dominators.reachableCount());
+		this.idom = new HashMap<Node, Node>();
+		for (int number = 0; number < dominators.reachableCount(); number++) {
+			int node = dominators.getNodeByPreorderNumber(number);
+			vertex.add(index.getNode(node));
+			int dominator = dominators.getImmediateDominator(node);
+			if (dominator != Dominators.NONE) {
+				idom.put(index.getNode(node), index.getNode(dominator));
+			}
 		}
-		this.computeDominators();
 		// create edges for the immediate dominator tree (idom) or immediate post dominator tree (ipdom)
 		for(Entry<Node,Node> entry : getIdoms().entrySet()){
 			Node fromNode = entry.getKey();
@@ -209,10 +188,9 @@ public class DominanceGraph extends PropertyGraph {
 			
 		}
 		// create edges for the dominance frontier (dom-frontier) or post dominance frontier (pdom-frontier)
-		for(Entry<Node, Set<Node>> entry : getDominanceFrontiers().entrySet()){
-			Node fromNode = entry.getKey();
-			for(Node toNode : entry.getValue()){
-				Edge domFrontierEdge = new Edge(fromNode, toNode);
+		for (Node fromNode : vertex) {
+			for (int frontier : dominators.getDominanceFrontier(index.getNodeOrdinal(fromNode))) {
+				Edge domFrontierEdge = new Edge(fromNode, index.getNode(frontier));
 				if(invertEdges) {
 					domFrontierEdge.tags().add(POST_DOMINANCE_FRONTIER_EDGE);
 				} else {
@@ -223,10 +201,47 @@ public class DominanceGraph extends PropertyGraph {
 		}
 	}
 	
+	/**
+	 * Computes the dominators of the given graph from its entry and the explicit
+	 * roots, or the post-dominators from its exit
+	 */
+	static Dominators dominators(UniqueEntryExitGraph graph, GraphElementSet<Node> explicitRoots, boolean invertEdges, Dominators.Workspace workspace) {
+		AdjacencyIndex index = graph.getAdjacencyIndex();
+		int[] roots;
+		if(invertEdges) {
+			roots = new int[] { index.getNodeOrdinal(graph.getExitNode()) };
+		} else {
+			GraphElementSet<Node> entries = new GraphElementHashSet<Node>();
+			entries.addAll(explicitRoots);
+			entries.remove(graph.getEntryNode());
+			roots = new int[entries.size() + 1];
+			roots[0] = index.getNodeOrdinal(graph.getEntryNode());
+			int i = 1;
+			for (Node root : entries) {
+				roots[i++] = index.getNodeOrdinal(root);
+			}
+		}
+		for (int root : roots) {
+			if (root < 0) {
+				throw new IllegalArgumentException("Roots must be nodes of the graph");
+			}
+		}
+		return new Dominators(index, roots, invertEdges ? NodeDirection.IN : NodeDirection.OUT, workspace);
+	}
+	
 	public UniqueEntryExitGraph getUniqueEntryExitGraph() {
 		return uniqueEntryExitGraph;
 	}
 
+	/**
+	 * Returns the dominators computed on the node ordinals of the graph's adjacency index
+	 * 
+	 * @return
+	 */
+	public Dominators getDominators() {
+		return dominators;
+	}
+
 	/**
 	 * Returns the map of immediate dominators
 	 * 
@@ -240,6 +255,14 @@ public class DominanceGraph extends PropertyGraph {
 	 * Returns the map of semi-dominators
 	 */
 	public Map<Node, Integer> getSdoms() {
+		if (this.semi == null) {
+			Map<Node, Integer> semi = new HashMap<Node, Integer>();
+			AdjacencyIndex index = dominators.getIndex();
+			for (Node node : vertex) {
+				semi.put(node, dominators.getSemidominator(index.getNodeOrdinal(node)));
+			}
+			this.semi = semi;
+		}
 		return this.semi;
 	}
 
@@ -266,38 +289,16 @@ public class DominanceGraph extends PropertyGraph {
 	 */
 	public Multimap<Node> getDominanceFrontiers() {
 		if (this.dominanceFrontiers == null) {
-			this.dominanceFrontiers = new Multimap<Node>();
-
-			getDominatorTree(); // touch the dominator tree
-
-			for (Node x : reverseTopologicalTraversal()) {
-				Set<Node> dfx = this.dominanceFrontiers.get(x);
-
-				GraphElementSet<Node> successors;
-				if(invertEdges) {
-					successors = uniqueEntryExitGraph.predecessors(x);
-				} else {
-					successors = uniqueEntryExitGraph.successors(x);
-				}
-				
-				// compute DF(local)
-				for (Node y : successors) {
-					if (idom.get(y) != x) {
-						dfx.add(y);
-					}
-				}
-
-				// compute DF(up)
-				for (Node z : this.dominatorTree.get(x)) {
-					for (Node y : this.dominanceFrontiers.get(z)) {
-						if (idom.get(y) != x) {
-							dfx.add(y);
-						}
-					}
+			Multimap<Node> dominanceFrontiers = new Multimap<Node>();
+			AdjacencyIndex index = dominators.getIndex();
+			for (Node x : vertex) {
+				Set<Node> dfx = dominanceFrontiers.get(x);
+				for (int y : dominators.getDominanceFrontier(index.getNodeOrdinal(x))) {
+					dfx.add(index.getNode(y));
 				}
 			}
+			this.dominanceFrontiers = dominanceFrontiers;
 		}
-
 		return this.dominanceFrontiers;
 	}
 
@@ -308,7 +309,8 @@ public class DominanceGraph extends PropertyGraph {
 	 * @return the topological traversal of the dominator tree, as an immutable List.
 	 */
 	public List<Node> topologicalTraversal() {
-		return Collections.unmodifiableList(getToplogicalTraversalImplementation());
+		// an immediate dominator is a DFS tree ancestor, so it precedes the node in DFS preorder
+		return Collections.unmodifiableList(vertex);
 	}
 
 	/**
@@ -322,149 +324,21 @@ public class DominanceGraph extends PropertyGraph {
 		return new Iterable<Node>() {
 			@Override
 			public Iterator<Node> iterator() {
-				return getToplogicalTraversalImplementation().descendingIterator();
-			}
-		};
-	}
+				return new Iterator<Node>() {
+					private int next = vertex.size() - 1;
 
-	/**
-	 * Depth-first search the graph and initialize data structures.
-	 * 
-	 * @param roots
-	 *            the root(s) of the flowgraph. One of these is the start block, the
-	 *            others are exception handlers.
-	 */
-	private void dfs(GraphElementSet<Node> roots) {
-		Iterator<Node> iterator = new DepthFirstPreorderIterator(uniqueEntryExitGraph, roots, invertEdges);
-		while (iterator.hasNext()) {
-			Node node = iterator.next();
-			if (!semi.containsKey(node)) {
-				vertex.add(node);
-
-				// initial assumption: the node's semidominator is itself
-				semi.put(node, semi.size());
-				label.put(node, node);
-
-				GraphElementSet<Node> successors;
-				if(invertEdges) {
-					successors = uniqueEntryExitGraph.predecessors(node);
-				} else {
-					successors = uniqueEntryExitGraph.successors(node);
-				}
-				
-				for (Node child : successors) {
-					pred.get(child).add(node);
-					if (!semi.containsKey(child)) {
-						parent.put(child, node);
+					@Override
+					public boolean hasNext() {
+						return next >= 0;
 					}
-				}
-			}
-		}
-	}
-
-	/**
-	 * Steps 2, 3, and 4 of Lengauer-Tarjan.
-	 */
-	private void computeDominators() {
-		int lastSemiNumber = semi.size() - 1;
-
-		for (int i = lastSemiNumber; i > 0; i--) {
-			Node w = vertex.get(i);
-			Node p = this.parent.get(w);
 
-			// step 2: compute semidominators
-			// for each v in pred(w)...
-			int semidominator = semi.get(w);
-			for (Node v : pred.get(w)) {
-				semidominator = Math.min(semidominator, semi.get(eval(v)));
-			}
-
-			semi.put(w, semidominator);
-			bucket.get(vertex.get(semidominator)).add(w);
-
-			// Link w into the forest via its parent, p
-			link(p, w);
-
-			// step 3: implicitly compute idominators
-			// for each v in bucket(parent(w)) ...
-			for (Node v : bucket.get(p)) {
-				Node u = eval(v);
-				if (semi.get(u) < semi.get(v)) {
-					idom.put(v, u);
-				} else {
-					idom.put(v, p);
-				}
-			}
-
-			bucket.get(p).clear();
-		}
-
-		// step 4: explicitly compute idominators
-		for (int i = 1; i <= lastSemiNumber; i++) {
-			Node w = vertex.get(i);
-			if (idom.get(w) != vertex.get((semi.get(w)))) {
-				idom.put(w, idom.get(idom.get(w)));
-			}
-		}
-	}
-
-	/**
-	 * Extract the node with the least-numbered semidominator in the (processed)
-	 * ancestors of the given node.
-	 * 
-	 * @param v the node of interest.
-	 * @return "If v is the root of a tree in the forest, return v. Otherwise, let r
-	 *         be the root of the tree which contains v. Return any vertex u != r of
-	 *         miniumum semi(u) on the path r-*v."
-	 */
-	private Node eval(Node v) {
-		// this version of Lengauer-Tarjan implements eval(v) as a path-compression procedure
-		compress(v);
-		return label.get(v);
-	}
-
-	/**
-	 * Traverse ancestor pointers back to a subtree root, then propagate the least
-	 * semidominator seen along this path through the "label" map.
-	 */
-	private void compress(Node v) {
-		Stack<Node> worklist = new Stack<Node>();
-		worklist.add(v);
-
-		Node a = this.ancestor.get(v);
-
-		// traverse back to the subtree root.
-		while (this.ancestor.containsKey(a)) {
-			worklist.push(a);
-			a = this.ancestor.get(a);
-		}
-
-		// propagate semidominator information forward.
-		Node ancestor = worklist.pop();
-		int leastSemi = semi.get(label.get(ancestor));
-
-		while (!worklist.empty()) {
-			Node descendent = worklist.pop();
-			int currentSemi = semi.get(label.get(descendent));
-
-			if (currentSemi > leastSemi) {
-				label.put(descendent, label.get(ancestor));
-			} else {
-				leastSemi = currentSemi;
+					@Override
+					public Node next() {
+						return vertex.get(next--);
+					}
+				};
 			}
-
-			// prepare to process the next iteration.
-			ancestor = descendent;
-		}
-	}
-
-	/**
-	 * Simple version of link(parent,child) simply links the child into the parent's
-	 * forest, with no attempt to balance the subtrees or otherwise optimize
-	 * searching.
-	 */
-	private void link(Node parent, Node child) {
-		this.ancestor.put(child, parent);
+		};
 	}
 
 	/**
@@ -487,27 +361,5 @@ public class DominanceGraph extends PropertyGraph {
 			return super.get(key);
 		}
 	}
-
-	/**
-	 * Create/fetch the topological traversal of the dominator tree.
-	 * 
-	 * @return {@link this.topologicalTraversal}, the traversal of the dominator
-	 *         tree such that for any node n with a dominator, n appears before
-	 *         idom(n).
-	 */
-	private LinkedList<Node> getToplogicalTraversalImplementation() {
-		if (this.topologicalTraversalImpl == null) {
-			this.topologicalTraversalImpl = new LinkedList<Node>();
-			for (Node node : this.vertex) {
-				int idx = this.topologicalTraversalImpl.indexOf(this.idom.get(node));
-				if (idx != -1) {
-					this.topologicalTraversalImpl.add(idx + 1, node);
-				} else {
-					this.topologicalTraversalImpl.add(node);
-				}
-			}
-		}
-		return this.topologicalTraversalImpl;
-	}
 	
 }
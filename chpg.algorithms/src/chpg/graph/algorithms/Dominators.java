@@ -0,0 +1,402 @@
+package chpg.graph.algorithms;
+
+import java.util.Arrays;
+
+import chpg.graph.ExecutionContext;
+import chpg.graph.Node.NodeDirection;
+import chpg.graph.index.AdjacencyIndex;
+
+/**
+ * Immediate dominators of the nodes of an adjacency index, computed with the
+ * Semi-NCA algorithm (see Georgiadis, "Linear-Time Algorithms for Dominators
+ * and Related Problems", 2005, and Georgiadis, Tarjan and Werneck, "Finding
+ * Dominators in Practice", 2006).
+ *
+ * All working state is kept in int arrays indexed by DFS preorder numbers: a
+ * single iterative depth first search numbers the nodes, semidominators are
+ * computed in reverse preorder with the path compressing eval of
+ * Lengauer-Tarjan, and each immediate dominator is then found as the nearest
+ * common ancestor of the DFS parent and the semidominator. Dominance frontiers
+ * are computed from the immediate dominators by walking up the dominator tree
+ * from the predecessors of each join node (Cooper, Harvey and Kennedy, "A
+ * Simple, Fast Dominance Algorithm", 2001).
+ *
+ * If there are several roots, the roots are treated as the successors of a
+ * virtual root that dominates every node. Nodes that are only dominated by the
+ * virtual root have no immediate dominator.
+ */
+public class Dominators {
+
+	/**
+	 * Denotes a node without an immediate dominator or an unreached node
+	 */
+	public static final int NONE = -1;
+
+	private final AdjacencyIndex index;
+	private final NodeDirection direction;
+	private final int offset;
+
+	// by node ordinal
+	private final int[] preorderNumbers;
+	private final boolean[] roots;
+
+	// by preorder number, the virtual root (if any) is number 0
+	private final int[] vertex;
+	private final int[] parent;
+	private final int[] semi;
+	private final int[] idom;
+	private final int count;
+
+	private int[][] frontiers = null;
+
+	/**
+	 * Computes the dominators of the nodes reachable from the given roots,
+	 * following edges in the given direction (IN computes post-dominators when
+	 * the root is the exit node)
+	 *
+	 * @param index
+	 * @param roots node ordinals
+	 * @param direction
+	 */
+	public Dominators(AdjacencyIndex index, int[] roots, NodeDirection direction) {
+		this(index, roots, direction, new Workspace());
+	}
+
+	/**
+	 * Computes the dominators of the nodes reachable from the given roots,
+	 * following edges in the given direction, using the scratch buffers of the
+	 * given workspace
+	 *
+	 * @param index
+	 * @param roots node ordinals
+	 * @param direction
+	 * @param workspace
+	 */
+	public Dominators(AdjacencyIndex index, int[] roots, NodeDirection direction, Workspace workspace) {
+		if(roots.length == 0) {
+			throw new IllegalArgumentException("Expected at least one root");
+		}
+		this.index = index;
+		this.direction = direction;
+		int nodeCount = index.nodeCount();
+		int[] distinctRoots = Arrays.stream(roots).distinct().toArray();
+		this.offset = distinctRoots.length > 1 ? 1 : 0;
+		this.roots = new boolean[nodeCount];
+		for(int root : distinctRoots) {
+			this.roots[root] = true;
+		}
+		int capacity = nodeCount + offset;
+		this.preorderNumbers = new int[nodeCount];
+		Arrays.fill(preorderNumbers, NONE);
+		this.vertex = new int[capacity];
+		this.parent = new int[capacity];
+		this.semi = new int[capacity];
+		this.idom = new int[capacity];
+		this.count = search(distinctRoots, workspace);
+		computeDominators(workspace);
+	}
+
+	/**
+	 * Numbers the reachable nodes in DFS preorder and records their DFS parents,
+	 * returns the number of numbered vertices
+	 */
+	private int search(int[] roots, Workspace workspace) {
+		int next = 0;
+		if(offset == 1) {
+			vertex[0] = NONE;
+			parent[0] = NONE;
+			next++;
+		}
+		// explicit stack of nodes and the position of the next edge to follow
+		int[] stack = workspace.buffer(0, index.nodeCount());
+		int[] positions = workspace.buffer(1, index.nodeCount());
+		for(int root : roots) {
+			if(preorderNumbers[root] != NONE) {
+				continue;
+			}
+			preorderNumbers[root] = next;
+			vertex[next] = root;
+			parent[next] = offset == 1 ? 0 : NONE;
+			next++;
+			int size = 0;
+			stack[size] = root;
+			positions[size++] = 0;
+			while(size > 0) {
+				int node = stack[size - 1];
+				int position = positions[size - 1];
+				if(position == index.degree(node, direction)) {
+					size--;
+					continue;
+				}
+				positions[size - 1]++;
+				int successor = index.opposite(index.edge(node, direction, position), direction);
+				if(preorderNumbers[successor] == NONE) {
+					ExecutionContext.checkpoint();
+					preorderNumbers[successor] = next;
+					vertex[next] = successor;
+					parent[next] = preorderNumbers[node];
+					next++;
+					stack[size] = successor;
+					positions[size++] = 0;
+				}
+			}
+		}
+		return next;
+	}
+
+	/**
+	 * Computes semidominators in reverse preorder, then immediate dominators in preorder
+	 */
+	private void computeDominators(Workspace workspace) {
+		NodeDirection reverse = direction == NodeDirection.OUT ? NodeDirection.IN : NodeDirection.OUT;
+		int[] ancestor = workspace.buffer(0, count);
+		int[] label = workspace.buffer(1, count);
+		int[] path = workspace.buffer(2, count);
+		for(int v = 0; v < count; v++) {
+			semi[v] = v;
+			label[v] = v;
+			ancestor[v] = NONE;
+		}
+		for(int w = count - 1; w > 0; w--) {
+			ExecutionContext.checkpoint();
+			int node = vertex[w];
+			int least = semi[w];
+			if(offset == 1 && roots[node]) {
+				// the virtual root is a predecessor of every root
+				least = 0;
+			}
+			int degree = index.degree(node, reverse);
+			for(int i = 0; i < degree; i++) {
+				int v = preorderNumbers[index.opposite(index.edge(node, reverse, i), reverse)];
+				if(v == NONE) {
+					// predecessors that are not reachable from the roots do not count
+					continue;
+				}
+				int u = eval(v, ancestor, label, path);
+				if(semi[u] < least) {
+					least = semi[u];
+				}
+			}
+			semi[w] = least;
+			label[w] = w;
+			// link w to its DFS parent
+			ancestor[w] = parent[w];
+		}
+		for(int w = 0; w < count; w++) {
+			if(parent[w] == NONE) {
+				idom[w] = NONE;
+				continue;
+			}
+			// the immediate dominator is the nearest common ancestor of the parent and the semidominator
+			int candidate = parent[w];
+			while(candidate > semi[w]) {
+				candidate = idom[candidate];
+			}
+			idom[w] = candidate;
+		}
+	}
+
+	/**
+	 * Returns the vertex of least semidominator on the forest path to v,
+	 * excluding the root of its tree, and compresses the path
+	 */
+	private int eval(int v, int[] ancestor, int[] label, int[] path) {
+		if(ancestor[v] == NONE) {
+			return v;
+		}
+		int size = 0;
+		int x = v;
+		while(ancestor[ancestor[x]] != NONE) {
+			path[size++] = x;
+			x = ancestor[x];
+		}
+		while(size > 0) {
+			int y = path[--size];
+			int a = ancestor[y];
+			if(semi[label[a]] < semi[label[y]]) {
+				label[y] = label[a];
+			}
+			ancestor[y] = ancestor[a];
+		}
+		return label[v];
+	}
+
+	/**
+	 * Returns the adjacency index of the dominators
+	 * @return
+	 */
+	public AdjacencyIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns the direction in which edges are followed from the roots
+	 * @return
+	 */
+	public NodeDirection getDirection() {
+		return direction;
+	}
+
+	/**
+	 * Returns the number of nodes reachable from the roots
+	 * @return
+	 */
+	public int reachableCount() {
+		return count - offset;
+	}
+
+	/**
+	 * Returns true if the given node is reachable from the roots
+	 * @param node
+	 * @return
+	 */
+	public boolean isReachable(int node) {
+		return preorderNumbers[node] != NONE;
+	}
+
+	/**
+	 * Returns the DFS preorder number of the given node, or NONE if it is not reachable
+	 * @param node
+	 * @return
+	 */
+	public int getPreorderNumber(int node) {
+		int number = preorderNumbers[node];
+		return number == NONE ? NONE : number - offset;
+	}
+
+	/**
+	 * Returns the node with the given DFS preorder number
+	 * @param number
+	 * @return
+	 */
+	public int getNodeByPreorderNumber(int number) {
+		return vertex[number + offset];
+	}
+
+	/**
+	 * Returns the preorder number of the semidominator of the given node. A
+	 * single root is its own semidominator. Returns NONE if the node is not
+	 * reachable or its semidominator is the virtual root of several roots.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public int getSemidominator(int node) {
+		int number = preorderNumbers[node];
+		if(number == NONE || parent[number] == NONE) {
+			return number == NONE ? NONE : number - offset;
+		}
+		return semi[number] - offset;
+	}
+
+	/**
+	 * Returns the immediate dominator of the given node, or NONE if the node has
+	 * no immediate dominator or is not reachable
+	 *
+	 * @param node
+	 * @return
+	 */
+	public int getImmediateDominator(int node) {
+		int number = preorderNumbers[node];
+		if(number == NONE) {
+			return NONE;
+		}
+		int dominator = idom[number];
+		if(dominator == NONE || (offset == 1 && dominator == 0)) {
+			return NONE;
+		}
+		return vertex[dominator];
+	}
+
+	/**
+	 * Returns the dominance frontier of the given node, the nodes where the
+	 * dominance of the node stops
+	 *
+	 * @param node
+	 * @return
+	 */
+	public int[] getDominanceFrontier(int node) {
+		if(frontiers == null) {
+			frontiers = computeFrontiers();
+		}
+		return frontiers[node];
+	}
+
+	/**
+	 * For each join node y (a node with several predecessors), every node on the
+	 * dominator tree path from a predecessor of y up to, but excluding, idom(y)
+	 * has y in its frontier
+	 */
+	private int[][] computeFrontiers() {
+		NodeDirection reverse = direction == NodeDirection.OUT ? NodeDirection.IN : NodeDirection.OUT;
+		int[] sizes = new int[count];
+		int[][] members = new int[count][];
+		// the last join node added to the frontier of each vertex, avoids duplicates
+		int[] last = new int[count];
+		Arrays.fill(last, NONE);
+		for(int y = offset; y < count; y++) {
+			ExecutionContext.checkpoint();
+			int node = vertex[y];
+			int degree = index.degree(node, reverse);
+			// roots have the virtual root (or the entry of the graph) as an additional predecessor
+			int predecessors = roots[node] ? 1 : 0;
+			for(int i = 0; i < degree && predecessors < 2; i++) {
+				if(preorderNumbers[index.opposite(index.edge(node, reverse, i), reverse)] != NONE) {
+					predecessors++;
+				}
+			}
+			if(predecessors < 2) {
+				continue;
+			}
+			int stop = idom[y];
+			for(int i = 0; i < degree; i++) {
+				int runner = preorderNumbers[index.opposite(index.edge(node, reverse, i), reverse)];
+				if(runner == NONE) {
+					continue;
+				}
+				while(runner != stop && runner != NONE && !(offset == 1 && runner == 0) && last[runner] != y) {
+					last[runner] = y;
+					if(members[runner] == null) {
+						members[runner] = new int[2];
+					} else if(sizes[runner] == members[runner].length) {
+						members[runner] = Arrays.copyOf(members[runner], sizes[runner] * 2);
+					}
+					members[runner][sizes[runner]++] = node;
+					runner = idom[runner];
+				}
+			}
+		}
+		int[][] result = new int[index.nodeCount()][];
+		int[] empty = new int[0];
+		Arrays.fill(result, empty);
+		for(int v = offset; v < count; v++) {
+			if(members[v] != null) {
+				result[vertex[v]] = Arrays.copyOf(members[v], sizes[v]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reusable scratch buffers for computing dominators. Computations that use
+	 * the same workspace only allocate the arrays they return, so a thread that
+	 * computes the dominators of many graphs can keep one workspace. Workspaces
+	 * must not be shared between threads that compute concurrently.
+	 */
+	public static class Workspace {
+		private final int[][] buffers = new int[3][];
+
+		/**
+		 * Returns the buffer with the given number, with at least the given size
+		 */
+		private int[] buffer(int number, int size) {
+			int[] buffer = buffers[number];
+			if(buffer == null || buffer.length < size) {
+				buffer = new int[Math.max(size, buffer == null ? 16 : buffer.length * 2)];
+				buffers[number] = buffer;
+			}
+			return buffer;
+		}
+	}
+
+}
@@ -0,0 +1,805 @@
+package chpg.graph.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.GraphElement;
+import chpg.graph.GraphListener;
+import chpg.graph.Node;
+
+/**
+ * The dominator tree of a control flow graph, kept up to date as edges are
+ * added to and removed from the graph (see AbstractGraph.addGraphListener).
+ *
+ * Edge insertions are applied with the depth based search of Georgiadis,
+ * Italiano, Laura and Santaroni, "An Experimental Study of Dynamic Dominators"
+ * (2012): after inserting (x,y), the affected nodes are found by searching
+ * from y through the nodes that are deeper in the dominator tree than the
+ * nearest common dominator of x and y, which becomes their new immediate
+ * dominator. An edge deletion recomputes the part of the tree that can change
+ * with Semi-NCA restricted to one subtree: the subtree of the nearest common
+ * dominator of x and y if y stays reachable (nothing changes if idom(y) still
+ * has an edge to y), otherwise the subtree of the nearest common dominator of
+ * idom(y) and the nodes entered from the nodes that became unreachable.
+ * Updates only visit the nodes below the changed part of the tree.
+ *
+ * Dominance queries are answered in constant time from the DFS interval of
+ * each node in the dominator tree. The intervals and the dominance frontiers
+ * are computed again on demand after the graph changes.
+ */
+public class DynamicDominators {
+
+	private static final int NONE = -1;
+
+	private final UniqueEntryExitGraph graph;
+	private final boolean invertEdges;
+	private final GraphListener listener;
+	private boolean closed = false;
+
+	private final Map<Node,Integer> ordinals = new HashMap<Node,Integer>();
+	private int size = 0;
+	private int root;
+
+	// by ordinal, the graph with edges in the direction followed from the root
+	private Node[] nodes;
+	private int[][] successors;
+	private int[] successorCount;
+	private int[][] predecessors;
+	private int[] predecessorCount;
+
+	// by ordinal, the dominator tree (depth is NONE for unreachable nodes)
+	private int[] idom;
+	private int[] depth;
+	private int[][] children;
+	private int[] childCount;
+
+	// by ordinal, the DFS interval of each node in the dominator tree, built on demand
+	private int[] enter;
+	private int[] exit;
+	private boolean numbered = false;
+
+	// scratch state, marks by ordinal and Semi-NCA state by local preorder number
+	private int[] stamps;
+	private int stamp = 0;
+	private int[] numbers;
+	private int[] order;
+	private int[] parent;
+	private int[] semi;
+	private int[] label;
+	private int[] ancestor;
+	private int[] dominator;
+	private int[] path;
+	private int[] stack;
+	private int[] positions;
+
+	private final Map<Node,Set<Node>> frontiers = new HashMap<Node,Set<Node>>();
+
+	private long incrementalUpdates = 0;
+	private long visitedNodes = 0;
+
+	/**
+	 * Computes the dominators of the given graph from its entry node, or the
+	 * post-dominators from its exit node, and maintains them as the graph changes
+	 *
+	 * @param graph
+	 * @param invertEdges true if edges should be followed in the reverse direction (post-dominance)
+	 */
+	public DynamicDominators(UniqueEntryExitGraph graph, boolean invertEdges) {
+		this.graph = graph;
+		this.invertEdges = invertEdges;
+		allocate(Math.max(16, graph.nodes().size()));
+		for(Node node : graph.nodes()) {
+			ordinal(node);
+		}
+		for(Edge edge : graph.edges()) {
+			link(edge);
+		}
+		this.root = ordinal(invertEdges ? graph.getExitNode() : graph.getEntryNode());
+		recompute();
+		this.listener = new GraphListener() {
+			@Override
+			public void elementAdded(Graph graph, GraphElement element) {
+				added(element);
+			}
+
+			@Override
+			public void elementRemoved(Graph graph, GraphElement element) {
+				removed(element);
+			}
+		};
+		graph.addGraphListener(listener);
+	}
+
+	/**
+	 * Returns the graph of these dominators
+	 * @return
+	 */
+	public UniqueEntryExitGraph getUniqueEntryExitGraph() {
+		return graph;
+	}
+
+	/**
+	 * Returns true if these are post-dominators
+	 * @return
+	 */
+	public boolean isInverted() {
+		return invertEdges;
+	}
+
+	/**
+	 * Stops maintaining the dominators and unregisters them from the graph
+	 */
+	public synchronized void close() {
+		if(!closed) {
+			closed = true;
+			graph.removeGraphListener(listener);
+		}
+	}
+
+	/**
+	 * Returns true if the given node is reachable from the root
+	 * @param node
+	 * @return
+	 */
+	public synchronized boolean isReachable(Node node) {
+		int ordinal = find(node);
+		return ordinal != NONE && depth[ordinal] != NONE;
+	}
+
+	/**
+	 * Returns the depth of the given node in the dominator tree, or -1 if the node is not reachable
+	 * @param node
+	 * @return
+	 */
+	public synchronized int getDepth(Node node) {
+		int ordinal = find(node);
+		return ordinal == NONE ? NONE : depth[ordinal];
+	}
+
+	/**
+	 * Returns the immediate dominator of the given node, or null if the node is
+	 * the root or is not reachable
+	 *
+	 * @param node
+	 * @return
+	 */
+	public synchronized Node getImmediateDominator(Node node) {
+		int ordinal = find(node);
+		if(ordinal == NONE || idom[ordinal] == NONE) {
+			return null;
+		}
+		return nodes[idom[ordinal]];
+	}
+
+	/**
+	 * Returns a map from each reachable node to its immediate dominator
+	 * @return
+	 */
+	public synchronized Map<Node,Node> getIdoms() {
+		Map<Node,Node> idoms = new HashMap<Node,Node>();
+		for(int ordinal = 0; ordinal < size; ordinal++) {
+			if(nodes[ordinal] != null && idom[ordinal] != NONE) {
+				idoms.put(nodes[ordinal], nodes[idom[ordinal]]);
+			}
+		}
+		return idoms;
+	}
+
+	/**
+	 * Returns the nodes immediately dominated by the given node
+	 * @param node
+	 * @return
+	 */
+	public synchronized List<Node> getChildren(Node node) {
+		List<Node> result = new ArrayList<Node>();
+		int ordinal = find(node);
+		if(ordinal != NONE) {
+			for(int i = 0; i < childCount[ordinal]; i++) {
+				result.add(nodes[children[ordinal][i]]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns true if every path from the root to b goes through a. A node
+	 * dominates itself, nodes that are not reachable are not dominated.
+	 *
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public synchronized boolean dominates(Node a, Node b) {
+		int x = find(a);
+		int y = find(b);
+		if(x == NONE || y == NONE || depth[x] == NONE || depth[y] == NONE) {
+			return false;
+		}
+		number();
+		return encloses(x, y);
+	}
+
+	/**
+	 * Returns true if a dominates b and a is not b
+	 * @param a
+	 * @param b
+	 * @return
+	 */
+	public synchronized boolean strictlyDominates(Node a, Node b) {
+		return a != b && dominates(a, b);
+	}
+
+	/**
+	 * Returns the dominance frontier of the given node, the nodes with a
+	 * predecessor dominated by the node that are not strictly dominated by the
+	 * node. The frontier is computed from the dominator subtree of the node.
+	 *
+	 * @param node
+	 * @return
+	 */
+	public synchronized Set<Node> getDominanceFrontier(Node node) {
+		Set<Node> frontier = frontiers.get(node);
+		if(frontier != null) {
+			return frontier;
+		}
+		frontier = new HashSet<Node>();
+		int n = find(node);
+		if(n != NONE && depth[n] != NONE) {
+			number();
+			int size = 0;
+			stack[size++] = n;
+			while(size > 0) {
+				int v = stack[--size];
+				for(int i = 0; i < successorCount[v]; i++) {
+					int successor = successors[v][i];
+					if(depth[successor] != NONE && (successor == n || !encloses(n, successor))) {
+						frontier.add(nodes[successor]);
+					}
+				}
+				for(int i = 0; i < childCount[v]; i++) {
+					stack[size++] = children[v][i];
+				}
+			}
+		}
+		frontier = Collections.unmodifiableSet(frontier);
+		frontiers.put(node, frontier);
+		return frontier;
+	}
+
+	/**
+	 * Returns the number of edge insertions and deletions applied incrementally
+	 * @return
+	 */
+	public synchronized long getIncrementalUpdates() {
+		return incrementalUpdates;
+	}
+
+	/**
+	 * Returns the number of nodes visited by incremental updates
+	 * @return
+	 */
+	public synchronized long getVisitedNodes() {
+		return visitedNodes;
+	}
+
+	private synchronized void added(GraphElement element) {
+		if(element instanceof Node) {
+			ordinal((Node) element);
+		} else if(element instanceof Edge) {
+			Edge edge = (Edge) element;
+			link(edge);
+			insert(tail(edge), head(edge));
+			changed();
+		}
+	}
+
+	private synchronized void removed(GraphElement element) {
+		if(element instanceof Edge) {
+			Edge edge = (Edge) element;
+			int x = find(invertEdges ? edge.to() : edge.from());
+			int y = find(invertEdges ? edge.from() : edge.to());
+			if(x != NONE && y != NONE && unlink(x, y)) {
+				delete(x, y);
+				changed();
+			}
+		} else if(element instanceof Node) {
+			Integer ordinal = ordinals.remove(element);
+			if(ordinal != null) {
+				nodes[ordinal] = null;
+				if(ordinal == root) {
+					// without its root nothing is reachable
+					root = NONE;
+					recompute();
+					changed();
+				}
+			}
+		}
+	}
+
+	private void changed() {
+		incrementalUpdates++;
+		numbered = false;
+		frontiers.clear();
+	}
+
+	/**
+	 * Applies the insertion of the edge from x to y
+	 */
+	private void insert(int x, int y) {
+		if(depth[x] == NONE) {
+			return;
+		}
+		if(depth[y] == NONE) {
+			insertUnreachable(x, y);
+		} else {
+			insertReachable(x, y);
+		}
+	}
+
+	/**
+	 * Depth based search for the nodes whose immediate dominator becomes the
+	 * nearest common dominator of x and y
+	 */
+	private void insertReachable(int x, int y) {
+		int nca = nca(x, y);
+		if(nca == y || nca == idom[y]) {
+			return;
+		}
+		int threshold = depth[nca] + 1;
+		int mark = ++stamp;
+		PriorityQueue<Integer> bucket = new PriorityQueue<Integer>((a, b) -> Integer.compare(depth[b], depth[a]));
+		List<Integer> affected = new ArrayList<Integer>();
+		bucket.add(y);
+		stamps[y] = mark;
+		while(!bucket.isEmpty()) {
+			int candidate = bucket.poll();
+			affected.add(candidate);
+			int level = depth[candidate];
+			int size = 0;
+			stack[size++] = candidate;
+			while(size > 0) {
+				int node = stack[--size];
+				visitedNodes++;
+				for(int i = 0; i < successorCount[node]; i++) {
+					int successor = successors[node][i];
+					if(depth[successor] == NONE || depth[successor] <= threshold || stamps[successor] == mark) {
+						continue;
+					}
+					stamps[successor] = mark;
+					if(depth[successor] > level) {
+						// dominated by the candidate, not affected itself
+						stack[size++] = successor;
+					} else {
+						bucket.add(successor);
+					}
+				}
+			}
+		}
+		for(int node : affected) {
+			setIdom(node, nca);
+		}
+		for(int node : affected) {
+			updateDepths(node);
+		}
+	}
+
+	/**
+	 * Attaches the nodes that become reachable through the edge from x to y,
+	 * then inserts the edges from those nodes to nodes that were reachable
+	 */
+	private void insertUnreachable(int x, int y) {
+		int count = rebuild(x, true);
+		int mark = stamp;
+		List<int[]> entering = new ArrayList<int[]>();
+		for(int number = 1; number < count; number++) {
+			int node = order[number];
+			for(int i = 0; i < successorCount[node]; i++) {
+				int successor = successors[node][i];
+				if(stamps[successor] != mark || successor == x) {
+					entering.add(new int[] { node, successor });
+				}
+			}
+		}
+		for(int[] edge : entering) {
+			insertReachable(edge[0], edge[1]);
+		}
+	}
+
+	/**
+	 * Applies the deletion of the edge from x to y
+	 */
+	private void delete(int x, int y) {
+		if(depth[x] == NONE || depth[y] == NONE || contains(successors[x], successorCount[x], y)) {
+			return;
+		}
+		int nca = nca(x, y);
+		if(nca == y) {
+			// a path through a back edge to y has a prefix that reaches y without it
+			return;
+		}
+		// y stays reachable if a predecessor can be reached without going through y
+		for(int i = 0; i < predecessorCount[y]; i++) {
+			int predecessor = predecessors[y][i];
+			if(depth[predecessor] != NONE && nca(predecessor, y) != y) {
+				// no dominator changes unless idom(y) does, which keeps it if it
+				// still has an edge to y, and only nodes below nca(x,y) can change
+				if(!contains(successors[idom[y]], successorCount[idom[y]], y)) {
+					rebuild(nca, false);
+				}
+				return;
+			}
+		}
+		// the nodes dominated by y become unreachable, which may change the
+		// dominators of the nodes they have edges to
+		int mark = ++stamp;
+		List<Integer> unreachable = new ArrayList<Integer>();
+		int size = 0;
+		stack[size++] = y;
+		while(size > 0) {
+			int node = stack[--size];
+			stamps[node] = mark;
+			unreachable.add(node);
+			for(int i = 0; i < childCount[node]; i++) {
+				stack[size++] = children[node][i];
+			}
+		}
+		int top = idom[y];
+		for(int node : unreachable) {
+			for(int i = 0; i < successorCount[node]; i++) {
+				int successor = successors[node][i];
+				if(stamps[successor] != mark && depth[successor] != NONE) {
+					top = nca(top, successor);
+				}
+			}
+		}
+		visitedNodes += unreachable.size();
+		removeChild(idom[y], y);
+		for(int node : unreachable) {
+			idom[node] = NONE;
+			depth[node] = NONE;
+			childCount[node] = 0;
+		}
+		rebuild(top, false);
+	}
+
+	/**
+	 * Computes the dominators of all nodes from the root
+	 */
+	private void recompute() {
+		for(int ordinal = 0; ordinal < size; ordinal++) {
+			idom[ordinal] = NONE;
+			depth[ordinal] = NONE;
+			childCount[ordinal] = 0;
+		}
+		if(root != NONE) {
+			depth[root] = 0;
+			rebuild(root, true);
+		}
+	}
+
+	/**
+	 * Recomputes the immediate dominators of the nodes below the given top node
+	 * with Semi-NCA. If region is true, the search enters the unreachable nodes,
+	 * otherwise the nodes deeper than the top node in the dominator tree, which
+	 * are its dominator subtree. The top node keeps its immediate dominator.
+	 * Returns the number of searched nodes, which are left in order by preorder
+	 * number and marked with the current stamp.
+	 */
+	private int rebuild(int top, boolean region) {
+		int mark = ++stamp;
+		int level = depth[top];
+		int count = 0;
+		stamps[top] = mark;
+		numbers[top] = count;
+		order[count] = top;
+		parent[count++] = NONE;
+		int size = 0;
+		stack[size] = top;
+		positions[size++] = 0;
+		while(size > 0) {
+			int node = stack[size - 1];
+			int position = positions[size - 1];
+			if(position == successorCount[node]) {
+				size--;
+				continue;
+			}
+			positions[size - 1]++;
+			int successor = successors[node][position];
+			if(stamps[successor] == mark || (region ? depth[successor] != NONE : depth[successor] <= level)) {
+				continue;
+			}
+			stamps[successor] = mark;
+			numbers[successor] = count;
+			order[count] = successor;
+			parent[count++] = numbers[node];
+			stack[size] = successor;
+			positions[size++] = 0;
+		}
+		for(int v = 0; v < count; v++) {
+			semi[v] = v;
+			label[v] = v;
+			ancestor[v] = NONE;
+		}
+		for(int w = count - 1; w > 0; w--) {
+			int node = order[w];
+			int least = semi[w];
+			for(int i = 0; i < predecessorCount[node]; i++) {
+				int predecessor = predecessors[node][i];
+				if(stamps[predecessor] != mark) {
+					// outside of the searched nodes, unreachable
+					continue;
+				}
+				int u = eval(numbers[predecessor]);
+				if(semi[u] < least) {
+					least = semi[u];
+				}
+			}
+			semi[w] = least;
+			ancestor[w] = parent[w];
+		}
+		// immediate dominators precede their nodes in preorder, so their depths are final
+		for(int w = 1; w < count; w++) {
+			int candidate = parent[w];
+			while(candidate > semi[w]) {
+				candidate = dominator[candidate];
+			}
+			dominator[w] = candidate;
+			int node = order[w];
+			setIdom(node, order[candidate]);
+			depth[node] = depth[order[candidate]] + 1;
+		}
+		visitedNodes += count;
+		return count;
+	}
+
+	/**
+	 * Returns the vertex of least semidominator on the forest path to v,
+	 * excluding the root of its tree, and compresses the path
+	 */
+	private int eval(int v) {
+		if(ancestor[v] == NONE) {
+			return v;
+		}
+		int size = 0;
+		int x = v;
+		while(ancestor[ancestor[x]] != NONE) {
+			path[size++] = x;
+			x = ancestor[x];
+		}
+		while(size > 0) {
+			int y = path[--size];
+			int a = ancestor[y];
+			if(semi[label[a]] < semi[label[y]]) {
+				label[y] = label[a];
+			}
+			ancestor[y] = ancestor[a];
+		}
+		return label[v];
+	}
+
+	/**
+	 * Returns the nearest common dominator of two reachable nodes
+	 */
+	private int nca(int a, int b) {
+		while(a != b) {
+			if(depth[a] >= depth[b]) {
+				a = idom[a];
+			} else {
+				b = idom[b];
+			}
+		}
+		return a;
+	}
+
+	private void setIdom(int node, int dominator) {
+		if(idom[node] == dominator) {
+			return;
+		}
+		if(idom[node] != NONE) {
+			removeChild(idom[node], node);
+		}
+		idom[node] = dominator;
+		if(childCount[dominator] == children[dominator].length) {
+			children[dominator] = Arrays.copyOf(children[dominator], Math.max(2, childCount[dominator] * 2));
+		}
+		children[dominator][childCount[dominator]++] = node;
+	}
+
+	private void removeChild(int dominator, int node) {
+		int[] list = children[dominator];
+		for(int i = 0; i < childCount[dominator]; i++) {
+			if(list[i] == node) {
+				list[i] = list[--childCount[dominator]];
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Sets the depth of the given node below its immediate dominator and updates its subtree
+	 */
+	private void updateDepths(int node) {
+		depth[node] = depth[idom[node]] + 1;
+		int size = 0;
+		stack[size++] = node;
+		while(size > 0) {
+			int v = stack[--size];
+			for(int i = 0; i < childCount[v]; i++) {
+				int child = children[v][i];
+				depth[child] = depth[v] + 1;
+				stack[size++] = child;
+			}
+		}
+	}
+
+	/**
+	 * Numbers the dominator tree with DFS intervals, if it changed
+	 */
+	private void number() {
+		if(numbered) {
+			return;
+		}
+		int clock = 0;
+		if(root != NONE) {
+			int size = 0;
+			stack[size] = root;
+			positions[size++] = 0;
+			enter[root] = clock++;
+			while(size > 0) {
+				int node = stack[size - 1];
+				int position = positions[size - 1];
+				if(position == childCount[node]) {
+					exit[node] = clock++;
+					size--;
+					continue;
+				}
+				positions[size - 1]++;
+				int child = children[node][position];
+				enter[child] = clock++;
+				stack[size] = child;
+				positions[size++] = 0;
+			}
+		}
+		numbered = true;
+	}
+
+	/**
+	 * Returns true if the dominator tree interval of a encloses the interval of b
+	 */
+	private boolean encloses(int a, int b) {
+		return enter[a] <= enter[b] && exit[b] <= exit[a];
+	}
+
+	private int tail(Edge edge) {
+		return ordinal(invertEdges ? edge.to() : edge.from());
+	}
+
+	private int head(Edge edge) {
+		return ordinal(invertEdges ? edge.from() : edge.to());
+	}
+
+	private void link(Edge edge) {
+		int x = tail(edge);
+		int y = head(edge);
+		successors[x] = append(successors[x], successorCount[x]++, y);
+		predecessors[y] = append(predecessors[y], predecessorCount[y]++, x);
+	}
+
+	/**
+	 * Removes one edge from x to y, returns false if there is none
+	 */
+	private boolean unlink(int x, int y) {
+		if(!remove(successors[x], successorCount[x], y)) {
+			return false;
+		}
+		successorCount[x]--;
+		remove(predecessors[y], predecessorCount[y], x);
+		predecessorCount[y]--;
+		return true;
+	}
+
+	private static int[] append(int[] list, int count, int value) {
+		if(count == list.length) {
+			list = Arrays.copyOf(list, Math.max(2, count * 2));
+		}
+		list[count] = value;
+		return list;
+	}
+
+	private static boolean remove(int[] list, int count, int value) {
+		for(int i = 0; i < count; i++) {
+			if(list[i] == value) {
+				list[i] = list[count - 1];
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean contains(int[] list, int count, int value) {
+		for(int i = 0; i < count; i++) {
+			if(list[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the ordinal of a known node, or NONE
+	 */
+	private int find(Node node) {
+		Integer ordinal = ordinals.get(node);
+		return ordinal == null ? NONE : ordinal;
+	}
+
+	/**
+	 * Returns the ordinal of the given node, numbering new nodes as unreachable
+	 */
+	private int ordinal(Node node) {
+		Integer ordinal = ordinals.get(node);
+		if(ordinal != null) {
+			return ordinal;
+		}
+		if(size == nodes.length) {
+			allocate(size * 2);
+		}
+		nodes[size] = node;
+		idom[size] = NONE;
+		depth[size] = NONE;
+		ordinals.put(node, size);
+		return size++;
+	}
+
+	private void allocate(int capacity) {
+		int[] empty = new int[0];
+		if(nodes == null) {
+			nodes = new Node[capacity];
+			successors = new int[capacity][];
+			predecessors = new int[capacity][];
+			children = new int[capacity][];
+		} else {
+			nodes = Arrays.copyOf(nodes, capacity);
+			successors = Arrays.copyOf(successors, capacity);
+			predecessors = Arrays.copyOf(predecessors, capacity);
+			children = Arrays.copyOf(children, capacity);
+		}
+		for(int ordinal = size; ordinal < capacity; ordinal++) {
+			successors[ordinal] = empty;
+			predecessors[ordinal] = empty;
+			children[ordinal] = empty;
+		}
+		successorCount = grow(successorCount, capacity);
+		predecessorCount = grow(predecessorCount, capacity);
+		idom = grow(idom, capacity);
+		depth = grow(depth, capacity);
+		childCount = grow(childCount, capacity);
+		enter = grow(enter, capacity);
+		exit = grow(exit, capacity);
+		stamps = grow(stamps, capacity);
+		numbers = grow(numbers, capacity);
+		order = grow(order, capacity);
+		parent = grow(parent, capacity);
+		semi = grow(semi, capacity);
+		label = grow(label, capacity);
+		ancestor = grow(ancestor, capacity);
+		dominator = grow(dominator, capacity);
+		path = grow(path, capacity);
+		stack = grow(stack, capacity);
+		positions = grow(positions, capacity);
+	}
+
+	private static int[] grow(int[] array, int capacity) {
+		return array == null ? new int[capacity] : Arrays.copyOf(array, capacity);
+	}
+
+}
@@ -0,0 +1,100 @@
+package chpg.graph.algorithms;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import chpg.graph.Node;
+
+/**
+ * A dataflow problem whose transfer functions have the form
+ * out = gen | (in & ~kill), such as reaching definitions, liveness and
+ * available expressions. The gen and kill sets of a node are computed once and
+ * kept for the following evaluations of its transfer function.
+ *
+ * May problems (a fact holds if it holds along some path) meet with union and
+ * start from the empty set, must problems (a fact holds if it holds along
+ * all paths) meet with intersection and start from the full set.
+ */
+public abstract class GenKillProblem implements DataflowProblem {
+
+	private final Direction direction;
+	private final int bitCount;
+	private final boolean may;
+	private final Map<Node, long[][]> genKill = new ConcurrentHashMap<Node, long[][]>();
+
+	/**
+	 * @param direction the direction in which values flow
+	 * @param bitCount the number of facts
+	 * @param may true for a may problem (union), false for a must problem (intersection)
+	 */
+	public GenKillProblem(Direction direction, int bitCount, boolean may) {
+		if(direction == null) {
+			throw new IllegalArgumentException("Direction must be non-null");
+		}
+		BitVectors.words(bitCount);
+		this.direction = direction;
+		this.bitCount = bitCount;
+		this.may = may;
+	}
+
+	/**
+	 * Sets the bits of the facts the given node generates in the given empty vector
+	 * @param node
+	 * @param gen
+	 */
+	protected abstract void gen(Node node, long[] gen);
+
+	/**
+	 * Sets the bits of the facts the given node kills in the given empty vector
+	 * @param node
+	 * @param kill
+	 */
+	protected abstract void kill(Node node, long[] kill);
+
+	@Override
+	public Direction getDirection() {
+		return direction;
+	}
+
+	@Override
+	public int getBitCount() {
+		return bitCount;
+	}
+
+	/**
+	 * Returns true for a may problem, false for a must problem
+	 * @return
+	 */
+	public boolean isMay() {
+		return may;
+	}
+
+	@Override
+	public boolean meet(long[] into, long[] value) {
+		return may ? BitVectors.union(into, value) : BitVectors.intersect(into, value);
+	}
+
+	@Override
+	public void transfer(Node node, long[] in, long[] out) {
+		long[][] sets = genKill.get(node);
+		if(sets == null) {
+			long[] gen = BitVectors.create(bitCount);
+			long[] kill = BitVectors.create(bitCount);
+			gen(node, gen);
+			kill(node, kill);
+			sets = new long[][] { gen, kill };
+			genKill.put(node, sets);
+		}
+		BitVectors.genKill(out, in, sets[0], sets[1]);
+	}
+
+	@Override
+	public void top(long[] value) {
+		if(may) {
+			BitVectors.clearAll(value);
+		} else {
+			BitVectors.fill(value, bitCount);
+		}
+	}
+
+}
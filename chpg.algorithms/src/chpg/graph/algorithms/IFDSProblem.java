@@ -0,0 +1,74 @@
+package chpg.graph.algorithms;
+
+import java.util.Collection;
+
+import chpg.graph.Node;
+
+/**
+ * An interprocedural, finite, distributive subset problem (see Reps, Horwitz
+ * and Sagiv, "Precise Interprocedural Dataflow Analysis via Graph
+ * Reachability", POPL 1995) over the facts D, solved by IFDSSolver.
+ *
+ * The flow functions map a fact holding on entry to a node to the facts
+ * holding on entry to the next node along each kind of edge of the
+ * interprocedural control flow graph. They must be distributive, which they are
+ * by construction since they are applied to one fact at a time. Facts are
+ * compared with equals and used as hash keys, so they should be immutable.
+ *
+ * The zero value is the fact that holds on every path, from which flow
+ * functions generate new facts. Flow functions should map the zero value to
+ * itself (among other facts) so that facts can be generated in callees and
+ * after calls.
+ */
+public interface IFDSProblem<D> {
+
+	/**
+	 * Returns the zero value, the fact that holds on every path
+	 * @return
+	 */
+	public D zeroValue();
+
+	/**
+	 * Returns the facts holding on entry to the successor along an intraprocedural
+	 * control flow edge from a node that is not a call site
+	 * @param node
+	 * @param successor
+	 * @param fact
+	 * @return
+	 */
+	public Collection<D> normalFlow(Node node, Node successor, D fact);
+
+	/**
+	 * Returns the facts holding on entry to the callee from the given call site,
+	 * typically the actual parameters mapped to formal parameters
+	 * @param callSite
+	 * @param calleeEntry
+	 * @param fact
+	 * @return
+	 */
+	public Collection<D> callFlow(Node callSite, Node calleeEntry, D fact);
+
+	/**
+	 * Returns the facts holding on entry to the return site of the given call site
+	 * for a fact holding on entry to an exit of the callee, typically the return
+	 * value and formal parameters mapped back to the caller
+	 * @param callSite
+	 * @param calleeEntry
+	 * @param exit
+	 * @param returnSite
+	 * @param fact
+	 * @return
+	 */
+	public Collection<D> returnFlow(Node callSite, Node calleeEntry, Node exit, Node returnSite, D fact);
+
+	/**
+	 * Returns the facts holding on entry to the return site of the given call site
+	 * that bypass the callee, typically the facts about locals of the caller
+	 * @param callSite
+	 * @param returnSite
+	 * @param fact
+	 * @return
+	 */
+	public Collection<D> callToReturnFlow(Node callSite, Node returnSite, D fact);
+
+}
@@ -0,0 +1,633 @@
+package chpg.graph.algorithms;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import chpg.graph.Edge;
+import chpg.graph.ExecutionContext;
+import chpg.graph.Graph;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.GraphElementSet;
+import chpg.graph.Node;
+import chpg.graph.index.AdjacencyIndex;
+
+/**
+ * Solves IFDS problems (see IFDSProblem) with the tabulation algorithm of
+ * Reps, Horwitz and Sagiv over an interprocedural control flow graph given by
+ * edge tags.
+ *
+ * Edges tagged with the control flow tag connect the nodes of a procedure, and
+ * edges tagged with the call tag lead from a call site to the entry node of a
+ * callee. The return sites of a call site are its control flow successors, and
+ * the exits of a procedure are its nodes without control flow successors. Other
+ * edges of the graph are ignored.
+ *
+ * The solver records path edges from a fact at the entry of a procedure (or at a
+ * source) to the facts holding on entry to the nodes of the procedure. Once a
+ * fact reaches an exit, the pair of the entry fact and the exit fact is
+ * memoized as a summary, which is applied to every call of the procedure with
+ * that entry fact, including calls found later, so a callee is analyzed once per
+ * entry fact rather than once per call.
+ *
+ * The analysis starts from the facts of the sources and does not propagate facts
+ * past sinks. The facts reaching each sink (other than the zero value) are
+ * reported, and the solver can stop as soon as the first one is found. Facts
+ * reaching an exit from a source are only returned to the callers of the
+ * procedure if returns past seeds are followed (see setFollowReturnsPastSeeds).
+ *
+ * Path edges, summaries and the callers of each procedure are kept in concurrent
+ * sets, so that the path edges can be processed in parallel on a fork join pool
+ * (see solve(ForkJoinPool)). The flow functions are then called concurrently.
+ */
+public class IFDSSolver<D> {
+
+	/**
+	 * The interval in milliseconds at which a thread waiting for a parallel solution checks its execution context
+	 */
+	private static final long CHECK_INTERVAL = 10;
+
+	private static final int[] NONE = new int[0];
+
+	private final IFDSProblem<D> problem;
+	private final AdjacencyIndex index;
+
+	// by node ordinal: control flow successors and predecessors, callee entries and the call sites of entries
+	private final int[][] successors;
+	private final int[][] predecessors;
+	private final int[][] callees;
+	private final int[][] callers;
+
+	private final Map<Node, Set<D>> sources = new LinkedHashMap<Node, Set<D>>();
+	private final Set<Node> sinks = new HashSet<Node>();
+	private boolean followReturnsPastSeeds = false;
+	private boolean stopAtFirstSink = false;
+
+	/**
+	 * Constructs a solver of the given problem on the interprocedural control flow
+	 * graph of the given graph's edges tagged with the given tags
+	 * @param graph
+	 * @param problem
+	 * @param controlFlowEdgeTag the tag of intraprocedural control flow edges
+	 * @param callEdgeTag the tag of edges from call sites to callee entries
+	 */
+	public IFDSSolver(Graph graph, IFDSProblem<D> problem, String controlFlowEdgeTag, String callEdgeTag) {
+		if(graph == null || problem == null) {
+			throw new IllegalArgumentException("Graph and problem must be non-null");
+		}
+		if(controlFlowEdgeTag == null || callEdgeTag == null) {
+			throw new IllegalArgumentException("Edge tags must be non-null");
+		}
+		this.problem = problem;
+		this.index = AdjacencyIndex.of(graph);
+		GraphElementSet<Edge> controlFlowEdges = graph.edgesTaggedWithAny(controlFlowEdgeTag);
+		GraphElementSet<Edge> callEdges = graph.edgesTaggedWithAny(callEdgeTag);
+		int nodeCount = index.nodeCount();
+		int edgeCount = index.edgeCount();
+		boolean[] isControlFlow = new boolean[edgeCount];
+		boolean[] isCall = new boolean[edgeCount];
+		int[] successorCounts = new int[nodeCount];
+		int[] predecessorCounts = new int[nodeCount];
+		int[] calleeCounts = new int[nodeCount];
+		int[] callerCounts = new int[nodeCount];
+		for(int edge = 0; edge < edgeCount; edge++) {
+			Edge element = index.getEdge(edge);
+			if(controlFlowEdges.contains(element)) {
+				isControlFlow[edge] = true;
+				successorCounts[index.from(edge)]++;
+				predecessorCounts[index.to(edge)]++;
+			}
+			if(callEdges.contains(element)) {
+				isCall[edge] = true;
+				calleeCounts[index.from(edge)]++;
+				callerCounts[index.to(edge)]++;
+			}
+		}
+		this.successors = allocate(successorCounts);
+		this.predecessors = allocate(predecessorCounts);
+		this.callees = allocate(calleeCounts);
+		this.callers = allocate(callerCounts);
+		for(int edge = 0; edge < edgeCount; edge++) {
+			int from = index.from(edge);
+			int to = index.to(edge);
+			if(isControlFlow[edge]) {
+				successors[from][--successorCounts[from]] = to;
+				predecessors[to][--predecessorCounts[to]] = from;
+			}
+			if(isCall[edge]) {
+				callees[from][--calleeCounts[from]] = to;
+				callers[to][--callerCounts[to]] = from;
+			}
+		}
+	}
+
+	private static int[][] allocate(int[] counts) {
+		int[][] arrays = new int[counts.length][];
+		for(int i = 0; i < counts.length; i++) {
+			arrays[i] = counts[i] == 0 ? NONE : new int[counts[i]];
+		}
+		return arrays;
+	}
+
+	/**
+	 * Adds a source at which the zero value holds
+	 * @param node
+	 */
+	public void addSource(Node node) {
+		addSource(node, problem.zeroValue());
+	}
+
+	/**
+	 * Adds a source at which the given fact holds on entry to the given node
+	 * @param node
+	 * @param fact
+	 */
+	public void addSource(Node node, D fact) {
+		if(node == null || fact == null) {
+			throw new IllegalArgumentException("Source node and fact must be non-null");
+		}
+		Set<D> facts = sources.get(node);
+		if(facts == null) {
+			facts = new HashSet<D>();
+			sources.put(node, facts);
+		}
+		facts.add(fact);
+	}
+
+	/**
+	 * Adds a sink, facts are not propagated past sinks
+	 * @param node
+	 */
+	public void addSink(Node node) {
+		if(node == null) {
+			throw new IllegalArgumentException("Sink must be non-null");
+		}
+		sinks.add(node);
+	}
+
+	/**
+	 * Sets whether facts reaching an exit from a source are returned to all
+	 * callers of the procedure (false by default). Sources are usually not at the
+	 * entry of a procedure, so such facts have no calling context and are returned
+	 * to the return sites of every call of the procedure.
+	 * @param followReturnsPastSeeds
+	 */
+	public void setFollowReturnsPastSeeds(boolean followReturnsPastSeeds) {
+		this.followReturnsPastSeeds = followReturnsPastSeeds;
+	}
+
+	public boolean isFollowReturnsPastSeeds() {
+		return followReturnsPastSeeds;
+	}
+
+	/**
+	 * Sets whether the solver stops once a fact other than the zero value reaches
+	 * a sink (false by default), for queries that only ask whether any sink is reached
+	 * @param stopAtFirstSink
+	 */
+	public void setStopAtFirstSink(boolean stopAtFirstSink) {
+		this.stopAtFirstSink = stopAtFirstSink;
+	}
+
+	public boolean isStopAtFirstSink() {
+		return stopAtFirstSink;
+	}
+
+	/**
+	 * Solves the problem on the current thread
+	 * @return
+	 */
+	public Result<D> solve() {
+		Tabulation tabulation = new Tabulation();
+		Deque<PathEdge<D>> worklist = new ArrayDeque<PathEdge<D>>();
+		Consumer<PathEdge<D>> schedule = pathEdge -> {
+			if(tabulation.pathEdges.add(pathEdge)) {
+				ExecutionContext.checkpoint(tabulation.pathEdges.size());
+				worklist.add(pathEdge);
+			}
+		};
+		tabulation.seed(schedule);
+		while(!worklist.isEmpty() && !tabulation.stopped) {
+			tabulation.process(worklist.remove(), schedule);
+		}
+		return tabulation.result();
+	}
+
+	/**
+	 * Solves the problem on the given fork join pool, processing path edges in
+	 * parallel. The calling thread waits for the solution and checks its execution
+	 * context while it waits, stopping the workers once the context stops the
+	 * evaluation.
+	 * @param pool
+	 * @return
+	 */
+	public Result<D> solve(ForkJoinPool pool) {
+		if(pool == null) {
+			throw new IllegalArgumentException("Pool must be non-null");
+		}
+		Tabulation tabulation = new Tabulation();
+		Propagation root = new Propagation(tabulation, null, null);
+		pool.execute(root);
+		ExecutionContext context = ExecutionContext.current();
+		try {
+			while(true) {
+				try {
+					root.get(CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+					break;
+				} catch (TimeoutException e) {
+					if(context != null) {
+						context.checkResultSize(tabulation.pathEdges.size());
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			tabulation.stopped = true;
+			Thread.currentThread().interrupt();
+			throw new CancellationException("IFDS solution was interrupted");
+		} catch (ExecutionException e) {
+			tabulation.stopped = true;
+			if(e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if(e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} catch (RuntimeException e) {
+			tabulation.stopped = true;
+			throw e;
+		}
+		return tabulation.result();
+	}
+
+	/**
+	 * Processes one path edge and forks the processing of the path edges it creates
+	 */
+	private class Propagation extends CountedCompleter<Void> {
+		private static final long serialVersionUID = 1L;
+
+		private final Tabulation tabulation;
+		private final PathEdge<D> pathEdge;
+
+		Propagation(Tabulation tabulation, Propagation parent, PathEdge<D> pathEdge) {
+			super(parent);
+			this.tabulation = tabulation;
+			this.pathEdge = pathEdge;
+		}
+
+		@Override
+		public void compute() {
+			Consumer<PathEdge<D>> schedule = next -> {
+				if(tabulation.pathEdges.add(next)) {
+					addToPendingCount(1);
+					new Propagation(tabulation, this, next).fork();
+				}
+			};
+			if(pathEdge == null) {
+				tabulation.seed(schedule);
+			} else if(!tabulation.stopped) {
+				tabulation.process(pathEdge, schedule);
+			}
+			tryComplete();
+		}
+	}
+
+	/**
+	 * The state of one solution
+	 */
+	private class Tabulation {
+		private final D zero = problem.zeroValue();
+		private final boolean[] isSink = new boolean[index.nodeCount()];
+		private final Set<PathEdge<D>> pathEdges = ConcurrentHashMap.newKeySet();
+		// by entry fact: the path edges of the calls that reach it and the exit facts it reaches (the summaries)
+		private final Map<NodeFact<D>, Set<PathEdge<D>>> incoming = new ConcurrentHashMap<NodeFact<D>, Set<PathEdge<D>>>();
+		private final Map<NodeFact<D>, Set<NodeFact<D>>> summaries = new ConcurrentHashMap<NodeFact<D>, Set<NodeFact<D>>>();
+		private final Set<NodeFact<D>> seeds = ConcurrentHashMap.newKeySet();
+		private final Map<Integer, int[]> entries = new ConcurrentHashMap<Integer, int[]>();
+		private final Map<Integer, Set<D>> sinkFacts = new ConcurrentHashMap<Integer, Set<D>>();
+		private volatile boolean stopped = false;
+
+		Tabulation() {
+			for(Node sink : sinks) {
+				int ordinal = index.getNodeOrdinal(sink);
+				if(ordinal >= 0) {
+					isSink[ordinal] = true;
+				}
+			}
+		}
+
+		void seed(Consumer<PathEdge<D>> schedule) {
+			for(Map.Entry<Node, Set<D>> source : sources.entrySet()) {
+				int node = index.getNodeOrdinal(source.getKey());
+				if(node >= 0) {
+					for(D fact : source.getValue()) {
+						addSeed(node, fact, schedule);
+					}
+				}
+			}
+		}
+
+		void process(PathEdge<D> pathEdge, Consumer<PathEdge<D>> schedule) {
+			int node = pathEdge.node;
+			D fact = pathEdge.fact;
+			if(isSink[node]) {
+				if(!fact.equals(zero)) {
+					sinkFacts.computeIfAbsent(node, sink -> ConcurrentHashMap.newKeySet()).add(fact);
+					if(stopAtFirstSink) {
+						stopped = true;
+					}
+				}
+				return;
+			}
+			Node element = index.getNode(node);
+			if(callees[node].length > 0) {
+				for(int callee : callees[node]) {
+					Node calleeEntry = index.getNode(callee);
+					for(D entryFact : problem.callFlow(element, calleeEntry, fact)) {
+						NodeFact<D> context = new NodeFact<D>(callee, entryFact);
+						// register the caller before reading the summaries, an exit registers its
+						// summary before reading the callers so that no pair is missed
+						incoming.computeIfAbsent(context, key -> ConcurrentHashMap.newKeySet()).add(pathEdge);
+						schedule.accept(new PathEdge<D>(callee, entryFact, callee, entryFact));
+						for(NodeFact<D> exit : summaries.getOrDefault(context, Collections.<NodeFact<D>>emptySet())) {
+							applySummary(pathEdge, callee, exit, schedule);
+						}
+					}
+				}
+				for(int returnSite : successors[node]) {
+					for(D returnFact : problem.callToReturnFlow(element, index.getNode(returnSite), fact)) {
+						schedule.accept(new PathEdge<D>(pathEdge.start, pathEdge.startFact, returnSite, returnFact));
+					}
+				}
+			} else if(successors[node].length == 0) {
+				NodeFact<D> context = new NodeFact<D>(pathEdge.start, pathEdge.startFact);
+				NodeFact<D> exit = new NodeFact<D>(node, fact);
+				if(summaries.computeIfAbsent(context, key -> ConcurrentHashMap.newKeySet()).add(exit)) {
+					for(PathEdge<D> caller : incoming.getOrDefault(context, Collections.<PathEdge<D>>emptySet())) {
+						applySummary(caller, pathEdge.start, exit, schedule);
+					}
+					if(followReturnsPastSeeds && seeds.contains(context)) {
+						returnPastSeed(exit, schedule);
+					}
+				}
+			} else {
+				for(int successor : successors[node]) {
+					for(D successorFact : problem.normalFlow(element, index.getNode(successor), fact)) {
+						schedule.accept(new PathEdge<D>(pathEdge.start, pathEdge.startFact, successor, successorFact));
+					}
+				}
+			}
+		}
+
+		/**
+		 * Extends the path edge of a call with the summary of the callee
+		 */
+		private void applySummary(PathEdge<D> call, int calleeEntry, NodeFact<D> exit, Consumer<PathEdge<D>> schedule) {
+			Node callSite = index.getNode(call.node);
+			for(int returnSite : successors[call.node]) {
+				for(D returnFact : problem.returnFlow(callSite, index.getNode(calleeEntry), index.getNode(exit.node), index.getNode(returnSite), exit.fact)) {
+					schedule.accept(new PathEdge<D>(call.start, call.startFact, returnSite, returnFact));
+				}
+			}
+		}
+
+		/**
+		 * Returns a fact reaching an exit from a source to the return sites of all
+		 * calls of the procedure, where it is a new seed
+		 */
+		private void returnPastSeed(NodeFact<D> exit, Consumer<PathEdge<D>> schedule) {
+			for(int calleeEntry : entries(exit.node)) {
+				for(int callSite : callers[calleeEntry]) {
+					for(int returnSite : successors[callSite]) {
+						for(D returnFact : problem.returnFlow(index.getNode(callSite), index.getNode(calleeEntry), index.getNode(exit.node), index.getNode(returnSite), exit.fact)) {
+							addSeed(returnSite, returnFact, schedule);
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Starts a path edge at a seed. The seed may also be the entry fact of a
+		 * procedure whose exits were already summarized by other workers, those exits
+		 * are returned past the new seed here. A seed is registered before reading the
+		 * summaries and an exit registers its summary before reading the seeds, so
+		 * that no exit is missed.
+		 */
+		private void addSeed(int node, D fact, Consumer<PathEdge<D>> schedule) {
+			NodeFact<D> seed = new NodeFact<D>(node, fact);
+			if(seeds.add(seed) && followReturnsPastSeeds) {
+				for(NodeFact<D> exit : summaries.getOrDefault(seed, Collections.<NodeFact<D>>emptySet())) {
+					returnPastSeed(exit, schedule);
+				}
+			}
+			schedule.accept(new PathEdge<D>(node, fact, node, fact));
+		}
+
+		/**
+		 * Returns the called entries from which the given exit is reachable along control flow edges
+		 */
+		private int[] entries(int exit) {
+			return entries.computeIfAbsent(exit, key -> {
+				Set<Integer> visited = new HashSet<Integer>();
+				Set<Integer> found = new HashSet<Integer>();
+				Deque<Integer> stack = new ArrayDeque<Integer>();
+				visited.add(exit);
+				stack.push(exit);
+				while(!stack.isEmpty()) {
+					int node = stack.pop();
+					if(callers[node].length > 0) {
+						found.add(node);
+					}
+					for(int predecessor : predecessors[node]) {
+						if(visited.add(predecessor)) {
+							stack.push(predecessor);
+						}
+					}
+				}
+				int[] result = new int[found.size()];
+				int i = 0;
+				for(int entry : found) {
+					result[i++] = entry;
+				}
+				return result;
+			});
+		}
+
+		Result<D> result() {
+			Map<Node, Set<D>> facts = new HashMap<Node, Set<D>>();
+			for(PathEdge<D> pathEdge : pathEdges) {
+				facts.computeIfAbsent(index.getNode(pathEdge.node), node -> new HashSet<D>()).add(pathEdge.fact);
+			}
+			Map<Node, Set<D>> reached = new HashMap<Node, Set<D>>();
+			for(Map.Entry<Integer, Set<D>> entry : sinkFacts.entrySet()) {
+				reached.put(index.getNode(entry.getKey()), new HashSet<D>(entry.getValue()));
+			}
+			long summaryCount = 0;
+			for(Set<NodeFact<D>> exits : summaries.values()) {
+				summaryCount += exits.size();
+			}
+			return new Result<D>(facts, reached, pathEdges.size(), summaryCount, stopped);
+		}
+	}
+
+	/**
+	 * A fact holding on entry to a node, given by its ordinal
+	 */
+	private static final class NodeFact<D> {
+		final int node;
+		final D fact;
+
+		NodeFact(int node, D fact) {
+			this.node = node;
+			this.fact = fact;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * node + fact.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if(!(object instanceof NodeFact)) {
+				return false;
+			}
+			NodeFact<?> other = (NodeFact<?>) object;
+			return node == other.node && fact.equals(other.fact);
+		}
+	}
+
+	/**
+	 * A path edge from a fact holding on entry to the start node (the entry of a
+	 * procedure or a seed) to a fact holding on entry to a node of the procedure
+	 */
+	private static final class PathEdge<D> {
+		final int start;
+		final D startFact;
+		final int node;
+		final D fact;
+
+		PathEdge(int start, D startFact, int node, D fact) {
+			this.start = start;
+			this.startFact = startFact;
+			this.node = node;
+			this.fact = fact;
+		}
+
+		@Override
+		public int hashCode() {
+			return ((31 * start + startFact.hashCode()) * 31 + node) * 31 + fact.hashCode();
+		}
+
+		@Override
+		public boolean equals(Object object) {
+			if(!(object instanceof PathEdge)) {
+				return false;
+			}
+			PathEdge<?> other = (PathEdge<?>) object;
+			return start == other.start && node == other.node && startFact.equals(other.startFact) && fact.equals(other.fact);
+		}
+	}
+
+	/**
+	 * The solution of an IFDS problem
+	 */
+	public static class Result<D> {
+		private final Map<Node, Set<D>> facts;
+		private final Map<Node, Set<D>> sinkFacts;
+		private final long pathEdgeCount;
+		private final long summaryCount;
+		private final boolean stopped;
+
+		private Result(Map<Node, Set<D>> facts, Map<Node, Set<D>> sinkFacts, long pathEdgeCount, long summaryCount, boolean stopped) {
+			this.facts = facts;
+			this.sinkFacts = sinkFacts;
+			this.pathEdgeCount = pathEdgeCount;
+			this.summaryCount = summaryCount;
+			this.stopped = stopped;
+		}
+
+		/**
+		 * Returns the facts holding on entry to the given node in some calling
+		 * context, including the zero value
+		 * @param node
+		 * @return
+		 */
+		public Set<D> getFacts(Node node) {
+			Set<D> result = facts.get(node);
+			return result == null ? Collections.<D>emptySet() : Collections.unmodifiableSet(result);
+		}
+
+		/**
+		 * Returns true if the given fact holds on entry to the given node in some calling context
+		 * @param node
+		 * @param fact
+		 * @return
+		 */
+		public boolean holds(Node node, D fact) {
+			Set<D> result = facts.get(node);
+			return result != null && result.contains(fact);
+		}
+
+		/**
+		 * Returns the sinks reached by a fact other than the zero value
+		 * @return
+		 */
+		public GraphElementSet<Node> getReachedSinks() {
+			GraphElementSet<Node> result = new GraphElementHashSet<Node>();
+			for(Node sink : sinkFacts.keySet()) {
+				result.add(sink);
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the facts other than the zero value reaching the given sink
+		 * @param sink
+		 * @return
+		 */
+		public Set<D> getSinkFacts(Node sink) {
+			Set<D> result = sinkFacts.get(sink);
+			return result == null ? Collections.<D>emptySet() : Collections.unmodifiableSet(result);
+		}
+
+		/**
+		 * Returns the number of path edges found
+		 * @return
+		 */
+		public long getPathEdgeCount() {
+			return pathEdgeCount;
+		}
+
+		/**
+		 * Returns the number of summaries (pairs of entry and exit facts of a procedure) found
+		 * @return
+		 */
+		public long getSummaryCount() {
+			return summaryCount;
+		}
+
+		/**
+		 * Returns true if the solver stopped at the first sink before the solution was complete
+		 * @return
+		 */
+		public boolean isStopped() {
+			return stopped;
+		}
+	}
+
+}
@@ -0,0 +1,555 @@
+package chpg.graph.algorithms;
+
+import java.util.Arrays;
+
+import chpg.graph.Edge;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.GraphElementSet;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.index.AdjacencyIndex;
+
+/**
+ * The loop nesting forest of a control flow graph.
+ *
+ * Loops are identified with Havlak's algorithm (see Havlak, "Nesting of
+ * Reducible and Irreducible Loops", TOPLAS 1997) including the correction
+ * described by Ramalingam ("Identifying Loops in Almost Linear Time", TOPLAS
+ * 1999). The nodes reachable from the entry are numbered by a depth first
+ * search, and the nodes are visited in reverse preorder. The body of the loop
+ * of a node w is collected by walking backwards from the sources of the back
+ * edges into w, where every node found is replaced by the header of the
+ * outermost loop found so far that contains it (kept in a union-find
+ * structure). A loop is irreducible if the walk reaches a node that is not a
+ * depth first search descendant of w, in which case that node is entered into
+ * the loop through an edge other than one to the header. The algorithm runs in
+ * O(|E| * a(|E|)) time for both reducible and irreducible graphs.
+ *
+ * The forest has an edge tagged LOOP_CHILD_EDGE from each loop header to each
+ * node whose innermost loop is the header's loop, so nested loop headers are
+ * children of the header of their enclosing loop. Nodes that are not part of
+ * any loop, and nodes not reachable from the entry, have no incoming forest
+ * edge. The loops can also be written onto the nodes and edges of the control
+ * flow graph (see annotate).
+ */
+public class LoopNestingForest extends PropertyGraph {
+
+	/**
+	 * Used to tag the edges from a loop header to the nodes of its loop that are
+	 * not part of a nested loop, and to the headers of its directly nested loops
+	 */
+	public static final String LOOP_CHILD_EDGE = "loop-child";
+
+	/**
+	 * Used to tag loop headers in the control flow graph when annotated
+	 */
+	public static final String LOOP_HEADER = "loop-header";
+
+	/**
+	 * Used to tag the headers of irreducible loops in the control flow graph when
+	 * annotated. An irreducible loop can be entered at nodes other than its header.
+	 */
+	public static final String IRREDUCIBLE_LOOP_HEADER = "irreducible-loop-header";
+
+	/**
+	 * Used to tag the edges of the control flow graph that lead from a node of a
+	 * loop back to the loop's header along a depth first search back edge
+	 */
+	public static final String LOOP_BACK_EDGE = "loop-back-edge";
+
+	/**
+	 * Used to tag the edges of the control flow graph that leave a loop
+	 */
+	public static final String LOOP_EXIT_EDGE = "loop-exit-edge";
+
+	/**
+	 * Used to tag the edges of the control flow graph that enter an irreducible
+	 * loop at a node other than its header
+	 */
+	public static final String IRREDUCIBLE_LOOP_ENTRY_EDGE = "irreducible-loop-entry-edge";
+
+	/**
+	 * The attribute of an annotated node that holds the number of the innermost
+	 * loop containing it, loops are numbered in depth first search preorder of
+	 * their headers
+	 */
+	public static final String LOOP_ATTRIBUTE = "loop";
+
+	/**
+	 * The attribute of an annotated node that holds the number of loops containing it
+	 */
+	public static final String LOOP_DEPTH_ATTRIBUTE = "loop-depth";
+
+	private static final int NONE = -1;
+
+	private final UniqueEntryExitGraph uniqueEntryExitGraph;
+	private final AdjacencyIndex index;
+
+	// nodes by preorder number and preorder numbers by node ordinal (NONE if unreachable)
+	private final int[] nodes;
+	private final int[] numbers;
+	private final int[] last;
+
+	// by preorder number: the header of the innermost loop containing a node, excluding the node's own loop
+	private final int[] header;
+	private final boolean[] isHeader;
+	private final boolean[] isIrreducible;
+
+	// by preorder number: the loop nesting depth, the loop number of headers and the preorder interval of the forest
+	private final int[] depth;
+	private final int[] loopNumbers;
+	private final int[] forestNumbers;
+	private final int[] forestLast;
+	private final int loopCount;
+
+	/**
+	 * Computes the loop nesting forest of the given control flow graph from its entry
+	 * @param uniqueEntryExitGraph
+	 */
+	public LoopNestingForest(UniqueEntryExitGraph uniqueEntryExitGraph) {
+		super(uniqueEntryExitGraph.getSchema());
+		this.uniqueEntryExitGraph = uniqueEntryExitGraph;
+		this.index = uniqueEntryExitGraph.getAdjacencyIndex();
+		int nodeCount = index.nodeCount();
+		this.numbers = new int[nodeCount];
+		Arrays.fill(numbers, NONE);
+		int[] preorder = new int[nodeCount];
+		int[] last = new int[nodeCount];
+		int reachable = search(index.getNodeOrdinal(uniqueEntryExitGraph.getEntryNode()), preorder, last);
+		this.nodes = Arrays.copyOf(preorder, reachable);
+		this.last = Arrays.copyOf(last, reachable);
+		this.header = new int[reachable];
+		this.isHeader = new boolean[reachable];
+		this.isIrreducible = new boolean[reachable];
+		findLoops();
+
+		this.depth = new int[reachable];
+		this.loopNumbers = new int[reachable];
+		int loops = 0;
+		for(int w = 0; w < reachable; w++) {
+			// enclosing headers precede the nodes of their loops in preorder
+			int enclosing = header[w] == NONE ? 0 : depth[header[w]];
+			depth[w] = isHeader[w] ? enclosing + 1 : enclosing;
+			loopNumbers[w] = isHeader[w] ? loops++ : NONE;
+		}
+		this.loopCount = loops;
+		this.forestNumbers = new int[reachable];
+		this.forestLast = new int[reachable];
+		numberForest();
+
+		for(int w = 0; w < reachable; w++) {
+			add(index.getNode(nodes[w]));
+		}
+		for(int w = 0; w < reachable; w++) {
+			if(header[w] != NONE) {
+				Edge edge = new Edge(index.getNode(nodes[header[w]]), index.getNode(nodes[w]));
+				edge.tags().add(LOOP_CHILD_EDGE);
+				add(edge);
+			}
+		}
+	}
+
+	/**
+	 * Numbers the nodes reachable from the root in depth first search preorder
+	 * and records the largest preorder number of the descendants of each node.
+	 * Returns the number of reachable nodes.
+	 */
+	private int search(int root, int[] preorder, int[] last) {
+		int nodeCount = index.nodeCount();
+		int[] stack = new int[nodeCount];
+		int[] positions = new int[nodeCount];
+		int size = 0;
+		int counter = 0;
+		numbers[root] = counter;
+		preorder[counter++] = root;
+		stack[size] = root;
+		positions[size++] = 0;
+		while(size > 0) {
+			int node = stack[size - 1];
+			if(positions[size - 1] < index.outDegree(node)) {
+				int successor = index.to(index.outEdge(node, positions[size - 1]++));
+				if(numbers[successor] == NONE) {
+					numbers[successor] = counter;
+					preorder[counter++] = successor;
+					stack[size] = successor;
+					positions[size++] = 0;
+				}
+			} else {
+				last[numbers[node]] = counter - 1;
+				size--;
+			}
+		}
+		return counter;
+	}
+
+	private boolean isAncestor(int w, int v) {
+		return w <= v && v <= last[w];
+	}
+
+	/**
+	 * Havlak's algorithm on preorder numbers
+	 */
+	private void findLoops() {
+		int size = nodes.length;
+		// predecessors by preorder number, the non-back predecessors of a header grow for irreducible loops
+		int[][] backPredecessors = new int[size][];
+		int[][] predecessors = new int[size][];
+		int[] predecessorCounts = new int[size];
+		for(int w = 0; w < size; w++) {
+			int node = nodes[w];
+			int backCount = 0;
+			int count = 0;
+			int[] back = new int[index.inDegree(node)];
+			int[] other = new int[index.inDegree(node)];
+			for(int i = 0; i < index.inDegree(node); i++) {
+				int v = numbers[index.from(index.inEdge(node, i))];
+				if(v == NONE) {
+					continue;
+				}
+				if(isAncestor(w, v)) {
+					back[backCount++] = v;
+				} else {
+					other[count++] = v;
+				}
+			}
+			backPredecessors[w] = Arrays.copyOf(back, backCount);
+			predecessors[w] = other;
+			predecessorCounts[w] = count;
+		}
+
+		int[] parent = new int[size];
+		for(int w = 0; w < size; w++) {
+			parent[w] = w;
+			header[w] = NONE;
+		}
+		int[] inBody = new int[size];
+		Arrays.fill(inBody, NONE);
+		int[] body = new int[size];
+		for(int w = size - 1; w >= 0; w--) {
+			int bodySize = 0;
+			boolean selfLoop = false;
+			for(int v : backPredecessors[w]) {
+				if(v == w) {
+					selfLoop = true;
+					continue;
+				}
+				int x = find(parent, v);
+				if(inBody[x] != w) {
+					inBody[x] = w;
+					body[bodySize++] = x;
+				}
+			}
+			// body[0, bodySize) doubles as the worklist, members found later are appended
+			for(int next = 0; next < bodySize; next++) {
+				int x = body[next];
+				for(int i = 0; i < predecessorCounts[x]; i++) {
+					int y = find(parent, predecessors[x][i]);
+					if(!isAncestor(w, y)) {
+						// y enters the loop at x, not through the header
+						isIrreducible[w] = true;
+						if(predecessorCounts[w] == predecessors[w].length) {
+							predecessors[w] = Arrays.copyOf(predecessors[w], Math.max(4, predecessors[w].length * 2));
+						}
+						predecessors[w][predecessorCounts[w]++] = y;
+					} else if(y != w && inBody[y] != w) {
+						inBody[y] = w;
+						body[bodySize++] = y;
+					}
+				}
+			}
+			if(bodySize > 0 || selfLoop) {
+				isHeader[w] = true;
+				for(int i = 0; i < bodySize; i++) {
+					header[body[i]] = w;
+					parent[body[i]] = w;
+				}
+			}
+		}
+	}
+
+	private static int find(int[] parent, int x) {
+		int root = x;
+		while(parent[root] != root) {
+			root = parent[root];
+		}
+		while(parent[x] != root) {
+			int next = parent[x];
+			parent[x] = root;
+			x = next;
+		}
+		return root;
+	}
+
+	/**
+	 * Numbers the loop nesting forest in preorder, so that the nodes of the loop
+	 * of a header h are the nodes whose forest number lies in the interval of h
+	 */
+	private void numberForest() {
+		int size = nodes.length;
+		int[] childOffsets = new int[size + 1];
+		for(int w = 0; w < size; w++) {
+			if(header[w] != NONE) {
+				childOffsets[header[w] + 1]++;
+			}
+		}
+		for(int w = 0; w < size; w++) {
+			childOffsets[w + 1] += childOffsets[w];
+		}
+		int[] children = new int[size];
+		int[] next = Arrays.copyOf(childOffsets, size);
+		for(int w = 0; w < size; w++) {
+			if(header[w] != NONE) {
+				children[next[header[w]]++] = w;
+			}
+		}
+		int[] stack = new int[size];
+		int[] positions = new int[size];
+		int counter = 0;
+		for(int root = 0; root < size; root++) {
+			if(header[root] != NONE) {
+				continue;
+			}
+			int stackSize = 0;
+			forestNumbers[root] = counter++;
+			stack[stackSize] = root;
+			positions[stackSize++] = childOffsets[root];
+			while(stackSize > 0) {
+				int w = stack[stackSize - 1];
+				if(positions[stackSize - 1] < childOffsets[w + 1]) {
+					int child = children[positions[stackSize - 1]++];
+					forestNumbers[child] = counter++;
+					stack[stackSize] = child;
+					positions[stackSize++] = childOffsets[child];
+				} else {
+					forestLast[w] = counter - 1;
+					stackSize--;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the header of the innermost loop containing w, w itself for a header
+	 */
+	private int innermost(int w) {
+		return isHeader[w] ? w : header[w];
+	}
+
+	/**
+	 * Returns true if the loop of header h contains w
+	 */
+	private boolean contains(int h, int w) {
+		return forestNumbers[h] <= forestNumbers[w] && forestNumbers[w] <= forestLast[h];
+	}
+
+	private int number(Node node) {
+		int ordinal = index.getNodeOrdinal(node);
+		return ordinal < 0 ? NONE : numbers[ordinal];
+	}
+
+	public UniqueEntryExitGraph getUniqueEntryExitGraph() {
+		return uniqueEntryExitGraph;
+	}
+
+	/**
+	 * Returns the number of loops
+	 * @return
+	 */
+	public int getLoopCount() {
+		return loopCount;
+	}
+
+	/**
+	 * Returns the loop headers, one for each loop of the graph
+	 * @return the set of loop headers, in no particular order
+	 */
+	public GraphElementSet<Node> getLoopHeaders() {
+		GraphElementSet<Node> headers = new GraphElementHashSet<Node>();
+		for(int w = 0; w < nodes.length; w++) {
+			if(isHeader[w]) {
+				headers.add(index.getNode(nodes[w]));
+			}
+		}
+		return headers;
+	}
+
+	/**
+	 * Returns true if the given node is the header of a loop
+	 * @param node
+	 * @return
+	 */
+	public boolean isLoopHeader(Node node) {
+		int w = number(node);
+		return w != NONE && isHeader[w];
+	}
+
+	/**
+	 * Returns true if the given node is the header of an irreducible loop
+	 * @param node
+	 * @return
+	 */
+	public boolean isIrreducibleLoopHeader(Node node) {
+		int w = number(node);
+		return w != NONE && isHeader[w] && isIrreducible[w];
+	}
+
+	/**
+	 * Returns the header of the innermost loop containing the given node, the
+	 * node itself if it is a loop header, or null if no loop contains the node
+	 * @param node
+	 * @return
+	 */
+	public Node getLoopHeader(Node node) {
+		int w = number(node);
+		if(w == NONE || innermost(w) == NONE) {
+			return null;
+		}
+		return index.getNode(nodes[innermost(w)]);
+	}
+
+	/**
+	 * Returns the header of the loop that directly encloses the loop of the given
+	 * header, or null if the loop is outermost
+	 * @param header
+	 * @return
+	 */
+	public Node getParentLoopHeader(Node header) {
+		int w = number(header);
+		if(w == NONE || !isHeader[w]) {
+			throw new IllegalArgumentException("Node must be a loop header");
+		}
+		return this.header[w] == NONE ? null : index.getNode(nodes[this.header[w]]);
+	}
+
+	/**
+	 * Returns the number of loops containing the given node, 0 for nodes outside of loops
+	 * @param node
+	 * @return
+	 */
+	public int getLoopDepth(Node node) {
+		int w = number(node);
+		return w == NONE ? 0 : depth[w];
+	}
+
+	/**
+	 * Returns the nodes of the loop of the given header, including its header
+	 * and the nodes of nested loops
+	 * @param header
+	 * @return
+	 */
+	public GraphElementSet<Node> getLoopNodes(Node header) {
+		int h = number(header);
+		if(h == NONE || !isHeader[h]) {
+			throw new IllegalArgumentException("Node must be a loop header");
+		}
+		GraphElementSet<Node> result = new GraphElementHashSet<Node>();
+		for(int w = h; w <= last[h]; w++) {
+			// loop nodes are depth first search descendants of the header
+			if(contains(h, w)) {
+				result.add(index.getNode(nodes[w]));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns true if the loop of the given header contains the given node
+	 * @param header
+	 * @param node
+	 * @return
+	 */
+	public boolean isInLoop(Node header, Node node) {
+		int h = number(header);
+		int w = number(node);
+		return h != NONE && w != NONE && isHeader[h] && contains(h, w);
+	}
+
+	/**
+	 * Returns the edges from a node of a loop back to the loop's header
+	 * @return
+	 */
+	public GraphElementSet<Edge> getBackEdges() {
+		return classifiedEdges(LOOP_BACK_EDGE);
+	}
+
+	/**
+	 * Returns the edges that leave a loop
+	 * @return
+	 */
+	public GraphElementSet<Edge> getLoopExitEdges() {
+		return classifiedEdges(LOOP_EXIT_EDGE);
+	}
+
+	/**
+	 * Returns the edges that enter an irreducible loop at a node other than its header
+	 * @return
+	 */
+	public GraphElementSet<Edge> getIrreducibleLoopEntryEdges() {
+		return classifiedEdges(IRREDUCIBLE_LOOP_ENTRY_EDGE);
+	}
+
+	private GraphElementSet<Edge> classifiedEdges(String kind) {
+		GraphElementSet<Edge> result = new GraphElementHashSet<Edge>();
+		for(int edge = 0; edge < index.edgeCount(); edge++) {
+			if(isKind(edge, kind)) {
+				result.add(index.getEdge(edge));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Classifies the given edge ordinal of the control flow graph
+	 */
+	private boolean isKind(int edge, String kind) {
+		int u = numbers[index.from(edge)];
+		int v = numbers[index.to(edge)];
+		if(u == NONE || v == NONE) {
+			return false;
+		}
+		switch(kind) {
+			case LOOP_BACK_EDGE:
+				return isHeader[v] && isAncestor(v, u) && contains(v, u);
+			case LOOP_EXIT_EDGE:
+				return innermost(u) != NONE && !contains(innermost(u), v);
+			default:
+				// the loops entered by the edge are the loops of v that do not contain u
+				for(int h = innermost(v); h != NONE && !contains(h, u); h = header[h]) {
+					if(h != v) {
+						return true;
+					}
+				}
+				return false;
+		}
+	}
+
+	/**
+	 * Writes the loops onto the control flow graph: loop headers are tagged
+	 * LOOP_HEADER (and IRREDUCIBLE_LOOP_HEADER), nodes in loops get the
+	 * LOOP_ATTRIBUTE and LOOP_DEPTH_ATTRIBUTE attributes, and back edges, loop
+	 * exit edges and irreducible loop entry edges are tagged.
+	 */
+	public void annotate() {
+		for(int w = 0; w < nodes.length; w++) {
+			Node node = index.getNode(nodes[w]);
+			if(isHeader[w]) {
+				node.tags().add(LOOP_HEADER);
+				if(isIrreducible[w]) {
+					node.tags().add(IRREDUCIBLE_LOOP_HEADER);
+				}
+			}
+			if(innermost(w) != NONE) {
+				node.putAttr(LOOP_ATTRIBUTE, loopNumbers[innermost(w)]);
+				node.putAttr(LOOP_DEPTH_ATTRIBUTE, depth[w]);
+			}
+		}
+		for(int edge = 0; edge < index.edgeCount(); edge++) {
+			for(String kind : new String[] { LOOP_BACK_EDGE, LOOP_EXIT_EDGE, IRREDUCIBLE_LOOP_ENTRY_EDGE }) {
+				if(isKind(edge, kind)) {
+					index.getEdge(edge).tags().add(kind);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,352 @@
+package chpg.graph.algorithms;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Random;
+
+import chpg.graph.ExecutionContext;
+import chpg.graph.Graph;
+import chpg.graph.Node;
+import chpg.graph.index.AdjacencyIndex;
+import chpg.graph.index.StronglyConnectedComponents;
+
+/**
+ * Counts the paths from a node to a set of target nodes without enumerating
+ * them, and samples paths uniformly at random.
+ *
+ * Paths are counted like the paths of a PathEnumerator: they have at least one
+ * edge and stop at the first target they reach. On an acyclic graph the counted
+ * paths are exactly the enumerated paths. Loops are unrolled a bounded number
+ * of times: the nodes are ordered by a depth first search from the from node,
+ * an edge of a strongly connected component that leads back to an earlier node
+ * starts a new iteration of the loop, and a path may start at most loopBound
+ * further iterations each time it enters a component. With a loop bound of 0,
+ * only the paths without back edges are counted.
+ *
+ * The counts are computed by dynamic programming in a single pass over the
+ * strongly connected components in reverse topological order, with one count
+ * per node and iteration. Counts are kept as longs and computed again as
+ * BigIntegers only if a long count overflows.
+ */
+public class PathCounter {
+
+	private final AdjacencyIndex index;
+	private final int from;
+	private final boolean[] targets;
+	private final int loopBound;
+	private final int width;
+
+	private final boolean[] reaches;
+	// reverse postorder numbers of the nodes reachable from the from node, -1 for other nodes
+	private final int[] numbers;
+	private final int[] component;
+
+	// counted nodes grouped by component in reverse topological order, by decreasing order within a component
+	private final int[] order;
+	private final int[] componentStarts;
+
+	private final long[] counts;
+	private boolean saturated = false;
+	private BigInteger[] exactCounts = null;
+
+	/**
+	 * Counts the paths of the given graph from the given node to the given target nodes
+	 * @param graph
+	 * @param from
+	 * @param targets
+	 * @param loopBound the number of additional loop iterations a path may take in each component
+	 */
+	public PathCounter(Graph graph, Node from, Iterable<Node> targets, int loopBound) {
+		this(AdjacencyIndex.of(graph), from, targets, loopBound);
+	}
+
+	/**
+	 * Counts the paths of the given adjacency index from the given node to the given target nodes
+	 * @param index
+	 * @param from
+	 * @param targets
+	 * @param loopBound the number of additional loop iterations a path may take in each component
+	 */
+	public PathCounter(AdjacencyIndex index, Node from, Iterable<Node> targets, int loopBound) {
+		if(loopBound < 0) {
+			throw new IllegalArgumentException("Loop bound must be non-negative");
+		}
+		this.index = index;
+		this.from = index.getNodeOrdinal(from);
+		if(this.from < 0) {
+			throw new IllegalArgumentException("From node must be a node of the graph");
+		}
+		this.loopBound = loopBound;
+		this.width = loopBound + 1;
+		int nodeCount = index.nodeCount();
+		this.targets = new boolean[nodeCount];
+		for(int target : index.getNodeOrdinals(targets)) {
+			if(target >= 0) {
+				this.targets[target] = true;
+			}
+		}
+		this.reaches = PathEnumerator.reachesTarget(index, this.targets);
+		this.numbers = search();
+		StronglyConnectedComponents components = new StronglyConnectedComponents(index);
+		this.component = new int[nodeCount];
+		for(int node = 0; node < nodeCount; node++) {
+			component[node] = components.component(node);
+		}
+		// counting sort of the counted nodes by component, by decreasing number within a component
+		this.componentStarts = new int[components.count() + 1];
+		int counted = 0;
+		for(int node = 0; node < nodeCount; node++) {
+			if(isCounted(node)) {
+				componentStarts[component[node] + 1]++;
+				counted++;
+			}
+		}
+		for(int c = 0; c < components.count(); c++) {
+			componentStarts[c + 1] += componentStarts[c];
+		}
+		int[] byNumber = new int[nodeCount];
+		Arrays.fill(byNumber, -1);
+		for(int node = 0; node < nodeCount; node++) {
+			if(numbers[node] >= 0) {
+				byNumber[numbers[node]] = node;
+			}
+		}
+		this.order = new int[counted];
+		int[] next = new int[components.count()];
+		System.arraycopy(componentStarts, 0, next, 0, next.length);
+		for(int number = byNumber.length - 1; number >= 0; number--) {
+			int node = byNumber[number];
+			if(node >= 0 && isCounted(node)) {
+				order[next[component[node]]++] = node;
+			}
+		}
+		this.counts = new long[nodeCount * width];
+		count(false);
+	}
+
+	/**
+	 * Numbers the nodes reachable from the from node in reverse postorder of a
+	 * depth first search, so that only the back edges of the search lead to a
+	 * node with a smaller number. A path does not continue past a target.
+	 */
+	private int[] search() {
+		int nodeCount = index.nodeCount();
+		int[] numbers = new int[nodeCount];
+		Arrays.fill(numbers, -1);
+		boolean[] visited = new boolean[nodeCount];
+		int[] stack = new int[nodeCount];
+		int[] positions = new int[nodeCount];
+		int[] postorder = new int[nodeCount];
+		int finished = 0;
+		int size = 0;
+		visited[from] = true;
+		stack[size] = from;
+		positions[size++] = 0;
+		while(size > 0) {
+			int node = stack[size - 1];
+			int position = positions[size - 1];
+			if(position == index.outDegree(node) || (node != from && targets[node])) {
+				postorder[finished++] = node;
+				size--;
+				continue;
+			}
+			positions[size - 1]++;
+			int successor = index.to(index.outEdge(node, position));
+			if(!visited[successor] && reaches[successor]) {
+				visited[successor] = true;
+				stack[size] = successor;
+				positions[size++] = 0;
+			}
+		}
+		for(int i = 0; i < finished; i++) {
+			numbers[postorder[i]] = finished - 1 - i;
+		}
+		return numbers;
+	}
+
+	private boolean isCounted(int node) {
+		return numbers[node] >= 0 && reaches[node];
+	}
+
+	/**
+	 * Returns the state reached by following the given edge from the given node
+	 * in the given iteration of its component, or -1 if paths cannot follow it
+	 */
+	private int transition(int node, int iteration, int edge) {
+		int successor = index.to(edge);
+		if(!isCounted(successor)) {
+			return -1;
+		}
+		if(component[successor] != component[node]) {
+			// entering another component starts its first iteration
+			return successor * width;
+		}
+		if(numbers[successor] > numbers[node]) {
+			return successor * width + iteration;
+		}
+		// a back edge starts the next iteration of the loop
+		return iteration < loopBound ? successor * width + iteration + 1 : -1;
+	}
+
+	/**
+	 * Computes the number of paths from each state, components in reverse
+	 * topological order and the iterations of a component from the last
+	 */
+	private void count(boolean exact) {
+		BigInteger[] exactCounts = exact ? new BigInteger[counts.length] : null;
+		for(int c = 0; c < componentStarts.length - 1; c++) {
+			for(int iteration = loopBound; iteration >= 0; iteration--) {
+				for(int i = componentStarts[c]; i < componentStarts[c + 1]; i++) {
+					ExecutionContext.checkpoint();
+					int node = order[i];
+					int state = node * width + iteration;
+					// the from node is the start of the paths, not the end of a path
+					boolean ends = targets[node] && !(node == from && iteration == 0);
+					int degree = ends ? 0 : index.outDegree(node);
+					long sum = ends ? 1 : 0;
+					BigInteger exactSum = ends ? BigInteger.ONE : BigInteger.ZERO;
+					for(int e = 0; e < degree; e++) {
+						int next = transition(node, iteration, index.outEdge(node, e));
+						if(next < 0) {
+							continue;
+						}
+						if(exact) {
+							exactSum = exactSum.add(exactCounts[next]);
+						} else {
+							sum += counts[next];
+							if(sum < 0) {
+								sum = Long.MAX_VALUE;
+								saturated = true;
+							}
+						}
+					}
+					if(exact) {
+						exactCounts[state] = exactSum;
+					} else {
+						counts[state] = sum;
+					}
+				}
+			}
+		}
+		if(exact) {
+			this.exactCounts = exactCounts;
+		}
+	}
+
+	/**
+	 * Returns the number of paths
+	 * @return
+	 */
+	public BigInteger getCount() {
+		if(!saturated) {
+			return BigInteger.valueOf(counts[from * width]);
+		}
+		return exact(from * width);
+	}
+
+	/**
+	 * Returns the number of paths, or Long.MAX_VALUE if the number does not fit in a long
+	 * @return
+	 */
+	public long getSaturatedCount() {
+		return counts[from * width];
+	}
+
+	/**
+	 * Returns true if the number of paths does not fit in a long
+	 * @return
+	 */
+	public boolean isSaturated() {
+		return saturated && counts[from * width] == Long.MAX_VALUE;
+	}
+
+	/**
+	 * Returns the number of additional loop iterations a path may take in each component
+	 * @return
+	 */
+	public int getLoopBound() {
+		return loopBound;
+	}
+
+	private BigInteger exact(int state) {
+		if(exactCounts == null) {
+			count(true);
+		}
+		return exactCounts[state];
+	}
+
+	/**
+	 * Returns a path chosen uniformly at random among the counted paths, or null if there are none
+	 * @param random
+	 * @return
+	 */
+	public PathEnumerator.Path sample(Random random) {
+		int state = from * width;
+		if(counts[state] == 0) {
+			return null;
+		}
+		PathEnumerator.Path path = null;
+		int node = from;
+		int iteration = 0;
+		while(path == null || !targets[node]) {
+			// choose the next edge in proportion to the number of paths that follow it
+			int degree = index.outDegree(node);
+			int chosen = -1;
+			if(saturated) {
+				BigInteger remaining = uniform(random, exact(state));
+				for(int e = 0; e < degree && chosen < 0; e++) {
+					int next = transition(node, iteration, index.outEdge(node, e));
+					if(next >= 0) {
+						remaining = remaining.subtract(exact(next));
+						if(remaining.signum() < 0) {
+							chosen = next;
+							path = new PathEnumerator.Path(index, path, index.outEdge(node, e), path == null ? 1 : path.length() + 1);
+						}
+					}
+				}
+			} else {
+				long remaining = uniform(random, counts[state]);
+				for(int e = 0; e < degree && chosen < 0; e++) {
+					int next = transition(node, iteration, index.outEdge(node, e));
+					if(next >= 0) {
+						remaining -= counts[next];
+						if(remaining < 0) {
+							chosen = next;
+							path = new PathEnumerator.Path(index, path, index.outEdge(node, e), path == null ? 1 : path.length() + 1);
+						}
+					}
+				}
+			}
+			state = chosen;
+			node = chosen / width;
+			iteration = chosen % width;
+		}
+		return path;
+	}
+
+	/**
+	 * Returns a uniformly distributed long in [0, bound)
+	 */
+	private static long uniform(Random random, long bound) {
+		while(true) {
+			long bits = random.nextLong() >>> 1;
+			long value = bits % bound;
+			if(bits - value + (bound - 1) >= 0) {
+				return value;
+			}
+		}
+	}
+
+	/**
+	 * Returns a uniformly distributed BigInteger in [0, bound)
+	 */
+	private static BigInteger uniform(Random random, BigInteger bound) {
+		while(true) {
+			BigInteger value = new BigInteger(bound.bitLength(), random);
+			if(value.compareTo(bound) < 0) {
+				return value;
+			}
+		}
+	}
+
+}
@@ -0,0 +1,382 @@
+package chpg.graph.algorithms;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import chpg.graph.Edge;
+import chpg.graph.ExecutionContext;
+import chpg.graph.ExecutionStatistics;
+import chpg.graph.Graph;
+import chpg.graph.Node;
+import chpg.graph.index.AdjacencyIndex;
+
+/**
+ * Lazily enumerates the paths from a node to a set of target nodes over the
+ * adjacency index of a graph.
+ *
+ * Paths are produced one at a time by a depth first search that keeps the
+ * current path as arrays of edge ordinals and edge positions, so the search
+ * itself does not allocate per step. Each produced path is a node of a trie of
+ * edge ordinals: a path shares the trie nodes of its prefix with the paths
+ * produced before it, so holding on to many paths costs one trie node per
+ * distinct prefix instead of a copy of every path. Only nodes that can reach a
+ * target are searched, and a path stops at the first target it reaches.
+ *
+ * By default paths are simple (no node is repeated). If revisits are allowed,
+ * paths may repeat nodes and the enumeration only terminates on cyclic graphs
+ * if the path length is bounded.
+ */
+public class PathEnumerator implements Iterable<PathEnumerator.Path> {
+
+	private final AdjacencyIndex index;
+	private final int from;
+	private final boolean[] targets;
+
+	private boolean allowRevisits = false;
+	private int maxLength = Integer.MAX_VALUE;
+	private long maxPaths = Long.MAX_VALUE;
+
+	/**
+	 * Enumerates the paths of the given graph from the given node to the given target nodes
+	 * @param graph
+	 * @param from
+	 * @param targets
+	 */
+	public PathEnumerator(Graph graph, Node from, Iterable<Node> targets) {
+		this(AdjacencyIndex.of(graph), from, targets);
+	}
+
+	/**
+	 * Enumerates the paths of the given adjacency index from the given node to the given target nodes
+	 * @param index
+	 * @param from
+	 * @param targets
+	 */
+	public PathEnumerator(AdjacencyIndex index, Node from, Iterable<Node> targets) {
+		this.index = index;
+		this.from = index.getNodeOrdinal(from);
+		if(this.from < 0) {
+			throw new IllegalArgumentException("From node must be a node of the graph");
+		}
+		this.targets = new boolean[index.nodeCount()];
+		for(int target : index.getNodeOrdinals(targets)) {
+			if(target >= 0) {
+				this.targets[target] = true;
+			}
+		}
+	}
+
+	/**
+	 * Sets whether paths may visit a node more than once (false by default)
+	 * @param allowRevisits
+	 */
+	public void setAllowRevisits(boolean allowRevisits) {
+		this.allowRevisits = allowRevisits;
+	}
+
+	public boolean isAllowRevisits() {
+		return allowRevisits;
+	}
+
+	/**
+	 * Sets the maximum number of edges of an enumerated path
+	 * @param maxLength
+	 */
+	public void setMaxLength(int maxLength) {
+		if(maxLength < 1) {
+			throw new IllegalArgumentException("Maximum length must be positive");
+		}
+		this.maxLength = maxLength;
+	}
+
+	public int getMaxLength() {
+		return maxLength;
+	}
+
+	/**
+	 * Sets the maximum number of paths to enumerate
+	 * @param maxPaths
+	 */
+	public void setMaxPaths(long maxPaths) {
+		if(maxPaths < 0) {
+			throw new IllegalArgumentException("Maximum number of paths must be non-negative");
+		}
+		this.maxPaths = maxPaths;
+	}
+
+	public long getMaxPaths() {
+		return maxPaths;
+	}
+
+	/**
+	 * Returns the adjacency index of the enumerated paths
+	 * @return
+	 */
+	public AdjacencyIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns a new enumeration of the paths. Each call starts a new search.
+	 */
+	@Override
+	public Iterator<Path> iterator() {
+		return new Search();
+	}
+
+	/**
+	 * Returns a new enumeration of the paths as a sequential stream
+	 * @return
+	 */
+	public Stream<Path> stream() {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(), Spliterator.NONNULL | Spliterator.ORDERED), false);
+	}
+
+	/**
+	 * Returns the nodes that can reach a target, by a reverse search from the targets
+	 */
+	static boolean[] reachesTarget(AdjacencyIndex index, boolean[] targets) {
+		boolean[] reaches = new boolean[index.nodeCount()];
+		int[] queue = new int[index.nodeCount()];
+		int tail = 0;
+		for(int node = 0; node < targets.length; node++) {
+			if(targets[node]) {
+				reaches[node] = true;
+				queue[tail++] = node;
+			}
+		}
+		long scanned = 0;
+		for(int head = 0; head < tail; head++) {
+			int node = queue[head];
+			int degree = index.inDegree(node);
+			scanned += degree;
+			for(int i = 0; i < degree; i++) {
+				int predecessor = index.from(index.inEdge(node, i));
+				if(!reaches[predecessor]) {
+					reaches[predecessor] = true;
+					queue[tail++] = predecessor;
+				}
+			}
+		}
+		ExecutionStatistics.scannedEdges(scanned);
+		return reaches;
+	}
+
+	/**
+	 * The depth first search of one enumeration. Depth d of the arrays describes
+	 * the node reached by the first d edges of the current path.
+	 */
+	private class Search implements Iterator<Path> {
+		private final boolean[] reaches = reachesTarget(index, targets);
+		private final boolean[] onPath = new boolean[index.nodeCount()];
+		private final ExecutionContext context = ExecutionContext.current();
+
+		private int[] edges = new int[16];
+		private int[] positions = new int[17];
+		private Path[] prefixes = new Path[17];
+		private int depth = 0;
+		private long produced = 0;
+		private Path next = null;
+
+		private Search() {
+			onPath[from] = true;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if(next == null && produced < maxPaths) {
+				next = advance();
+			}
+			return next != null;
+		}
+
+		@Override
+		public Path next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Path path = next;
+			next = null;
+			return path;
+		}
+
+		private int node(int depth) {
+			return depth == 0 ? from : index.to(edges[depth - 1]);
+		}
+
+		/**
+		 * Continues the search to the next path, returns null when there are no more paths
+		 */
+		private Path advance() {
+			long scanned = 0;
+			try {
+				while(depth >= 0) {
+					int node = node(depth);
+					if(depth < maxLength && positions[depth] < index.outDegree(node)) {
+						int edge = index.outEdge(node, positions[depth]++);
+						int successor = index.to(edge);
+						scanned++;
+						if(!reaches[successor] || (!allowRevisits && onPath[successor])) {
+							continue;
+						}
+						if(context != null) {
+							context.check();
+						}
+						push(edge);
+						if(targets[successor]) {
+							Path path = path();
+							// paths stop at the first target they reach
+							depth--;
+							produced++;
+							if(context != null) {
+								context.checkResultSize(produced);
+							}
+							return path;
+						}
+						onPath[successor] = true;
+					} else {
+						if(depth > 0) {
+							onPath[node] = false;
+						}
+						depth--;
+					}
+				}
+				return null;
+			} finally {
+				ExecutionStatistics.scannedEdges(scanned);
+			}
+		}
+
+		private void push(int edge) {
+			if(depth == edges.length) {
+				edges = Arrays.copyOf(edges, depth * 2);
+				positions = Arrays.copyOf(positions, depth * 2 + 1);
+				prefixes = Arrays.copyOf(prefixes, depth * 2 + 1);
+			}
+			edges[depth++] = edge;
+			positions[depth] = 0;
+			prefixes[depth] = null;
+		}
+
+		/**
+		 * Returns the trie node of the current path, creating the trie nodes of the
+		 * prefixes that were not part of an earlier path
+		 */
+		private Path path() {
+			int known = depth;
+			while(known > 0 && prefixes[known] == null) {
+				known--;
+			}
+			for(int length = known + 1; length <= depth; length++) {
+				prefixes[length] = new Path(index, prefixes[length - 1], edges[length - 1], length);
+			}
+			return prefixes[depth];
+		}
+	}
+
+	/**
+	 * An enumerated path, a node of the trie of enumerated edge ordinals. A path
+	 * refers to its prefix, which may be shared with other paths.
+	 */
+	public static class Path {
+		private final AdjacencyIndex index;
+		private final Path prefix;
+		private final int edge;
+		private final int length;
+
+		Path(AdjacencyIndex index, Path prefix, int edge, int length) {
+			this.index = index;
+			this.prefix = prefix;
+			this.edge = edge;
+			this.length = length;
+		}
+
+		/**
+		 * Returns the number of edges of the path
+		 * @return
+		 */
+		public int length() {
+			return length;
+		}
+
+		/**
+		 * Returns the path without its last edge, or null if the path has one edge
+		 * @return
+		 */
+		public Path getPrefix() {
+			return prefix;
+		}
+
+		/**
+		 * Returns the ordinal of the last edge of the path in the adjacency index
+		 * @return
+		 */
+		public int getLastEdgeOrdinal() {
+			return edge;
+		}
+
+		/**
+		 * Returns the edge ordinals of the path in the adjacency index, from the first edge to the last
+		 * @return
+		 */
+		public int[] toEdgeOrdinals() {
+			int[] edges = new int[length];
+			for(Path path = this; path != null; path = path.prefix) {
+				edges[path.length - 1] = path.edge;
+			}
+			return edges;
+		}
+
+		/**
+		 * Returns the edges of the path, from the first edge to the last
+		 * @return
+		 */
+		public List<Edge> getEdges() {
+			final int[] edges = toEdgeOrdinals();
+			return new AbstractList<Edge>() {
+				@Override
+				public Edge get(int i) {
+					return index.getEdge(edges[i]);
+				}
+
+				@Override
+				public int size() {
+					return edges.length;
+				}
+			};
+		}
+
+		/**
+		 * Returns the first node of the path
+		 * @return
+		 */
+		public Node getFrom() {
+			Path path = this;
+			while(path.prefix != null) {
+				path = path.prefix;
+			}
+			return index.getNode(index.from(path.edge));
+		}
+
+		/**
+		 * Returns the last node of the path
+		 * @return
+		 */
+		public Node getTo() {
+			return index.getNode(index.to(edge));
+		}
+
+		@Override
+		public String toString() {
+			return "Path " + Arrays.toString(toEdgeOrdinals());
+		}
+	}
+
+}
@@ -0,0 +1,525 @@
+package chpg.graph.algorithms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import chpg.graph.Graph;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.GraphElementSet;
+import chpg.graph.Node;
+import chpg.graph.index.AdjacencyIndex;
+import chpg.graph.index.StronglyConnectedComponents;
+
+/**
+ * The strongly connected components of a graph, as component numbers of the
+ * node ordinals of its adjacency index.
+ *
+ * Components are numbered in reverse topological order of the condensed graph:
+ * every edge between two different components leads from a higher to a lower
+ * component number. By default the components are computed with the iterative
+ * Tarjan algorithm of the adjacency index (see StronglyConnectedComponents),
+ * which does not recurse and takes O(|V| + |E|) time.
+ *
+ * For very large graphs the components can instead be computed on a fork join
+ * pool with the forward-backward algorithm (see Fleischer, Hendrickson and
+ * Pinar, "On Identifying Strongly Connected Components in Parallel", IPDPS
+ * 2000). The nodes that cannot lie on a cycle of their set are first trimmed
+ * away as single node components (see McLendon et al., "Finding strongly
+ * connected components in distributed graphs", 2005). The component of a pivot
+ * is then the intersection of the nodes it reaches and the nodes that reach it,
+ * and the three remaining sets, reached only, reaching only and neither, cannot
+ * share a component, so they are decomposed as independent tasks. Sets below a
+ * threshold are decomposed by a sequential Tarjan search instead.
+ */
+public class StrongComponents {
+
+	/**
+	 * Sets of at most this many nodes are decomposed sequentially
+	 */
+	private static final int SEQUENTIAL_THRESHOLD = 4096;
+
+	private final AdjacencyIndex index;
+	private final int[] component;
+	private final int count;
+
+	private final int[] memberOffsets;
+	private final int[] members;
+
+	/**
+	 * Computes the strongly connected components of the given graph
+	 * @param graph
+	 */
+	public StrongComponents(Graph graph) {
+		this(AdjacencyIndex.of(graph));
+	}
+
+	/**
+	 * Computes the strongly connected components of the given adjacency index
+	 * @param index
+	 */
+	public StrongComponents(AdjacencyIndex index) {
+		this(index, tarjan(index));
+	}
+
+	/**
+	 * Computes the strongly connected components of the given adjacency index
+	 * with the parallel forward-backward algorithm on the given pool
+	 * @param index
+	 * @param pool
+	 */
+	public StrongComponents(AdjacencyIndex index, ForkJoinPool pool) {
+		this(index, forwardBackward(index, pool));
+	}
+
+	private StrongComponents(AdjacencyIndex index, int[] component) {
+		this.index = index;
+		this.component = component;
+		int count = 0;
+		for(int c : component) {
+			count = Math.max(count, c + 1);
+		}
+		this.count = count;
+		this.memberOffsets = new int[count + 1];
+		this.members = new int[component.length];
+		group(component, count, memberOffsets, members);
+	}
+
+	private static int[] tarjan(AdjacencyIndex index) {
+		StronglyConnectedComponents components = new StronglyConnectedComponents(index);
+		int[] component = new int[index.nodeCount()];
+		for(int node = 0; node < component.length; node++) {
+			component[node] = components.component(node);
+		}
+		return component;
+	}
+
+	/**
+	 * Sorts the nodes by component with a counting sort
+	 */
+	private static void group(int[] component, int count, int[] offsets, int[] members) {
+		for(int node = 0; node < component.length; node++) {
+			offsets[component[node] + 1]++;
+		}
+		for(int c = 0; c < count; c++) {
+			offsets[c + 1] += offsets[c];
+		}
+		int[] next = Arrays.copyOf(offsets, count);
+		for(int node = 0; node < component.length; node++) {
+			members[next[component[node]]++] = node;
+		}
+	}
+
+	/**
+	 * Returns the adjacency index of the node ordinals
+	 * @return
+	 */
+	public AdjacencyIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns the number of strongly connected components
+	 * @return
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * Returns the component number of the given node ordinal
+	 * @param node
+	 * @return
+	 */
+	public int component(int node) {
+		return component[node];
+	}
+
+	/**
+	 * Returns the component number of the given node, or -1 if the node is not indexed
+	 * @param node
+	 * @return
+	 */
+	public int component(Node node) {
+		int ordinal = index.getNodeOrdinal(node);
+		return ordinal < 0 ? -1 : component[ordinal];
+	}
+
+	/**
+	 * Returns the component numbers of all node ordinals
+	 * @return
+	 */
+	public int[] getComponentIds() {
+		return component.clone();
+	}
+
+	/**
+	 * Returns the number of nodes in the given component
+	 * @param component
+	 * @return
+	 */
+	public int size(int component) {
+		return memberOffsets[component + 1] - memberOffsets[component];
+	}
+
+	/**
+	 * Returns the i-th node ordinal of the given component
+	 * @param component
+	 * @param i
+	 * @return
+	 */
+	public int member(int component, int i) {
+		return members[memberOffsets[component] + i];
+	}
+
+	/**
+	 * Returns the nodes of the given component
+	 * @param component
+	 * @return
+	 */
+	public GraphElementSet<Node> getMembers(int component) {
+		GraphElementSet<Node> result = new GraphElementHashSet<Node>();
+		for(int i = memberOffsets[component]; i < memberOffsets[component + 1]; i++) {
+			result.add(index.getNode(members[i]));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns true if the given component contains a cycle, that is if it has
+	 * more than one node or its node has an edge to itself
+	 * @param component
+	 * @return
+	 */
+	public boolean isCyclic(int component) {
+		if(size(component) > 1) {
+			return true;
+		}
+		int node = member(component, 0);
+		for(int i = 0; i < index.outDegree(node); i++) {
+			if(index.to(index.outEdge(node, i)) == node) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		return "StrongComponents [components=" + count + ", nodes=" + component.length + "]";
+	}
+
+	/**
+	 * Computes the components with the forward-backward algorithm and numbers
+	 * them in reverse topological order
+	 */
+	private static int[] forwardBackward(AdjacencyIndex index, ForkJoinPool pool) {
+		if(pool == null) {
+			throw new IllegalArgumentException("Pool must be non-null");
+		}
+		Decomposition decomposition = new Decomposition(index);
+		int[] nodes = new int[index.nodeCount()];
+		for(int node = 0; node < nodes.length; node++) {
+			nodes[node] = node;
+		}
+		if(nodes.length > 0) {
+			pool.invoke(new Decompose(decomposition, nodes, 0));
+		}
+		return topologicalNumbers(index, decomposition.component, decomposition.components.get());
+	}
+
+	/**
+	 * Renumbers the given components so that edges lead from higher to lower numbers
+	 */
+	private static int[] topologicalNumbers(AdjacencyIndex index, int[] component, int count) {
+		int[] offsets = new int[count + 1];
+		int[] members = new int[component.length];
+		group(component, count, offsets, members);
+		int[] inDegree = new int[count];
+		for(int edge = 0; edge < index.edgeCount(); edge++) {
+			int from = component[index.from(edge)];
+			int to = component[index.to(edge)];
+			if(from != to) {
+				inDegree[to]++;
+			}
+		}
+		int[] queue = new int[count];
+		int tail = 0;
+		for(int c = 0; c < count; c++) {
+			if(inDegree[c] == 0) {
+				queue[tail++] = c;
+			}
+		}
+		int[] numbers = new int[count];
+		for(int head = 0; head < tail; head++) {
+			int c = queue[head];
+			numbers[c] = count - 1 - head;
+			for(int i = offsets[c]; i < offsets[c + 1]; i++) {
+				int node = members[i];
+				for(int j = 0; j < index.outDegree(node); j++) {
+					int successor = component[index.to(index.outEdge(node, j))];
+					if(successor != c && --inDegree[successor] == 0) {
+						queue[tail++] = successor;
+					}
+				}
+			}
+		}
+		int[] result = new int[component.length];
+		for(int node = 0; node < component.length; node++) {
+			result[node] = numbers[component[node]];
+		}
+		return result;
+	}
+
+	/**
+	 * The state shared by the tasks of a forward-backward decomposition. Every
+	 * undecided node has the color of the set that contains it, and each task
+	 * only writes the entries of the nodes of its own set. Colors are never
+	 * reused, so a task never mistakes a node of another set for its own.
+	 */
+	private static final class Decomposition {
+		private static final int DECIDED = -1;
+
+		private final AdjacencyIndex index;
+		private final int[] color;
+		private final int[] component;
+		private final AtomicInteger colors = new AtomicInteger(1);
+		private final AtomicInteger components = new AtomicInteger();
+
+		// scratch entries of the nodes of each set
+		private final int[] inCount;
+		private final int[] outCount;
+		private final int[] local;
+
+		private Decomposition(AdjacencyIndex index) {
+			this.index = index;
+			int nodeCount = index.nodeCount();
+			this.color = new int[nodeCount];
+			this.component = new int[nodeCount];
+			this.inCount = new int[nodeCount];
+			this.outCount = new int[nodeCount];
+			this.local = new int[nodeCount];
+		}
+
+		private void decide(int node) {
+			color[node] = DECIDED;
+			component[node] = components.getAndIncrement();
+		}
+	}
+
+	/**
+	 * Decomposes one set of nodes of the same color
+	 */
+	private static final class Decompose extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Decomposition d;
+		private final int[] nodes;
+		private final int color;
+
+		private Decompose(Decomposition decomposition, int[] nodes, int color) {
+			this.d = decomposition;
+			this.nodes = nodes;
+			this.color = color;
+		}
+
+		@Override
+		protected void compute() {
+			int[] remaining = trim();
+			if(remaining.length == 0) {
+				return;
+			}
+			if(remaining.length <= SEQUENTIAL_THRESHOLD) {
+				tarjan(remaining);
+				return;
+			}
+			AdjacencyIndex index = d.index;
+			int forwardColor = d.colors.getAndIncrement();
+			int backwardColor = d.colors.getAndIncrement();
+			int pivot = remaining[0];
+			int[] queue = new int[remaining.length];
+
+			// nodes of the set reached from the pivot
+			int tail = 0;
+			d.color[pivot] = forwardColor;
+			queue[tail++] = pivot;
+			for(int head = 0; head < tail; head++) {
+				int node = queue[head];
+				for(int i = 0; i < index.outDegree(node); i++) {
+					int successor = index.to(index.outEdge(node, i));
+					if(d.color[successor] == color) {
+						d.color[successor] = forwardColor;
+						queue[tail++] = successor;
+					}
+				}
+			}
+
+			// nodes of the set that reach the pivot, those also reached from it form its component
+			int component = d.components.getAndIncrement();
+			tail = 0;
+			d.color[pivot] = Decomposition.DECIDED;
+			d.component[pivot] = component;
+			queue[tail++] = pivot;
+			for(int head = 0; head < tail; head++) {
+				int node = queue[head];
+				for(int i = 0; i < index.inDegree(node); i++) {
+					int predecessor = index.from(index.inEdge(node, i));
+					int predecessorColor = d.color[predecessor];
+					if(predecessorColor == forwardColor) {
+						d.color[predecessor] = Decomposition.DECIDED;
+						d.component[predecessor] = component;
+						queue[tail++] = predecessor;
+					} else if(predecessorColor == color) {
+						d.color[predecessor] = backwardColor;
+						queue[tail++] = predecessor;
+					}
+				}
+			}
+
+			List<Decompose> tasks = new ArrayList<Decompose>(3);
+			for(int subset : new int[] { forwardColor, backwardColor, color }) {
+				int[] members = select(remaining, subset);
+				if(members.length > 0) {
+					tasks.add(new Decompose(d, members, subset));
+				}
+			}
+			invokeAll(tasks);
+		}
+
+		private int[] select(int[] nodes, int color) {
+			int size = 0;
+			for(int node : nodes) {
+				if(d.color[node] == color) {
+					size++;
+				}
+			}
+			int[] result = new int[size];
+			size = 0;
+			for(int node : nodes) {
+				if(d.color[node] == color) {
+					result[size++] = node;
+				}
+			}
+			return result;
+		}
+
+		/**
+		 * Repeatedly decides the nodes without a predecessor or without a successor
+		 * in the set as single node components and returns the other nodes
+		 */
+		private int[] trim() {
+			AdjacencyIndex index = d.index;
+			int[] queue = new int[nodes.length];
+			int tail = 0;
+			for(int node : nodes) {
+				int in = 0;
+				for(int i = 0; i < index.inDegree(node); i++) {
+					int predecessor = index.from(index.inEdge(node, i));
+					if(predecessor != node && d.color[predecessor] == color) {
+						in++;
+					}
+				}
+				int out = 0;
+				for(int i = 0; i < index.outDegree(node); i++) {
+					int successor = index.to(index.outEdge(node, i));
+					if(successor != node && d.color[successor] == color) {
+						out++;
+					}
+				}
+				d.inCount[node] = in;
+				d.outCount[node] = out;
+				if(in == 0 || out == 0) {
+					queue[tail++] = node;
+				}
+			}
+			for(int head = 0; head < tail; head++) {
+				int node = queue[head];
+				d.decide(node);
+				for(int i = 0; i < index.outDegree(node); i++) {
+					int successor = index.to(index.outEdge(node, i));
+					if(successor != node && d.color[successor] == color && d.inCount[successor]-- == 1 && d.outCount[successor] > 0) {
+						queue[tail++] = successor;
+					}
+				}
+				for(int i = 0; i < index.inDegree(node); i++) {
+					int predecessor = index.from(index.inEdge(node, i));
+					if(predecessor != node && d.color[predecessor] == color && d.outCount[predecessor]-- == 1 && d.inCount[predecessor] > 0) {
+						queue[tail++] = predecessor;
+					}
+				}
+			}
+			return tail == 0 ? nodes : select(nodes, color);
+		}
+
+		/**
+		 * Decomposes the set with an iterative Tarjan search restricted to its nodes
+		 */
+		private void tarjan(int[] set) {
+			AdjacencyIndex index = d.index;
+			int size = set.length;
+			for(int i = 0; i < size; i++) {
+				d.local[set[i]] = i;
+			}
+			int[] order = new int[size];
+			int[] low = new int[size];
+			int[] cursor = new int[size];
+			boolean[] onStack = new boolean[size];
+			int[] stack = new int[size];
+			int[] callStack = new int[size];
+			int stackSize = 0;
+			int counter = 0;
+			for(int root = 0; root < size; root++) {
+				if(order[root] != 0) {
+					continue;
+				}
+				int depth = 0;
+				order[root] = low[root] = ++counter;
+				stack[stackSize++] = root;
+				onStack[root] = true;
+				callStack[depth++] = root;
+				while(depth > 0) {
+					int node = callStack[depth - 1];
+					int ordinal = set[node];
+					if(cursor[node] < index.outDegree(ordinal)) {
+						int successorOrdinal = index.to(index.outEdge(ordinal, cursor[node]++));
+						if(d.color[successorOrdinal] != color) {
+							continue;
+						}
+						int successor = d.local[successorOrdinal];
+						if(order[successor] == 0) {
+							order[successor] = low[successor] = ++counter;
+							stack[stackSize++] = successor;
+							onStack[successor] = true;
+							callStack[depth++] = successor;
+						} else if(onStack[successor]) {
+							low[node] = Math.min(low[node], order[successor]);
+						}
+					} else {
+						depth--;
+						if(low[node] == order[node]) {
+							int component = d.components.getAndIncrement();
+							int member;
+							do {
+								member = stack[--stackSize];
+								onStack[member] = false;
+								d.component[set[member]] = component;
+							} while(member != node);
+						}
+						if(depth > 0) {
+							int parent = callStack[depth - 1];
+							low[parent] = Math.min(low[parent], low[node]);
+						}
+					}
+				}
+			}
+			// decided only now, the search above tells the nodes of the set apart by their color
+			for(int node : set) {
+				d.color[node] = Decomposition.DECIDED;
+			}
+		}
+	}
+
+}
@@ -2,18 +2,55 @@ package chpg.graph;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
 
 import chpg.graph.Node.NodeDirection;
+import chpg.graph.index.AdjacencyIndex;
+import chpg.graph.index.AttributeIndex;
+import chpg.graph.index.BreadthFirstSearch;
+import chpg.graph.index.PathAutomaton;
+import chpg.graph.index.ReachabilityIndex;
+import chpg.graph.index.RegularPathSearch;
+import chpg.graph.index.ShortestPaths;
 
 public abstract class AbstractGraph implements Graph {
 
 	protected GraphElementSet<Node> nodes;
 	protected GraphElementSet<Edge> edges;
 	
+	/**
+	 * Adjacency index of the current nodes and edges, rebuilt on demand after the graph is modified
+	 */
+	private volatile AdjacencyIndex adjacencyIndex = null;
+	
+	/**
+	 * Reachability index of the nodes and edges, only built on request and kept
+	 * current for edges added with add
+	 */
+	private volatile ReachabilityIndex reachabilityIndex = null;
+	
+	/**
+	 * Listeners notified of additions and removals
+	 */
+	private final List<GraphListener> listeners = new CopyOnWriteArrayList<GraphListener>();
+	
+	/**
+	 * Attribute indexes of the nodes and edges, only built on request and rebuilt
+	 * on demand after the graph is modified
+	 */
+	private final Map<String,AttributeIndex<Node>> nodeAttributeIndexes = new ConcurrentHashMap<String,AttributeIndex<Node>>();
+	private final Map<String,AttributeIndex<Edge>> edgeAttributeIndexes = new ConcurrentHashMap<String,AttributeIndex<Edge>>();
+	
 	protected AbstractGraph() {
 		this.nodes = new GraphElementHashSet<Node>();
 		this.edges = new GraphElementHashSet<Edge>();
@@ -27,6 +64,8 @@ public abstract class AbstractGraph implements Graph {
 	 */
 	protected GraphElementSet<Edge> getInEdgesToNode(Node node){
 		GraphElementSet<Edge> inEdges = new GraphElementHashSet<Edge>();
+		ExecutionContext.checkpoint();
+		ExecutionStatistics.scannedEdges(edges().size());
 		for(Edge edge : edges()){
 			if(edge.to().equals(node)){
 				inEdges.add(edge);
@@ -43,6 +82,8 @@ public abstract class AbstractGraph implements Graph {
 	 */
 	protected GraphElementSet<Edge> getOutEdgesFromNode(Node node){
 		GraphElementSet<Edge> outEdges = new GraphElementHashSet<Edge>();
+		ExecutionContext.checkpoint();
+		ExecutionStatistics.scannedEdges(edges().size());
 		for(Edge edge : edges()){
 			if(edge.from().equals(node)){
 				outEdges.add(edge);
@@ -51,6 +92,120 @@ public abstract class AbstractGraph implements Graph {
 		return outEdges;
 	}
 	
+	/**
+	 * Returns an adjacency index of the current nodes and edges of this graph. The
+	 * index is cached and only rebuilt if the graph has been modified since it was
+	 * last built.
+	 * 
+	 * @return
+	 */
+	public AdjacencyIndex getAdjacencyIndex() {
+		AdjacencyIndex index = adjacencyIndex;
+		if(index == null || !index.isCurrent(this)) {
+			index = new AdjacencyIndex(this);
+			adjacencyIndex = index;
+			ExecutionStatistics.usedIndex("adjacency index (built)");
+		} else {
+			ExecutionStatistics.usedIndex("adjacency index");
+		}
+		return index;
+	}
+	
+	/**
+	 * Returns a reachability index of the current nodes and edges of this graph.
+	 * The index is cached and used by between while it is current. Edges added
+	 * with add are inserted into the index incrementally, other modifications
+	 * cause the index to be rebuilt on the next request.
+	 * 
+	 * @return
+	 */
+	public ReachabilityIndex getReachabilityIndex() {
+		ReachabilityIndex index = reachabilityIndex;
+		if(index == null || !index.isCurrent(this)) {
+			index = new ReachabilityIndex(this);
+			reachabilityIndex = index;
+			ExecutionStatistics.usedIndex("reachability index (built)");
+		}
+		return index;
+	}
+	
+	/**
+	 * Builds an index of the values of the given node attribute, used by
+	 * selectNodes while it exists. The index is rebuilt on demand after nodes are
+	 * added or removed or the attributes of graph elements change.
+	 * 
+	 * @param attribute
+	 */
+	public void createNodeAttributeIndex(String attribute) {
+		nodeAttributeIndexes.put(attribute, new AttributeIndex<Node>(nodes(), attribute));
+		ExecutionStatistics.usedIndex("node attribute index (built)");
+	}
+	
+	/**
+	 * Builds an index of the values of the given edge attribute, used by
+	 * selectEdges while it exists. The index is rebuilt on demand after edges are
+	 * added or removed or the attributes of graph elements change.
+	 * 
+	 * @param attribute
+	 */
+	public void createEdgeAttributeIndex(String attribute) {
+		edgeAttributeIndexes.put(attribute, new AttributeIndex<Edge>(edges(), attribute));
+		ExecutionStatistics.usedIndex("edge attribute index (built)");
+	}
+	
+	/**
+	 * Removes the index of the given node attribute
+	 * @param attribute
+	 */
+	public void dropNodeAttributeIndex(String attribute) {
+		nodeAttributeIndexes.remove(attribute);
+	}
+	
+	/**
+	 * Removes the index of the given edge attribute
+	 * @param attribute
+	 */
+	public void dropEdgeAttributeIndex(String attribute) {
+		edgeAttributeIndexes.remove(attribute);
+	}
+	
+	/**
+	 * Returns the current index of the given node attribute, or null if the
+	 * attribute is not indexed
+	 * 
+	 * @param attribute
+	 * @return
+	 */
+	public AttributeIndex<Node> getNodeAttributeIndex(String attribute) {
+		return getAttributeIndex(nodeAttributeIndexes, nodes(), attribute, "node attribute index");
+	}
+	
+	/**
+	 * Returns the current index of the given edge attribute, or null if the
+	 * attribute is not indexed
+	 * 
+	 * @param attribute
+	 * @return
+	 */
+	public AttributeIndex<Edge> getEdgeAttributeIndex(String attribute) {
+		return getAttributeIndex(edgeAttributeIndexes, edges(), attribute, "edge attribute index");
+	}
+	
+	private static <E extends GraphElement> AttributeIndex<E> getAttributeIndex(Map<String,AttributeIndex<E>> indexes, GraphElementSet<E> elements, String attribute, String name) {
+		AttributeIndex<E> index = indexes.get(attribute);
+		if(index == null) {
+			return null;
+		}
+		if(!index.isCurrent(elements)) {
+			index = new AttributeIndex<E>(elements, attribute);
+			indexes.put(attribute, index);
+			ExecutionStatistics.usedIndex(name + " (built)");
+		} else {
+			ExecutionStatistics.usedIndex(name);
+		}
+		return index;
+	}
+	
 	@Override
 	public Graph toGraph(Node... nodes) {
 		Graph result = empty();
@@ -134,15 +289,37 @@ public abstract class AbstractGraph implements Graph {
 
 	@Override
 	public boolean add(GraphElement graphElement) {
+		ReachabilityIndex index = reachabilityIndex;
+		boolean indexed = index != null && index.isCurrent(this);
 		boolean result = false;
 		if(graphElement instanceof Node) {
 			Node node = (Node) graphElement;
 			result |= this.nodes().add(node);
+			if(result) {
+				fireElementAdded(node);
+			}
 		} else if(graphElement instanceof Edge) {
 			Edge edge = (Edge) graphElement;
-			result |= this.edges().add(edge);
-			result |= this.nodes().add(edge.from());
-			result |= this.nodes().add(edge.to());
+			boolean edgeAdded = this.edges().add(edge);
+			boolean fromAdded = this.nodes().add(edge.from());
+			boolean toAdded = this.nodes().add(edge.to());
+			result = edgeAdded || fromAdded || toAdded;
+			if(indexed && result) {
+				index.insert(edge);
+			}
+			if(fromAdded) {
+				fireElementAdded(edge.from());
+			}
+			if(toAdded) {
+				fireElementAdded(edge.to());
+			}
+			if(edgeAdded) {
+				fireElementAdded(edge);
+			}
+		}
+		if(indexed) {
+			// new nodes without edges do not change reachability
+			index.markCurrent(this);
 		}
 		return result;
 	}
@@ -160,23 +337,78 @@ public abstract class AbstractGraph implements Graph {
 	public boolean remove(GraphElement graphElement) {
 		if(graphElement instanceof Edge) {
 			Edge edge = (Edge) graphElement;
-			return edges().remove(edge);
+			boolean result = edges().remove(edge);
+			if(result) {
+				fireElementRemoved(edge);
+			}
+			return result;
 		} else {
 			boolean result = false;
 			Node node = (Node) graphElement;
-			result |= nodes().remove(node);
+			boolean nodeRemoved = nodes().remove(node);
+			result |= nodeRemoved;
+			List<Edge> removedEdges = listeners.isEmpty() ? null : new ArrayList<Edge>();
 			Iterator<Edge> edgeIterator = edges().iterator();
 			while(edgeIterator.hasNext()) {
 				Edge edge = edgeIterator.next();
 				if(edge.from().equals(node) || edge.to().equals(node)) {
 					edgeIterator.remove();
 					result = true;
+					if(removedEdges != null) {
+						removedEdges.add(edge);
+					}
+				}
+			}
+			if(removedEdges != null) {
+				for(Edge edge : removedEdges) {
+					fireElementRemoved(edge);
+				}
+				if(nodeRemoved) {
+					fireElementRemoved(node);
 				}
 			}
 			return result;
 		}
 	}
 
+	/**
+	 * Registers a listener that is notified of the nodes and edges added to and
+	 * removed from this graph with add and remove
+	 * 
+	 * @param listener
+	 */
+	public void addGraphListener(GraphListener listener) {
+		if(listener == null) {
+			throw new IllegalArgumentException("Listener must be non-null");
+		}
+		listeners.add(listener);
+	}
+	
+	/**
+	 * Unregisters the given listener
+	 * 
+	 * @param listener
+	 */
+	public void removeGraphListener(GraphListener listener) {
+		listeners.remove(listener);
+	}
+	
+	private void fireElementAdded(GraphElement element) {
+		if(!listeners.isEmpty()) {
+			for(GraphListener listener : listeners) {
+				listener.elementAdded(this, element);
+			}
+		}
+	}
+	
+	private void fireElementRemoved(GraphElement element) {
+		if(!listeners.isEmpty()) {
+			for(GraphListener listener : listeners) {
+				listener.elementRemoved(this, element);
+			}
+		}
+	}
+
 	@Override
 	public GraphElementSet<Node> nodes() {
 		return nodes;
@@ -195,6 +427,8 @@ public abstract class AbstractGraph implements Graph {
 	@Override
 	public GraphElementSet<Edge> edges(Node node, NodeDirection direction){
 		GraphElementSet<Edge> result = new GraphElementHashSet<Edge>();
+		ExecutionContext.checkpoint();
+		ExecutionStatistics.scannedEdges(edges().size());
 		for(Edge edge : edges()){
 			if(direction == NodeDirection.IN){
 				if(edge.to().equals(node)){
@@ -212,6 +446,7 @@ public abstract class AbstractGraph implements Graph {
 	@Override
 	public GraphElementSet<Node> limit(NodeDirection direction){
 		GraphElementSet<Node> result = new GraphElementHashSet<Node>();
+		ExecutionStatistics.scannedNodes(nodes().size());
 		for(Node node : nodes()){
 			GraphElementSet<Edge> connections = edges(node, direction);
 			if(connections.isEmpty()){
@@ -488,6 +723,11 @@ public abstract class AbstractGraph implements Graph {
 		if(from.isEmpty() || to.isEmpty()) {
 			return empty();
 		}
+		ReachabilityIndex index = reachabilityIndex;
+		if(index != null && index.isCurrent(this)) {
+			ExecutionStatistics.usedIndex("reachability index");
+			return index.between(from, to);
+		}
 		Graph forward = forward(from);
 		if(forward.isEmpty()) {
 			return empty();
@@ -506,20 +746,7 @@ public abstract class AbstractGraph implements Graph {
 	
 	@Override
 	public Graph forward(Graph origin){
-		Graph result = empty();
-		result.nodes().addAll(origin.nodes());
-		GraphElementSet<Node> frontier = new GraphElementHashSet<Node>(origin.nodes());
-		while(!frontier.isEmpty()){
-			Node next = frontier.one();
-			frontier.remove(next);
-			for(Edge edge : forwardStep(next).edges()){
-				if(result.nodes().add(edge.to())){
-					frontier.add(edge.to());
-				}
-				result.edges().add(edge);
-			}
-		}
-		return result.union(origin);
+		return forward(origin, TraversalStrategy.TOP_DOWN);
 	}
 	
 	@Override
@@ -527,6 +754,36 @@ public abstract class AbstractGraph implements Graph {
 		return forward(this.toGraph(origin));
 	}
 	
+	@Override
+	public Graph forward(Graph origin, TraversalStrategy strategy){
+		return traverse(origin, NodeDirection.OUT, strategy);
+	}
+	
+	@Override
+	public Graph forward(GraphElementSet<Node> origin, TraversalStrategy strategy){
+		return forward(this.toGraph(origin), strategy);
+	}
+	
+	@Override
+	public Graph forward(Graph origin, int maxDepth){
+		return forward(origin, maxDepth, null, null);
+	}
+	
+	@Override
+	public Graph forward(GraphElementSet<Node> origin, int maxDepth){
+		return forward(this.toGraph(origin), maxDepth, null, null);
+	}
+	
+	@Override
+	public Graph forward(Graph origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded){
+		return traverse(origin, NodeDirection.OUT, maxDepth, stopAt, excluded);
+	}
+	
+	@Override
+	public Graph forward(GraphElementSet<Node> origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded){
+		return forward(this.toGraph(origin), maxDepth, stopAt, excluded);
+	}
+	
 	@Override
 	public Graph reverse(Node... origin){
 		return reverse(new GraphElementHashSet<Node>(origin));
@@ -534,25 +791,242 @@ public abstract class AbstractGraph implements Graph {
 	
 	@Override
 	public Graph reverse(Graph origin){
+		return reverse(origin, TraversalStrategy.TOP_DOWN);
+	}
+	
+	@Override
+	public Graph reverse(GraphElementSet<Node> origin){
+		return reverse(this.toGraph(origin));
+	}
+	
+	@Override
+	public Graph reverse(Graph origin, TraversalStrategy strategy){
+		return traverse(origin, NodeDirection.IN, strategy);
+	}
+	
+	@Override
+	public Graph reverse(GraphElementSet<Node> origin, TraversalStrategy strategy){
+		return reverse(this.toGraph(origin), strategy);
+	}
+	
+	@Override
+	public Graph reverse(Graph origin, int maxDepth){
+		return reverse(origin, maxDepth, null, null);
+	}
+	
+	@Override
+	public Graph reverse(GraphElementSet<Node> origin, int maxDepth){
+		return reverse(this.toGraph(origin), maxDepth, null, null);
+	}
+	
+	@Override
+	public Graph reverse(Graph origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded){
+		return traverse(origin, NodeDirection.IN, maxDepth, stopAt, excluded);
+	}
+	
+	@Override
+	public Graph reverse(GraphElementSet<Node> origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded){
+		return reverse(this.toGraph(origin), maxDepth, stopAt, excluded);
+	}
+	
+	/**
+	 * Computes the transitive traversal from the given origin in the given direction.
+	 * 
+	 * The result contains the origin, every node reachable from the origin and
+	 * every edge leaving (or entering for reverse traversals) a reachable node.
+	 * 
+	 * @param origin
+	 * @param direction
+	 * @param strategy
+	 * @return
+	 */
+	private Graph traverse(Graph origin, NodeDirection direction, TraversalStrategy strategy) {
+		AdjacencyIndex index = getAdjacencyIndex();
+		int[] sources = index.getNodeOrdinals(origin.nodes());
+		BitSet reachable;
+		if(strategy == TraversalStrategy.DIRECTION_OPTIMIZING) {
+			reachable = BreadthFirstSearch.directionOptimizing(index, sources, direction);
+		} else {
+			reachable = BreadthFirstSearch.topDown(index, sources, direction);
+		}
 		Graph result = empty();
+		long scanned = 0;
+		ExecutionContext context = ExecutionContext.current();
+		for(int node = reachable.nextSetBit(0); node >= 0; node = reachable.nextSetBit(node + 1)) {
+			if(context != null) {
+				context.checkResultSize(result.nodes().size() + result.edges().size());
+			}
+			result.nodes().add(index.getNode(node));
+			int degree = index.degree(node, direction);
+			for(int i = 0; i < degree; i++) {
+				result.edges().add(index.getEdge(index.edge(node, direction, i)));
+			}
+			scanned += degree;
+		}
+		ExecutionStatistics.scannedEdges(scanned);
 		result.nodes().addAll(origin.nodes());
-		GraphElementSet<Node> frontier = new GraphElementHashSet<Node>(origin.nodes());
-		while(!frontier.isEmpty()){
-			Node next = frontier.one();
-			frontier.remove(next);
-			for(Edge edge : reverseStep(next).edges()){
-				if(result.nodes().add(edge.from())){
-					frontier.add(edge.from());
-				}
-				result.edges().add(edge);
+		result.edges().addAll(origin.edges());
+		return result;
+	}
+	
+	/**
+	 * Computes the bounded transitive traversal from the given origin in the given
+	 * direction. The result contains the origin, the reached nodes and the
+	 * traversed edges.
+	 * 
+	 * @param origin
+	 * @param direction
+	 * @param maxDepth
+	 * @param stopAt
+	 * @param excluded
+	 * @return
+	 */
+	private Graph traverse(Graph origin, NodeDirection direction, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded) {
+		AdjacencyIndex index = getAdjacencyIndex();
+		int[] sources = index.getNodeOrdinals(origin.nodes());
+		BitSet traversed = new BitSet(index.edgeCount());
+		BitSet reached = BreadthFirstSearch.bounded(index, sources, direction, maxDepth, stopAt, excluded, traversed);
+		Graph result = empty();
+		for(int node = reached.nextSetBit(0); node >= 0; node = reached.nextSetBit(node + 1)) {
+			result.nodes().add(index.getNode(node));
+		}
+		for(int edge = traversed.nextSetBit(0); edge >= 0; edge = traversed.nextSetBit(edge + 1)) {
+			result.edges().add(index.getEdge(edge));
+		}
+		result.nodes().addAll(origin.nodes());
+		result.edges().addAll(origin.edges());
+		return result;
+	}
+	
+	@Override
+	public Graph regularPaths(Graph origin, PathExpression expression){
+		return regularPaths(origin, expression, UNBOUNDED_DEPTH);
+	}
+	
+	@Override
+	public Graph regularPaths(GraphElementSet<Node> origin, PathExpression expression){
+		return regularPaths(this.toGraph(origin), expression, UNBOUNDED_DEPTH);
+	}
+	
+	@Override
+	public Graph regularPaths(GraphElementSet<Node> origin, PathExpression expression, int maxDepth){
+		return regularPaths(this.toGraph(origin), expression, maxDepth);
+	}
+	
+	@Override
+	public Graph regularPaths(Graph origin, PathExpression expression, int maxDepth){
+		if(expression == null) {
+			throw new IllegalArgumentException("Path expression must be non-null");
+		}
+		PathAutomaton automaton = expression.getAutomaton();
+		List<Predicate<Edge>> symbols = new ArrayList<Predicate<Edge>>();
+		for(int symbol = 0; symbol < automaton.symbolCount(); symbol++) {
+			String tag = automaton.getSymbol(symbol);
+			if(tag == null) {
+				symbols.add(edge -> true);
+			} else {
+				Set<String> tags = getImpliedTags(tag);
+				symbols.add(edge -> {
+					for(String edgeTag : edge.tags()) {
+						if(tags.contains(edgeTag)) {
+							return true;
+						}
+					}
+					return false;
+				});
 			}
 		}
-		return result.union(origin);
+		AdjacencyIndex index = getAdjacencyIndex();
+		int[] sources = index.getNodeOrdinals(origin.nodes());
+		BitSet traversed = new BitSet(index.edgeCount());
+		BitSet reached = RegularPathSearch.search(index, sources, automaton, symbols, maxDepth, traversed);
+		Graph result = empty();
+		for(int node = reached.nextSetBit(0); node >= 0; node = reached.nextSetBit(node + 1)) {
+			result.nodes().add(index.getNode(node));
+		}
+		for(int edge = traversed.nextSetBit(0); edge >= 0; edge = traversed.nextSetBit(edge + 1)) {
+			Edge traversedEdge = index.getEdge(edge);
+			result.nodes().add(traversedEdge.from());
+			result.nodes().add(traversedEdge.to());
+			result.edges().add(traversedEdge);
+		}
+		result.nodes().addAll(origin.nodes());
+		return result;
 	}
 	
 	@Override
-	public Graph reverse(GraphElementSet<Node> origin){
-		return reverse(this.toGraph(origin));
+	public Graph shortestPath(Node from, Node to) {
+		return shortestPath(new GraphElementHashSet<Node>(from), new GraphElementHashSet<Node>(to), null);
+	}
+	
+	@Override
+	public Graph shortestPath(Graph from, Graph to, String weightAttribute, String... edgeTags) {
+		return shortestPath(from.nodes(), to.nodes(), weightAttribute, edgeTags);
+	}
+	
+	@Override
+	public Graph shortestPath(GraphElementSet<Node> from, GraphElementSet<Node> to, String weightAttribute, String... edgeTags) {
+		AdjacencyIndex index = getAdjacencyIndex();
+		ShortestPaths search = new ShortestPaths(index, edgeFilter(edgeTags), weightAttribute);
+		return toPath(index, search.shortestPath(index.getNodeOrdinals(from), index.getNodeOrdinals(to)));
+	}
+	
+	@Override
+	public Graph shortestPath(Node from, Node to, ShortestPaths.Heuristic heuristic, String weightAttribute, String... edgeTags) {
+		AdjacencyIndex index = getAdjacencyIndex();
+		int source = index.getNodeOrdinal(from);
+		int target = index.getNodeOrdinal(to);
+		if(source < 0 || target < 0) {
+			return empty();
+		}
+		ShortestPaths search = new ShortestPaths(index, edgeFilter(edgeTags), weightAttribute);
+		return toPath(index, search.aStar(source, target, heuristic));
+	}
+	
+	/**
+	 * Returns the edges tagged with one of the given tags or a tag it implies, or
+	 * null if no tags are given
+	 */
+	private Predicate<Edge> edgeFilter(String... edgeTags) {
+		if(edgeTags.length == 0) {
+			return null;
+		}
+		Set<String> tags = new HashSet<String>();
+		for(String tag : edgeTags) {
+			tags.addAll(getImpliedTags(tag));
+		}
+		return edge -> {
+			for(String edgeTag : edge.tags()) {
+				if(tags.contains(edgeTag)) {
+					return true;
+				}
+			}
+			return false;
+		};
+	}
+	
+	private Graph toPath(AdjacencyIndex index, ShortestPaths.Result path) {
+		Graph result = empty();
+		if(path.isFound()) {
+			result.nodes().add(index.getNode(path.getSource()));
+			for(int edge : path.getPath()) {
+				Edge pathEdge = index.getEdge(edge);
+				result.nodes().add(pathEdge.to());
+				result.edges().add(pathEdge);
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * Returns the tags an edge may have to match the given tag of a path
+	 * expression, by default only the tag itself
+	 * 
+	 * @param tag
+	 * @return
+	 */
+	protected Set<String> getImpliedTags(String tag) {
+		return Collections.singleton(tag);
 	}
 	
 	@Override
@@ -572,7 +1046,12 @@ public abstract class AbstractGraph implements Graph {
 	@Override
 	public Graph induce(GraphElementSet<Edge> edges){
 		Graph result = toGraph(this);
+		ExecutionStatistics.scannedEdges(edges.size());
+		ExecutionContext context = ExecutionContext.current();
 		for(Edge edge : edges) {
+			if(context != null) {
+				context.check();
+			}
 			if(result.nodes().contains(edge.from()) && result.nodes().contains(edge.to())) {
 				result.edges().add(edge);
 			}
@@ -588,6 +1067,7 @@ public abstract class AbstractGraph implements Graph {
 			for(String name : names) {
 				nameSet.add(name);
 			}
+			ExecutionStatistics.scannedEdges(edges().size());
 			for(Edge edge : edges()) {
 				if(edge.hasName()) {
 					if(nameSet.contains(edge.getName())) {
@@ -607,6 +1087,7 @@ public abstract class AbstractGraph implements Graph {
 			for(String name : names) {
 				nameSet.add(name);
 			}
+			ExecutionStatistics.scannedNodes(nodes().size());
 			for(Node node : nodes()) {
 				if(node.hasName()) {
 					if(nameSet.contains(node.getName())) {
@@ -620,22 +1101,70 @@ public abstract class AbstractGraph implements Graph {
 	
 	@Override
 	public GraphElementSet<Edge> selectEdges(String attribute){
-		return edges.filter(attribute);
+		if(attribute == null) {
+			return new GraphElementHashSet<Edge>();
+		}
+		return selectEdges(AttributePredicate.exists(attribute));
 	}
 	
 	@Override
 	public GraphElementSet<Edge> selectEdges(String attribute, Object... values){
-		return edges.filter(attribute, values);
+		if(attribute == null || values == null) {
+			return new GraphElementHashSet<Edge>();
+		}
+		return selectEdges(AttributePredicate.in(attribute, values));
+	}
+	
+	@Override
+	public GraphElementSet<Edge> selectEdges(AttributePredicate predicate){
+		if(predicate == null) {
+			throw new IllegalArgumentException("Predicate must be non-null");
+		}
+		Collection<Edge> candidates = predicate.candidates(this::getEdgeAttributeIndex);
+		ExecutionStatistics.scannedEdges(candidates != null ? candidates.size() : edges.size());
+		return select(candidates != null ? candidates : edges, predicate);
 	}
 	
 	@Override
 	public GraphElementSet<Node> selectNodes(String attribute){
-		return nodes.filter(attribute);
+		if(attribute == null) {
+			return new GraphElementHashSet<Node>();
+		}
+		return selectNodes(AttributePredicate.exists(attribute));
 	}
 	
 	@Override
 	public GraphElementSet<Node> selectNodes(String attribute, Object... values){
-		return nodes.filter(attribute, values);
+		if(attribute == null || values == null) {
+			return new GraphElementHashSet<Node>();
+		}
+		return selectNodes(AttributePredicate.in(attribute, values));
+	}
+	
+	@Override
+	public GraphElementSet<Node> selectNodes(AttributePredicate predicate){
+		if(predicate == null) {
+			throw new IllegalArgumentException("Predicate must be non-null");
+		}
+		Collection<Node> candidates = predicate.candidates(this::getNodeAttributeIndex);
+		ExecutionStatistics.scannedNodes(candidates != null ? candidates.size() : nodes.size());
+		return select(candidates != null ? candidates : nodes, predicate);
+	}
+	
+	/**
+	 * Returns the given elements that match the given predicate, candidates from
+	 * an attribute index are tested again because attribute values may have
+	 * changed since the index was built
+	 */
+	private static <E extends GraphElement> GraphElementSet<E> select(Iterable<E> elements, AttributePredicate predicate) {
+		GraphElementSet<E> result = new GraphElementHashSet<E>();
+		for(E element : elements) {
+			ExecutionContext.checkpoint();
+			if(predicate.test(element)) {
+				result.add(element);
+			}
+		}
+		return result;
 	}
 	
 	@Override
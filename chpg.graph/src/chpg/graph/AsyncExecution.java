@@ -0,0 +1,138 @@
+package chpg.graph;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executor used by the asynchronous graph operations (such as
+ * Query.evaluateAsync and the asynchronous GraphIO methods).
+ *
+ * On JDK 21 and later the default executor starts a virtual thread per task,
+ * so that many concurrent (possibly blocking) operations do not require any
+ * thread pool tuning. On older JDKs the default executor is an unbounded pool
+ * of cached daemon threads. The default can be replaced with any executor.
+ *
+ * Graphs are not synchronized, operations may run concurrently on the same
+ * graph as long as the graph is not modified while they run.
+ */
+public class AsyncExecution {
+
+	private static volatile Executor defaultExecutor = null;
+
+	private AsyncExecution() {}
+
+	/**
+	 * Returns the default executor of asynchronous graph operations
+	 * @return
+	 */
+	public static Executor getDefaultExecutor() {
+		Executor executor = defaultExecutor;
+		if(executor == null) {
+			synchronized(AsyncExecution.class) {
+				executor = defaultExecutor;
+				if(executor == null) {
+					executor = createDefaultExecutor();
+					defaultExecutor = executor;
+				}
+			}
+		}
+		return executor;
+	}
+
+	/**
+	 * Sets the default executor of asynchronous graph operations, null restores
+	 * the built in default
+	 *
+	 * @param executor
+	 */
+	public static void setDefaultExecutor(Executor executor) {
+		defaultExecutor = executor;
+	}
+
+	/**
+	 * Returns true if the built in default executor runs tasks on virtual threads
+	 * @return
+	 */
+	public static boolean isVirtualThreadsSupported() {
+		try {
+			Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return true;
+		} catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Runs the given task on the given executor. The returned future completes
+	 * with the result of the task or exceptionally with the exception thrown by
+	 * the task (checked exceptions are not wrapped).
+	 *
+	 * @param task
+	 * @param executor
+	 * @return
+	 */
+	public static <T> CompletableFuture<T> submit(final Callable<T> task, Executor executor) {
+		if(executor == null) {
+			throw new IllegalArgumentException("Executor must be non-null");
+		}
+		final CompletableFuture<T> future = new CompletableFuture<T>();
+		executor.execute(() -> {
+			if(future.isDone()) {
+				// cancelled before the task started
+				return;
+			}
+			try {
+				future.complete(task.call());
+			} catch (Throwable t) {
+				future.completeExceptionally(t);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Runs the given task on the default executor
+	 * @param task
+	 * @return
+	 */
+	public static <T> CompletableFuture<T> submit(Callable<T> task) {
+		return submit(task, getDefaultExecutor());
+	}
+
+	private static Executor createDefaultExecutor() {
+		ExecutorService executor = virtualThreadExecutor();
+		if(executor != null) {
+			return executor;
+		}
+		final AtomicInteger threads = new AtomicInteger();
+		return Executors.newCachedThreadPool(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "chpg-async-" + threads.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * Returns a new virtual thread per task executor or null if the JDK does not
+	 * support virtual threads (the source level predates them, so the executor is
+	 * looked up reflectively)
+	 */
+	private static ExecutorService virtualThreadExecutor() {
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+}
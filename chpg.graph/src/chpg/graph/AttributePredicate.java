@@ -0,0 +1,522 @@
+package chpg.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import chpg.graph.index.AttributeIndex;
+
+/**
+ * A condition on the attribute values of graph elements, used to select nodes
+ * and edges (see Graph.selectNodes(AttributePredicate)).
+ *
+ * Predicates are built from equality, membership, range, prefix and regular
+ * expression tests of single attributes and combined with and, or and negate.
+ * Each predicate is compiled once when it is constructed: value sets are
+ * hashed, numeric bounds are converted to primitive longs and doubles and
+ * regular expressions are compiled, so testing an element does no more than
+ * one attribute lookup per test. If the selected graph has attribute indexes
+ * (see AbstractGraph.createNodeAttributeIndex), the indexed tests of a
+ * predicate are answered from the indexes and only the candidates they return
+ * are tested.
+ *
+ * Equality and membership use Object.equals, so Integer 1 and Long 1 are
+ * different values. Ranges compare numbers by value, regardless of their type,
+ * and strings lexicographically, other values never fall in a range. Regular
+ * expressions and prefixes match string values.
+ *
+ * Predicates are immutable and compare by their structure.
+ */
+public final class AttributePredicate implements Predicate<GraphElement> {
+
+	private enum Kind {
+		EXISTS, EQUALS, RANGE, PREFIX, REGEX, AND, OR, NOT
+	}
+
+	private final Kind kind;
+	private final String attribute;
+	private final List<Object> operands;
+	private final List<AttributePredicate> children;
+	private final Predicate<GraphElement> compiled;
+
+	private AttributePredicate(Kind kind, String attribute, List<Object> operands, List<AttributePredicate> children) {
+		this.kind = kind;
+		this.attribute = attribute;
+		this.operands = operands;
+		this.children = children;
+		this.compiled = compile();
+	}
+
+	private static AttributePredicate attribute(Kind kind, String attribute, Object... operands) {
+		if(attribute == null) {
+			throw new IllegalArgumentException("Attribute must be non-null");
+		}
+		return new AttributePredicate(kind, attribute, Collections.unmodifiableList(Arrays.asList(operands)), Collections.<AttributePredicate>emptyList());
+	}
+
+	/**
+	 * Matches elements that have the given attribute defined, with any value
+	 * @param attribute
+	 * @return
+	 */
+	public static AttributePredicate exists(String attribute) {
+		return attribute(Kind.EXISTS, attribute);
+	}
+
+	/**
+	 * Matches elements whose value of the given attribute equals the given value
+	 * @param attribute
+	 * @param value
+	 * @return
+	 */
+	public static AttributePredicate equalTo(String attribute, Object value) {
+		return in(attribute, value);
+	}
+
+	/**
+	 * Matches elements whose value of the given attribute equals any of the given
+	 * values, null values are ignored
+	 *
+	 * @param attribute
+	 * @param values
+	 * @return
+	 */
+	public static AttributePredicate in(String attribute, Object... values) {
+		Set<Object> valueSet = new LinkedHashSet<Object>();
+		if(values != null) {
+			for(Object value : values) {
+				if(value != null) {
+					valueSet.add(value);
+				}
+			}
+		}
+		return attribute(Kind.EQUALS, attribute, valueSet.toArray());
+	}
+
+	/**
+	 * Matches elements whose value of the given attribute lies between the given
+	 * bounds, inclusive. A null bound leaves the range open on its side.
+	 *
+	 * @param attribute
+	 * @param min a Number or String, or null
+	 * @param max a Number or String, or null
+	 * @return
+	 */
+	public static AttributePredicate between(String attribute, Object min, Object max) {
+		return range(attribute, min, true, max, true);
+	}
+
+	/**
+	 * Matches elements whose value of the given attribute is less than the given bound
+	 * @param attribute
+	 * @param max
+	 * @return
+	 */
+	public static AttributePredicate lessThan(String attribute, Object max) {
+		return range(attribute, null, true, max, false);
+	}
+
+	/**
+	 * Matches elements whose value of the given attribute is at most the given bound
+	 * @param attribute
+	 * @param max
+	 * @return
+	 */
+	public static AttributePredicate atMost(String attribute, Object max) {
+		return range(attribute, null, true, max, true);
+	}
+
+	/**
+	 * Matches elements whose value of the given attribute is greater than the given bound
+	 * @param attribute
+	 * @param min
+	 * @return
+	 */
+	public static AttributePredicate greaterThan(String attribute, Object min) {
+		return range(attribute, min, false, null, true);
+	}
+
+	/**
+	 * Matches elements whose value of the given attribute is at least the given bound
+	 * @param attribute
+	 * @param min
+	 * @return
+	 */
+	public static AttributePredicate atLeast(String attribute, Object min) {
+		return range(attribute, min, true, null, true);
+	}
+
+	private static AttributePredicate range(String attribute, Object min, boolean minInclusive, Object max, boolean maxInclusive) {
+		if(min == null && max == null) {
+			throw new IllegalArgumentException("Range must have a bound");
+		}
+		boolean numeric = min instanceof Number || max instanceof Number;
+		for(Object bound : new Object[] { min, max }) {
+			if(bound != null && (numeric ? !(bound instanceof Number) : !(bound instanceof String))) {
+				throw new IllegalArgumentException("Range bounds must both be numbers or strings");
+			}
+			if(bound instanceof Number && Double.isNaN(((Number) bound).doubleValue())) {
+				throw new IllegalArgumentException("Range bounds must not be NaN");
+			}
+		}
+		return attribute(Kind.RANGE, attribute, min, minInclusive, max, maxInclusive);
+	}
+
+	/**
+	 * Matches elements whose value of the given attribute is a string that starts
+	 * with the given prefix
+	 *
+	 * @param attribute
+	 * @param prefix
+	 * @return
+	 */
+	public static AttributePredicate startsWith(String attribute, String prefix) {
+		if(prefix == null) {
+			throw new IllegalArgumentException("Prefix must be non-null");
+		}
+		return attribute(Kind.PREFIX, attribute, prefix);
+	}
+
+	/**
+	 * Matches elements whose value of the given attribute is a string that matches
+	 * the given regular expression in full
+	 *
+	 * @param attribute
+	 * @param regex
+	 * @return
+	 * @throws IllegalArgumentException if the regular expression is malformed
+	 */
+	public static AttributePredicate matches(String attribute, String regex) {
+		if(regex == null) {
+			throw new IllegalArgumentException("Regular expression must be non-null");
+		}
+		return attribute(Kind.REGEX, attribute, regex);
+	}
+
+	/**
+	 * Matches elements that match all of the given predicates
+	 * @param predicates
+	 * @return
+	 */
+	public static AttributePredicate allOf(AttributePredicate... predicates) {
+		return combine(Kind.AND, predicates);
+	}
+
+	/**
+	 * Matches elements that match any of the given predicates
+	 * @param predicates
+	 * @return
+	 */
+	public static AttributePredicate anyOf(AttributePredicate... predicates) {
+		return combine(Kind.OR, predicates);
+	}
+
+	private static AttributePredicate combine(Kind kind, AttributePredicate... predicates) {
+		if(predicates == null || predicates.length == 0) {
+			throw new IllegalArgumentException("Expected at least one predicate");
+		}
+		List<AttributePredicate> children = new ArrayList<AttributePredicate>();
+		for(AttributePredicate predicate : predicates) {
+			if(predicate == null) {
+				throw new IllegalArgumentException("Predicates must be non-null");
+			}
+			// nested conjunctions and disjunctions are flattened
+			if(predicate.kind == kind) {
+				children.addAll(predicate.children);
+			} else {
+				children.add(predicate);
+			}
+		}
+		if(children.size() == 1) {
+			return children.get(0);
+		}
+		return new AttributePredicate(kind, null, Collections.emptyList(), Collections.unmodifiableList(children));
+	}
+
+	/**
+	 * Returns the predicate that matches elements that match this predicate and the given predicate
+	 * @param other
+	 * @return
+	 */
+	public AttributePredicate and(AttributePredicate other) {
+		return allOf(this, other);
+	}
+
+	/**
+	 * Returns the predicate that matches elements that match this predicate or the given predicate
+	 * @param other
+	 * @return
+	 */
+	public AttributePredicate or(AttributePredicate other) {
+		return anyOf(this, other);
+	}
+
+	/**
+	 * Returns the predicate that matches the elements this predicate does not match
+	 * @return
+	 */
+	@Override
+	public AttributePredicate negate() {
+		if(kind == Kind.NOT) {
+			return children.get(0);
+		}
+		return new AttributePredicate(Kind.NOT, null, Collections.emptyList(), Collections.singletonList(this));
+	}
+
+	@Override
+	public boolean test(GraphElement element) {
+		return compiled.test(element);
+	}
+
+	/**
+	 * Returns the elements that may match this predicate, as answered by the given
+	 * attribute indexes, or null if the predicate cannot be answered from the
+	 * indexes. The candidates are a superset of the matching elements among the
+	 * indexed elements and still have to be tested.
+	 *
+	 * @param indexes returns the index of an attribute, or null if the attribute is not indexed
+	 * @return
+	 */
+	public <E extends GraphElement> Collection<E> candidates(Function<String,AttributeIndex<E>> indexes) {
+		switch(kind) {
+		case AND: {
+			// the candidates of the most selective indexed conjunct
+			Collection<E> smallest = null;
+			for(AttributePredicate child : children) {
+				Collection<E> candidates = child.candidates(indexes);
+				if(candidates != null && (smallest == null || candidates.size() < smallest.size())) {
+					smallest = candidates;
+				}
+			}
+			return smallest;
+		}
+		case OR: {
+			Set<E> union = new HashSet<E>();
+			for(AttributePredicate child : children) {
+				Collection<E> candidates = child.candidates(indexes);
+				if(candidates == null) {
+					return null;
+				}
+				union.addAll(candidates);
+			}
+			return union;
+		}
+		case NOT:
+		case REGEX:
+			return null;
+		default:
+			break;
+		}
+		AttributeIndex<E> index = indexes.apply(attribute);
+		if(index == null) {
+			return null;
+		}
+		switch(kind) {
+		case EXISTS:
+			return index.elements();
+		case EQUALS:
+			if(operands.size() == 1) {
+				return index.get(operands.get(0));
+			}
+			List<E> result = new ArrayList<E>();
+			for(Object value : operands) {
+				result.addAll(index.get(value));
+			}
+			return result;
+		case RANGE:
+			Object min = operands.get(0);
+			Object max = operands.get(2);
+			if(min instanceof Number || max instanceof Number) {
+				return index.range(min == null ? Double.NEGATIVE_INFINITY : ((Number) min).doubleValue(),
+						max == null ? Double.POSITIVE_INFINITY : ((Number) max).doubleValue());
+			}
+			return index.range((String) min, (String) max);
+		case PREFIX:
+			return index.prefix((String) operands.get(0));
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the evaluator of this predicate
+	 */
+	@SuppressWarnings("unchecked")
+	private Predicate<GraphElement> compile() {
+		final String attribute = this.attribute;
+		switch(kind) {
+		case EXISTS:
+			return element -> element.hasAttr(attribute);
+		case EQUALS:
+			if(operands.isEmpty()) {
+				return element -> false;
+			} else if(operands.size() == 1) {
+				final Object expected = operands.get(0);
+				return element -> expected.equals(element.getAttr(attribute));
+			} else {
+				final Set<Object> values = new HashSet<Object>(operands);
+				return element -> {
+					Object value = element.getAttr(attribute);
+					return value != null && values.contains(value);
+				};
+			}
+		case RANGE:
+			return compileRange();
+		case PREFIX:
+			final String prefix = (String) operands.get(0);
+			return element -> {
+				Object value = element.getAttr(attribute);
+				return value instanceof String && ((String) value).startsWith(prefix);
+			};
+		case REGEX:
+			final Pattern pattern = Pattern.compile((String) operands.get(0));
+			return element -> {
+				Object value = element.getAttr(attribute);
+				return value instanceof String && pattern.matcher((String) value).matches();
+			};
+		case AND:
+			final Predicate<GraphElement>[] conjuncts = children.stream().map(child -> child.compiled).toArray(Predicate[]::new);
+			return element -> {
+				for(Predicate<GraphElement> conjunct : conjuncts) {
+					if(!conjunct.test(element)) {
+						return false;
+					}
+				}
+				return true;
+			};
+		case OR:
+			final Predicate<GraphElement>[] disjuncts = children.stream().map(child -> child.compiled).toArray(Predicate[]::new);
+			return element -> {
+				for(Predicate<GraphElement> disjunct : disjuncts) {
+					if(disjunct.test(element)) {
+						return true;
+					}
+				}
+				return false;
+			};
+		case NOT:
+			final Predicate<GraphElement> negated = children.get(0).compiled;
+			return element -> !negated.test(element);
+		default:
+			throw new IllegalStateException("Unknown predicate " + kind);
+		}
+	}
+
+	private Predicate<GraphElement> compileRange() {
+		final String attribute = this.attribute;
+		final Object min = operands.get(0);
+		final boolean minInclusive = (Boolean) operands.get(1);
+		final Object max = operands.get(2);
+		final boolean maxInclusive = (Boolean) operands.get(3);
+		if(!(min instanceof Number) && !(max instanceof Number)) {
+			final String minString = (String) min;
+			final String maxString = (String) max;
+			return element -> {
+				Object value = element.getAttr(attribute);
+				if(!(value instanceof String)) {
+					return false;
+				}
+				String string = (String) value;
+				if(minString != null) {
+					int comparison = string.compareTo(minString);
+					if(comparison < 0 || (comparison == 0 && !minInclusive)) {
+						return false;
+					}
+				}
+				if(maxString != null) {
+					int comparison = string.compareTo(maxString);
+					if(comparison > 0 || (comparison == 0 && !maxInclusive)) {
+						return false;
+					}
+				}
+				return true;
+			};
+		}
+		// integral values are compared to integral bounds as longs, everything else as doubles
+		final boolean integralBounds = (min == null || isIntegral(min)) && (max == null || isIntegral(max));
+		final long minLong = min == null ? Long.MIN_VALUE : ((Number) min).longValue();
+		final long maxLong = max == null ? Long.MAX_VALUE : ((Number) max).longValue();
+		final double minDouble = min == null ? Double.NEGATIVE_INFINITY : ((Number) min).doubleValue();
+		final double maxDouble = max == null ? Double.POSITIVE_INFINITY : ((Number) max).doubleValue();
+		final boolean lowerInclusive = minInclusive || min == null;
+		final boolean upperInclusive = maxInclusive || max == null;
+		return element -> {
+			Object value = element.getAttr(attribute);
+			if(!(value instanceof Number)) {
+				return false;
+			}
+			if(integralBounds && isIntegral(value)) {
+				long number = ((Number) value).longValue();
+				return (lowerInclusive ? number >= minLong : number > minLong)
+						&& (upperInclusive ? number <= maxLong : number < maxLong);
+			}
+			double number = ((Number) value).doubleValue();
+			return (lowerInclusive ? number >= minDouble : number > minDouble)
+					&& (upperInclusive ? number <= maxDouble : number < maxDouble);
+		};
+	}
+
+	private static boolean isIntegral(Object value) {
+		return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+	}
+
+	@Override
+	public int hashCode() {
+		return Objects.hash(kind, attribute, operands, children);
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(this == obj) {
+			return true;
+		}
+		if(!(obj instanceof AttributePredicate)) {
+			return false;
+		}
+		AttributePredicate other = (AttributePredicate) obj;
+		return kind == other.kind && Objects.equals(attribute, other.attribute)
+				&& operands.equals(other.operands) && children.equals(other.children);
+	}
+
+	@Override
+	public String toString() {
+		switch(kind) {
+		case EXISTS:
+			return "exists(" + attribute + ")";
+		case EQUALS:
+			return attribute + " in " + operands;
+		case RANGE:
+			StringBuilder range = new StringBuilder(attribute);
+			range.append(" in ");
+			range.append(operands.get(0) == null ? "(-inf" : ((Boolean) operands.get(1) ? "[" : "(") + operands.get(0));
+			range.append(", ");
+			range.append(operands.get(2) == null ? "inf)" : operands.get(2) + ((Boolean) operands.get(3) ? "]" : ")"));
+			return range.toString();
+		case PREFIX:
+			return attribute + " startsWith \"" + operands.get(0) + "\"";
+		case REGEX:
+			return attribute + " matches \"" + operands.get(0) + "\"";
+		case NOT:
+			return "!(" + children.get(0) + ")";
+		default:
+			StringBuilder result = new StringBuilder("(");
+			for(int i = 0; i < children.size(); i++) {
+				if(i > 0) {
+					result.append(kind == Kind.AND ? " && " : " || ");
+				}
+				result.append(children.get(i));
+			}
+			return result.append(")").toString();
+		}
+	}
+
+}
@@ -0,0 +1,241 @@
+package chpg.graph;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import chpg.graph.ExecutionLimitException.Limit;
+
+/**
+ * Cooperative cancellation, deadlines and budgets for graph operations.
+ *
+ * Operations executed with execute run with this context installed on the
+ * current thread. Long running kernels (traversals, selections, index builds,
+ * query plans and algorithms) call checkpoint regularly and report the size of
+ * their results, and the first checkpoint after the context is cancelled or a
+ * limit is exceeded throws an ExecutionLimitException carrying the statistics
+ * of the work done so far. The deadline and the memory budget are only
+ * examined every CHECK_INTERVAL checkpoints, so checkpoints are cheap enough to
+ * be called once per expanded node.
+ *
+ * The memory budget is measured as the number of bytes allocated by the
+ * executing thread, which is an upper bound of the memory retained by the
+ * operation. The budget is ignored on JVMs that do not support thread
+ * allocation accounting. Work done by other threads is neither measured nor
+ * checked.
+ */
+public class ExecutionContext {
+
+	/**
+	 * The number of checkpoints between examinations of the deadline and memory budget
+	 */
+	public static final int CHECK_INTERVAL = 1024;
+
+	private static final ThreadLocal<ExecutionContext> CURRENT = new ThreadLocal<ExecutionContext>();
+
+	private volatile boolean cancelled = false;
+	private long deadline = 0;
+	private boolean hasDeadline = false;
+	private long maxResultSize = -1;
+	private long maxMemory = -1;
+
+	// state of the current execution
+	private int checkpoints = 0;
+	private long start = 0;
+	private long allocationStart = -1;
+	private long resultSize = 0;
+	private ExecutionStatistics statistics = null;
+
+	/**
+	 * Constructs an execution context without any limits
+	 */
+	public ExecutionContext() {}
+
+	/**
+	 * Sets a deadline the given amount of time from now
+	 * @param timeout
+	 * @param unit
+	 */
+	public void setTimeout(long timeout, TimeUnit unit) {
+		if(timeout < 0) {
+			throw new IllegalArgumentException("Timeout must be non-negative");
+		}
+		this.deadline = System.nanoTime() + unit.toNanos(timeout);
+		this.hasDeadline = true;
+	}
+
+	/**
+	 * Sets the maximum number of graph elements (or paths for path enumerations)
+	 * of any result produced during an execution, negative values denote no limit
+	 *
+	 * @param maxResultSize
+	 */
+	public void setMaxResultSize(long maxResultSize) {
+		this.maxResultSize = maxResultSize;
+	}
+
+	/**
+	 * Returns the maximum result size or a negative value if the result size is not limited
+	 * @return
+	 */
+	public long getMaxResultSize() {
+		return maxResultSize;
+	}
+
+	/**
+	 * Sets the maximum number of bytes an execution may allocate, negative values
+	 * denote no limit
+	 *
+	 * @param maxMemory
+	 */
+	public void setMaxMemory(long maxMemory) {
+		this.maxMemory = maxMemory;
+	}
+
+	/**
+	 * Returns the memory budget or a negative value if memory is not limited
+	 * @return
+	 */
+	public long getMaxMemory() {
+		return maxMemory;
+	}
+
+	/**
+	 * Cancels the operations executing in this context, this method may be called
+	 * from any thread
+	 */
+	public void cancel() {
+		cancelled = true;
+	}
+
+	/**
+	 * Returns true if this context has been cancelled
+	 * @return
+	 */
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	/**
+	 * Executes the given operation with this context installed on the current thread
+	 *
+	 * @param operation
+	 * @return the result of the operation
+	 * @throws ExecutionLimitException if the context is cancelled or a limit is exceeded
+	 */
+	public <T> T execute(Supplier<T> operation) {
+		ExecutionContext previous = CURRENT.get();
+		if(previous == this) {
+			return operation.get();
+		}
+		CURRENT.set(this);
+		ExecutionStatistics previousStatistics = statistics;
+		statistics = ExecutionStatistics.start();
+		start = System.nanoTime();
+		allocationStart = ExecutionStatistics.allocatedBytes();
+		resultSize = 0;
+		checkpoints = 0;
+		try {
+			check();
+			return operation.get();
+		} finally {
+			statistics.stop();
+			statistics = previousStatistics;
+			if(previous == null) {
+				CURRENT.remove();
+			} else {
+				CURRENT.set(previous);
+			}
+		}
+	}
+
+	/**
+	 * Returns the context installed on the current thread or null
+	 * @return
+	 */
+	public static ExecutionContext current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Checks the context installed on the current thread (if any)
+	 * @throws ExecutionLimitException if the context is cancelled or a limit is exceeded
+	 */
+	public static void checkpoint() {
+		ExecutionContext context = CURRENT.get();
+		if(context != null) {
+			context.check();
+		}
+	}
+
+	/**
+	 * Checks the size of a (partial) result against the context installed on the
+	 * current thread (if any)
+	 *
+	 * @param elements
+	 * @throws ExecutionLimitException if the result size limit is exceeded
+	 */
+	public static void checkpoint(long elements) {
+		ExecutionContext context = CURRENT.get();
+		if(context != null) {
+			context.checkResultSize(elements);
+		}
+	}
+
+	/**
+	 * Checks for cancellation and, every CHECK_INTERVAL calls, the deadline and memory budget
+	 * @throws ExecutionLimitException if the context is cancelled or a limit is exceeded
+	 */
+	public void check() {
+		if(cancelled) {
+			throw stop("Execution was cancelled", Limit.CANCELLED);
+		}
+		if((checkpoints++ & (CHECK_INTERVAL - 1)) != 0) {
+			return;
+		}
+		if(hasDeadline && System.nanoTime() - deadline > 0) {
+			throw stop("Execution exceeded its deadline", Limit.DEADLINE);
+		}
+		if(maxMemory >= 0 && allocationStart >= 0 && ExecutionStatistics.allocatedBytes() - allocationStart > maxMemory) {
+			throw stop("Execution exceeded its memory budget of " + maxMemory + " bytes", Limit.MEMORY);
+		}
+	}
+
+	/**
+	 * Checks for cancellation and the size of a (partial) result
+	 * @param elements
+	 * @throws ExecutionLimitException if the context is cancelled or a limit is exceeded
+	 */
+	public void checkResultSize(long elements) {
+		if(elements > resultSize) {
+			resultSize = elements;
+		}
+		if(maxResultSize >= 0 && elements > maxResultSize) {
+			throw stop("Result of " + elements + " elements exceeds the limit of " + maxResultSize + " elements", Limit.RESULT_SIZE);
+		}
+		check();
+	}
+
+	/**
+	 * Returns the exception for the given limit with the statistics of the current execution
+	 */
+	private ExecutionLimitException stop(String message, Limit limit) {
+		long nodesScanned = 0;
+		long edgesScanned = 0;
+		// recordings nested in the execution have not been added to its recording yet
+		for(ExecutionStatistics recording = ExecutionStatistics.current(); recording != null; recording = recording.getParent()) {
+			nodesScanned += recording.getNodesScanned();
+			edgesScanned += recording.getEdgesScanned();
+			if(recording == statistics) {
+				break;
+			}
+		}
+		long allocated = ExecutionStatistics.allocatedBytes();
+		if(allocated >= 0 && allocationStart >= 0) {
+			allocated -= allocationStart;
+		} else {
+			allocated = -1;
+		}
+		return new ExecutionLimitException(message, limit, System.nanoTime() - start, nodesScanned, edgesScanned, allocated, resultSize);
+	}
+
+}
@@ -0,0 +1,107 @@
+package chpg.graph;
+
+/**
+ * Thrown when a graph operation executing in an ExecutionContext is cancelled or
+ * exceeds one of the limits of the context. The exception carries the
+ * statistics of the work done up to the point the execution was stopped.
+ */
+public class ExecutionLimitException extends RuntimeException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * The reasons an execution is stopped
+	 */
+	public static enum Limit {
+		/**
+		 * The execution was cancelled
+		 */
+		CANCELLED,
+
+		/**
+		 * The deadline of the execution passed
+		 */
+		DEADLINE,
+
+		/**
+		 * A result exceeded the maximum number of graph elements
+		 */
+		RESULT_SIZE,
+
+		/**
+		 * The execution allocated more than the memory budget
+		 */
+		MEMORY
+	}
+
+	private final Limit limit;
+	private final long elapsedTime;
+	private final long nodesScanned;
+	private final long edgesScanned;
+	private final long allocatedBytes;
+	private final long resultSize;
+
+	public ExecutionLimitException(String message, Limit limit, long elapsedTime, long nodesScanned, long edgesScanned,
+			long allocatedBytes, long resultSize) {
+		super(message);
+		this.limit = limit;
+		this.elapsedTime = elapsedTime;
+		this.nodesScanned = nodesScanned;
+		this.edgesScanned = edgesScanned;
+		this.allocatedBytes = allocatedBytes;
+		this.resultSize = resultSize;
+	}
+
+	/**
+	 * Returns the limit that stopped the execution
+	 * @return
+	 */
+	public Limit getLimit() {
+		return limit;
+	}
+
+	/**
+	 * Returns the wall time of the execution in nanoseconds until it was stopped
+	 * @return
+	 */
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+	/**
+	 * Returns the number of nodes scanned before the execution was stopped
+	 * @return
+	 */
+	public long getNodesScanned() {
+		return nodesScanned;
+	}
+
+	/**
+	 * Returns the number of edges scanned before the execution was stopped
+	 * @return
+	 */
+	public long getEdgesScanned() {
+		return edgesScanned;
+	}
+
+	/**
+	 * Returns the number of bytes allocated before the execution was stopped, or
+	 * -1 if allocations could not be measured
+	 *
+	 * @return
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Returns the size of the largest result (in graph elements) reported before
+	 * the execution was stopped
+	 *
+	 * @return
+	 */
+	public long getResultSize() {
+		return resultSize;
+	}
+
+}
@@ -0,0 +1,162 @@
+package chpg.graph;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Counts the work done by the graph operations executed on the current thread
+ * while the statistics are recording.
+ *
+ * Graph operations report the nodes and edges they scan and the indexes they
+ * use. Reporting is a no-op unless statistics have been started on the current
+ * thread, so operations pay for a single thread local lookup per call when
+ * nothing is recording. Recordings nest, stopping a recording adds its counts
+ * to the enclosing recording. Work done by other threads (for example parallel
+ * streams) is not counted.
+ */
+public class ExecutionStatistics {
+
+	private static final ThreadLocal<ExecutionStatistics> CURRENT = new ThreadLocal<ExecutionStatistics>();
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final ExecutionStatistics parent;
+	private final Thread thread;
+	private boolean recording = true;
+
+	private long nodesScanned = 0;
+	private long edgesScanned = 0;
+	private final Set<String> indexes = new LinkedHashSet<String>();
+
+	private ExecutionStatistics(ExecutionStatistics parent) {
+		this.parent = parent;
+		this.thread = Thread.currentThread();
+	}
+
+	/**
+	 * Starts recording the statistics of the operations on the current thread
+	 * @return
+	 */
+	public static ExecutionStatistics start() {
+		ExecutionStatistics statistics = new ExecutionStatistics(CURRENT.get());
+		CURRENT.set(statistics);
+		return statistics;
+	}
+
+	/**
+	 * Stops recording, the counts are added to the enclosing recording (if any)
+	 */
+	public void stop() {
+		if(!recording) {
+			return;
+		}
+		if(Thread.currentThread() != thread || CURRENT.get() != this) {
+			throw new IllegalStateException("Execution statistics must be stopped in the reverse order they were started on the same thread");
+		}
+		recording = false;
+		if(parent != null) {
+			parent.nodesScanned += nodesScanned;
+			parent.edgesScanned += edgesScanned;
+			parent.indexes.addAll(indexes);
+			CURRENT.set(parent);
+		} else {
+			CURRENT.remove();
+		}
+	}
+
+	/**
+	 * Returns the recording of the current thread or null if nothing is recording
+	 */
+	static ExecutionStatistics current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Returns the enclosing recording or null
+	 */
+	ExecutionStatistics getParent() {
+		return parent;
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread so far or -1 if
+	 * the JVM does not support thread allocation accounting
+	 *
+	 * @return
+	 */
+	public static long allocatedBytes() {
+		if(THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+				return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reports that the current operation scanned the given number of nodes
+	 * @param count
+	 */
+	public static void scannedNodes(long count) {
+		ExecutionStatistics statistics = CURRENT.get();
+		if(statistics != null) {
+			statistics.nodesScanned += count;
+		}
+	}
+
+	/**
+	 * Reports that the current operation scanned the given number of edges
+	 * @param count
+	 */
+	public static void scannedEdges(long count) {
+		ExecutionStatistics statistics = CURRENT.get();
+		if(statistics != null) {
+			statistics.edgesScanned += count;
+		}
+	}
+
+	/**
+	 * Reports that the current operation used (or built) the given index
+	 * @param index
+	 */
+	public static void usedIndex(String index) {
+		ExecutionStatistics statistics = CURRENT.get();
+		if(statistics != null) {
+			statistics.indexes.add(index);
+		}
+	}
+
+	/**
+	 * Returns the number of nodes scanned
+	 * @return
+	 */
+	public long getNodesScanned() {
+		return nodesScanned;
+	}
+
+	/**
+	 * Returns the number of edges scanned
+	 * @return
+	 */
+	public long getEdgesScanned() {
+		return edgesScanned;
+	}
+
+	/**
+	 * Returns the names of the indexes used in the order they were first used
+	 * @return
+	 */
+	public Set<String> getIndexes() {
+		return Collections.unmodifiableSet(indexes);
+	}
+
+	@Override
+	public String toString() {
+		return "ExecutionStatistics [nodesScanned=" + nodesScanned + ", edgesScanned=" + edgesScanned + ", indexes=" + indexes + "]";
+	}
+
+}
@@ -1,8 +1,10 @@
 package chpg.graph;
 
 import java.util.Comparator;
+import java.util.function.Predicate;
 
 import chpg.graph.Node.NodeDirection;
+import chpg.graph.index.ShortestPaths;
 
 public interface Graph {
 	
@@ -18,6 +20,28 @@ public interface Graph {
 		}
 	};
 	
+	/**
+	 * Denotes a traversal depth without bound
+	 */
+	public static final int UNBOUNDED_DEPTH = -1;
+	
+	/**
+	 * Strategies for computing transitive forward and reverse traversals
+	 */
+	public static enum TraversalStrategy {
+		/**
+		 * Expands the frontier by examining every edge leaving the frontier
+		 */
+		TOP_DOWN,
+		
+		/**
+		 * Direction-optimizing breadth first search (Beamer et al.) that switches to
+		 * bottom-up steps, where unvisited nodes search for a neighbor on the frontier,
+		 * while the frontier is large
+		 */
+		DIRECTION_OPTIMIZING;
+	}
+	
 	/**
 	 * Construct a with the given nodes
 	 */
@@ -510,6 +534,80 @@ public interface Graph {
 	 */
 	public Graph forward(GraphElementSet<Node> origin);
 	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using forward transitive traversal with the given traversal strategy.
+	 * 
+	 * @param origin
+	 * @param strategy
+	 * @return
+	 */
+	public Graph forward(Graph origin, TraversalStrategy strategy);
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using forward transitive traversal with the given traversal strategy.
+	 * 
+	 * @param origin
+	 * @param strategy
+	 * @return
+	 */
+	public Graph forward(GraphElementSet<Node> origin, TraversalStrategy strategy);
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using forward transitive traversal along paths of at most maxDepth edges.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Graph forward(Graph origin, int maxDepth);
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using forward transitive traversal along paths of at most maxDepth edges.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Graph forward(GraphElementSet<Node> origin, int maxDepth);
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using forward transitive traversal along paths of at most maxDepth edges.
+	 * 
+	 * The traversal stops at (includes, but does not continue past) nodes that
+	 * satisfy the stopAt predicate and does not traverse edges that satisfy the
+	 * excluded predicate. The origin nodes are always traversed from. The
+	 * traversal terminates as soon as no more nodes can be expanded.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or UNBOUNDED_DEPTH
+	 * @param stopAt the nodes to stop at, or null
+	 * @param excluded the edges not to traverse, or null
+	 * @return
+	 */
+	public Graph forward(Graph origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded);
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using forward transitive traversal along paths of at most maxDepth edges.
+	 * 
+	 * The traversal stops at (includes, but does not continue past) nodes that
+	 * satisfy the stopAt predicate and does not traverse edges that satisfy the
+	 * excluded predicate. The origin nodes are always traversed from. The
+	 * traversal terminates as soon as no more nodes can be expanded.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or UNBOUNDED_DEPTH
+	 * @param stopAt the nodes to stop at, or null
+	 * @param excluded the edges not to traverse, or null
+	 * @return
+	 */
+	public Graph forward(GraphElementSet<Node> origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded);
+	
 	/**
 	 * From this graph, selects the subgraph reachable from the given nodes
 	 * using reverse transitive traversal.
@@ -537,6 +635,183 @@ public interface Graph {
 	 */
 	public Graph reverse(GraphElementSet<Node> origin);
 	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal with the given traversal strategy.
+	 * 
+	 * @param origin
+	 * @param strategy
+	 * @return
+	 */
+	public Graph reverse(Graph origin, TraversalStrategy strategy);
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal with the given traversal strategy.
+	 * 
+	 * @param origin
+	 * @param strategy
+	 * @return
+	 */
+	public Graph reverse(GraphElementSet<Node> origin, TraversalStrategy strategy);
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal along paths of at most maxDepth edges.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Graph reverse(Graph origin, int maxDepth);
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal along paths of at most maxDepth edges.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Graph reverse(GraphElementSet<Node> origin, int maxDepth);
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal along paths of at most maxDepth edges.
+	 * 
+	 * The traversal stops at (includes, but does not continue past) nodes that
+	 * satisfy the stopAt predicate and does not traverse edges that satisfy the
+	 * excluded predicate. The origin nodes are always traversed from. The
+	 * traversal terminates as soon as no more nodes can be expanded.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or UNBOUNDED_DEPTH
+	 * @param stopAt the nodes to stop at, or null
+	 * @param excluded the edges not to traverse, or null
+	 * @return
+	 */
+	public Graph reverse(Graph origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded);
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal along paths of at most maxDepth edges.
+	 * 
+	 * The traversal stops at (includes, but does not continue past) nodes that
+	 * satisfy the stopAt predicate and does not traverse edges that satisfy the
+	 * excluded predicate. The origin nodes are always traversed from. The
+	 * traversal terminates as soon as no more nodes can be expanded.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or UNBOUNDED_DEPTH
+	 * @param stopAt the nodes to stop at, or null
+	 * @param excluded the edges not to traverse, or null
+	 * @return
+	 */
+	public Graph reverse(GraphElementSet<Node> origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded);
+	
+	/**
+	 * Selects the subgraph of the paths from the given origin whose edge tags
+	 * match the given path expression. The result contains the origin, the nodes
+	 * reached by a matching path and the nodes and edges on matching paths.
+	 * Edges match a tag if they are tagged with the tag or a tag it implies.
+	 * 
+	 * @param origin
+	 * @param expression
+	 * @return
+	 */
+	public Graph regularPaths(Graph origin, PathExpression expression);
+	
+	/**
+	 * Selects the subgraph of the paths from the given origin whose edge tags
+	 * match the given path expression. The result contains the origin, the nodes
+	 * reached by a matching path and the nodes and edges on matching paths.
+	 * Edges match a tag if they are tagged with the tag or a tag it implies.
+	 * 
+	 * @param origin
+	 * @param expression
+	 * @return
+	 */
+	public Graph regularPaths(GraphElementSet<Node> origin, PathExpression expression);
+	
+	/**
+	 * Selects the subgraph of the paths of at most maxDepth edges from the given
+	 * origin whose edge tags match the given path expression.
+	 * 
+	 * @param origin
+	 * @param expression
+	 * @param maxDepth the maximum path length, or UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Graph regularPaths(Graph origin, PathExpression expression, int maxDepth);
+	
+	/**
+	 * Selects the subgraph of the paths of at most maxDepth edges from the given
+	 * origin whose edge tags match the given path expression.
+	 * 
+	 * @param origin
+	 * @param expression
+	 * @param maxDepth the maximum path length, or UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Graph regularPaths(GraphElementSet<Node> origin, PathExpression expression, int maxDepth);
+	
+	/**
+	 * Selects a path with the fewest edges from the given from node to the given
+	 * to node. The result contains the nodes and edges of the path, or is empty
+	 * if there is no such path.
+	 * 
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public Graph shortestPath(Node from, Node to);
+	
+	/**
+	 * Selects a shortest path from any of the nodes in from to any of the nodes
+	 * in to, following only the edges tagged with one of the given edge tags (or
+	 * a tag it implies), or all edges if no tags are given. Paths are measured by
+	 * the sum of the given numeric edge attribute, or by their number of edges if
+	 * the weight attribute is null. The result contains the nodes and edges of
+	 * the path, or is empty if there is no such path.
+	 * 
+	 * @param from
+	 * @param to
+	 * @param weightAttribute the numeric edge attribute to use as edge weight, or null
+	 * @param edgeTags
+	 * @return
+	 */
+	public Graph shortestPath(Graph from, Graph to, String weightAttribute, String... edgeTags);
+	
+	/**
+	 * Selects a shortest path from any of the nodes in from to any of the nodes
+	 * in to, following only the edges tagged with one of the given edge tags (or
+	 * a tag it implies), or all edges if no tags are given. Paths are measured by
+	 * the sum of the given numeric edge attribute, or by their number of edges if
+	 * the weight attribute is null. The result contains the nodes and edges of
+	 * the path, or is empty if there is no such path.
+	 * 
+	 * @param from
+	 * @param to
+	 * @param weightAttribute the numeric edge attribute to use as edge weight, or null
+	 * @param edgeTags
+	 * @return
+	 */
+	public Graph shortestPath(GraphElementSet<Node> from, GraphElementSet<Node> to, String weightAttribute, String... edgeTags);
+	
+	/**
+	 * Selects a shortest path from the given from node to the given to node with
+	 * an A* search guided by the given heuristic, which must not overestimate the
+	 * remaining distance. Edge tags and weights are as for shortestPath.
+	 * 
+	 * @param from
+	 * @param to
+	 * @param heuristic
+	 * @param weightAttribute the numeric edge attribute to use as edge weight, or null
+	 * @param edgeTags
+	 * @return
+	 */
+	public Graph shortestPath(Node from, Node to, ShortestPaths.Heuristic heuristic, String weightAttribute, String... edgeTags);
+	
 	/**
 	 * Yields the induced graph formed from the nodes in the current graph and all
 	 * of the edges in the given graph that connect pairs of nodes in the current
@@ -661,4 +936,18 @@ public interface Graph {
 	 */
 	public GraphElementSet<Node> selectNodes(String attribute, Object... values);
 	
+	/**
+	 * Select the nodes that match the given attribute predicate
+	 * @param predicate
+	 * @return
+	 */
+	public GraphElementSet<Node> selectNodes(AttributePredicate predicate);
+	
+	/**
+	 * Select the edges that match the given attribute predicate
+	 * @param predicate
+	 * @return
+	 */
+	public GraphElementSet<Edge> selectEdges(AttributePredicate predicate);
+	
 }
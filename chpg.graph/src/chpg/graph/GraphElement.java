@@ -1,14 +1,22 @@
 package chpg.graph;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class GraphElement {
 	
 	private static Integer addresses = 0;
+	
+	// counts changes to the names, tags and attributes of all graph elements
+	private static final AtomicLong propertyModifications = new AtomicLong();
+	
 	private Integer address;
 	
 	// name is a first class property
@@ -22,8 +30,8 @@ public abstract class GraphElement {
 	
 	protected GraphElement() {
 		this.address = addresses++;
-		this.tags = new HashSet<String>();
-		this.attributes = new HashMap<String,Object>();
+		this.tags = new Tags();
+		this.attributes = new Attributes();
 	}
 	
 	/**
@@ -53,6 +61,7 @@ public abstract class GraphElement {
 
 	public void setName(String name) {
 		this.name = name;
+		propertyModifications.incrementAndGet();
 	}
 
 	public Set<String> tags(){
@@ -83,6 +92,18 @@ public abstract class GraphElement {
 		return address;
 	}
 	
+	/**
+	 * Returns the number of changes made so far to the names, tags and
+	 * attributes of all graph elements. The count changes whenever a property of
+	 * any graph element changes, so results derived from properties are current
+	 * as long as the count is unchanged.
+	 * 
+	 * @return
+	 */
+	public static long getPropertyModificationCount() {
+		return propertyModifications.get();
+	}
+	
 	@Override
 	public int hashCode() {
 		return Objects.hash(address);
@@ -100,4 +121,153 @@ public abstract class GraphElement {
 		return Objects.equals(address, other.address);
 	}
 	
+	/**
+	 * A tag set that counts its modifications
+	 */
+	private static class Tags extends HashSet<String> {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public boolean add(String tag) {
+			boolean added = super.add(tag);
+			if(added) {
+				propertyModifications.incrementAndGet();
+			}
+			return added;
+		}
+
+		@Override
+		public boolean remove(Object tag) {
+			boolean removed = super.remove(tag);
+			if(removed) {
+				propertyModifications.incrementAndGet();
+			}
+			return removed;
+		}
+
+		@Override
+		public void clear() {
+			if(!isEmpty()) {
+				propertyModifications.incrementAndGet();
+			}
+			super.clear();
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			// removeAll, retainAll and removeIf remove through the iterator
+			Iterator<String> iterator = super.iterator();
+			return new Iterator<String>() {
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public String next() {
+					return iterator.next();
+				}
+
+				@Override
+				public void remove() {
+					iterator.remove();
+					propertyModifications.incrementAndGet();
+				}
+			};
+		}
+	}
+	
+	/**
+	 * An attribute map that counts its modifications. The default methods of Map
+	 * and the key and value views of AbstractMap modify the map through put,
+	 * remove and the entry set, so these are the only methods that count.
+	 */
+	private static class Attributes extends AbstractMap<String,Object> {
+		private final HashMap<String,Object> attributes = new HashMap<String,Object>();
+		private Set<Map.Entry<String,Object>> entrySet;
+
+		@Override
+		public int size() {
+			return attributes.size();
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return attributes.containsKey(key);
+		}
+
+		@Override
+		public Object get(Object key) {
+			return attributes.get(key);
+		}
+
+		@Override
+		public Object put(String key, Object value) {
+			propertyModifications.incrementAndGet();
+			return attributes.put(key, value);
+		}
+
+		@Override
+		public Object remove(Object key) {
+			if(!attributes.containsKey(key)) {
+				return null;
+			}
+			propertyModifications.incrementAndGet();
+			return attributes.remove(key);
+		}
+
+		@Override
+		public void clear() {
+			if(!attributes.isEmpty()) {
+				propertyModifications.incrementAndGet();
+			}
+			attributes.clear();
+		}
+
+		@Override
+		public Set<Map.Entry<String,Object>> entrySet() {
+			if(entrySet == null) {
+				entrySet = new AbstractSet<Map.Entry<String,Object>>() {
+					@Override
+					public int size() {
+						return attributes.size();
+					}
+
+					@Override
+					public Iterator<Map.Entry<String,Object>> iterator() {
+						Iterator<Map.Entry<String,Object>> iterator = attributes.entrySet().iterator();
+						return new Iterator<Map.Entry<String,Object>>() {
+							@Override
+							public boolean hasNext() {
+								return iterator.hasNext();
+							}
+
+							@Override
+							public Map.Entry<String,Object> next() {
+								Map.Entry<String,Object> entry = iterator.next();
+								return new SimpleEntry<String,Object>(entry) {
+									private static final long serialVersionUID = 1L;
+
+									@Override
+									public Object setValue(Object value) {
+										propertyModifications.incrementAndGet();
+										super.setValue(value);
+										return entry.setValue(value);
+									}
+								};
+							}
+
+							@Override
+							public void remove() {
+								iterator.remove();
+								propertyModifications.incrementAndGet();
+							}
+						};
+					}
+				};
+			}
+			return entrySet;
+		}
+	}
+	
 }
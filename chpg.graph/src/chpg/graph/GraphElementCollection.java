@@ -2,6 +2,10 @@ package chpg.graph;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public abstract class GraphElementCollection<E extends GraphElement> implements Iterable<E> {
 	
@@ -118,4 +122,41 @@ public abstract class GraphElementCollection<E extends GraphElement> implements
 	 */
 	public abstract boolean retainAll(GraphElementCollection<E> collection);
 	
+	/**
+	 * Returns a counter that is incremented each time the collection is structurally
+	 * modified (elements added or removed). Two equal counts observed on the same
+	 * collection instance imply that the collection contents did not change in between.
+	 * 
+	 * @return
+	 */
+	public abstract long getModificationCount();
+	
+	/**
+	 * Returns a spliterator over the elements of this collection
+	 * 
+	 * @return
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		return Spliterators.spliterator(iterator(), size(), Spliterator.DISTINCT | Spliterator.NONNULL);
+	}
+	
+	/**
+	 * Returns a sequential stream of the elements of this collection
+	 * 
+	 * @return
+	 */
+	public Stream<E> stream() {
+		return StreamSupport.stream(spliterator(), false);
+	}
+	
+	/**
+	 * Returns a possibly parallel stream of the elements of this collection
+	 * 
+	 * @return
+	 */
+	public Stream<E> parallelStream() {
+		return StreamSupport.stream(spliterator(), true);
+	}
+	
 }
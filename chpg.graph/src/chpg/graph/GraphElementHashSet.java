@@ -4,10 +4,14 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 
 public class GraphElementHashSet<E extends GraphElement> extends GraphElementSet<E> implements Iterable<E> {
 
 	private Set<E> set;
+	
+	private long modifications = 0;
 
 	public GraphElementHashSet() {
 		super();
@@ -54,7 +58,11 @@ public class GraphElementHashSet<E extends GraphElement> extends GraphElementSet
 		if(set == null) {
 			set = new HashSet<E>();
 		}
-		return set.add(e);
+		if(set.add(e)) {
+			modifications++;
+			return true;
+		}
+		return false;
 	}
 	
 	/**
@@ -66,6 +74,9 @@ public class GraphElementHashSet<E extends GraphElement> extends GraphElementSet
 		requireNonNullGraphElement(e);
 		if(set != null) {
 			boolean modified = set.remove(e);
+			if(modified) {
+				modifications++;
+			}
 			if(set.isEmpty()) {
 				set = null;
 			}
@@ -79,7 +90,37 @@ public class GraphElementHashSet<E extends GraphElement> extends GraphElementSet
 		if(set == null) {
 			return Collections.emptyIterator();
 		} else {
-			return set.iterator();
+			final Iterator<E> iterator = set.iterator();
+			return new Iterator<E>() {
+				@Override
+				public boolean hasNext() {
+					return iterator.hasNext();
+				}
+
+				@Override
+				public E next() {
+					return iterator.next();
+				}
+
+				@Override
+				public void remove() {
+					iterator.remove();
+					modifications++;
+				}
+			};
+		}
+	}
+
+	/**
+	 * Returns a sized spliterator over the elements of this set that splits evenly
+	 * for parallel streams
+	 */
+	@Override
+	public Spliterator<E> spliterator() {
+		if(set == null) {
+			return Spliterators.emptySpliterator();
+		} else {
+			return set.spliterator();
 		}
 	}
 
@@ -94,6 +135,9 @@ public class GraphElementHashSet<E extends GraphElement> extends GraphElementSet
 	
 	@Override
 	public void clear() {
+		if(set != null) {
+			modifications++;
+		}
 		set = null;
 	}
 
@@ -120,6 +164,9 @@ public class GraphElementHashSet<E extends GraphElement> extends GraphElementSet
 	                modified = true;
 	            }
 	        }
+	        if(modified) {
+	        	modifications++;
+	        }
 	        if(set.isEmpty()) {
             	set = null;
             }
@@ -139,6 +186,11 @@ public class GraphElementHashSet<E extends GraphElement> extends GraphElementSet
 		}
 	}
 	
+	@Override
+	public long getModificationCount() {
+		return modifications;
+	}
+	
 	private void requireNonNullGraphElement(E element) {
 		if(element == null) {
 			throw new IllegalArgumentException("Graph element cannot be null!");
@@ -0,0 +1,152 @@
+package chpg.graph;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Factory methods for common graph element predicates, such as the stop and
+ * exclusion conditions of bounded traversals.
+ *
+ * Note that tag predicates match the given tags exactly, use
+ * PropertyGraph.getInheritedTags to include the tags implied by the tag
+ * hierarchy of a graph schema.
+ */
+public class GraphElementPredicates {
+
+	private GraphElementPredicates() {}
+
+	/**
+	 * Matches graph elements that are tagged with any of the given tags
+	 *
+	 * @param tags
+	 * @return
+	 */
+	public static Predicate<GraphElement> taggedWithAny(String... tags){
+		return taggedWithAny(Arrays.asList(tags));
+	}
+
+	/**
+	 * Matches graph elements that are tagged with any of the given tags
+	 *
+	 * @param tags
+	 * @return
+	 */
+	public static Predicate<GraphElement> taggedWithAny(Collection<String> tags){
+		final Set<String> tagSet = new HashSet<String>(tags);
+		return new Predicate<GraphElement>() {
+			@Override
+			public boolean test(GraphElement graphElement) {
+				for(String tag : graphElement.tags()) {
+					if(tagSet.contains(tag)) {
+						return true;
+					}
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Matches graph elements that are tagged with all of the given tags
+	 *
+	 * @param tags
+	 * @return
+	 */
+	public static Predicate<GraphElement> taggedWithAll(String... tags){
+		return taggedWithAll(Arrays.asList(tags));
+	}
+
+	/**
+	 * Matches graph elements that are tagged with all of the given tags
+	 *
+	 * @param tags
+	 * @return
+	 */
+	public static Predicate<GraphElement> taggedWithAll(Collection<String> tags){
+		final Set<String> tagSet = new HashSet<String>(tags);
+		return new Predicate<GraphElement>() {
+			@Override
+			public boolean test(GraphElement graphElement) {
+				return graphElement.tags().containsAll(tagSet);
+			}
+		};
+	}
+
+	/**
+	 * Matches graph elements that are named with any of the given names
+	 *
+	 * @param names
+	 * @return
+	 */
+	public static Predicate<GraphElement> named(String... names){
+		final Set<String> nameSet = new HashSet<String>();
+		if(names != null) {
+			nameSet.addAll(Arrays.asList(names));
+		}
+		return new Predicate<GraphElement>() {
+			@Override
+			public boolean test(GraphElement graphElement) {
+				return graphElement.hasName() && nameSet.contains(graphElement.getName());
+			}
+		};
+	}
+
+	/**
+	 * Matches graph elements that have the given attribute key defined, with any value
+	 *
+	 * @param attribute
+	 * @return
+	 */
+	public static Predicate<GraphElement> hasAttr(final String attribute){
+		return new Predicate<GraphElement>() {
+			@Override
+			public boolean test(GraphElement graphElement) {
+				return graphElement.hasAttr(attribute);
+			}
+		};
+	}
+
+	/**
+	 * Matches graph elements that have the given attribute key with any of the given values
+	 *
+	 * @param attribute
+	 * @param values
+	 * @return
+	 */
+	public static Predicate<GraphElement> attrEquals(final String attribute, Object... values){
+		final Set<Object> valueSet = new HashSet<Object>();
+		for(Object value : values) {
+			if(value != null) {
+				valueSet.add(value);
+			}
+		}
+		return new Predicate<GraphElement>() {
+			@Override
+			public boolean test(GraphElement graphElement) {
+				Object value = graphElement.getAttr(attribute);
+				return value != null && valueSet.contains(value);
+			}
+		};
+	}
+
+	/**
+	 * Matches graph elements that are members of the given collection
+	 *
+	 * @param collection
+	 * @return
+	 */
+	public static <E extends GraphElement> Predicate<E> memberOf(final GraphElementCollection<E> collection){
+		Objects.requireNonNull(collection);
+		return new Predicate<E>() {
+			@Override
+			public boolean test(E graphElement) {
+				return collection.contains(graphElement);
+			}
+		};
+	}
+
+}
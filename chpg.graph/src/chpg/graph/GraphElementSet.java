@@ -1,7 +1,6 @@
 package chpg.graph;
 
 import java.util.Collection;
-import java.util.Objects;
 
 public abstract class GraphElementSet<E extends GraphElement> extends GraphElementCollection<E> {
 
@@ -102,22 +101,22 @@ public abstract class GraphElementSet<E extends GraphElement> extends GraphEleme
 	 * @return
 	 */
 	public GraphElementSet<E> filter(String attribute, Object... values){
+		if(attribute == null || values == null){
+			return new GraphElementHashSet<E>();
+		}
+		return filter(AttributePredicate.in(attribute, values));
+	}
+	
+	/**
+	 * Returns a graph element set filtered to elements that match the given predicate
+	 * @param predicate
+	 * @return
+	 */
+	public GraphElementSet<E> filter(AttributePredicate predicate){
 		GraphElementSet<E> result = new GraphElementHashSet<E>();
-		if(attribute != null && values != null){
-			for(E e : this){
-				if(e.hasAttr(attribute)) {
-					Object attributeValue = e.attributes().get(attribute);
-					if(attributeValue != null) {
-						for(Object value : values) {
-							if(value != null) {
-								if(Objects.equals(attributeValue, value)) {
-									result.add(e);
-									break;
-								}
-							}
-						}
-					}
-				}
+		for(E e : this){
+			if(predicate.test(e)){
+				result.add(e);
 			}
 		}
 		return result;
@@ -0,0 +1,28 @@
+package chpg.graph;
+
+/**
+ * Receives the changes made to a graph with Graph.add and Graph.remove (see
+ * AbstractGraph.addGraphListener).
+ *
+ * Listeners are notified after the graph has been modified. Adding an edge
+ * reports its new endpoints before the edge, removing a node reports its
+ * removed edges before the node. Modifications made directly to the node or
+ * edge sets of a graph are not reported.
+ */
+public interface GraphListener {
+
+	/**
+	 * Called after the given node or edge was added to the given graph
+	 * @param graph
+	 * @param element
+	 */
+	public void elementAdded(Graph graph, GraphElement element);
+
+	/**
+	 * Called after the given node or edge was removed from the given graph
+	 * @param graph
+	 * @param element
+	 */
+	public void elementRemoved(Graph graph, GraphElement element);
+
+}
@@ -0,0 +1,498 @@
+package chpg.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import chpg.graph.Node.NodeDirection;
+import chpg.graph.index.PathAutomaton;
+
+/**
+ * A regular expression over edge tags that describes a set of paths, used by
+ * regular path queries (see Graph.regularPaths).
+ *
+ * The textual syntax is
+ * <pre>
+ * tag        an edge tagged with tag (tags may contain letters, digits and . _ - : $)
+ * "tag"      an edge tagged with a tag that contains other characters
+ * _          any edge
+ * ^e         e along edges traversed backwards, in reverse order
+ * e1 e2      e1 followed by e2 (also written e1 / e2)
+ * e1 | e2    e1 or e2
+ * e* e+ e?   zero or more, one or more and at most one repetitions of e
+ * ( e )      grouping
+ * </pre>
+ * For example "(XCSG.Call | XCSG.Override)* XCSG.DataFlow" describes the paths
+ * of any number of call or override edges followed by a data flow edge.
+ *
+ * Path expressions are immutable and compare by their canonical text.
+ */
+public class PathExpression {
+
+	private static final int ALTERNATION = 0;
+	private static final int SEQUENCE = 1;
+	private static final int REPETITION = 2;
+	private static final int ATOM = 3;
+
+	private final Term term;
+	private final String text;
+	private volatile PathAutomaton automaton = null;
+
+	private PathExpression(Term term) {
+		this.term = term;
+		StringBuilder text = new StringBuilder();
+		term.print(text, ALTERNATION);
+		this.text = text.toString();
+	}
+
+	/**
+	 * Parses the given path expression
+	 * @param expression
+	 * @return
+	 * @throws IllegalArgumentException if the expression is malformed
+	 */
+	public static PathExpression parse(String expression) {
+		if(expression == null) {
+			throw new IllegalArgumentException("Path expression must be non-null");
+		}
+		return new PathExpression(new ExpressionParser(expression).parse());
+	}
+
+	/**
+	 * Returns the expression that matches a single edge with the given tag
+	 * @param tag
+	 * @return
+	 */
+	public static PathExpression tag(String tag) {
+		if(tag == null) {
+			throw new IllegalArgumentException("Tag must be non-null");
+		}
+		return new PathExpression(new Symbol(tag, NodeDirection.OUT));
+	}
+
+	/**
+	 * Returns the expression that matches any single edge
+	 * @return
+	 */
+	public static PathExpression any() {
+		return new PathExpression(new Symbol(null, NodeDirection.OUT));
+	}
+
+	/**
+	 * Returns the expression that matches this expression followed by the given expression
+	 * @param next
+	 * @return
+	 */
+	public PathExpression then(PathExpression next) {
+		return new PathExpression(new Sequence(Arrays.asList(term, next.term)));
+	}
+
+	/**
+	 * Returns the expression that matches this expression or the given expression
+	 * @param alternative
+	 * @return
+	 */
+	public PathExpression or(PathExpression alternative) {
+		return new PathExpression(new Alternation(Arrays.asList(term, alternative.term)));
+	}
+
+	/**
+	 * Returns the expression that matches zero or more repetitions of this expression
+	 * @return
+	 */
+	public PathExpression star() {
+		return new PathExpression(new Repetition(term, '*'));
+	}
+
+	/**
+	 * Returns the expression that matches one or more repetitions of this expression
+	 * @return
+	 */
+	public PathExpression plus() {
+		return new PathExpression(new Repetition(term, '+'));
+	}
+
+	/**
+	 * Returns the expression that matches this expression or the empty path
+	 * @return
+	 */
+	public PathExpression optional() {
+		return new PathExpression(new Repetition(term, '?'));
+	}
+
+	/**
+	 * Returns the expression that matches the paths of this expression in
+	 * reverse, following each edge backwards
+	 *
+	 * @return
+	 */
+	public PathExpression inverse() {
+		return new PathExpression(term.inverse());
+	}
+
+	/**
+	 * Returns the automaton that accepts the paths of this expression
+	 * @return
+	 */
+	public PathAutomaton getAutomaton() {
+		PathAutomaton result = automaton;
+		if(result == null) {
+			PathAutomaton.Builder builder = new PathAutomaton.Builder();
+			int initial = builder.addState();
+			int accepting = builder.addState();
+			term.compile(builder, initial, accepting);
+			result = builder.build(initial, accepting);
+			automaton = result;
+		}
+		return result;
+	}
+
+	@Override
+	public int hashCode() {
+		return text.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof PathExpression && ((PathExpression) obj).text.equals(text);
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+
+	private static boolean isTagCharacter(char c) {
+		return Character.isLetterOrDigit(c) || c == '.' || c == '_' || c == '-' || c == ':' || c == '$';
+	}
+
+	/**
+	 * A node of the syntax tree of a path expression
+	 */
+	private static abstract class Term {
+
+		/**
+		 * Adds the states and transitions that match this term between from and to
+		 */
+		abstract void compile(PathAutomaton.Builder builder, int from, int to);
+
+		abstract Term inverse();
+
+		/**
+		 * Prints the term, parenthesized if it binds weaker than the given precedence
+		 */
+		abstract void print(StringBuilder result, int precedence);
+	}
+
+	private static class Symbol extends Term {
+		private final String tag;
+		private final NodeDirection direction;
+
+		private Symbol(String tag, NodeDirection direction) {
+			this.tag = tag;
+			this.direction = direction;
+		}
+
+		@Override
+		void compile(PathAutomaton.Builder builder, int from, int to) {
+			builder.addTransition(from, tag, direction, to);
+		}
+
+		@Override
+		Term inverse() {
+			return new Symbol(tag, direction == NodeDirection.OUT ? NodeDirection.IN : NodeDirection.OUT);
+		}
+
+		@Override
+		void print(StringBuilder result, int precedence) {
+			if(direction == NodeDirection.IN) {
+				result.append('^');
+			}
+			if(tag == null) {
+				result.append('_');
+				return;
+			}
+			boolean quoted = tag.isEmpty() || tag.equals("_");
+			for(int i = 0; i < tag.length() && !quoted; i++) {
+				quoted = !isTagCharacter(tag.charAt(i));
+			}
+			if(quoted) {
+				result.append('"').append(tag.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+			} else {
+				result.append(tag);
+			}
+		}
+	}
+
+	private static class Sequence extends Term {
+		private final List<Term> terms;
+
+		private Sequence(List<Term> terms) {
+			// nested sequences are flattened, so equivalent expressions print alike
+			this.terms = new ArrayList<Term>();
+			for(Term term : terms) {
+				if(term instanceof Sequence) {
+					this.terms.addAll(((Sequence) term).terms);
+				} else {
+					this.terms.add(term);
+				}
+			}
+		}
+
+		@Override
+		void compile(PathAutomaton.Builder builder, int from, int to) {
+			int current = from;
+			for(int i = 0; i < terms.size(); i++) {
+				int next = i == terms.size() - 1 ? to : builder.addState();
+				terms.get(i).compile(builder, current, next);
+				current = next;
+			}
+		}
+
+		@Override
+		Term inverse() {
+			List<Term> inverse = new ArrayList<Term>();
+			for(Term term : terms) {
+				inverse.add(term.inverse());
+			}
+			Collections.reverse(inverse);
+			return new Sequence(inverse);
+		}
+
+		@Override
+		void print(StringBuilder result, int precedence) {
+			if(precedence > SEQUENCE) {
+				result.append('(');
+			}
+			for(int i = 0; i < terms.size(); i++) {
+				if(i > 0) {
+					result.append(' ');
+				}
+				terms.get(i).print(result, REPETITION);
+			}
+			if(precedence > SEQUENCE) {
+				result.append(')');
+			}
+		}
+	}
+
+	private static class Alternation extends Term {
+		private final List<Term> terms;
+
+		private Alternation(List<Term> terms) {
+			this.terms = new ArrayList<Term>();
+			for(Term term : terms) {
+				if(term instanceof Alternation) {
+					this.terms.addAll(((Alternation) term).terms);
+				} else {
+					this.terms.add(term);
+				}
+			}
+		}
+
+		@Override
+		void compile(PathAutomaton.Builder builder, int from, int to) {
+			for(Term term : terms) {
+				int start = builder.addState();
+				int end = builder.addState();
+				builder.addEpsilonTransition(from, start);
+				term.compile(builder, start, end);
+				builder.addEpsilonTransition(end, to);
+			}
+		}
+
+		@Override
+		Term inverse() {
+			List<Term> inverse = new ArrayList<Term>();
+			for(Term term : terms) {
+				inverse.add(term.inverse());
+			}
+			return new Alternation(inverse);
+		}
+
+		@Override
+		void print(StringBuilder result, int precedence) {
+			if(precedence > ALTERNATION) {
+				result.append('(');
+			}
+			for(int i = 0; i < terms.size(); i++) {
+				if(i > 0) {
+					result.append(" | ");
+				}
+				terms.get(i).print(result, SEQUENCE);
+			}
+			if(precedence > ALTERNATION) {
+				result.append(')');
+			}
+		}
+	}
+
+	private static class Repetition extends Term {
+		private final Term term;
+		private final char operator;
+
+		private Repetition(Term term, char operator) {
+			this.term = term;
+			this.operator = operator;
+		}
+
+		@Override
+		void compile(PathAutomaton.Builder builder, int from, int to) {
+			// separate entry and exit states keep loops from leaking into neighboring terms
+			int start = builder.addState();
+			int end = builder.addState();
+			builder.addEpsilonTransition(from, start);
+			term.compile(builder, start, end);
+			builder.addEpsilonTransition(end, to);
+			if(operator != '?') {
+				builder.addEpsilonTransition(end, start);
+			}
+			if(operator != '+') {
+				builder.addEpsilonTransition(from, to);
+			}
+		}
+
+		@Override
+		Term inverse() {
+			return new Repetition(term.inverse(), operator);
+		}
+
+		@Override
+		void print(StringBuilder result, int precedence) {
+			term.print(result, ATOM);
+			result.append(operator);
+		}
+	}
+
+	/**
+	 * A recursive descent parser of the textual syntax
+	 */
+	private static class ExpressionParser {
+		private final String text;
+		private int position = 0;
+
+		private ExpressionParser(String text) {
+			this.text = text;
+		}
+
+		private Term parse() {
+			Term term = alternation();
+			skipWhitespace();
+			if(position < text.length()) {
+				throw error("Unexpected '" + text.charAt(position) + "'");
+			}
+			return term;
+		}
+
+		private Term alternation() {
+			List<Term> terms = new ArrayList<Term>();
+			terms.add(sequence());
+			while(accept('|')) {
+				terms.add(sequence());
+			}
+			return terms.size() == 1 ? terms.get(0) : new Alternation(terms);
+		}
+
+		private Term sequence() {
+			List<Term> terms = new ArrayList<Term>();
+			terms.add(repetition());
+			while(true) {
+				if(accept('/')) {
+					terms.add(repetition());
+				} else if(startsAtom()) {
+					terms.add(repetition());
+				} else {
+					break;
+				}
+			}
+			return terms.size() == 1 ? terms.get(0) : new Sequence(terms);
+		}
+
+		private Term repetition() {
+			Term term = atom();
+			while(true) {
+				skipWhitespace();
+				if(position < text.length() && "*+?".indexOf(text.charAt(position)) >= 0) {
+					term = new Repetition(term, text.charAt(position++));
+				} else {
+					return term;
+				}
+			}
+		}
+
+		private Term atom() {
+			skipWhitespace();
+			if(position >= text.length()) {
+				throw error("Expected an edge tag");
+			}
+			char c = text.charAt(position);
+			if(c == '^') {
+				position++;
+				return atom().inverse();
+			} else if(c == '(') {
+				position++;
+				Term term = alternation();
+				if(!accept(')')) {
+					throw error("Expected ')'");
+				}
+				return term;
+			} else if(c == '"') {
+				return new Symbol(quoted(), NodeDirection.OUT);
+			} else if(isTagCharacter(c)) {
+				int start = position;
+				while(position < text.length() && isTagCharacter(text.charAt(position))) {
+					position++;
+				}
+				String tag = text.substring(start, position);
+				return new Symbol(tag.equals("_") ? null : tag, NodeDirection.OUT);
+			}
+			throw error("Unexpected '" + c + "'");
+		}
+
+		private String quoted() {
+			StringBuilder tag = new StringBuilder();
+			position++;
+			while(position < text.length()) {
+				char c = text.charAt(position++);
+				if(c == '"') {
+					return tag.toString();
+				} else if(c == '\\' && position < text.length()) {
+					tag.append(text.charAt(position++));
+				} else {
+					tag.append(c);
+				}
+			}
+			throw error("Unterminated tag");
+		}
+
+		private boolean startsAtom() {
+			skipWhitespace();
+			if(position >= text.length()) {
+				return false;
+			}
+			char c = text.charAt(position);
+			return c == '^' || c == '(' || c == '"' || isTagCharacter(c);
+		}
+
+		private boolean accept(char c) {
+			skipWhitespace();
+			if(position < text.length() && text.charAt(position) == c) {
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void skipWhitespace() {
+			while(position < text.length() && Character.isWhitespace(text.charAt(position))) {
+				position++;
+			}
+		}
+
+		private IllegalArgumentException error(String message) {
+			return new IllegalArgumentException(message + " at position " + position + " of path expression: " + text);
+		}
+	}
+
+}
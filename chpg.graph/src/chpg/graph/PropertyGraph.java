@@ -98,7 +98,14 @@ public class PropertyGraph extends AbstractGraph {
 		return schema;
 	}
 	
-	private Set<String> getInheritedTags(String... tags) {
+	/**
+	 * Returns the given tags together with all of the tags they imply in the tag
+	 * hierarchy defined by the graph schema
+	 * 
+	 * @param tags
+	 * @return
+	 */
+	public Set<String> getInheritedTags(String... tags) {
 		Set<String> allTags = new HashSet<String>();
 		for(String explicitTag : tags) {
 			allTags.add(explicitTag);
@@ -115,6 +122,12 @@ public class PropertyGraph extends AbstractGraph {
 		return allTags;
 	}
 	
+	@Override
+	protected Set<String> getImpliedTags(String tag) {
+		// consistent with edgesTaggedWithAny
+		return getInheritedTags(tag);
+	}
+	
 	@Override
 	public Graph empty() {
 		return new PropertyGraph(schema);
@@ -129,7 +142,12 @@ public class PropertyGraph extends AbstractGraph {
 	public GraphElementSet<Node> nodesTaggedWithAny(String... tags){
 		Set<String> allTags = getInheritedTags(tags);
 		GraphElementSet<Node> result = new GraphElementHashSet<Node>();
+		ExecutionStatistics.scannedNodes(nodes().size());
+		ExecutionContext context = ExecutionContext.current();
 		for(Node node : nodes()){
+			if(context != null) {
+				context.check();
+			}
 			for(String tag : allTags){
 				if(node.tags().contains(tag)){
 					result.add(node);
@@ -144,7 +162,12 @@ public class PropertyGraph extends AbstractGraph {
 	public GraphElementSet<Node> nodesTaggedWithAll(String... tags){
 		Set<String> allTags = getInheritedTags(tags);
 		GraphElementSet<Node> result = new GraphElementHashSet<Node>();
+		ExecutionStatistics.scannedNodes(nodes().size());
+		ExecutionContext context = ExecutionContext.current();
 		for(Node node : nodes()){
+			if(context != null) {
+				context.check();
+			}
 			boolean add = true;
 			for(String tag : allTags){
 				if(!node.tags().contains(tag)){
@@ -168,7 +191,12 @@ public class PropertyGraph extends AbstractGraph {
 	public GraphElementSet<Edge> edgesTaggedWithAny(String... tags){
 		Set<String> allTags = getInheritedTags(tags);
 		GraphElementSet<Edge> result = new GraphElementHashSet<Edge>();
+		ExecutionStatistics.scannedEdges(edges.size());
+		ExecutionContext context = ExecutionContext.current();
 		for(Edge edge : edges){
+			if(context != null) {
+				context.check();
+			}
 			for(String tag : allTags){
 				if(edge.tags().contains(tag)){
 					result.add(edge);
@@ -183,7 +211,12 @@ public class PropertyGraph extends AbstractGraph {
 	public GraphElementSet<Edge> edgesTaggedWithAll(String... tags){
 		Set<String> allTags = getInheritedTags(tags);
 		GraphElementSet<Edge> result = new GraphElementHashSet<Edge>();
+		ExecutionStatistics.scannedEdges(edges.size());
+		ExecutionContext context = ExecutionContext.current();
 		for(Edge edge : edges){
+			if(context != null) {
+				context.check();
+			}
 			boolean add = true;
 			for(String tag : allTags){
 				if(!edge.tags().contains(tag)){
@@ -0,0 +1,350 @@
+package chpg.graph.index;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import chpg.graph.AbstractGraph;
+import chpg.graph.Edge;
+import chpg.graph.ExecutionContext;
+import chpg.graph.ExecutionStatistics;
+import chpg.graph.Graph;
+import chpg.graph.GraphElementSet;
+import chpg.graph.Node;
+import chpg.graph.Node.NodeDirection;
+
+/**
+ * A compact, read-only adjacency structure over a snapshot of a graph.
+ *
+ * Nodes and edges are assigned dense integer ordinals and the incoming and
+ * outgoing edges of each node are stored in compressed sparse row (CSR) arrays,
+ * so that neighbor lookups are O(degree) instead of a scan over all edges of
+ * the graph. The index records the modification counts of the graph's node and
+ * edge sets at construction time and can report if it has become stale.
+ */
+public class AdjacencyIndex {
+
+	private final GraphElementSet<Node> indexedNodes;
+	private final GraphElementSet<Edge> indexedEdges;
+	private final long nodeModifications;
+	private final long edgeModifications;
+
+	private final Node[] nodes;
+	private final Edge[] edges;
+	private final Map<Node,Integer> nodeOrdinals;
+	private volatile Map<Edge,Integer> edgeOrdinals = null;
+
+	private final int[] edgeFrom;
+	private final int[] edgeTo;
+
+	private final int[] outOffsets;
+	private final int[] outEdges;
+	private final int[] inOffsets;
+	private final int[] inEdges;
+
+	/**
+	 * Builds an adjacency index for the current nodes and edges of the given graph.
+	 *
+	 * Nodes that are only referenced as edge endpoints are indexed as well so that
+	 * traversals over the index agree with traversals over the graph's edge set.
+	 *
+	 * @param graph
+	 */
+	public AdjacencyIndex(Graph graph) {
+		this.indexedNodes = graph.nodes();
+		this.indexedEdges = graph.edges();
+		this.nodeModifications = indexedNodes.getModificationCount();
+		this.edgeModifications = indexedEdges.getModificationCount();
+
+		this.nodeOrdinals = new HashMap<Node,Integer>();
+		Node[] nodes = new Node[indexedNodes.size()];
+		int nodeCount = 0;
+		for(Node node : indexedNodes) {
+			nodeOrdinals.put(node, nodeCount);
+			nodes[nodeCount++] = node;
+		}
+
+		int edgeCount = indexedEdges.size();
+		this.edges = new Edge[edgeCount];
+		this.edgeFrom = new int[edgeCount];
+		this.edgeTo = new int[edgeCount];
+		int edge = 0;
+		ExecutionContext context = ExecutionContext.current();
+		for(Edge e : indexedEdges) {
+			if(context != null) {
+				context.check();
+			}
+			edges[edge] = e;
+			Integer from = nodeOrdinals.get(e.from());
+			if(from == null) {
+				from = nodeCount;
+				nodes = ensureCapacity(nodes, ++nodeCount);
+				nodes[from] = e.from();
+				nodeOrdinals.put(e.from(), from);
+			}
+			Integer to = nodeOrdinals.get(e.to());
+			if(to == null) {
+				to = nodeCount;
+				nodes = ensureCapacity(nodes, ++nodeCount);
+				nodes[to] = e.to();
+				nodeOrdinals.put(e.to(), to);
+			}
+			edgeFrom[edge] = from;
+			edgeTo[edge] = to;
+			edge++;
+		}
+		ExecutionStatistics.scannedNodes(indexedNodes.size());
+		ExecutionStatistics.scannedEdges(edgeCount);
+		if(nodes.length != nodeCount) {
+			Node[] trimmed = new Node[nodeCount];
+			System.arraycopy(nodes, 0, trimmed, 0, nodeCount);
+			nodes = trimmed;
+		}
+		this.nodes = nodes;
+
+		this.outOffsets = new int[nodeCount + 1];
+		this.inOffsets = new int[nodeCount + 1];
+		this.outEdges = new int[edgeCount];
+		this.inEdges = new int[edgeCount];
+		buildRows(edgeFrom, outOffsets, outEdges);
+		buildRows(edgeTo, inOffsets, inEdges);
+	}
+
+	/**
+	 * Returns the adjacency index of the given graph, reusing the cached index of
+	 * the graph when one is available
+	 *
+	 * @param graph
+	 * @return
+	 */
+	public static AdjacencyIndex of(Graph graph) {
+		if(graph instanceof AbstractGraph) {
+			return ((AbstractGraph) graph).getAdjacencyIndex();
+		}
+		ExecutionStatistics.usedIndex("adjacency index (built)");
+		return new AdjacencyIndex(graph);
+	}
+
+	private static Node[] ensureCapacity(Node[] nodes, int capacity) {
+		if(nodes.length >= capacity) {
+			return nodes;
+		}
+		Node[] result = new Node[Math.max(capacity, nodes.length * 2)];
+		System.arraycopy(nodes, 0, result, 0, nodes.length);
+		return result;
+	}
+
+	/**
+	 * Counting sort of the edge ordinals into rows keyed by the given endpoint
+	 */
+	private static void buildRows(int[] endpoints, int[] offsets, int[] rows) {
+		for(int edge = 0; edge < endpoints.length; edge++) {
+			offsets[endpoints[edge] + 1]++;
+		}
+		for(int node = 0; node < offsets.length - 1; node++) {
+			offsets[node + 1] += offsets[node];
+		}
+		int[] next = new int[offsets.length - 1];
+		System.arraycopy(offsets, 0, next, 0, next.length);
+		for(int edge = 0; edge < endpoints.length; edge++) {
+			rows[next[endpoints[edge]]++] = edge;
+		}
+	}
+
+	/**
+	 * Returns true if the given graph's node and edge sets have not been modified
+	 * since this index was built from them
+	 *
+	 * @param graph
+	 * @return
+	 */
+	public boolean isCurrent(Graph graph) {
+		return graph.nodes() == indexedNodes
+				&& graph.edges() == indexedEdges
+				&& indexedNodes.getModificationCount() == nodeModifications
+				&& indexedEdges.getModificationCount() == edgeModifications;
+	}
+
+	/**
+	 * Returns the number of indexed nodes
+	 * @return
+	 */
+	public int nodeCount() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns the number of indexed edges
+	 * @return
+	 */
+	public int edgeCount() {
+		return edges.length;
+	}
+
+	/**
+	 * Returns the node with the given ordinal
+	 * @param node
+	 * @return
+	 */
+	public Node getNode(int node) {
+		return nodes[node];
+	}
+
+	/**
+	 * Returns the edge with the given ordinal
+	 * @param edge
+	 * @return
+	 */
+	public Edge getEdge(int edge) {
+		return edges[edge];
+	}
+
+	/**
+	 * Returns the ordinal of the given node or -1 if the node is not indexed
+	 * @param node
+	 * @return
+	 */
+	public int getNodeOrdinal(Node node) {
+		Integer ordinal = nodeOrdinals.get(node);
+		return ordinal == null ? -1 : ordinal;
+	}
+
+	/**
+	 * Returns the ordinals of the given nodes that are indexed, nodes that are not
+	 * indexed are skipped
+	 *
+	 * @param nodes
+	 * @return
+	 */
+	public int[] getNodeOrdinals(Iterable<Node> nodes) {
+		int[] result = new int[16];
+		int size = 0;
+		for(Node node : nodes) {
+			Integer ordinal = nodeOrdinals.get(node);
+			if(ordinal != null) {
+				if(size == result.length) {
+					int[] grown = new int[size * 2];
+					System.arraycopy(result, 0, grown, 0, size);
+					result = grown;
+				}
+				result[size++] = ordinal;
+			}
+		}
+		int[] trimmed = new int[size];
+		System.arraycopy(result, 0, trimmed, 0, size);
+		return trimmed;
+	}
+
+	/**
+	 * Returns the ordinal of the given edge or -1 if the edge is not indexed
+	 * @param edge
+	 * @return
+	 */
+	public int getEdgeOrdinal(Edge edge) {
+		Map<Edge,Integer> ordinals = edgeOrdinals;
+		if(ordinals == null) {
+			// edge lookups are comparatively rare, so the map is built on first use
+			ordinals = new HashMap<Edge,Integer>();
+			for(int i = 0; i < edges.length; i++) {
+				ordinals.put(edges[i], i);
+			}
+			edgeOrdinals = ordinals;
+		}
+		Integer ordinal = ordinals.get(edge);
+		return ordinal == null ? -1 : ordinal;
+	}
+
+	/**
+	 * Returns the ordinal of the from node of the given edge ordinal
+	 * @param edge
+	 * @return
+	 */
+	public int from(int edge) {
+		return edgeFrom[edge];
+	}
+
+	/**
+	 * Returns the ordinal of the to node of the given edge ordinal
+	 * @param edge
+	 * @return
+	 */
+	public int to(int edge) {
+		return edgeTo[edge];
+	}
+
+	/**
+	 * Returns the node ordinal at the other end of the given edge when the edge is
+	 * traversed in the given direction (the to node for OUT, the from node for IN)
+	 *
+	 * @param edge
+	 * @param direction
+	 * @return
+	 */
+	public int opposite(int edge, NodeDirection direction) {
+		return direction == NodeDirection.OUT ? edgeTo[edge] : edgeFrom[edge];
+	}
+
+	/**
+	 * Returns the number of outgoing edges of the given node ordinal
+	 * @param node
+	 * @return
+	 */
+	public int outDegree(int node) {
+		return outOffsets[node + 1] - outOffsets[node];
+	}
+
+	/**
+	 * Returns the i-th outgoing edge ordinal of the given node ordinal
+	 * @param node
+	 * @param i
+	 * @return
+	 */
+	public int outEdge(int node, int i) {
+		return outEdges[outOffsets[node] + i];
+	}
+
+	/**
+	 * Returns the number of incoming edges of the given node ordinal
+	 * @param node
+	 * @return
+	 */
+	public int inDegree(int node) {
+		return inOffsets[node + 1] - inOffsets[node];
+	}
+
+	/**
+	 * Returns the i-th incoming edge ordinal of the given node ordinal
+	 * @param node
+	 * @param i
+	 * @return
+	 */
+	public int inEdge(int node, int i) {
+		return inEdges[inOffsets[node] + i];
+	}
+
+	/**
+	 * Returns the number of edges of the given node ordinal in the given direction
+	 * @param node
+	 * @param direction
+	 * @return
+	 */
+	public int degree(int node, NodeDirection direction) {
+		return direction == NodeDirection.OUT ? outDegree(node) : inDegree(node);
+	}
+
+	/**
+	 * Returns the i-th edge ordinal of the given node ordinal in the given direction
+	 * @param node
+	 * @param direction
+	 * @param i
+	 * @return
+	 */
+	public int edge(int node, NodeDirection direction, int i) {
+		return direction == NodeDirection.OUT ? outEdge(node, i) : inEdge(node, i);
+	}
+
+	@Override
+	public String toString() {
+		return "AdjacencyIndex [nodes=" + nodes.length + ", edges=" + edges.length + "]";
+	}
+
+}
@@ -0,0 +1,217 @@
+package chpg.graph.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import chpg.graph.ExecutionContext;
+import chpg.graph.GraphElement;
+import chpg.graph.GraphElementSet;
+
+/**
+ * An index of the values of one attribute over a snapshot of a set of graph
+ * elements.
+ *
+ * Elements are hashed by value for equality lookups, and the elements with
+ * numeric and string values are additionally sorted by value, so that ranges
+ * and string prefixes are answered by binary search. Like AdjacencyIndex, the
+ * index records the modification count of the indexed set and can report if
+ * it has become stale. It also records the property modification count of
+ * graph elements (see GraphElement.getPropertyModificationCount), so the index
+ * becomes stale once any attribute value changes. Lookups return candidates
+ * that must still be tested (see AttributePredicate.candidates).
+ *
+ * @param <E>
+ */
+public class AttributeIndex<E extends GraphElement> {
+
+	private final GraphElementSet<E> indexedElements;
+	private final long modifications;
+	private final long propertyModifications;
+	private final String attribute;
+
+	private final List<E> elements;
+	private final Map<Object,List<E>> elementsByValue;
+
+	// elements with numeric and string values in ascending order of their values
+	private final double[] numericValues;
+	private final List<E> numericElements;
+	private final String[] stringValues;
+	private final List<E> stringElements;
+
+	/**
+	 * Builds an index of the given attribute for the current elements of the given set
+	 * @param elements
+	 * @param attribute
+	 */
+	public AttributeIndex(GraphElementSet<E> elements, String attribute) {
+		if(attribute == null) {
+			throw new IllegalArgumentException("Attribute must be non-null");
+		}
+		this.indexedElements = elements;
+		this.modifications = elements.getModificationCount();
+		this.propertyModifications = GraphElement.getPropertyModificationCount();
+		this.attribute = attribute;
+		this.elementsByValue = new HashMap<Object,List<E>>();
+		List<E> indexed = new ArrayList<E>();
+		List<E> numeric = new ArrayList<E>();
+		List<E> strings = new ArrayList<E>();
+		ExecutionContext context = ExecutionContext.current();
+		for(E element : elements) {
+			if(context != null) {
+				context.check();
+			}
+			if(!element.hasAttr(attribute)) {
+				continue;
+			}
+			indexed.add(element);
+			Object value = element.getAttr(attribute);
+			if(value == null) {
+				continue;
+			}
+			elementsByValue.computeIfAbsent(value, key -> new ArrayList<E>(1)).add(element);
+			if(value instanceof Number && !Double.isNaN(((Number) value).doubleValue())) {
+				numeric.add(element);
+			} else if(value instanceof String) {
+				strings.add(element);
+			}
+		}
+		this.elements = Collections.unmodifiableList(indexed);
+
+		Collections.sort(numeric, Comparator.comparingDouble(element -> ((Number) element.getAttr(attribute)).doubleValue()));
+		this.numericValues = new double[numeric.size()];
+		for(int i = 0; i < numericValues.length; i++) {
+			numericValues[i] = ((Number) numeric.get(i).getAttr(attribute)).doubleValue();
+		}
+		this.numericElements = numeric;
+
+		Collections.sort(strings, Comparator.comparing(element -> (String) element.getAttr(attribute)));
+		this.stringValues = new String[strings.size()];
+		for(int i = 0; i < stringValues.length; i++) {
+			stringValues[i] = (String) strings.get(i).getAttr(attribute);
+		}
+		this.stringElements = strings;
+	}
+
+	/**
+	 * Returns true if neither the given set nor the properties of any graph
+	 * element have been modified since the index was built
+	 * @param elements
+	 * @return
+	 */
+	public boolean isCurrent(GraphElementSet<E> elements) {
+		return indexedElements == elements && elements.getModificationCount() == modifications
+				&& GraphElement.getPropertyModificationCount() == propertyModifications;
+	}
+
+	/**
+	 * Returns the indexed attribute
+	 * @return
+	 */
+	public String getAttribute() {
+		return attribute;
+	}
+
+	/**
+	 * Returns the elements that have the attribute defined
+	 * @return
+	 */
+	public List<E> elements() {
+		return elements;
+	}
+
+	/**
+	 * Returns the elements whose value equals the given value
+	 * @param value
+	 * @return
+	 */
+	public List<E> get(Object value) {
+		List<E> result = value == null ? null : elementsByValue.get(value);
+		return result == null ? Collections.<E>emptyList() : Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Returns the elements with a numeric value between the given bounds, inclusive
+	 * @param min
+	 * @param max
+	 * @return
+	 */
+	public List<E> range(double min, double max) {
+		int from = lowerBound(numericValues, min);
+		int to = from;
+		while(to < numericValues.length && numericValues[to] <= max) {
+			to++;
+		}
+		return numericElements.subList(from, to);
+	}
+
+	/**
+	 * Returns the elements with a string value between the given bounds,
+	 * inclusive, a null bound leaves the range open on its side
+	 *
+	 * @param min
+	 * @param max
+	 * @return
+	 */
+	public List<E> range(String min, String max) {
+		int from = min == null ? 0 : lowerBound(stringValues, min);
+		int to = from;
+		while(to < stringValues.length && (max == null || stringValues[to].compareTo(max) <= 0)) {
+			to++;
+		}
+		return stringElements.subList(from, to);
+	}
+
+	/**
+	 * Returns the elements with a string value that starts with the given prefix
+	 * @param prefix
+	 * @return
+	 */
+	public List<E> prefix(String prefix) {
+		int from = lowerBound(stringValues, prefix);
+		int to = from;
+		while(to < stringValues.length && stringValues[to].startsWith(prefix)) {
+			to++;
+		}
+		return stringElements.subList(from, to);
+	}
+
+	/**
+	 * Returns the first position of a value that is not less than the given value
+	 */
+	private static int lowerBound(double[] values, double value) {
+		int low = 0;
+		int high = values.length;
+		while(low < high) {
+			int middle = (low + high) >>> 1;
+			if(values[middle] < value) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	private static int lowerBound(String[] values, String value) {
+		int position = Arrays.binarySearch(values, value);
+		if(position < 0) {
+			return -position - 1;
+		}
+		// the first of equal values
+		while(position > 0 && values[position - 1].equals(value)) {
+			position--;
+		}
+		return position;
+	}
+
+	@Override
+	public String toString() {
+		return "AttributeIndex [attribute=" + attribute + ", elements=" + elements.size() + "]";
+	}
+
+}
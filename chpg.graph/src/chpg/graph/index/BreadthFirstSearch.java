@@ -0,0 +1,416 @@
+package chpg.graph.index;
+
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Predicate;
+
+import chpg.graph.Edge;
+import chpg.graph.ExecutionContext;
+import chpg.graph.ExecutionStatistics;
+import chpg.graph.Node;
+import chpg.graph.Node.NodeDirection;
+
+/**
+ * Breadth first reachability kernels over an adjacency index.
+ *
+ * The direction-optimizing search follows Beamer, Asanovic and Patterson,
+ * "Direction-Optimizing Breadth-First Search" (SC 2012). A conventional
+ * top-down step examines every edge leaving the frontier, which wastes work
+ * once most of those edges lead to nodes that have already been visited. A
+ * bottom-up step instead lets each unvisited node look for any neighbor on the
+ * frontier along the opposite direction and stop at the first hit. The search
+ * switches to bottom-up steps when the edges leaving the frontier outnumber the
+ * unexplored edges by a factor of ALPHA and switches back once the frontier has
+ * shrunk below 1/BETA of the nodes.
+ */
+public class BreadthFirstSearch {
+
+	/**
+	 * Top-down to bottom-up switching threshold (from the reference implementation)
+	 */
+	public static final int ALPHA = 14;
+
+	/**
+	 * Bottom-up to top-down switching threshold (from the reference implementation)
+	 */
+	public static final int BETA = 24;
+
+	private BreadthFirstSearch() {}
+
+	/**
+	 * Returns the set of node ordinals reachable from the given source ordinals
+	 * (including the sources) using only top-down frontier expansion
+	 *
+	 * @param index
+	 * @param sources
+	 * @param direction OUT for a forward traversal, IN for a reverse traversal
+	 * @return
+	 */
+	public static BitSet topDown(AdjacencyIndex index, int[] sources, NodeDirection direction) {
+		BitSet visited = new BitSet(index.nodeCount());
+		int[] frontier = new int[index.nodeCount()];
+		int size = 0;
+		for(int source : sources) {
+			if(!visited.get(source)) {
+				visited.set(source);
+				frontier[size++] = source;
+			}
+		}
+		// the visited nodes are appended to a single queue, each level is a window of it
+		int head = 0;
+		long scanned = 0;
+		ExecutionContext context = ExecutionContext.current();
+		while(head < size) {
+			if(context != null) {
+				context.checkResultSize(size);
+			}
+			int node = frontier[head++];
+			int degree = index.degree(node, direction);
+			for(int i = 0; i < degree; i++) {
+				int successor = index.opposite(index.edge(node, direction, i), direction);
+				if(!visited.get(successor)) {
+					visited.set(successor);
+					frontier[size++] = successor;
+				}
+			}
+			scanned += degree;
+		}
+		ExecutionStatistics.scannedEdges(scanned);
+		return visited;
+	}
+
+	/**
+	 * Returns the set of node ordinals reachable from the given source ordinals
+	 * (including the sources) using a direction-optimizing breadth first search
+	 *
+	 * @param index
+	 * @param sources
+	 * @param direction OUT for a forward traversal, IN for a reverse traversal
+	 * @return
+	 */
+	public static BitSet directionOptimizing(AdjacencyIndex index, int[] sources, NodeDirection direction) {
+		NodeDirection opposite = direction == NodeDirection.OUT ? NodeDirection.IN : NodeDirection.OUT;
+		int nodeCount = index.nodeCount();
+		BitSet visited = new BitSet(nodeCount);
+		int[] queue = new int[nodeCount];
+		int[] next = new int[nodeCount];
+		int size = 0;
+		long scoutCount = 0;
+		for(int source : sources) {
+			if(!visited.get(source)) {
+				visited.set(source);
+				queue[size++] = source;
+				scoutCount += index.degree(source, direction);
+			}
+		}
+		long edgesToCheck = index.edgeCount();
+		long scanned = 0;
+		ExecutionContext context = ExecutionContext.current();
+		while(size > 0) {
+			if(scoutCount > edgesToCheck / ALPHA) {
+				BitSet frontier = new BitSet(nodeCount);
+				for(int i = 0; i < size; i++) {
+					frontier.set(queue[i]);
+				}
+				int awakeCount = size;
+				int previousAwakeCount;
+				do {
+					previousAwakeCount = awakeCount;
+					BitSet awake = new BitSet(nodeCount);
+					awakeCount = bottomUpStep(index, opposite, visited, frontier, awake, context);
+					frontier = awake;
+				} while(awakeCount > 0 && (awakeCount >= previousAwakeCount || awakeCount > nodeCount / BETA));
+				size = 0;
+				for(int node = frontier.nextSetBit(0); node >= 0; node = frontier.nextSetBit(node + 1)) {
+					queue[size++] = node;
+				}
+				scoutCount = 1;
+			} else {
+				edgesToCheck -= scoutCount;
+				scoutCount = 0;
+				int nextSize = 0;
+				for(int i = 0; i < size; i++) {
+					if(context != null) {
+						context.check();
+					}
+					int node = queue[i];
+					int degree = index.degree(node, direction);
+					for(int j = 0; j < degree; j++) {
+						int successor = index.opposite(index.edge(node, direction, j), direction);
+						if(!visited.get(successor)) {
+							visited.set(successor);
+							next[nextSize++] = successor;
+							scoutCount += index.degree(successor, direction);
+						}
+					}
+					scanned += degree;
+				}
+				int[] swap = queue;
+				queue = next;
+				next = swap;
+				size = nextSize;
+			}
+		}
+		ExecutionStatistics.scannedEdges(scanned);
+		return visited;
+	}
+
+	/**
+	 * Returns the set of node ordinals reachable from the given source ordinals
+	 * (including the sources) along paths of at most the given number of edges.
+	 * 
+	 * Nodes that satisfy the stop predicate are reached but not expanded, and edges
+	 * that satisfy the exclusion predicate are not traversed. Source nodes are always
+	 * expanded. The search terminates as soon as the depth bound is hit or no node
+	 * remains to be expanded, so the cost is proportional to the explored region.
+	 * 
+	 * @param index
+	 * @param sources
+	 * @param direction OUT for a forward traversal, IN for a reverse traversal
+	 * @param maxDepth the maximum number of edges from a source, negative values denote an unbounded depth
+	 * @param stopAt nodes at which the traversal stops, may be null
+	 * @param excluded edges that may not be traversed, may be null
+	 * @param traversed receives the ordinals of the traversed edges
+	 * @return
+	 */
+	public static BitSet bounded(AdjacencyIndex index, int[] sources, NodeDirection direction, int maxDepth,
+			Predicate<? super Node> stopAt, Predicate<? super Edge> excluded, BitSet traversed) {
+		BitSet visited = new BitSet(index.nodeCount());
+		int[] queue = new int[index.nodeCount()];
+		int size = 0;
+		for(int source : sources) {
+			if(!visited.get(source)) {
+				visited.set(source);
+				queue[size++] = source;
+			}
+		}
+		int head = 0;
+		int depth = 0;
+		long scanned = 0;
+		ExecutionContext context = ExecutionContext.current();
+		while(head < size && (maxDepth < 0 || depth < maxDepth)) {
+			int levelEnd = size;
+			while(head < levelEnd) {
+				if(context != null) {
+					context.checkResultSize(size);
+				}
+				int node = queue[head++];
+				if(depth > 0 && stopAt != null && stopAt.test(index.getNode(node))) {
+					continue;
+				}
+				int degree = index.degree(node, direction);
+				scanned += degree;
+				for(int i = 0; i < degree; i++) {
+					int edge = index.edge(node, direction, i);
+					if(excluded != null && excluded.test(index.getEdge(edge))) {
+						continue;
+					}
+					traversed.set(edge);
+					int successor = index.opposite(edge, direction);
+					if(!visited.get(successor)) {
+						visited.set(successor);
+						queue[size++] = successor;
+					}
+				}
+			}
+			depth++;
+		}
+		ExecutionStatistics.scannedEdges(scanned);
+		return visited;
+	}
+
+	/**
+	 * Returns an iterator over the nodes reached by a bounded traversal (see
+	 * bounded), starting with the source nodes and then in the order the nodes are
+	 * discovered. The traversal only advances as far as needed to produce the next
+	 * node.
+	 * 
+	 * @param index
+	 * @param sources
+	 * @param direction OUT for a forward traversal, IN for a reverse traversal
+	 * @param maxDepth the maximum number of edges from a source, negative values denote an unbounded depth
+	 * @param stopAt nodes at which the traversal stops, may be null
+	 * @param excluded edges that may not be traversed, may be null
+	 * @return
+	 */
+	public static Iterator<Node> nodeIterator(AdjacencyIndex index, int[] sources, NodeDirection direction, int maxDepth,
+			Predicate<? super Node> stopAt, Predicate<? super Edge> excluded) {
+		final LazySearch search = new LazySearch(index, sources, direction, maxDepth, stopAt, excluded);
+		return new Iterator<Node>() {
+			private int emitted = 0;
+
+			@Override
+			public boolean hasNext() {
+				while(emitted >= search.size) {
+					if(search.nextEdge() < 0) {
+						return false;
+					}
+				}
+				return true;
+			}
+
+			@Override
+			public Node next() {
+				if(!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return search.index.getNode(search.queue[emitted++]);
+			}
+		};
+	}
+
+	/**
+	 * Returns an iterator over the edges traversed by a bounded traversal (see
+	 * bounded) in the order they are traversed. The traversal only advances as far
+	 * as needed to produce the next edge.
+	 * 
+	 * @param index
+	 * @param sources
+	 * @param direction OUT for a forward traversal, IN for a reverse traversal
+	 * @param maxDepth the maximum number of edges from a source, negative values denote an unbounded depth
+	 * @param stopAt nodes at which the traversal stops, may be null
+	 * @param excluded edges that may not be traversed, may be null
+	 * @return
+	 */
+	public static Iterator<Edge> edgeIterator(AdjacencyIndex index, int[] sources, NodeDirection direction, int maxDepth,
+			Predicate<? super Node> stopAt, Predicate<? super Edge> excluded) {
+		final LazySearch search = new LazySearch(index, sources, direction, maxDepth, stopAt, excluded);
+		return new Iterator<Edge>() {
+			private int next = -2;
+
+			@Override
+			public boolean hasNext() {
+				if(next == -2) {
+					next = search.nextEdge();
+				}
+				return next >= 0;
+			}
+
+			@Override
+			public Edge next() {
+				if(!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Edge edge = search.index.getEdge(next);
+				next = -2;
+				return edge;
+			}
+		};
+	}
+
+	/**
+	 * The state of a bounded breadth first search that is advanced one traversed
+	 * edge at a time
+	 */
+	private static class LazySearch {
+		private final AdjacencyIndex index;
+		private final NodeDirection direction;
+		private final int maxDepth;
+		private final Predicate<? super Node> stopAt;
+		private final Predicate<? super Edge> excluded;
+		private final ExecutionContext context;
+
+		private final BitSet visited;
+		private final int[] queue;
+		private int size = 0;
+		private int head = 0;
+		private int levelEnd;
+		private int depth = 0;
+
+		private int current = -1;
+		private int currentDegree = 0;
+		private int cursor = 0;
+
+		private LazySearch(AdjacencyIndex index, int[] sources, NodeDirection direction, int maxDepth,
+				Predicate<? super Node> stopAt, Predicate<? super Edge> excluded) {
+			this.index = index;
+			this.direction = direction;
+			this.maxDepth = maxDepth;
+			this.stopAt = stopAt;
+			this.excluded = excluded;
+			this.context = ExecutionContext.current();
+			this.visited = new BitSet(index.nodeCount());
+			this.queue = new int[index.nodeCount()];
+			for(int source : sources) {
+				if(!visited.get(source)) {
+					visited.set(source);
+					queue[size++] = source;
+				}
+			}
+			this.levelEnd = size;
+		}
+
+		/**
+		 * Traverses the next edge, queuing its node if it was not visited yet, and
+		 * returns its ordinal or -1 if the traversal is complete
+		 */
+		private int nextEdge() {
+			while(true) {
+				if(current >= 0 && cursor < currentDegree) {
+					int edge = index.edge(current, direction, cursor++);
+					if(excluded != null && excluded.test(index.getEdge(edge))) {
+						continue;
+					}
+					int successor = index.opposite(edge, direction);
+					if(!visited.get(successor)) {
+						visited.set(successor);
+						queue[size++] = successor;
+					}
+					return edge;
+				}
+				current = -1;
+				if(head >= size) {
+					return -1;
+				}
+				if(head == levelEnd) {
+					depth++;
+					levelEnd = size;
+				}
+				if(maxDepth >= 0 && depth >= maxDepth) {
+					return -1;
+				}
+				if(context != null) {
+					context.checkResultSize(size);
+				}
+				int node = queue[head++];
+				if(depth > 0 && stopAt != null && stopAt.test(index.getNode(node))) {
+					continue;
+				}
+				current = node;
+				currentDegree = index.degree(node, direction);
+				cursor = 0;
+			}
+		}
+	}
+
+	/**
+	 * Visits every unvisited node that has a neighbor (along the given opposite
+	 * direction) in the frontier and returns the number of newly visited nodes
+	 */
+	private static int bottomUpStep(AdjacencyIndex index, NodeDirection opposite, BitSet visited, BitSet frontier, BitSet awake, ExecutionContext context) {
+		int awakeCount = 0;
+		int nodeCount = index.nodeCount();
+		long scanned = 0;
+		for(int node = visited.nextClearBit(0); node < nodeCount; node = visited.nextClearBit(node + 1)) {
+			if(context != null) {
+				context.check();
+			}
+			int degree = index.degree(node, opposite);
+			for(int i = 0; i < degree; i++) {
+				scanned++;
+				int parent = index.opposite(index.edge(node, opposite, i), opposite);
+				if(frontier.get(parent)) {
+					awake.set(node);
+					awakeCount++;
+					break;
+				}
+			}
+		}
+		ExecutionStatistics.scannedEdges(scanned);
+		// nodes are marked after the sweep so that a step only advances a single level
+		visited.or(awake);
+		return awakeCount;
+	}
+
+}
@@ -0,0 +1,169 @@
+package chpg.graph.index;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A binary min-heap of the integers 0 to capacity - 1, ordered by a double key
+ * per integer. The position of each integer in the heap is kept in an array
+ * indexed by the integer, so an integer can be found in the heap and its key
+ * decreased in O(log n) without boxing or searching. Integers that have been
+ * removed may be inserted again.
+ */
+public class IndexedHeap {
+
+	private final int[] heap;
+	// position of each integer in the heap, -1 if it is not in the heap
+	private final int[] positions;
+	private final double[] keys;
+	private int size = 0;
+
+	/**
+	 * Creates an empty heap for the integers 0 to capacity - 1
+	 * @param capacity
+	 */
+	public IndexedHeap(int capacity) {
+		if(capacity < 0) {
+			throw new IllegalArgumentException("Capacity must be non-negative");
+		}
+		this.heap = new int[capacity];
+		this.positions = new int[capacity];
+		this.keys = new double[capacity];
+		Arrays.fill(positions, -1);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns true if the given integer is in the heap
+	 * @param element
+	 * @return
+	 */
+	public boolean contains(int element) {
+		return positions[element] >= 0;
+	}
+
+	/**
+	 * Returns the key of the given integer, which must be in the heap
+	 * @param element
+	 * @return
+	 */
+	public double getKey(int element) {
+		if(positions[element] < 0) {
+			throw new NoSuchElementException(element + " is not in the heap");
+		}
+		return keys[element];
+	}
+
+	/**
+	 * Inserts the given integer with the given key, or decreases its key if it is
+	 * already in the heap with a larger key. Returns true if the heap changed.
+	 * @param element
+	 * @param key
+	 * @return
+	 */
+	public boolean insertOrDecrease(int element, double key) {
+		int position = positions[element];
+		if(position < 0) {
+			position = size++;
+			heap[position] = element;
+			positions[element] = position;
+		} else if(key >= keys[element]) {
+			return false;
+		}
+		keys[element] = key;
+		siftUp(position);
+		return true;
+	}
+
+	/**
+	 * Returns the integer with the smallest key without removing it
+	 * @return
+	 */
+	public int peek() {
+		if(size == 0) {
+			throw new NoSuchElementException();
+		}
+		return heap[0];
+	}
+
+	/**
+	 * Returns the smallest key in the heap
+	 * @return
+	 */
+	public double peekKey() {
+		return keys[peek()];
+	}
+
+	/**
+	 * Removes and returns the integer with the smallest key
+	 * @return
+	 */
+	public int poll() {
+		int element = peek();
+		positions[element] = -1;
+		size--;
+		if(size > 0) {
+			heap[0] = heap[size];
+			positions[heap[0]] = 0;
+			siftDown(0);
+		}
+		return element;
+	}
+
+	/**
+	 * Removes all integers from the heap
+	 */
+	public void clear() {
+		for(int i = 0; i < size; i++) {
+			positions[heap[i]] = -1;
+		}
+		size = 0;
+	}
+
+	private void siftUp(int position) {
+		int element = heap[position];
+		double key = keys[element];
+		while(position > 0) {
+			int parent = (position - 1) >>> 1;
+			int parentElement = heap[parent];
+			if(keys[parentElement] <= key) {
+				break;
+			}
+			heap[position] = parentElement;
+			positions[parentElement] = position;
+			position = parent;
+		}
+		heap[position] = element;
+		positions[element] = position;
+	}
+
+	private void siftDown(int position) {
+		int element = heap[position];
+		double key = keys[element];
+		int half = size >>> 1;
+		while(position < half) {
+			int child = 2 * position + 1;
+			int right = child + 1;
+			if(right < size && keys[heap[right]] < keys[heap[child]]) {
+				child = right;
+			}
+			int childElement = heap[child];
+			if(key <= keys[childElement]) {
+				break;
+			}
+			heap[position] = childElement;
+			positions[childElement] = position;
+			position = child;
+		}
+		heap[position] = element;
+		positions[element] = position;
+	}
+
+}
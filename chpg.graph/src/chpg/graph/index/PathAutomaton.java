@@ -0,0 +1,407 @@
+package chpg.graph.index;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import chpg.graph.Node.NodeDirection;
+
+/**
+ * A nondeterministic finite automaton over edge tags without epsilon
+ * transitions, used to evaluate regular path queries (see RegularPathSearch).
+ *
+ * Each transition is labeled with a symbol and a direction. A symbol is an edge
+ * tag or the wildcard (null), which matches any edge. A transition in the OUT
+ * direction follows an edge from its origin to its destination, a transition
+ * in the IN direction follows an edge backwards.
+ *
+ * Automata are constructed with a Builder (for instance by the Thompson
+ * construction of a PathExpression), which removes the epsilon transitions and
+ * the states that cannot reach an accepting state.
+ */
+public class PathAutomaton {
+
+	private final int initialState;
+	private final boolean[] accepting;
+	private final String[] symbols;
+
+	// transitions of each state in compressed rows: symbol, direction and target per transition
+	private final int[] offsets;
+	private final int[] transitionSources;
+	private final int[] transitionSymbols;
+	private final NodeDirection[] transitionDirections;
+	private final int[] transitionTargets;
+
+	// the same transitions grouped by target state
+	private final int[] reverseOffsets;
+	private final int[] reverseTransitions;
+
+	private PathAutomaton(int initialState, boolean[] accepting, String[] symbols, List<int[]> transitions) {
+		this.initialState = initialState;
+		this.accepting = accepting;
+		this.symbols = symbols;
+		int stateCount = accepting.length;
+		int transitionCount = transitions.size();
+		this.offsets = new int[stateCount + 1];
+		this.reverseOffsets = new int[stateCount + 1];
+		for(int[] transition : transitions) {
+			offsets[transition[0] + 1]++;
+			reverseOffsets[transition[3] + 1]++;
+		}
+		for(int state = 0; state < stateCount; state++) {
+			offsets[state + 1] += offsets[state];
+			reverseOffsets[state + 1] += reverseOffsets[state];
+		}
+		this.transitionSources = new int[transitionCount];
+		this.transitionSymbols = new int[transitionCount];
+		this.transitionDirections = new NodeDirection[transitionCount];
+		this.transitionTargets = new int[transitionCount];
+		this.reverseTransitions = new int[transitionCount];
+		int[] next = Arrays.copyOf(offsets, stateCount);
+		int[] reverseNext = Arrays.copyOf(reverseOffsets, stateCount);
+		for(int[] transition : transitions) {
+			int position = next[transition[0]]++;
+			transitionSources[position] = transition[0];
+			transitionSymbols[position] = transition[1];
+			transitionDirections[position] = transition[2] == 0 ? NodeDirection.OUT : NodeDirection.IN;
+			transitionTargets[position] = transition[3];
+			reverseTransitions[reverseNext[transition[3]]++] = position;
+		}
+	}
+
+	/**
+	 * Returns the number of states
+	 * @return
+	 */
+	public int stateCount() {
+		return accepting.length;
+	}
+
+	/**
+	 * Returns the initial state
+	 * @return
+	 */
+	public int getInitialState() {
+		return initialState;
+	}
+
+	/**
+	 * Returns true if the given state is accepting
+	 * @param state
+	 * @return
+	 */
+	public boolean isAccepting(int state) {
+		return accepting[state];
+	}
+
+	/**
+	 * Returns the number of distinct symbols of the transitions
+	 * @return
+	 */
+	public int symbolCount() {
+		return symbols.length;
+	}
+
+	/**
+	 * Returns the edge tag of the given symbol, or null for the wildcard
+	 * @param symbol
+	 * @return
+	 */
+	public String getSymbol(int symbol) {
+		return symbols[symbol];
+	}
+
+	/**
+	 * Returns the number of transitions leaving the given state
+	 * @param state
+	 * @return
+	 */
+	public int transitionCount(int state) {
+		return offsets[state + 1] - offsets[state];
+	}
+
+	/**
+	 * Returns the transition number of the i-th transition leaving the given state
+	 * @param state
+	 * @param i
+	 * @return
+	 */
+	public int transition(int state, int i) {
+		return offsets[state] + i;
+	}
+
+	/**
+	 * Returns the number of transitions entering the given state
+	 * @param state
+	 * @return
+	 */
+	public int reverseTransitionCount(int state) {
+		return reverseOffsets[state + 1] - reverseOffsets[state];
+	}
+
+	/**
+	 * Returns the transition number of the i-th transition entering the given state
+	 * @param state
+	 * @param i
+	 * @return
+	 */
+	public int reverseTransition(int state, int i) {
+		return reverseTransitions[reverseOffsets[state] + i];
+	}
+
+	/**
+	 * Returns the state the given transition leaves
+	 * @param transition
+	 * @return
+	 */
+	public int source(int transition) {
+		return transitionSources[transition];
+	}
+
+	/**
+	 * Returns the symbol of the given transition
+	 * @param transition
+	 * @return
+	 */
+	public int symbol(int transition) {
+		return transitionSymbols[transition];
+	}
+
+	/**
+	 * Returns the direction in which the given transition follows edges
+	 * @param transition
+	 * @return
+	 */
+	public NodeDirection direction(int transition) {
+		return transitionDirections[transition];
+	}
+
+	/**
+	 * Returns the state the given transition enters
+	 * @param transition
+	 * @return
+	 */
+	public int target(int transition) {
+		return transitionTargets[transition];
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		for(int state = 0; state < stateCount(); state++) {
+			result.append(state == initialState ? "->" : "  ");
+			result.append(state);
+			result.append(accepting[state] ? "*" : "");
+			result.append(":");
+			for(int i = 0; i < transitionCount(state); i++) {
+				int transition = transition(state, i);
+				String symbol = symbols[transitionSymbols[transition]];
+				result.append(" ");
+				result.append(transitionDirections[transition] == NodeDirection.IN ? "^" : "");
+				result.append(symbol == null ? "_" : symbol);
+				result.append("->");
+				result.append(transitionTargets[transition]);
+			}
+			result.append("\n");
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Constructs a path automaton from a nondeterministic automaton with epsilon
+	 * transitions
+	 */
+	public static class Builder {
+
+		private int stateCount = 0;
+		private final List<int[]> transitions = new ArrayList<int[]>();
+		private final List<int[]> epsilons = new ArrayList<int[]>();
+		private final Map<String,Integer> symbols = new HashMap<String,Integer>();
+		private final List<String> symbolList = new ArrayList<String>();
+
+		/**
+		 * Adds a state and returns its number
+		 * @return
+		 */
+		public int addState() {
+			return stateCount++;
+		}
+
+		/**
+		 * Adds a transition that follows an edge with the given tag (or any edge if
+		 * the tag is null) in the given direction
+		 *
+		 * @param from
+		 * @param tag
+		 * @param direction
+		 * @param to
+		 */
+		public void addTransition(int from, String tag, NodeDirection direction, int to) {
+			checkState(from);
+			checkState(to);
+			Integer symbol = symbols.get(tag);
+			if(symbol == null) {
+				symbol = symbolList.size();
+				symbols.put(tag, symbol);
+				symbolList.add(tag);
+			}
+			transitions.add(new int[] { from, symbol, direction == NodeDirection.IN ? 1 : 0, to });
+		}
+
+		/**
+		 * Adds a transition that does not consume an edge
+		 * @param from
+		 * @param to
+		 */
+		public void addEpsilonTransition(int from, int to) {
+			checkState(from);
+			checkState(to);
+			epsilons.add(new int[] { from, to });
+		}
+
+		private void checkState(int state) {
+			if(state < 0 || state >= stateCount) {
+				throw new IllegalArgumentException("Unknown state " + state);
+			}
+		}
+
+		/**
+		 * Returns the automaton without epsilon transitions that accepts the same
+		 * paths from the given initial state to the given accepting state
+		 *
+		 * @param initialState
+		 * @param acceptingState
+		 * @return
+		 */
+		public PathAutomaton build(int initialState, int acceptingState) {
+			checkState(initialState);
+			checkState(acceptingState);
+
+			// epsilon closure of each state
+			List<List<Integer>> epsilonSuccessors = new ArrayList<List<Integer>>();
+			for(int state = 0; state < stateCount; state++) {
+				epsilonSuccessors.add(new ArrayList<Integer>());
+			}
+			for(int[] epsilon : epsilons) {
+				epsilonSuccessors.get(epsilon[0]).add(epsilon[1]);
+			}
+			BitSet[] closures = new BitSet[stateCount];
+			int[] stack = new int[stateCount];
+			for(int state = 0; state < stateCount; state++) {
+				BitSet closure = new BitSet(stateCount);
+				closure.set(state);
+				int size = 0;
+				stack[size++] = state;
+				while(size > 0) {
+					for(int successor : epsilonSuccessors.get(stack[--size])) {
+						if(!closure.get(successor)) {
+							closure.set(successor);
+							stack[size++] = successor;
+						}
+					}
+				}
+				closures[state] = closure;
+			}
+
+			// a state takes the transitions and acceptance of its epsilon closure
+			List<List<int[]>> outgoing = new ArrayList<List<int[]>>();
+			for(int state = 0; state < stateCount; state++) {
+				outgoing.add(new ArrayList<int[]>());
+			}
+			for(int[] transition : transitions) {
+				outgoing.get(transition[0]).add(transition);
+			}
+			List<List<int[]>> closedTransitions = new ArrayList<List<int[]>>();
+			boolean[] closedAccepting = new boolean[stateCount];
+			for(int state = 0; state < stateCount; state++) {
+				List<int[]> stateTransitions = new ArrayList<int[]>();
+				BitSet closure = closures[state];
+				for(int member = closure.nextSetBit(0); member >= 0; member = closure.nextSetBit(member + 1)) {
+					for(int[] transition : outgoing.get(member)) {
+						stateTransitions.add(new int[] { state, transition[1], transition[2], transition[3] });
+					}
+				}
+				closedTransitions.add(stateTransitions);
+				closedAccepting[state] = closure.get(acceptingState);
+			}
+
+			// keep the states that are reachable from the initial state and reach an accepting state
+			BitSet reachable = new BitSet(stateCount);
+			reachable.set(initialState);
+			int size = 0;
+			stack[size++] = initialState;
+			while(size > 0) {
+				for(int[] transition : closedTransitions.get(stack[--size])) {
+					if(!reachable.get(transition[3])) {
+						reachable.set(transition[3]);
+						stack[size++] = transition[3];
+					}
+				}
+			}
+			BitSet useful = new BitSet(stateCount);
+			boolean changed = true;
+			for(int state = 0; state < stateCount; state++) {
+				if(closedAccepting[state]) {
+					useful.set(state);
+				}
+			}
+			while(changed) {
+				changed = false;
+				for(int state = reachable.nextSetBit(0); state >= 0; state = reachable.nextSetBit(state + 1)) {
+					if(!useful.get(state)) {
+						for(int[] transition : closedTransitions.get(state)) {
+							if(useful.get(transition[3])) {
+								useful.set(state);
+								changed = true;
+								break;
+							}
+						}
+					}
+				}
+			}
+
+			// renumber the remaining states, the initial state is always kept
+			int[] renumbered = new int[stateCount];
+			Arrays.fill(renumbered, -1);
+			int kept = 0;
+			renumbered[initialState] = kept++;
+			for(int state = reachable.nextSetBit(0); state >= 0; state = reachable.nextSetBit(state + 1)) {
+				if(useful.get(state) && renumbered[state] < 0) {
+					renumbered[state] = kept++;
+				}
+			}
+			boolean[] accepting = new boolean[kept];
+			List<int[]> result = new ArrayList<int[]>();
+			List<int[]> seen = new ArrayList<int[]>();
+			for(int state = 0; state < stateCount; state++) {
+				if(renumbered[state] < 0) {
+					continue;
+				}
+				accepting[renumbered[state]] = closedAccepting[state];
+				seen.clear();
+				for(int[] transition : closedTransitions.get(state)) {
+					if(renumbered[transition[3]] < 0) {
+						continue;
+					}
+					int[] renumberedTransition = { renumbered[state], transition[1], transition[2], renumbered[transition[3]] };
+					boolean duplicate = false;
+					for(int[] other : seen) {
+						if(Arrays.equals(other, renumberedTransition)) {
+							duplicate = true;
+							break;
+						}
+					}
+					if(!duplicate) {
+						seen.add(renumberedTransition);
+						result.add(renumberedTransition);
+					}
+				}
+			}
+			return new PathAutomaton(renumbered[initialState], accepting, symbolList.toArray(new String[symbolList.size()]), result);
+		}
+	}
+
+}
@@ -0,0 +1,688 @@
+package chpg.graph.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import chpg.graph.Edge;
+import chpg.graph.ExecutionContext;
+import chpg.graph.ExecutionStatistics;
+import chpg.graph.Graph;
+import chpg.graph.GraphElementSet;
+import chpg.graph.Node;
+import chpg.graph.Node.NodeDirection;
+import chpg.graph.PropertyGraph;
+
+/**
+ * A reachability index that answers whether one node can reach another without
+ * traversing the graph in most cases.
+ *
+ * The graph is condensed into the directed acyclic graph of its strongly
+ * connected components, and each component is labeled with one interval per
+ * randomized depth first traversal as described by Yildirim, Chaoji and Zaki,
+ * "GRAIL: Scalable Reachability Index for Large Graphs" (VLDB 2010). If a
+ * component reaches another, each of its intervals contains the corresponding
+ * interval of the other component, so a failed containment test proves that
+ * the node is not reachable. The interval of the first traversal's spanning
+ * tree proves reachability for tree descendants. The remaining queries fall back
+ * to a depth first search of the condensed graph that is pruned by the same
+ * tests. Components are numbered in reverse topological order (see
+ * StronglyConnectedComponents), which rules out another half of the queries.
+ *
+ * Edge insertions are applied incrementally by widening the intervals of the
+ * components that reach the new edge, which keeps all tests sound without a
+ * rebuild (at the cost of weaker pruning after many insertions).
+ */
+public class ReachabilityIndex {
+
+	/**
+	 * The default number of randomized traversals (interval labels per component)
+	 */
+	public static final int DEFAULT_TRAVERSALS = 3;
+
+	/**
+	 * Above this number of targets between prunes with the hull of the target
+	 * intervals instead of testing each target
+	 */
+	private static final int EXACT_TARGET_LIMIT = 16;
+
+	private final Graph graph;
+	private final AdjacencyIndex index;
+	private GraphElementSet<Node> indexedNodes;
+	private GraphElementSet<Edge> indexedEdges;
+	private long nodeModifications;
+	private long edgeModifications;
+
+	private final int[] nodeComponents;
+	private final Map<Node,Integer> insertedNodeComponents = new HashMap<Node,Integer>();
+	private int componentCount;
+	private final int condensedCount;
+
+	// condensed graph in CSR form, plus the successors and predecessors added by insertions
+	private final int[] successorOffsets;
+	private final int[] successors;
+	private final int[] predecessorOffsets;
+	private final int[] predecessors;
+	private int[][] insertedSuccessors;
+	private int[][] insertedPredecessors;
+
+	// one [low, high] interval per traversal and component
+	private final int traversals;
+	private final int[][] low;
+	private final int[][] high;
+	private int nextRank;
+
+	// spanning tree intervals of the first traversal
+	private int[] preorder;
+	private int[] postorder;
+	private int nextOrder;
+
+	private boolean topologicallyOrdered = true;
+
+	/**
+	 * Builds a reachability index for the current nodes and edges of the given graph
+	 * @param graph
+	 */
+	public ReachabilityIndex(Graph graph) {
+		this(graph, DEFAULT_TRAVERSALS);
+	}
+
+	/**
+	 * Builds a reachability index for the current nodes and edges of the given
+	 * graph with the given number of interval labels per component
+	 * @param graph
+	 * @param traversals
+	 */
+	public ReachabilityIndex(Graph graph, int traversals) {
+		if(traversals < 1) {
+			throw new IllegalArgumentException("At least one traversal is required");
+		}
+		this.graph = graph;
+		this.index = new AdjacencyIndex(graph);
+		this.traversals = traversals;
+		markCurrent(graph);
+
+		StronglyConnectedComponents components = new StronglyConnectedComponents(index);
+		this.componentCount = components.count();
+		this.condensedCount = componentCount;
+		this.nodeComponents = new int[index.nodeCount()];
+		for(int node = 0; node < nodeComponents.length; node++) {
+			nodeComponents[node] = components.component(node);
+		}
+
+		this.successorOffsets = new int[componentCount + 1];
+		this.predecessorOffsets = new int[componentCount + 1];
+		int[] edgeFrom = new int[index.edgeCount()];
+		int[] edgeTo = new int[index.edgeCount()];
+		int condensedEdges = condense(components, edgeFrom, edgeTo);
+		this.successors = new int[condensedEdges];
+		this.predecessors = new int[condensedEdges];
+		buildRows(edgeFrom, edgeTo, condensedEdges, successorOffsets, successors);
+		buildRows(edgeTo, edgeFrom, condensedEdges, predecessorOffsets, predecessors);
+		this.insertedSuccessors = new int[componentCount][];
+		this.insertedPredecessors = new int[componentCount][];
+
+		this.low = new int[traversals][componentCount];
+		this.high = new int[traversals][componentCount];
+		this.preorder = new int[componentCount];
+		this.postorder = new int[componentCount];
+		Random random = new Random(componentCount);
+		for(int traversal = 0; traversal < traversals; traversal++) {
+			label(traversal, random);
+		}
+		this.nextRank = componentCount + 1;
+		this.nextOrder = componentCount + 1;
+	}
+
+	/**
+	 * Builds a reachability index for the subgraph of the given graph that
+	 * contains all of its nodes and the edges tagged with any of the given tags
+	 * (including the tags implied by the tag hierarchy)
+	 * @param graph
+	 * @param edgeTags
+	 * @return
+	 */
+	public static ReachabilityIndex of(PropertyGraph graph, String... edgeTags) {
+		return new ReachabilityIndex(graph.toGraph(graph.nodes(), graph.edges(edgeTags)));
+	}
+
+	/**
+	 * Collects the distinct edges between different components
+	 */
+	private int condense(StronglyConnectedComponents components, int[] edgeFrom, int[] edgeTo) {
+		int[] seen = new int[componentCount];
+		int count = 0;
+		for(int component = 0; component < componentCount; component++) {
+			for(int i = 0; i < components.size(component); i++) {
+				int node = components.member(component, i);
+				for(int j = 0; j < index.outDegree(node); j++) {
+					int successor = nodeComponents[index.to(index.outEdge(node, j))];
+					// seen holds the last source component + 1 that recorded the successor
+					if(successor != component && seen[successor] != component + 1) {
+						seen[successor] = component + 1;
+						edgeFrom[count] = component;
+						edgeTo[count] = successor;
+						count++;
+					}
+				}
+			}
+		}
+		return count;
+	}
+
+	private static void buildRows(int[] keys, int[] values, int count, int[] offsets, int[] rows) {
+		for(int i = 0; i < count; i++) {
+			offsets[keys[i] + 1]++;
+		}
+		for(int i = 0; i < offsets.length - 1; i++) {
+			offsets[i + 1] += offsets[i];
+		}
+		int[] next = new int[offsets.length - 1];
+		System.arraycopy(offsets, 0, next, 0, next.length);
+		for(int i = 0; i < count; i++) {
+			rows[next[keys[i]]++] = values[i];
+		}
+	}
+
+	/**
+	 * Labels each component with the interval [lowest rank reachable, own rank]
+	 * where ranks are assigned in post order of a depth first traversal that
+	 * visits roots and successors in a random order
+	 */
+	private void label(int traversal, Random random) {
+		int[] lows = low[traversal];
+		int[] highs = high[traversal];
+		int[] roots = new int[componentCount];
+		int rootCount = 0;
+		for(int component = 0; component < componentCount; component++) {
+			if(predecessorOffsets[component + 1] == predecessorOffsets[component]) {
+				roots[rootCount++] = component;
+			}
+		}
+		for(int i = rootCount - 1; i > 0; i--) {
+			int j = random.nextInt(i + 1);
+			int swap = roots[i];
+			roots[i] = roots[j];
+			roots[j] = swap;
+		}
+		boolean[] visited = new boolean[componentCount];
+		int[] start = new int[componentCount];
+		int[] cursor = new int[componentCount];
+		int[] stack = new int[componentCount];
+		int rank = 0;
+		int order = 0;
+		for(int r = 0; r < rootCount; r++) {
+			int root = roots[r];
+			int depth = 0;
+			visited[root] = true;
+			stack[depth++] = root;
+			start[root] = random(random, successorOffsets[root + 1] - successorOffsets[root]);
+			if(traversal == 0) {
+				preorder[root] = ++order;
+			}
+			while(depth > 0) {
+				int component = stack[depth - 1];
+				int degree = successorOffsets[component + 1] - successorOffsets[component];
+				if(cursor[component] < degree) {
+					int successor = successors[successorOffsets[component] + (start[component] + cursor[component]++) % degree];
+					if(!visited[successor]) {
+						visited[successor] = true;
+						stack[depth++] = successor;
+						start[successor] = random(random, successorOffsets[successor + 1] - successorOffsets[successor]);
+						if(traversal == 0) {
+							preorder[successor] = ++order;
+						}
+					}
+				} else {
+					depth--;
+					rank++;
+					int lowest = rank;
+					for(int i = successorOffsets[component]; i < successorOffsets[component + 1]; i++) {
+						lowest = Math.min(lowest, lows[successors[i]]);
+					}
+					lows[component] = lowest;
+					highs[component] = rank;
+					if(traversal == 0) {
+						postorder[component] = rank;
+					}
+				}
+			}
+		}
+	}
+
+	private static int random(Random random, int bound) {
+		return bound == 0 ? 0 : random.nextInt(bound);
+	}
+
+	/**
+	 * Returns the graph this index was built for
+	 * @return
+	 */
+	public Graph getGraph() {
+		return graph;
+	}
+
+	/**
+	 * Returns true if the given graph's node and edge sets have not been modified
+	 * since this index was built or last marked as current
+	 * @param graph
+	 * @return
+	 */
+	public boolean isCurrent(Graph graph) {
+		return graph.nodes() == indexedNodes
+				&& graph.edges() == indexedEdges
+				&& indexedNodes.getModificationCount() == nodeModifications
+				&& indexedEdges.getModificationCount() == edgeModifications;
+	}
+
+	/**
+	 * Records the current state of the given graph. Callers must have inserted
+	 * every edge added to the graph since the index was built or last marked.
+	 * @param graph
+	 */
+	public void markCurrent(Graph graph) {
+		this.indexedNodes = graph.nodes();
+		this.indexedEdges = graph.edges();
+		this.nodeModifications = indexedNodes.getModificationCount();
+		this.edgeModifications = indexedEdges.getModificationCount();
+	}
+
+	/**
+	 * Returns the number of strongly connected components, including the
+	 * components of nodes added by insertions
+	 * @return
+	 */
+	public int componentCount() {
+		return componentCount;
+	}
+
+	/**
+	 * Returns the component of the given node or -1 if the node is not indexed
+	 * @param node
+	 * @return
+	 */
+	public int component(Node node) {
+		int ordinal = index.getNodeOrdinal(node);
+		if(ordinal >= 0) {
+			return nodeComponents[ordinal];
+		}
+		Integer component = insertedNodeComponents.get(node);
+		return component == null ? -1 : component;
+	}
+
+	/**
+	 * Returns true if there is a path from the given node to the other given node,
+	 * every node reaches itself
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public boolean reachable(Node from, Node to) {
+		if(from.equals(to)) {
+			return true;
+		}
+		int source = component(from);
+		int target = component(to);
+		if(source < 0 || target < 0) {
+			return false;
+		}
+		return reachable(source, target);
+	}
+
+	/**
+	 * Returns true if the given component reaches the other given component
+	 */
+	private boolean reachable(int source, int target) {
+		if(source == target) {
+			return true;
+		}
+		if(!mayReach(source, target)) {
+			return false;
+		}
+		if(treeReaches(source, target)) {
+			return true;
+		}
+		BitSet visited = new BitSet();
+		visited.set(source);
+		int[] stack = new int[16];
+		int size = 0;
+		stack[size++] = source;
+		while(size > 0) {
+			int component = stack[--size];
+			int degree = successorCount(component);
+			for(int i = 0; i < degree; i++) {
+				int successor = successor(component, i);
+				if(successor == target) {
+					return true;
+				}
+				if(visited.get(successor)) {
+					continue;
+				}
+				visited.set(successor);
+				if(treeReaches(successor, target)) {
+					return true;
+				}
+				if(mayReach(successor, target)) {
+					if(size == stack.length) {
+						stack = Arrays.copyOf(stack, size * 2);
+					}
+					stack[size++] = successor;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns false if the labels prove that the source does not reach the target
+	 */
+	private boolean mayReach(int source, int target) {
+		if(topologicallyOrdered && source < target) {
+			return false;
+		}
+		for(int traversal = 0; traversal < traversals; traversal++) {
+			if(low[traversal][target] < low[traversal][source] || high[traversal][target] > high[traversal][source]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the target is a descendant of the source in the spanning
+	 * tree of the first traversal
+	 */
+	private boolean treeReaches(int source, int target) {
+		return preorder[source] <= preorder[target] && postorder[target] <= postorder[source];
+	}
+
+	/**
+	 * Applies the insertion of the given edge to this index. Nodes that are not
+	 * indexed yet are added as new components.
+	 * @param edge
+	 */
+	public void insert(Edge edge) {
+		int source = componentOrInsert(edge.from());
+		int target = componentOrInsert(edge.to());
+		if(reachable(source, target)) {
+			// the edge does not add any reachability
+			return;
+		}
+		if(source < target) {
+			topologicallyOrdered = false;
+		}
+		insertedSuccessors[source] = append(insertedSuccessors[source], target);
+		insertedPredecessors[target] = append(insertedPredecessors[target], source);
+		// every component that reaches the source must now contain the target's intervals
+		int[] stack = new int[16];
+		int size = 0;
+		stack[size++] = source;
+		while(size > 0) {
+			int component = stack[--size];
+			boolean widened = false;
+			for(int traversal = 0; traversal < traversals; traversal++) {
+				if(low[traversal][target] < low[traversal][component]) {
+					low[traversal][component] = low[traversal][target];
+					widened = true;
+				}
+				if(high[traversal][target] > high[traversal][component]) {
+					high[traversal][component] = high[traversal][target];
+					widened = true;
+				}
+			}
+			if(!widened) {
+				// the intervals of the predecessors already contain this component's intervals
+				continue;
+			}
+			int degree = predecessorCount(component);
+			if(size + degree > stack.length) {
+				stack = Arrays.copyOf(stack, Math.max(stack.length * 2, size + degree));
+			}
+			for(int i = 0; i < degree; i++) {
+				stack[size++] = predecessor(component, i);
+			}
+		}
+	}
+
+	private int successorCount(int component) {
+		int count = insertedSuccessors[component] == null ? 0 : insertedSuccessors[component].length;
+		if(component < condensedCount) {
+			count += successorOffsets[component + 1] - successorOffsets[component];
+		}
+		return count;
+	}
+
+	private int successor(int component, int i) {
+		if(component < condensedCount) {
+			int degree = successorOffsets[component + 1] - successorOffsets[component];
+			if(i < degree) {
+				return successors[successorOffsets[component] + i];
+			}
+			i -= degree;
+		}
+		return insertedSuccessors[component][i];
+	}
+
+	private int predecessorCount(int component) {
+		int count = insertedPredecessors[component] == null ? 0 : insertedPredecessors[component].length;
+		if(component < condensedCount) {
+			count += predecessorOffsets[component + 1] - predecessorOffsets[component];
+		}
+		return count;
+	}
+
+	private int predecessor(int component, int i) {
+		if(component < condensedCount) {
+			int degree = predecessorOffsets[component + 1] - predecessorOffsets[component];
+			if(i < degree) {
+				return predecessors[predecessorOffsets[component] + i];
+			}
+			i -= degree;
+		}
+		return insertedPredecessors[component][i];
+	}
+
+	private int componentOrInsert(Node node) {
+		int component = component(node);
+		if(component >= 0) {
+			return component;
+		}
+		component = componentCount++;
+		if(component == insertedSuccessors.length) {
+			int capacity = Math.max(16, component * 2);
+			insertedSuccessors = Arrays.copyOf(insertedSuccessors, capacity);
+			insertedPredecessors = Arrays.copyOf(insertedPredecessors, capacity);
+			preorder = Arrays.copyOf(preorder, capacity);
+			postorder = Arrays.copyOf(postorder, capacity);
+			for(int traversal = 0; traversal < traversals; traversal++) {
+				low[traversal] = Arrays.copyOf(low[traversal], capacity);
+				high[traversal] = Arrays.copyOf(high[traversal], capacity);
+			}
+		}
+		// a new component reaches nothing, so its intervals must not contain any other component
+		int rank = nextRank++;
+		for(int traversal = 0; traversal < traversals; traversal++) {
+			low[traversal][component] = rank;
+			high[traversal][component] = rank;
+		}
+		preorder[component] = nextOrder;
+		postorder[component] = nextOrder;
+		nextOrder++;
+		insertedNodeComponents.put(node, component);
+		return component;
+	}
+
+	private static int[] append(int[] row, int value) {
+		if(row == null) {
+			return new int[] { value };
+		}
+		int[] result = Arrays.copyOf(row, row.length + 1);
+		result[row.length] = value;
+		return result;
+	}
+
+	/**
+	 * Returns the subgraph of the indexed graph on the paths from the given origin
+	 * to the given destination, equivalent to the intersection of a forward
+	 * traversal from the origin and a reverse traversal from the destination.
+	 *
+	 * The forward traversal skips the nodes that cannot reach the destination
+	 * according to the interval labels, and the reverse traversal only visits
+	 * nodes that the forward traversal reached.
+	 *
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public Graph between(GraphElementSet<Node> from, GraphElementSet<Node> to) {
+		Graph result = graph.empty();
+		if(from.isEmpty() || to.isEmpty()) {
+			return result;
+		}
+		AdjacencyIndex adjacency = AdjacencyIndex.of(graph);
+		int[] targetNodes = adjacency.getNodeOrdinals(to);
+		TargetFilter filter = new TargetFilter(to);
+
+		BitSet candidates = new BitSet(adjacency.nodeCount());
+		int[] queue = new int[adjacency.nodeCount()];
+		int size = 0;
+		long scanned = 0;
+		ExecutionContext context = ExecutionContext.current();
+		for(int source : adjacency.getNodeOrdinals(from)) {
+			if(!candidates.get(source) && filter.mayReach(adjacency.getNode(source))) {
+				candidates.set(source);
+				queue[size++] = source;
+			}
+		}
+		for(int head = 0; head < size; head++) {
+			int node = queue[head];
+			if(context != null) {
+				context.check();
+			}
+			scanned += adjacency.outDegree(node);
+			for(int i = 0; i < adjacency.outDegree(node); i++) {
+				int successor = adjacency.to(adjacency.outEdge(node, i));
+				if(!candidates.get(successor) && filter.mayReach(adjacency.getNode(successor))) {
+					candidates.set(successor);
+					queue[size++] = successor;
+				}
+			}
+		}
+
+		BitSet between = new BitSet(adjacency.nodeCount());
+		size = 0;
+		for(int target : targetNodes) {
+			if(candidates.get(target) && !between.get(target)) {
+				between.set(target);
+				queue[size++] = target;
+			}
+		}
+		for(int head = 0; head < size; head++) {
+			int node = queue[head];
+			if(context != null) {
+				context.check();
+			}
+			scanned += adjacency.degree(node, NodeDirection.IN);
+			for(int i = 0; i < adjacency.degree(node, NodeDirection.IN); i++) {
+				int predecessor = adjacency.from(adjacency.inEdge(node, i));
+				if(candidates.get(predecessor) && !between.get(predecessor)) {
+					between.set(predecessor);
+					queue[size++] = predecessor;
+				}
+			}
+		}
+
+		for(int node = between.nextSetBit(0); node >= 0; node = between.nextSetBit(node + 1)) {
+			if(context != null) {
+				context.checkResultSize(result.nodes().size() + result.edges().size());
+			}
+			result.nodes().add(adjacency.getNode(node));
+			scanned += adjacency.outDegree(node);
+			for(int i = 0; i < adjacency.outDegree(node); i++) {
+				int edge = adjacency.outEdge(node, i);
+				if(between.get(adjacency.to(edge))) {
+					result.edges().add(adjacency.getEdge(edge));
+				}
+			}
+		}
+		ExecutionStatistics.scannedEdges(scanned);
+		// origin nodes outside of the graph are only on a path to themselves
+		for(Node node : from) {
+			if(adjacency.getNodeOrdinal(node) < 0 && to.contains(node)) {
+				result.nodes().add(node);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Tests whether a node may reach any of a set of target nodes
+	 */
+	private class TargetFilter {
+		private final GraphElementSet<Node> to;
+		private final BitSet targets = new BitSet();
+		private final int[] targetComponents;
+		private int minTarget = Integer.MAX_VALUE;
+		private final int[] maxLow = new int[traversals];
+		private final int[] minHigh = new int[traversals];
+
+		private TargetFilter(GraphElementSet<Node> to) {
+			this.to = to;
+			for(Node node : to) {
+				int component = component(node);
+				if(component >= 0) {
+					targets.set(component);
+				}
+			}
+			targetComponents = targets.stream().toArray();
+			Arrays.fill(maxLow, Integer.MIN_VALUE);
+			Arrays.fill(minHigh, Integer.MAX_VALUE);
+			for(int target : targetComponents) {
+				minTarget = Math.min(minTarget, target);
+				for(int traversal = 0; traversal < traversals; traversal++) {
+					maxLow[traversal] = Math.max(maxLow[traversal], low[traversal][target]);
+					minHigh[traversal] = Math.min(minHigh[traversal], high[traversal][target]);
+				}
+			}
+		}
+
+		private boolean mayReach(Node node) {
+			if(to.contains(node)) {
+				return true;
+			}
+			int component = component(node);
+			if(component < 0) {
+				// nodes that were added without edges since the index was built reach nothing
+				return false;
+			}
+			if(targets.get(component)) {
+				return true;
+			}
+			if(targetComponents.length <= EXACT_TARGET_LIMIT) {
+				for(int target : targetComponents) {
+					if(ReachabilityIndex.this.mayReach(component, target)) {
+						return true;
+					}
+				}
+				return false;
+			}
+			if(topologicallyOrdered && component < minTarget) {
+				return false;
+			}
+			for(int traversal = 0; traversal < traversals; traversal++) {
+				if(low[traversal][component] > maxLow[traversal] || high[traversal][component] < minHigh[traversal]) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ReachabilityIndex [components=" + componentCount + ", traversals=" + traversals + "]";
+	}
+
+}
@@ -0,0 +1,197 @@
+package chpg.graph.index;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Predicate;
+
+import chpg.graph.Edge;
+import chpg.graph.ExecutionContext;
+import chpg.graph.ExecutionStatistics;
+import chpg.graph.Node.NodeDirection;
+
+/**
+ * Evaluates regular path queries over an adjacency index.
+ *
+ * A regular path query selects the paths whose sequence of edge labels is
+ * accepted by a finite automaton. The query is evaluated as a reachability
+ * problem on the product of the graph and the automaton (see Mendelzon and
+ * Wood, "Finding Regular Simple Paths in Graph Databases", VLDB 1989): a
+ * single breadth first search over (node, state) pairs visits
+ * every pair at most once, so the search takes O((|V| + |E|) * |Q|) time
+ * regardless of the number of matching paths. A second breadth first search
+ * backwards from the accepting pairs then selects the edges that lie on a
+ * matching path.
+ */
+public class RegularPathSearch {
+
+	private RegularPathSearch() {}
+
+	/**
+	 * Searches the paths from the given sources that are accepted by the given
+	 * automaton and returns the ordinals of the nodes reached by an accepted path.
+	 * The edges of the accepted paths are added to traversed.
+	 *
+	 * @param index
+	 * @param sources
+	 * @param automaton
+	 * @param symbols the edges matched by each symbol of the automaton
+	 * @param maxDepth the maximum number of edges of a path, negative values denote an unbounded depth
+	 * @param traversed receives the ordinals of the edges on accepted paths
+	 * @return
+	 */
+	public static BitSet search(AdjacencyIndex index, int[] sources, PathAutomaton automaton,
+			List<? extends Predicate<? super Edge>> symbols, int maxDepth, BitSet traversed) {
+		if(symbols.size() != automaton.symbolCount()) {
+			throw new IllegalArgumentException("Expected " + automaton.symbolCount() + " symbols, found " + symbols.size());
+		}
+		int states = automaton.stateCount();
+		long pairCount = (long) index.nodeCount() * states;
+		if(pairCount > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("Product of " + index.nodeCount() + " nodes and " + states + " states is too large");
+		}
+		Labels labels = new Labels(index, symbols);
+		ExecutionContext context = ExecutionContext.current();
+		long scanned = 0;
+
+		// forward search from the sources in the initial state, distances are the path lengths
+		int[] distance = new int[(int) pairCount];
+		Arrays.fill(distance, -1);
+		int[] queue = new int[Math.max(16, sources.length)];
+		int size = 0;
+		for(int source : sources) {
+			int pair = source * states + automaton.getInitialState();
+			if(distance[pair] < 0) {
+				distance[pair] = 0;
+				queue = push(queue, size++, pair);
+			}
+		}
+		BitSet reached = new BitSet(index.nodeCount());
+		int reachedCount = 0;
+		for(int head = 0; head < size; head++) {
+			int pair = queue[head];
+			int node = pair / states;
+			int state = pair % states;
+			if(context != null) {
+				context.checkResultSize(reachedCount);
+			}
+			if(automaton.isAccepting(state) && !reached.get(node)) {
+				reached.set(node);
+				reachedCount++;
+			}
+			if(maxDepth >= 0 && distance[pair] >= maxDepth) {
+				continue;
+			}
+			for(int i = 0; i < automaton.transitionCount(state); i++) {
+				int transition = automaton.transition(state, i);
+				NodeDirection direction = automaton.direction(transition);
+				int symbol = automaton.symbol(transition);
+				int target = automaton.target(transition);
+				int degree = index.degree(node, direction);
+				scanned += degree;
+				for(int j = 0; j < degree; j++) {
+					int edge = index.edge(node, direction, j);
+					int successor = index.opposite(edge, direction) * states + target;
+					if(distance[successor] < 0 && labels.matches(symbol, edge)) {
+						distance[successor] = distance[pair] + 1;
+						queue = push(queue, size++, successor);
+					}
+				}
+			}
+		}
+
+		// backward search from the accepting pairs, restricted to the pairs reached
+		// forward, selects the edges of the accepted paths within the depth bound
+		int[] remaining = new int[(int) pairCount];
+		Arrays.fill(remaining, -1);
+		int[] accepting = new int[Math.max(16, reachedCount)];
+		int acceptingCount = 0;
+		for(int node = reached.nextSetBit(0); node >= 0; node = reached.nextSetBit(node + 1)) {
+			for(int state = 0; state < states; state++) {
+				int pair = node * states + state;
+				if(automaton.isAccepting(state) && distance[pair] >= 0) {
+					accepting = push(accepting, acceptingCount++, pair);
+				}
+			}
+		}
+		queue = accepting;
+		size = acceptingCount;
+		for(int i = 0; i < size; i++) {
+			remaining[queue[i]] = 0;
+		}
+		for(int head = 0; head < size; head++) {
+			int pair = queue[head];
+			int node = pair / states;
+			int state = pair % states;
+			if(context != null) {
+				context.check();
+			}
+			for(int i = 0; i < automaton.reverseTransitionCount(state); i++) {
+				int transition = automaton.reverseTransition(state, i);
+				// follow the transition backwards: edges enter the node in the opposite direction
+				NodeDirection direction = automaton.direction(transition) == NodeDirection.OUT ? NodeDirection.IN : NodeDirection.OUT;
+				int symbol = automaton.symbol(transition);
+				int source = automaton.source(transition);
+				int degree = index.degree(node, direction);
+				scanned += degree;
+				for(int j = 0; j < degree; j++) {
+					int edge = index.edge(node, direction, j);
+					int predecessor = index.opposite(edge, direction) * states + source;
+					if(distance[predecessor] < 0 || !labels.matches(symbol, edge)) {
+						continue;
+					}
+					if(maxDepth < 0 || distance[predecessor] + 1 + remaining[pair] <= maxDepth) {
+						traversed.set(edge);
+					}
+					if(remaining[predecessor] < 0) {
+						remaining[predecessor] = remaining[pair] + 1;
+						queue = push(queue, size++, predecessor);
+					}
+				}
+			}
+		}
+		ExecutionStatistics.scannedEdges(scanned);
+		return reached;
+	}
+
+	private static int[] push(int[] queue, int size, int value) {
+		if(size == queue.length) {
+			queue = Arrays.copyOf(queue, queue.length * 2);
+		}
+		queue[size] = value;
+		return queue;
+	}
+
+	/**
+	 * Memoizes which edges match each symbol, so that each edge is tested at most
+	 * once per symbol
+	 */
+	private static class Labels {
+		private final AdjacencyIndex index;
+		private final List<? extends Predicate<? super Edge>> symbols;
+		private final BitSet[] tested;
+		private final BitSet[] matched;
+
+		private Labels(AdjacencyIndex index, List<? extends Predicate<? super Edge>> symbols) {
+			this.index = index;
+			this.symbols = symbols;
+			this.tested = new BitSet[symbols.size()];
+			this.matched = new BitSet[symbols.size()];
+			for(int symbol = 0; symbol < symbols.size(); symbol++) {
+				tested[symbol] = new BitSet(index.edgeCount());
+				matched[symbol] = new BitSet(index.edgeCount());
+			}
+		}
+
+		private boolean matches(int symbol, int edge) {
+			if(!tested[symbol].get(edge)) {
+				tested[symbol].set(edge);
+				if(symbols.get(symbol).test(index.getEdge(edge))) {
+					matched[symbol].set(edge);
+				}
+			}
+			return matched[symbol].get(edge);
+		}
+	}
+
+}
@@ -0,0 +1,619 @@
+package chpg.graph.index;
+
+import java.util.Arrays;
+import java.util.function.Predicate;
+
+import chpg.graph.Edge;
+import chpg.graph.ExecutionContext;
+import chpg.graph.ExecutionStatistics;
+import chpg.graph.Node;
+
+/**
+ * Shortest path searches over an adjacency index.
+ *
+ * Paths follow only the edges accepted by an edge filter and are measured by
+ * the sum of a numeric edge attribute, or by their number of edges if no weight
+ * attribute is given. Weights are read lazily from the edges a search follows
+ * and must be non-negative.
+ *
+ * A breadth first search (unweighted) or Dijkstra's algorithm over a binary
+ * heap indexed by node ordinal (weighted) searches from a set of sources and
+ * stops as soon as the nearest target is reached. For a single source and
+ * target, the bidirectional search grows a search from each end and stops once
+ * the two searches meet and no shorter connection can remain, which usually
+ * settles far fewer nodes. A* (see Hart, Nilsson and Raphael, "A Formal Basis
+ * for the Heuristic Determination of Minimum Cost Paths", 1968) orders a single
+ * source search by the distance so far plus a heuristic estimate of the
+ * remaining distance, and finds a shortest path whenever the heuristic never
+ * overestimates. All searches ignore paths longer than the maximum distance.
+ */
+public class ShortestPaths {
+
+	/**
+	 * Estimates the distance from a node to the target of an A* search
+	 */
+	public static interface Heuristic {
+		/**
+		 * Returns a non-negative estimate of the distance from the given node to the
+		 * given target, which must not exceed the actual distance
+		 * @param node
+		 * @param target
+		 * @return
+		 */
+		public double estimate(Node node, Node target);
+	}
+
+	private static final byte UNKNOWN = 0;
+	private static final byte FOLLOWED = 1;
+	private static final byte FILTERED = 2;
+
+	private final AdjacencyIndex index;
+	private final Predicate<? super Edge> edgeFilter;
+	private final String weightAttribute;
+	private double maxDistance = Double.POSITIVE_INFINITY;
+
+	// whether each edge is followed and its weight, read when a search first reaches the edge
+	private final byte[] edgeStates;
+	private final double[] weights;
+
+	/**
+	 * Creates shortest path searches over the given adjacency index
+	 * @param index
+	 * @param edgeFilter the edges to follow, or null to follow all edges
+	 * @param weightAttribute the numeric edge attribute to use as edge weight, or null to count edges
+	 */
+	public ShortestPaths(AdjacencyIndex index, Predicate<? super Edge> edgeFilter, String weightAttribute) {
+		this.index = index;
+		this.edgeFilter = edgeFilter;
+		this.weightAttribute = weightAttribute;
+		this.edgeStates = new byte[index.edgeCount()];
+		this.weights = weightAttribute == null ? null : new double[index.edgeCount()];
+	}
+
+	/**
+	 * Sets the maximum distance of a path, searches stop before longer paths
+	 * @param maxDistance
+	 */
+	public void setMaxDistance(double maxDistance) {
+		if(!(maxDistance >= 0)) {
+			throw new IllegalArgumentException("Maximum distance must be non-negative");
+		}
+		this.maxDistance = maxDistance;
+	}
+
+	public double getMaxDistance() {
+		return maxDistance;
+	}
+
+	/**
+	 * Returns true if paths are measured by an edge attribute instead of their number of edges
+	 * @return
+	 */
+	public boolean isWeighted() {
+		return weightAttribute != null;
+	}
+
+	public AdjacencyIndex getIndex() {
+		return index;
+	}
+
+	/**
+	 * Returns the weight of the given edge, or -1 if paths do not follow it
+	 */
+	private double weight(int edge) {
+		byte state = edgeStates[edge];
+		if(state == UNKNOWN) {
+			Edge element = index.getEdge(edge);
+			if(edgeFilter != null && !edgeFilter.test(element)) {
+				state = FILTERED;
+			} else {
+				if(weights != null) {
+					Object value = element.getAttr(weightAttribute);
+					if(!(value instanceof Number)) {
+						throw new IllegalArgumentException("Edge " + element + " has no numeric " + weightAttribute + " attribute");
+					}
+					double weight = ((Number) value).doubleValue();
+					if(!(weight >= 0) || Double.isInfinite(weight)) {
+						throw new IllegalArgumentException("Edge weights must be non-negative and finite, found " + weight);
+					}
+					weights[edge] = weight;
+				}
+				state = FOLLOWED;
+			}
+			edgeStates[edge] = state;
+		}
+		if(state == FILTERED) {
+			return -1;
+		}
+		return weights == null ? 1 : weights[edge];
+	}
+
+	/**
+	 * Searches a shortest path from any of the sources to any of the targets, with
+	 * a bidirectional search for a single source and target and a breadth first
+	 * search or Dijkstra's algorithm otherwise
+	 * @param sources
+	 * @param targets
+	 * @return
+	 */
+	public Result shortestPath(int[] sources, int[] targets) {
+		if(sources.length == 1 && targets.length == 1) {
+			return bidirectional(sources[0], targets[0]);
+		}
+		return isWeighted() ? dijkstra(sources, targets) : breadthFirst(sources, targets);
+	}
+
+	/**
+	 * Searches a path with the fewest edges from any of the sources to any of the
+	 * targets, regardless of edge weights. The search stops at the first target
+	 * it reaches.
+	 * @param sources
+	 * @param targets
+	 * @return
+	 */
+	public Result breadthFirst(int[] sources, int[] targets) {
+		int nodeCount = index.nodeCount();
+		boolean[] isTarget = mark(targets);
+		int[] parents = new int[nodeCount];
+		Arrays.fill(parents, -1);
+		int[] distances = new int[nodeCount];
+		Arrays.fill(distances, -1);
+		int[] queue = new int[nodeCount];
+		int tail = 0;
+		for(int source : sources) {
+			if(distances[source] < 0) {
+				if(isTarget[source]) {
+					return new Result(source, source, 0, new int[0], 0);
+				}
+				distances[source] = 0;
+				queue[tail++] = source;
+			}
+		}
+		ExecutionContext context = ExecutionContext.current();
+		long scanned = 0;
+		int head = 0;
+		try {
+			for(; head < tail; head++) {
+				int node = queue[head];
+				if(context != null) {
+					context.check();
+				}
+				int distance = distances[node] + 1;
+				if(distance > maxDistance) {
+					// nodes are dequeued by increasing distance
+					break;
+				}
+				int degree = index.outDegree(node);
+				scanned += degree;
+				for(int i = 0; i < degree; i++) {
+					int edge = index.outEdge(node, i);
+					int successor = index.to(edge);
+					if(distances[successor] >= 0 || weight(edge) < 0) {
+						continue;
+					}
+					distances[successor] = distance;
+					parents[successor] = edge;
+					if(isTarget[successor]) {
+						return forwardResult(parents, successor, distance, head + 1);
+					}
+					queue[tail++] = successor;
+				}
+			}
+			return new Result(head);
+		} finally {
+			ExecutionStatistics.scannedNodes(head);
+			ExecutionStatistics.scannedEdges(scanned);
+		}
+	}
+
+	/**
+	 * Searches a path of least weight from any of the sources to any of the
+	 * targets with Dijkstra's algorithm. The search stops when the first target is
+	 * settled.
+	 * @param sources
+	 * @param targets
+	 * @return
+	 */
+	public Result dijkstra(int[] sources, int[] targets) {
+		int nodeCount = index.nodeCount();
+		boolean[] isTarget = mark(targets);
+		int[] parents = new int[nodeCount];
+		Arrays.fill(parents, -1);
+		double[] distances = new double[nodeCount];
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		IndexedHeap heap = new IndexedHeap(nodeCount);
+		for(int source : sources) {
+			distances[source] = 0;
+			heap.insertOrDecrease(source, 0);
+		}
+		ExecutionContext context = ExecutionContext.current();
+		long settled = 0;
+		long scanned = 0;
+		try {
+			while(!heap.isEmpty()) {
+				int node = heap.poll();
+				settled++;
+				if(context != null) {
+					context.check();
+				}
+				if(isTarget[node]) {
+					return forwardResult(parents, node, distances[node], settled);
+				}
+				int degree = index.outDegree(node);
+				scanned += degree;
+				for(int i = 0; i < degree; i++) {
+					int edge = index.outEdge(node, i);
+					double weight = weight(edge);
+					if(weight < 0) {
+						continue;
+					}
+					int successor = index.to(edge);
+					double distance = distances[node] + weight;
+					if(distance < distances[successor] && distance <= maxDistance) {
+						distances[successor] = distance;
+						parents[successor] = edge;
+						heap.insertOrDecrease(successor, distance);
+					}
+				}
+			}
+			return new Result(settled);
+		} finally {
+			ExecutionStatistics.scannedNodes(settled);
+			ExecutionStatistics.scannedEdges(scanned);
+		}
+	}
+
+	/**
+	 * Searches a shortest path from the source to the target with an A* search
+	 * guided by the given heuristic. A node is searched again if a shorter path to
+	 * it is found later, so the path is shortest for any heuristic that never
+	 * overestimates the remaining distance. Consistent heuristics settle each
+	 * node at most once.
+	 * @param source
+	 * @param target
+	 * @param heuristic
+	 * @return
+	 */
+	public Result aStar(int source, int target, Heuristic heuristic) {
+		if(heuristic == null) {
+			throw new IllegalArgumentException("Heuristic must be non-null");
+		}
+		int nodeCount = index.nodeCount();
+		Node targetNode = index.getNode(target);
+		int[] parents = new int[nodeCount];
+		Arrays.fill(parents, -1);
+		double[] distances = new double[nodeCount];
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		double[] estimates = new double[nodeCount];
+		Arrays.fill(estimates, Double.NaN);
+		IndexedHeap heap = new IndexedHeap(nodeCount);
+		distances[source] = 0;
+		heap.insertOrDecrease(source, estimate(heuristic, estimates, source, targetNode));
+		ExecutionContext context = ExecutionContext.current();
+		long settled = 0;
+		long scanned = 0;
+		try {
+			while(!heap.isEmpty()) {
+				int node = heap.poll();
+				settled++;
+				if(context != null) {
+					context.check();
+				}
+				if(node == target) {
+					return forwardResult(parents, node, distances[node], settled);
+				}
+				int degree = index.outDegree(node);
+				scanned += degree;
+				for(int i = 0; i < degree; i++) {
+					int edge = index.outEdge(node, i);
+					double weight = weight(edge);
+					if(weight < 0) {
+						continue;
+					}
+					int successor = index.to(edge);
+					double distance = distances[node] + weight;
+					if(distance < distances[successor]) {
+						double priority = distance + estimate(heuristic, estimates, successor, targetNode);
+						if(priority <= maxDistance) {
+							distances[successor] = distance;
+							parents[successor] = edge;
+							heap.insertOrDecrease(successor, priority);
+						}
+					}
+				}
+			}
+			return new Result(settled);
+		} finally {
+			ExecutionStatistics.scannedNodes(settled);
+			ExecutionStatistics.scannedEdges(scanned);
+		}
+	}
+
+	private double estimate(Heuristic heuristic, double[] estimates, int node, Node target) {
+		double estimate = estimates[node];
+		if(Double.isNaN(estimate)) {
+			estimate = heuristic.estimate(index.getNode(node), target);
+			if(!(estimate >= 0)) {
+				throw new IllegalArgumentException("Heuristic estimates must be non-negative, found " + estimate);
+			}
+			estimates[node] = estimate;
+		}
+		return estimate;
+	}
+
+	/**
+	 * Searches a shortest path from the source to the target by searching forward
+	 * from the source and backward from the target, a level of breadth first
+	 * search at a time for unweighted paths and a node of Dijkstra's algorithm at
+	 * a time for weighted paths, always advancing the smaller search
+	 * @param source
+	 * @param target
+	 * @return
+	 */
+	public Result bidirectional(int source, int target) {
+		if(source == target) {
+			return new Result(source, target, 0, new int[0], 0);
+		}
+		return isWeighted() ? bidirectionalDijkstra(source, target) : bidirectionalBreadthFirst(source, target);
+	}
+
+	private Result bidirectionalBreadthFirst(int source, int target) {
+		int nodeCount = index.nodeCount();
+		// index 0 is the forward search from the source, index 1 the backward search from the target
+		int[][] distances = new int[][] { new int[nodeCount], new int[nodeCount] };
+		int[][] parents = new int[][] { new int[nodeCount], new int[nodeCount] };
+		int[][] queues = new int[][] { new int[nodeCount], new int[nodeCount] };
+		int[] heads = new int[2];
+		int[] tails = new int[2];
+		for(int side = 0; side < 2; side++) {
+			Arrays.fill(distances[side], -1);
+			Arrays.fill(parents[side], -1);
+		}
+		distances[0][source] = 0;
+		queues[0][tails[0]++] = source;
+		distances[1][target] = 0;
+		queues[1][tails[1]++] = target;
+		ExecutionContext context = ExecutionContext.current();
+		long settled = 0;
+		long scanned = 0;
+		int best = Integer.MAX_VALUE;
+		int meeting = -1;
+		try {
+			while(heads[0] < tails[0] && heads[1] < tails[1] && meeting < 0) {
+				// expand a whole level of the search with the smaller frontier
+				int side = tails[0] - heads[0] <= tails[1] - heads[1] ? 0 : 1;
+				int[] distance = distances[side];
+				int[] other = distances[1 - side];
+				int end = tails[side];
+				for(; heads[side] < end; heads[side]++) {
+					int node = queues[side][heads[side]];
+					settled++;
+					if(context != null) {
+						context.check();
+					}
+					int next = distance[node] + 1;
+					if(next > maxDistance) {
+						continue;
+					}
+					int degree = side == 0 ? index.outDegree(node) : index.inDegree(node);
+					scanned += degree;
+					for(int i = 0; i < degree; i++) {
+						int edge = side == 0 ? index.outEdge(node, i) : index.inEdge(node, i);
+						int neighbor = side == 0 ? index.to(edge) : index.from(edge);
+						if(distance[neighbor] >= 0 || weight(edge) < 0) {
+							continue;
+						}
+						distance[neighbor] = next;
+						parents[side][neighbor] = edge;
+						queues[side][tails[side]++] = neighbor;
+						if(other[neighbor] >= 0 && next + other[neighbor] < best) {
+							best = next + other[neighbor];
+							meeting = neighbor;
+						}
+					}
+				}
+				// a connection found in this level is shortest, any other path is longer than both radii together
+			}
+			if(meeting < 0 || best > maxDistance) {
+				return new Result(settled);
+			}
+			return bidirectionalResult(parents, source, target, meeting, best, settled);
+		} finally {
+			ExecutionStatistics.scannedNodes(settled);
+			ExecutionStatistics.scannedEdges(scanned);
+		}
+	}
+
+	private Result bidirectionalDijkstra(int source, int target) {
+		int nodeCount = index.nodeCount();
+		// index 0 is the forward search from the source, index 1 the backward search from the target
+		double[][] distances = new double[][] { new double[nodeCount], new double[nodeCount] };
+		int[][] parents = new int[][] { new int[nodeCount], new int[nodeCount] };
+		IndexedHeap[] heaps = new IndexedHeap[] { new IndexedHeap(nodeCount), new IndexedHeap(nodeCount) };
+		for(int side = 0; side < 2; side++) {
+			Arrays.fill(distances[side], Double.POSITIVE_INFINITY);
+			Arrays.fill(parents[side], -1);
+		}
+		distances[0][source] = 0;
+		heaps[0].insertOrDecrease(source, 0);
+		distances[1][target] = 0;
+		heaps[1].insertOrDecrease(target, 0);
+		ExecutionContext context = ExecutionContext.current();
+		long settled = 0;
+		long scanned = 0;
+		double best = Double.POSITIVE_INFINITY;
+		int meeting = -1;
+		try {
+			while(true) {
+				double forward = heaps[0].isEmpty() ? Double.POSITIVE_INFINITY : heaps[0].peekKey();
+				double backward = heaps[1].isEmpty() ? Double.POSITIVE_INFINITY : heaps[1].peekKey();
+				// any path not found yet is at least as long as the two smallest keys together
+				if(forward + backward >= best) {
+					break;
+				}
+				int side = forward <= backward ? 0 : 1;
+				double[] distance = distances[side];
+				double[] other = distances[1 - side];
+				int node = heaps[side].poll();
+				settled++;
+				if(context != null) {
+					context.check();
+				}
+				int degree = side == 0 ? index.outDegree(node) : index.inDegree(node);
+				scanned += degree;
+				for(int i = 0; i < degree; i++) {
+					int edge = side == 0 ? index.outEdge(node, i) : index.inEdge(node, i);
+					double weight = weight(edge);
+					if(weight < 0) {
+						continue;
+					}
+					int neighbor = side == 0 ? index.to(edge) : index.from(edge);
+					double next = distance[node] + weight;
+					if(next < distance[neighbor] && next <= maxDistance) {
+						distance[neighbor] = next;
+						parents[side][neighbor] = edge;
+						heaps[side].insertOrDecrease(neighbor, next);
+						if(next + other[neighbor] < best) {
+							best = next + other[neighbor];
+							meeting = neighbor;
+						}
+					}
+				}
+			}
+			if(meeting < 0 || best > maxDistance) {
+				return new Result(settled);
+			}
+			return bidirectionalResult(parents, source, target, meeting, best, settled);
+		} finally {
+			ExecutionStatistics.scannedNodes(settled);
+			ExecutionStatistics.scannedEdges(scanned);
+		}
+	}
+
+	private boolean[] mark(int[] nodes) {
+		boolean[] marked = new boolean[index.nodeCount()];
+		for(int node : nodes) {
+			marked[node] = true;
+		}
+		return marked;
+	}
+
+	/**
+	 * Returns the path to the given node along the parent edges of a forward search
+	 */
+	private Result forwardResult(int[] parents, int target, double distance, long settled) {
+		int length = 0;
+		int source = target;
+		while(parents[source] >= 0) {
+			source = index.from(parents[source]);
+			length++;
+		}
+		int[] path = new int[length];
+		for(int node = target; parents[node] >= 0; node = index.from(parents[node])) {
+			path[--length] = parents[node];
+		}
+		return new Result(source, target, distance, path, settled);
+	}
+
+	/**
+	 * Returns the path through the meeting node, along the parent edges of the
+	 * forward search to the source and of the backward search to the target
+	 */
+	private Result bidirectionalResult(int[][] parents, int source, int target, int meeting, double distance, long settled) {
+		int forward = 0;
+		for(int node = meeting; parents[0][node] >= 0; node = index.from(parents[0][node])) {
+			forward++;
+		}
+		int backward = 0;
+		for(int node = meeting; parents[1][node] >= 0; node = index.to(parents[1][node])) {
+			backward++;
+		}
+		int[] path = new int[forward + backward];
+		int position = forward;
+		for(int node = meeting; parents[0][node] >= 0; node = index.from(parents[0][node])) {
+			path[--position] = parents[0][node];
+		}
+		position = forward;
+		for(int node = meeting; parents[1][node] >= 0; node = index.to(parents[1][node])) {
+			path[position++] = parents[1][node];
+		}
+		return new Result(source, target, distance, path, settled);
+	}
+
+	/**
+	 * The outcome of a shortest path search
+	 */
+	public static class Result {
+		private final int source;
+		private final int target;
+		private final double distance;
+		private final int[] path;
+		private final long settled;
+
+		private Result(long settled) {
+			this(-1, -1, Double.POSITIVE_INFINITY, null, settled);
+		}
+
+		private Result(int source, int target, double distance, int[] path, long settled) {
+			this.source = source;
+			this.target = target;
+			this.distance = distance;
+			this.path = path;
+			this.settled = settled;
+		}
+
+		/**
+		 * Returns true if a path was found
+		 * @return
+		 */
+		public boolean isFound() {
+			return path != null;
+		}
+
+		/**
+		 * Returns the ordinal of the first node of the path, or -1 if no path was found
+		 * @return
+		 */
+		public int getSource() {
+			return source;
+		}
+
+		/**
+		 * Returns the ordinal of the last node of the path, or -1 if no path was found
+		 * @return
+		 */
+		public int getTarget() {
+			return target;
+		}
+
+		/**
+		 * Returns the length of the path, or positive infinity if no path was found
+		 * @return
+		 */
+		public double getDistance() {
+			return distance;
+		}
+
+		/**
+		 * Returns the edge ordinals of the path from the source to the target, or null if no path was found
+		 * @return
+		 */
+		public int[] getPath() {
+			return path == null ? null : path.clone();
+		}
+
+		/**
+		 * Returns the number of nodes the search expanded
+		 * @return
+		 */
+		public long getSettledCount() {
+			return settled;
+		}
+
+		@Override
+		public String toString() {
+			return isFound() ? "Path " + Arrays.toString(path) + " of length " + distance : "No path";
+		}
+	}
+
+}
@@ -0,0 +1,133 @@
+package chpg.graph.index;
+
+/**
+ * The strongly connected components of the graph of an adjacency index.
+ *
+ * Components are computed with an iterative version of Tarjan's algorithm, so
+ * deep graphs do not overflow the call stack. Components are numbered in the
+ * order they are completed, which is a reverse topological order of the
+ * condensed graph: every edge between two different components leads from a
+ * higher to a lower component number.
+ */
+public class StronglyConnectedComponents {
+
+	private final int[] component;
+	private final int count;
+
+	private final int[] memberOffsets;
+	private final int[] members;
+
+	/**
+	 * Computes the strongly connected components of the given index along outgoing edges
+	 * @param index
+	 */
+	public StronglyConnectedComponents(AdjacencyIndex index) {
+		int nodeCount = index.nodeCount();
+		this.component = new int[nodeCount];
+		int[] order = new int[nodeCount];
+		int[] low = new int[nodeCount];
+		int[] cursor = new int[nodeCount];
+		boolean[] onStack = new boolean[nodeCount];
+		int[] stack = new int[nodeCount];
+		int[] callStack = new int[nodeCount];
+		int stackSize = 0;
+		int counter = 0;
+		int components = 0;
+		for(int root = 0; root < nodeCount; root++) {
+			if(order[root] != 0) {
+				continue;
+			}
+			int depth = 0;
+			order[root] = low[root] = ++counter;
+			stack[stackSize++] = root;
+			onStack[root] = true;
+			callStack[depth++] = root;
+			while(depth > 0) {
+				int node = callStack[depth - 1];
+				if(cursor[node] < index.outDegree(node)) {
+					int successor = index.to(index.outEdge(node, cursor[node]++));
+					if(order[successor] == 0) {
+						order[successor] = low[successor] = ++counter;
+						stack[stackSize++] = successor;
+						onStack[successor] = true;
+						callStack[depth++] = successor;
+					} else if(onStack[successor]) {
+						low[node] = Math.min(low[node], order[successor]);
+					}
+				} else {
+					depth--;
+					if(low[node] == order[node]) {
+						int member;
+						do {
+							member = stack[--stackSize];
+							onStack[member] = false;
+							component[member] = components;
+						} while(member != node);
+						components++;
+					}
+					if(depth > 0) {
+						int parent = callStack[depth - 1];
+						low[parent] = Math.min(low[parent], low[node]);
+					}
+				}
+			}
+		}
+		this.count = components;
+
+		this.memberOffsets = new int[components + 1];
+		this.members = new int[nodeCount];
+		for(int node = 0; node < nodeCount; node++) {
+			memberOffsets[component[node] + 1]++;
+		}
+		for(int c = 0; c < components; c++) {
+			memberOffsets[c + 1] += memberOffsets[c];
+		}
+		int[] next = new int[components];
+		System.arraycopy(memberOffsets, 0, next, 0, components);
+		for(int node = 0; node < nodeCount; node++) {
+			members[next[component[node]]++] = node;
+		}
+	}
+
+	/**
+	 * Returns the number of strongly connected components
+	 * @return
+	 */
+	public int count() {
+		return count;
+	}
+
+	/**
+	 * Returns the component number of the given node ordinal
+	 * @param node
+	 * @return
+	 */
+	public int component(int node) {
+		return component[node];
+	}
+
+	/**
+	 * Returns the number of nodes in the given component
+	 * @param component
+	 * @return
+	 */
+	public int size(int component) {
+		return memberOffsets[component + 1] - memberOffsets[component];
+	}
+
+	/**
+	 * Returns the i-th node ordinal of the given component
+	 * @param component
+	 * @param i
+	 * @return
+	 */
+	public int member(int component, int i) {
+		return members[memberOffsets[component] + i];
+	}
+
+	@Override
+	public String toString() {
+		return "StronglyConnectedComponents [components=" + count + ", nodes=" + component.length + "]";
+	}
+
+}
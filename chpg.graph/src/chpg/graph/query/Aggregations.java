@@ -0,0 +1,231 @@
+package chpg.graph.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import chpg.graph.Edge;
+import chpg.graph.ExecutionContext;
+import chpg.graph.Graph;
+import chpg.graph.GraphElement;
+import chpg.graph.GraphElementPredicates;
+import chpg.graph.Node;
+import chpg.graph.Node.NodeDirection;
+import chpg.graph.PropertyGraph;
+import chpg.graph.index.AdjacencyIndex;
+import chpg.graph.schema.SchemaGraph;
+
+/**
+ * Aggregations over the streamed elements of a query result (see
+ * Query.countNodes and the related methods). Each aggregation consumes the
+ * element stream of a plan once and keeps only its accumulators, so no
+ * intermediate graph is built beyond what the plan itself requires.
+ */
+class Aggregations {
+
+	private Aggregations() {}
+
+	/**
+	 * Counts the given elements
+	 */
+	static long count(Stream<? extends GraphElement> elements) {
+		long[] count = new long[1];
+		elements.forEach(element -> {
+			ExecutionContext.checkpoint();
+			count[0]++;
+		});
+		return count[0];
+	}
+
+	/**
+	 * Counts the given elements per tag. Without tags every tag of an element is
+	 * counted, otherwise the given tags are counted in the given order and an
+	 * element counts for a tag if it is tagged with the tag or a tag it implies in
+	 * the schema of the prototype.
+	 */
+	static Map<String,Long> countByTag(Stream<? extends GraphElement> elements, Graph prototype, String... tags) {
+		if(tags == null || tags.length == 0) {
+			Map<String,Long> counts = new HashMap<String,Long>();
+			elements.forEach(element -> {
+				ExecutionContext.checkpoint();
+				for(String tag : element.tags()) {
+					counts.merge(tag, 1L, Long::sum);
+				}
+			});
+			return counts;
+		}
+		List<Predicate<GraphElement>> predicates = new ArrayList<Predicate<GraphElement>>();
+		for(String tag : tags) {
+			if(prototype instanceof PropertyGraph) {
+				predicates.add(GraphElementPredicates.taggedWithAny(((PropertyGraph) prototype).getInheritedTags(tag)));
+			} else {
+				predicates.add(element -> element.tags().contains(tag));
+			}
+		}
+		long[] counts = new long[tags.length];
+		elements.forEach(element -> {
+			ExecutionContext.checkpoint();
+			for(int i = 0; i < counts.length; i++) {
+				if(predicates.get(i).test(element)) {
+					counts[i]++;
+				}
+			}
+		});
+		Map<String,Long> result = new LinkedHashMap<String,Long>();
+		for(int i = 0; i < tags.length; i++) {
+			result.put(tags[i], counts[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * Counts the given elements per value of the given attribute, elements
+	 * without the attribute are not counted
+	 */
+	static Map<Object,Long> countByAttribute(Stream<? extends GraphElement> elements, String attribute) {
+		if(attribute == null) {
+			throw new IllegalArgumentException("Attribute must be non-null");
+		}
+		Map<Object,Long> counts = new HashMap<Object,Long>();
+		elements.forEach(element -> {
+			ExecutionContext.checkpoint();
+			Object value = element.getAttr(attribute);
+			if(value != null) {
+				counts.merge(value, 1L, Long::sum);
+			}
+		});
+		return counts;
+	}
+
+	/**
+	 * Counts the given nodes per container, the node with an incoming
+	 * SchemaGraph.Contains edge (or an edge tagged with a subtag) to the node in
+	 * the given containment graph. Nodes without a container are not counted.
+	 */
+	static Map<Node,Long> countByContainer(Stream<Node> nodes, Graph containment) {
+		AdjacencyIndex index = AdjacencyIndex.of(containment);
+		Predicate<GraphElement> contains;
+		if(containment instanceof PropertyGraph) {
+			contains = GraphElementPredicates.taggedWithAny(((PropertyGraph) containment).getInheritedTags(SchemaGraph.Contains));
+		} else {
+			contains = element -> element.tags().contains(SchemaGraph.Contains);
+		}
+		Map<Node,Long> counts = new HashMap<Node,Long>();
+		nodes.forEach(node -> {
+			ExecutionContext.checkpoint();
+			int ordinal = index.getNodeOrdinal(node);
+			if(ordinal < 0) {
+				return;
+			}
+			for(int i = 0; i < index.inDegree(ordinal); i++) {
+				Edge edge = index.getEdge(index.inEdge(ordinal, i));
+				if(contains.test(edge)) {
+					counts.merge(edge.from(), 1L, Long::sum);
+					return;
+				}
+			}
+		});
+		return counts;
+	}
+
+	/**
+	 * Returns the degree of each of the given nodes in the given graph
+	 */
+	static Map<Node,Integer> degrees(Stream<Node> nodes, Graph graph, NodeDirection direction) {
+		AdjacencyIndex index = AdjacencyIndex.of(graph);
+		Map<Node,Integer> degrees = new HashMap<Node,Integer>();
+		nodes.forEach(node -> {
+			ExecutionContext.checkpoint();
+			degrees.put(node, degree(index, node, direction));
+		});
+		return degrees;
+	}
+
+	/**
+	 * Returns the degree of the given node in the graph of the index, nodes that
+	 * are not indexed have no edges
+	 */
+	static int degree(AdjacencyIndex index, Node node, NodeDirection direction) {
+		int ordinal = index.getNodeOrdinal(node);
+		if(ordinal < 0) {
+			return 0;
+		} else if(direction == NodeDirection.IN) {
+			return index.inDegree(ordinal);
+		} else {
+			return index.outDegree(ordinal);
+		}
+	}
+
+	/**
+	 * Returns the count, sum, minimum, average and maximum of the numeric values
+	 * of the given attribute, elements without a numeric value are skipped
+	 */
+	static DoubleSummaryStatistics statistics(Stream<? extends GraphElement> elements, String attribute) {
+		if(attribute == null) {
+			throw new IllegalArgumentException("Attribute must be non-null");
+		}
+		DoubleSummaryStatistics statistics = new DoubleSummaryStatistics();
+		elements.forEach(element -> {
+			ExecutionContext.checkpoint();
+			Object value = element.getAttr(attribute);
+			if(value instanceof Number) {
+				statistics.accept(((Number) value).doubleValue());
+			}
+		});
+		return statistics;
+	}
+
+	/**
+	 * Returns the k greatest of the given elements by the given order, greatest
+	 * first. Only k elements are retained while the elements are consumed.
+	 */
+	static <E> List<E> top(Stream<E> elements, int k, Comparator<? super E> comparator) {
+		if(k < 0) {
+			throw new IllegalArgumentException("k must be non-negative");
+		}
+		if(comparator == null) {
+			throw new IllegalArgumentException("Comparator must be non-null");
+		}
+		if(k == 0) {
+			return new ArrayList<E>();
+		}
+		// a min-heap of the k greatest elements seen so far
+		PriorityQueue<E> heap = new PriorityQueue<E>(Math.min(k, 1024), comparator);
+		elements.forEach(element -> {
+			ExecutionContext.checkpoint();
+			if(heap.size() < k) {
+				heap.add(element);
+			} else if(comparator.compare(element, heap.peek()) > 0) {
+				heap.poll();
+				heap.add(element);
+			}
+		});
+		List<E> result = new ArrayList<E>(heap);
+		Collections.sort(result, comparator.reversed());
+		return result;
+	}
+
+	/**
+	 * Orders elements by the numeric value of the given attribute, elements
+	 * without a numeric value are excluded before ordering
+	 */
+	static Comparator<GraphElement> byAttribute(String attribute) {
+		return Comparator.comparingDouble(element -> ((Number) element.getAttr(attribute)).doubleValue());
+	}
+
+	/**
+	 * Returns true if the element has a numeric value for the given attribute
+	 */
+	static boolean hasNumericAttr(GraphElement element, String attribute) {
+		return element.getAttr(attribute) instanceof Number;
+	}
+
+}
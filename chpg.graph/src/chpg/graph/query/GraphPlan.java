@@ -0,0 +1,57 @@
+package chpg.graph.query;
+
+import java.util.stream.Stream;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.Node;
+
+/**
+ * A leaf of a query plan that supplies an existing graph
+ */
+public class GraphPlan extends QueryPlan {
+
+	private final Graph graph;
+
+	public GraphPlan(Graph graph) {
+		super("graph", null);
+		if(graph == null) {
+			throw new IllegalArgumentException("Graph must be non-null");
+		}
+		this.graph = graph;
+	}
+
+	/**
+	 * Returns the supplied graph
+	 * @return
+	 */
+	public Graph getGraph() {
+		return graph;
+	}
+
+	@Override
+	public Graph getPrototype() {
+		return graph;
+	}
+
+	@Override
+	protected Graph execute(Graph[] inputs) {
+		return graph;
+	}
+
+	@Override
+	protected Stream<Node> streamNodes() {
+		return graph.nodes().stream();
+	}
+
+	@Override
+	protected Stream<Edge> streamEdges() {
+		return graph.edges().stream();
+	}
+
+	@Override
+	public String toString() {
+		return "graph(" + graph.getClass().getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(graph)) + ")";
+	}
+
+}
@@ -0,0 +1,956 @@
+package chpg.graph.query;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import chpg.graph.AbstractGraph;
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.GraphElement;
+import chpg.graph.GraphListener;
+import chpg.graph.Node;
+import chpg.graph.Node.NodeDirection;
+
+/**
+ * The result of a query that is kept current while the queried graphs change.
+ *
+ * The view evaluates every operator of the query plan once and then listens to
+ * the graphs of the plan (see AbstractGraph.addGraphListener). Each addition or
+ * removal is propagated through the operators as a delta of added and removed
+ * elements, following the counting and delete-and-rederive (DRed) rules of
+ * Gupta, Mumick and Subrahmanian, "Maintaining Views Incrementally" (SIGMOD
+ * 1993):
+ * <ul>
+ * <li>selections filter the delta of their input,</li>
+ * <li>unions and intersections count the inputs that contain each element,</li>
+ * <li>differences count the subtracted inputs that contain each element,</li>
+ * <li>unbounded forward and reverse traversals extend the reached nodes from
+ * the new edges and, on removals, delete the nodes reached through the removed
+ * edges and rederive the ones that are still reachable from the rest.</li>
+ * </ul>
+ * Other operators (and bounded or filtered traversals) are recomputed from the
+ * maintained results of their inputs and compared to their previous result.
+ *
+ * Only changes made with Graph.add and Graph.remove are observed. If the node or
+ * edge sets of a graph are modified directly, the view is refreshed in full the
+ * next time its result is requested. Changes to the tags or attributes of
+ * elements are not observed, call refresh after such changes. The result of a
+ * view must not be modified, and views should be closed when they are no longer
+ * needed so that the graphs release them.
+ */
+public class MaterializedView {
+
+	private final Query query;
+	private final Map<QueryPlan,ViewNode> operators = new IdentityHashMap<QueryPlan,ViewNode>();
+	private final List<ViewNode> order = new ArrayList<ViewNode>();
+	private final Map<Graph,List<Leaf>> leaves = new IdentityHashMap<Graph,List<Leaf>>();
+	private final Map<Graph,long[]> versions = new IdentityHashMap<Graph,long[]>();
+	private final ViewNode root;
+	private final GraphListener listener;
+	private boolean closed = false;
+
+	private long incrementalUpdates = 0;
+	private long recomputations = 0;
+	private long refreshes = 0;
+
+	/**
+	 * Materializes the result of the given query
+	 * @param query
+	 */
+	public MaterializedView(Query query) {
+		if(query == null) {
+			throw new IllegalArgumentException("Query must be non-null");
+		}
+		this.query = query;
+		this.root = build(query.getPlan());
+		this.listener = new GraphListener() {
+			@Override
+			public void elementAdded(Graph graph, GraphElement element) {
+				changed(graph, element, true);
+			}
+
+			@Override
+			public void elementRemoved(Graph graph, GraphElement element) {
+				changed(graph, element, false);
+			}
+		};
+		initialize();
+		for(Graph graph : leaves.keySet()) {
+			((AbstractGraph) graph).addGraphListener(listener);
+		}
+	}
+
+	/**
+	 * Returns the query of this view
+	 * @return
+	 */
+	public Query getQuery() {
+		return query;
+	}
+
+	/**
+	 * Returns the current result of the query. The result is updated in place as
+	 * the queried graphs change and must not be modified.
+	 *
+	 * @return
+	 */
+	public synchronized Graph getResult() {
+		if(closed) {
+			throw new IllegalStateException("View is closed");
+		}
+		for(Map.Entry<Graph,long[]> version : versions.entrySet()) {
+			Graph graph = version.getKey();
+			if(graph.nodes().getModificationCount() != version.getValue()[0]
+					|| graph.edges().getModificationCount() != version.getValue()[1]) {
+				// the graph was modified without notifying the view
+				refresh();
+				break;
+			}
+		}
+		return root.result;
+	}
+
+	/**
+	 * Recomputes the result of the view in full
+	 */
+	public synchronized void refresh() {
+		initialize();
+		refreshes++;
+	}
+
+	/**
+	 * Stops maintaining the view and unregisters it from the queried graphs
+	 */
+	public synchronized void close() {
+		if(!closed) {
+			closed = true;
+			for(Graph graph : leaves.keySet()) {
+				((AbstractGraph) graph).removeGraphListener(listener);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of graph changes applied to the view incrementally
+	 * @return
+	 */
+	public synchronized long getIncrementalUpdates() {
+		return incrementalUpdates;
+	}
+
+	/**
+	 * Returns the number of times an operator without a delta rule was
+	 * recomputed from its inputs
+	 *
+	 * @return
+	 */
+	public synchronized long getRecomputations() {
+		return recomputations;
+	}
+
+	/**
+	 * Returns the number of full refreshes of the view
+	 * @return
+	 */
+	public synchronized long getRefreshes() {
+		return refreshes;
+	}
+
+	private ViewNode build(QueryPlan plan) {
+		ViewNode operator = operators.get(plan);
+		if(operator != null) {
+			return operator;
+		}
+		if(plan instanceof GraphPlan) {
+			Graph graph = ((GraphPlan) plan).getGraph();
+			if(!(graph instanceof AbstractGraph)) {
+				throw new IllegalArgumentException("Cannot observe changes to " + graph.getClass().getName());
+			}
+			Leaf leaf = new Leaf(plan, graph);
+			leaves.computeIfAbsent(graph, key -> new ArrayList<Leaf>()).add(leaf);
+			operator = leaf;
+		} else {
+			List<ViewNode> inputs = new ArrayList<ViewNode>();
+			for(QueryPlan input : plan.getInputs()) {
+				inputs.add(build(input));
+			}
+			String name = plan.getOperator();
+			boolean literal = !plan.getParameters().isEmpty();
+			if(plan instanceof SelectionPlan && isPredicate((SelectionPlan) plan)) {
+				operator = new Selection(plan, inputs);
+			} else if(plan instanceof TraversalPlan && ((TraversalPlan) plan).getMaxDepth() < 0
+					&& ((TraversalPlan) plan).getStopAt() == null && ((TraversalPlan) plan).getExcluded() == null) {
+				operator = new Traversal((TraversalPlan) plan, inputs);
+			} else if(!literal && (name.equals("union") || name.equals("intersection"))) {
+				operator = new SetOperation(plan, inputs, name.equals("union"));
+			} else if(!literal && (name.equals("difference") || name.equals("differenceEdges"))) {
+				operator = new Difference(plan, inputs, name.equals("differenceEdges"));
+			} else {
+				operator = new Recomputation(plan, inputs);
+			}
+		}
+		operators.put(plan, operator);
+		order.add(operator);
+		return operator;
+	}
+
+	/**
+	 * Returns true if the selection filters by a predicate for the graph type of
+	 * the plan, other selections are computed by the graph
+	 */
+	private static boolean isPredicate(SelectionPlan plan) {
+		if(plan.getNodeFilter() != null) {
+			return plan.getNodeFilter().create(plan.getPrototype()) != null;
+		} else {
+			return plan.getEdgeFilter().create(plan.getPrototype()) != null;
+		}
+	}
+
+	private void initialize() {
+		for(ViewNode operator : order) {
+			operator.initialize();
+		}
+		recordVersions();
+	}
+
+	private void recordVersions() {
+		for(Graph graph : leaves.keySet()) {
+			versions.put(graph, new long[] { graph.nodes().getModificationCount(), graph.edges().getModificationCount() });
+		}
+	}
+
+	/**
+	 * Propagates a change of the given graph through the operators, inputs are
+	 * always updated before the operators that consume them
+	 */
+	private synchronized void changed(Graph graph, GraphElement element, boolean added) {
+		if(closed) {
+			return;
+		}
+		Map<ViewNode,List<Delta>> pending = new IdentityHashMap<ViewNode,List<Delta>>();
+		for(Leaf leaf : leaves.get(graph)) {
+			Delta delta = new Delta();
+			delta.add(element, added);
+			pending.put(leaf, Collections.singletonList(delta));
+		}
+		for(ViewNode operator : order) {
+			if(operator instanceof Leaf) {
+				continue;
+			}
+			List<Delta> output = new ArrayList<Delta>();
+			if(operator instanceof Recomputation) {
+				// recompute once, however many inputs changed
+				for(ViewNode input : operator.inputs) {
+					if(pending.containsKey(input)) {
+						output.add(((Recomputation) operator).recompute());
+						break;
+					}
+				}
+			} else {
+				for(int i = 0; i < operator.inputs.size(); i++) {
+					List<Delta> deltas = pending.get(operator.inputs.get(i));
+					if(deltas != null) {
+						for(Delta delta : deltas) {
+							Delta result = operator.update(i, delta);
+							if(!result.isEmpty()) {
+								output.add(result);
+							}
+						}
+					}
+				}
+			}
+			if(!output.isEmpty()) {
+				pending.put(operator, output);
+			}
+		}
+		incrementalUpdates++;
+		recordVersions();
+	}
+
+	@Override
+	public String toString() {
+		return "view(" + query.getPlan() + ")";
+	}
+
+	/**
+	 * The elements added to and removed from the result of an operator. Removed
+	 * edges are applied before removed nodes and added nodes before added edges.
+	 */
+	private static class Delta {
+		private final List<Node> addedNodes = new ArrayList<Node>();
+		private final List<Edge> addedEdges = new ArrayList<Edge>();
+		private final List<Node> removedNodes = new ArrayList<Node>();
+		private final List<Edge> removedEdges = new ArrayList<Edge>();
+
+		private void add(GraphElement element, boolean added) {
+			if(element instanceof Node) {
+				(added ? addedNodes : removedNodes).add((Node) element);
+			} else {
+				(added ? addedEdges : removedEdges).add((Edge) element);
+			}
+		}
+
+		private boolean isEmpty() {
+			return addedNodes.isEmpty() && addedEdges.isEmpty() && removedNodes.isEmpty() && removedEdges.isEmpty();
+		}
+	}
+
+	/**
+	 * The maintained result of an operator of the query plan
+	 */
+	private abstract class ViewNode {
+		protected final QueryPlan plan;
+		protected final List<ViewNode> inputs;
+		protected Graph result;
+
+		private ViewNode(QueryPlan plan, List<ViewNode> inputs) {
+			this.plan = plan;
+			this.inputs = inputs;
+		}
+
+		/**
+		 * Computes the result from the current results of the inputs
+		 */
+		abstract void initialize();
+
+		/**
+		 * Applies a delta of the given input and returns the delta of the result
+		 */
+		abstract Delta update(int input, Delta delta);
+
+		protected Graph input(int input) {
+			return inputs.get(input).result;
+		}
+
+		/**
+		 * Adds the given element to or removes it from the result, recording the change
+		 */
+		protected void set(GraphElement element, boolean present, Delta output) {
+			if(element instanceof Node) {
+				Node node = (Node) element;
+				if(present ? result.nodes().add(node) : result.nodes().remove(node)) {
+					output.add(node, present);
+				}
+			} else {
+				Edge edge = (Edge) element;
+				if(present ? result.edges().add(edge) : result.edges().remove(edge)) {
+					output.add(edge, present);
+				}
+			}
+		}
+	}
+
+	/**
+	 * A queried graph, its result is the graph itself
+	 */
+	private class Leaf extends ViewNode {
+		private final Graph graph;
+
+		private Leaf(QueryPlan plan, Graph graph) {
+			super(plan, Collections.<ViewNode>emptyList());
+			this.graph = graph;
+		}
+
+		@Override
+		void initialize() {
+			result = graph;
+		}
+
+		@Override
+		Delta update(int input, Delta delta) {
+			throw new IllegalStateException("Graphs have no inputs");
+		}
+	}
+
+	/**
+	 * Selects the nodes or the edges of its input that match a predicate
+	 */
+	private class Selection extends ViewNode {
+		private Predicate<? super Node> nodePredicate;
+		private Predicate<? super Edge> edgePredicate;
+		// the number of selected edges incident to each selected node
+		private final Map<Node,Integer> degrees = new HashMap<Node,Integer>();
+
+		private Selection(QueryPlan plan, List<ViewNode> inputs) {
+			super(plan, inputs);
+		}
+
+		@Override
+		void initialize() {
+			SelectionPlan selection = (SelectionPlan) plan;
+			Graph prototype = plan.getPrototype();
+			if(selection.getNodeFilter() != null) {
+				nodePredicate = selection.getNodeFilter().create(prototype);
+			} else {
+				edgePredicate = selection.getEdgeFilter().create(prototype);
+			}
+			result = prototype.empty();
+			degrees.clear();
+			Delta ignored = new Delta();
+			if(nodePredicate != null) {
+				for(Node node : input(0).nodes()) {
+					if(nodePredicate.test(node)) {
+						set(node, true, ignored);
+					}
+				}
+			} else {
+				for(Edge edge : input(0).edges()) {
+					if(edgePredicate.test(edge)) {
+						addEdge(edge, ignored);
+					}
+				}
+			}
+		}
+
+		@Override
+		Delta update(int input, Delta delta) {
+			Delta output = new Delta();
+			if(nodePredicate != null) {
+				for(Node node : delta.removedNodes) {
+					set(node, false, output);
+				}
+				for(Node node : delta.addedNodes) {
+					if(nodePredicate.test(node)) {
+						set(node, true, output);
+					}
+				}
+			} else {
+				for(Edge edge : delta.removedEdges) {
+					if(result.edges().contains(edge)) {
+						set(edge, false, output);
+						removeEndpoint(edge.from(), output);
+						removeEndpoint(edge.to(), output);
+					}
+				}
+				for(Edge edge : delta.addedEdges) {
+					if(!result.edges().contains(edge) && edgePredicate.test(edge)) {
+						addEdge(edge, output);
+					}
+				}
+			}
+			return output;
+		}
+
+		private void addEdge(Edge edge, Delta output) {
+			for(Node endpoint : new Node[] { edge.from(), edge.to() }) {
+				degrees.merge(endpoint, 1, Integer::sum);
+				set(endpoint, true, output);
+			}
+			set(edge, true, output);
+		}
+
+		private void removeEndpoint(Node node, Delta output) {
+			int degree = degrees.merge(node, -1, Integer::sum);
+			if(degree == 0) {
+				degrees.remove(node);
+				set(node, false, output);
+			}
+		}
+	}
+
+	/**
+	 * The union or intersection of its inputs, counting the inputs that contain
+	 * each element
+	 */
+	private class SetOperation extends ViewNode {
+		private final boolean union;
+		private final Map<GraphElement,Integer> counts = new HashMap<GraphElement,Integer>();
+
+		private SetOperation(QueryPlan plan, List<ViewNode> inputs, boolean union) {
+			super(plan, inputs);
+			this.union = union;
+		}
+
+		@Override
+		void initialize() {
+			counts.clear();
+			for(int i = 0; i < inputs.size(); i++) {
+				for(Node node : input(i).nodes()) {
+					counts.merge(node, 1, Integer::sum);
+				}
+				for(Edge edge : input(i).edges()) {
+					counts.merge(edge, 1, Integer::sum);
+				}
+			}
+			result = plan.getPrototype().empty();
+			Delta ignored = new Delta();
+			for(Map.Entry<GraphElement,Integer> count : counts.entrySet()) {
+				set(count.getKey(), isPresent(count.getValue()), ignored);
+			}
+		}
+
+		private boolean isPresent(int count) {
+			return union ? count > 0 : count == inputs.size();
+		}
+
+		@Override
+		Delta update(int input, Delta delta) {
+			Delta output = new Delta();
+			for(Edge edge : delta.removedEdges) {
+				count(edge, -1, output);
+			}
+			for(Node node : delta.removedNodes) {
+				count(node, -1, output);
+			}
+			for(Node node : delta.addedNodes) {
+				count(node, 1, output);
+			}
+			for(Edge edge : delta.addedEdges) {
+				count(edge, 1, output);
+			}
+			return output;
+		}
+
+		private void count(GraphElement element, int change, Delta output) {
+			int count = counts.merge(element, change, Integer::sum);
+			if(count == 0) {
+				counts.remove(element);
+			}
+			set(element, isPresent(count), output);
+		}
+	}
+
+	/**
+	 * The difference of the first input and the other inputs, counting the
+	 * subtracted inputs that contain each element. Unless only edges are
+	 * subtracted, subtracted nodes also remove their edges.
+	 */
+	private class Difference extends ViewNode {
+		private final boolean edgesOnly;
+		private final Set<GraphElement> minuend = new HashSet<GraphElement>();
+		private final Map<GraphElement,Integer> subtracted = new HashMap<GraphElement,Integer>();
+		private final Map<Node,Set<Edge>> incident = new HashMap<Node,Set<Edge>>();
+
+		private Difference(QueryPlan plan, List<ViewNode> inputs, boolean edgesOnly) {
+			super(plan, inputs);
+			this.edgesOnly = edgesOnly;
+		}
+
+		@Override
+		void initialize() {
+			minuend.clear();
+			subtracted.clear();
+			incident.clear();
+			minuend.addAll(input(0).nodes().toStandardCollection());
+			for(Edge edge : input(0).edges()) {
+				addMinuendEdge(edge);
+			}
+			for(int i = 1; i < inputs.size(); i++) {
+				for(Node node : input(i).nodes()) {
+					subtracted.merge(node, 1, Integer::sum);
+				}
+				for(Edge edge : input(i).edges()) {
+					subtracted.merge(edge, 1, Integer::sum);
+				}
+			}
+			result = plan.getPrototype().empty();
+			Delta ignored = new Delta();
+			for(GraphElement element : minuend) {
+				set(element, isPresent(element), ignored);
+			}
+		}
+
+		private void addMinuendEdge(Edge edge) {
+			minuend.add(edge);
+			incident.computeIfAbsent(edge.from(), node -> new HashSet<Edge>()).add(edge);
+			incident.computeIfAbsent(edge.to(), node -> new HashSet<Edge>()).add(edge);
+		}
+
+		private void removeMinuendEdge(Edge edge) {
+			minuend.remove(edge);
+			for(Node endpoint : new Node[] { edge.from(), edge.to() }) {
+				Set<Edge> edges = incident.get(endpoint);
+				if(edges != null) {
+					edges.remove(edge);
+					if(edges.isEmpty()) {
+						incident.remove(endpoint);
+					}
+				}
+			}
+		}
+
+		private boolean isSubtracted(GraphElement element) {
+			return subtracted.containsKey(element);
+		}
+
+		private boolean isPresent(GraphElement element) {
+			if(!minuend.contains(element)) {
+				return false;
+			}
+			if(element instanceof Node) {
+				return edgesOnly || !isSubtracted(element);
+			}
+			if(isSubtracted(element)) {
+				return false;
+			}
+			if(element instanceof Edge && !edgesOnly) {
+				Edge edge = (Edge) element;
+				return !isSubtracted(edge.from()) && !isSubtracted(edge.to());
+			}
+			return true;
+		}
+
+		@Override
+		Delta update(int input, Delta delta) {
+			List<GraphElement> affected = new ArrayList<GraphElement>();
+			if(input == 0) {
+				for(Edge edge : delta.removedEdges) {
+					removeMinuendEdge(edge);
+					affected.add(edge);
+				}
+				for(Node node : delta.removedNodes) {
+					minuend.remove(node);
+					affected.add(node);
+				}
+				for(Node node : delta.addedNodes) {
+					minuend.add(node);
+					affected.add(node);
+				}
+				for(Edge edge : delta.addedEdges) {
+					addMinuendEdge(edge);
+					affected.add(edge);
+				}
+			} else {
+				for(Edge edge : delta.removedEdges) {
+					subtract(edge, -1, affected);
+				}
+				for(Node node : delta.removedNodes) {
+					subtract(node, -1, affected);
+				}
+				for(Node node : delta.addedNodes) {
+					subtract(node, 1, affected);
+				}
+				for(Edge edge : delta.addedEdges) {
+					subtract(edge, 1, affected);
+				}
+			}
+			Delta output = new Delta();
+			for(GraphElement element : affected) {
+				set(element, isPresent(element), output);
+			}
+			return output;
+		}
+
+		private void subtract(GraphElement element, int change, List<GraphElement> affected) {
+			int count = subtracted.merge(element, change, Integer::sum);
+			if(count == 0) {
+				subtracted.remove(element);
+			}
+			affected.add(element);
+			if(element instanceof Node && !edgesOnly && incident.containsKey(element)) {
+				affected.addAll(incident.get(element));
+			}
+		}
+	}
+
+	/**
+	 * An unbounded forward or reverse traversal. New edges extend the reached
+	 * nodes, removals are handled by deleting every node reached through the
+	 * removed elements and rederiving the deleted nodes that remain reachable.
+	 */
+	private class Traversal extends ViewNode {
+		private final NodeDirection direction;
+		private final Map<Node,List<Edge>> successors = new HashMap<Node,List<Edge>>();
+		private final Map<Node,List<Edge>> predecessors = new HashMap<Node,List<Edge>>();
+		private final Set<Edge> graphEdges = new HashSet<Edge>();
+		private final Set<Node> origin = new HashSet<Node>();
+		private final Set<Edge> originEdges = new HashSet<Edge>();
+		private final Set<Node> reached = new HashSet<Node>();
+
+		private Traversal(TraversalPlan plan, List<ViewNode> inputs) {
+			super(plan, inputs);
+			this.direction = plan.getDirection();
+		}
+
+		private Node source(Edge edge) {
+			return direction == NodeDirection.OUT ? edge.from() : edge.to();
+		}
+
+		private Node target(Edge edge) {
+			return direction == NodeDirection.OUT ? edge.to() : edge.from();
+		}
+
+		@Override
+		void initialize() {
+			successors.clear();
+			predecessors.clear();
+			graphEdges.clear();
+			origin.clear();
+			originEdges.clear();
+			reached.clear();
+			for(Edge edge : input(0).edges()) {
+				addGraphEdge(edge);
+			}
+			TraversalPlan traversal = (TraversalPlan) plan;
+			if(traversal.getOrigin() != null) {
+				origin.addAll(traversal.getOrigin().toStandardCollection());
+			} else {
+				origin.addAll(input(1).nodes().toStandardCollection());
+				originEdges.addAll(input(1).edges().toStandardCollection());
+			}
+			result = plan.getPrototype().empty();
+			Delta ignored = new Delta();
+			for(Node node : origin) {
+				if(!reached.contains(node)) {
+					expand(node, ignored);
+				}
+			}
+			for(Edge edge : originEdges) {
+				set(edge, true, ignored);
+			}
+		}
+
+		private void addGraphEdge(Edge edge) {
+			graphEdges.add(edge);
+			successors.computeIfAbsent(source(edge), node -> new ArrayList<Edge>()).add(edge);
+			predecessors.computeIfAbsent(target(edge), node -> new ArrayList<Edge>()).add(edge);
+		}
+
+		private void removeGraphEdge(Edge edge) {
+			graphEdges.remove(edge);
+			remove(successors, source(edge), edge);
+			remove(predecessors, target(edge), edge);
+		}
+
+		private void remove(Map<Node,List<Edge>> adjacency, Node node, Edge edge) {
+			List<Edge> edges = adjacency.get(node);
+			if(edges != null) {
+				edges.remove(edge);
+				if(edges.isEmpty()) {
+					adjacency.remove(node);
+				}
+			}
+		}
+
+		private boolean isPresent(Edge edge) {
+			return originEdges.contains(edge) || (graphEdges.contains(edge) && reached.contains(source(edge)));
+		}
+
+		@Override
+		Delta update(int input, Delta delta) {
+			Delta output = new Delta();
+			List<Node> unsupported = new ArrayList<Node>();
+			List<Edge> affected = new ArrayList<Edge>();
+			if(input == 0) {
+				for(Edge edge : delta.removedEdges) {
+					removeGraphEdge(edge);
+					affected.add(edge);
+					if(reached.contains(source(edge))) {
+						unsupported.add(target(edge));
+					}
+				}
+			} else {
+				for(Edge edge : delta.removedEdges) {
+					originEdges.remove(edge);
+					affected.add(edge);
+				}
+				for(Node node : delta.removedNodes) {
+					origin.remove(node);
+					unsupported.add(node);
+				}
+			}
+			if(!unsupported.isEmpty()) {
+				rederive(unsupported, output);
+			}
+			for(Edge edge : affected) {
+				set(edge, isPresent(edge), output);
+			}
+			if(input == 0) {
+				for(Edge edge : delta.addedEdges) {
+					addGraphEdge(edge);
+					if(reached.contains(source(edge))) {
+						set(edge, true, output);
+						if(!reached.contains(target(edge))) {
+							expand(target(edge), output);
+						}
+					}
+				}
+			} else {
+				for(Node node : delta.addedNodes) {
+					origin.add(node);
+					if(!reached.contains(node)) {
+						expand(node, output);
+					}
+				}
+				for(Edge edge : delta.addedEdges) {
+					originEdges.add(edge);
+					set(edge, true, output);
+				}
+			}
+			return output;
+		}
+
+		/**
+		 * Reaches the given node and everything reachable from it
+		 */
+		private void expand(Node start, Delta output) {
+			Deque<Node> queue = new ArrayDeque<Node>();
+			reached.add(start);
+			set(start, true, output);
+			queue.add(start);
+			while(!queue.isEmpty()) {
+				Node node = queue.poll();
+				List<Edge> edges = successors.get(node);
+				if(edges == null) {
+					continue;
+				}
+				for(Edge edge : edges) {
+					set(edge, true, output);
+					Node successor = target(edge);
+					if(reached.add(successor)) {
+						set(successor, true, output);
+						queue.add(successor);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Deletes the nodes reachable from the given nodes that lost support and
+		 * rederives the deleted nodes that are still reachable
+		 */
+		private void rederive(List<Node> unsupported, Delta output) {
+			// over-delete everything reachable from the unsupported nodes
+			Set<Node> deleted = new HashSet<Node>();
+			Deque<Node> stack = new ArrayDeque<Node>();
+			for(Node node : unsupported) {
+				if(reached.contains(node) && deleted.add(node)) {
+					stack.push(node);
+				}
+			}
+			while(!stack.isEmpty()) {
+				Node node = stack.pop();
+				List<Edge> edges = successors.get(node);
+				if(edges == null) {
+					continue;
+				}
+				for(Edge edge : edges) {
+					Node successor = target(edge);
+					if(reached.contains(successor) && deleted.add(successor)) {
+						stack.push(successor);
+					}
+				}
+			}
+			reached.removeAll(deleted);
+
+			// rederive the deleted nodes that are origins or have a remaining reached predecessor
+			Deque<Node> queue = new ArrayDeque<Node>();
+			for(Node node : deleted) {
+				boolean supported = origin.contains(node);
+				List<Edge> edges = predecessors.get(node);
+				if(!supported && edges != null) {
+					for(Edge edge : edges) {
+						if(reached.contains(source(edge))) {
+							supported = true;
+							break;
+						}
+					}
+				}
+				if(supported) {
+					queue.add(node);
+				}
+			}
+			for(Node node : queue) {
+				reached.add(node);
+			}
+			while(!queue.isEmpty()) {
+				Node node = queue.poll();
+				List<Edge> edges = successors.get(node);
+				if(edges == null) {
+					continue;
+				}
+				for(Edge edge : edges) {
+					Node successor = target(edge);
+					if(deleted.contains(successor) && reached.add(successor)) {
+						queue.add(successor);
+					}
+				}
+			}
+
+			// the deleted nodes that were not rederived leave the result with their edges
+			for(Node node : deleted) {
+				if(!reached.contains(node)) {
+					List<Edge> edges = successors.get(node);
+					if(edges != null) {
+						for(Edge edge : edges) {
+							set(edge, isPresent(edge), output);
+						}
+					}
+					set(node, false, output);
+				}
+			}
+		}
+	}
+
+	/**
+	 * An operator without a delta rule, recomputed from the maintained results
+	 * of its inputs whenever one of them changes
+	 */
+	private class Recomputation extends ViewNode {
+
+		private Recomputation(QueryPlan plan, List<ViewNode> inputs) {
+			super(plan, inputs);
+		}
+
+		@Override
+		void initialize() {
+			result = evaluate();
+		}
+
+		private Graph evaluate() {
+			Graph[] graphs = new Graph[inputs.size()];
+			for(int i = 0; i < graphs.length; i++) {
+				graphs[i] = input(i);
+			}
+			// copy the result, operators may return (and later modify) one of their inputs
+			Graph evaluated = plan.execute(graphs);
+			Graph copy = plan.getPrototype().empty();
+			copy.nodes().addAll(evaluated.nodes());
+			copy.edges().addAll(evaluated.edges());
+			return copy;
+		}
+
+		@Override
+		Delta update(int input, Delta delta) {
+			return recompute();
+		}
+
+		private Delta recompute() {
+			recomputations++;
+			Graph previous = result;
+			result = evaluate();
+			Delta output = new Delta();
+			for(Edge edge : previous.edges()) {
+				if(!result.edges().contains(edge)) {
+					output.removedEdges.add(edge);
+				}
+			}
+			for(Node node : previous.nodes()) {
+				if(!result.nodes().contains(node)) {
+					output.removedNodes.add(node);
+				}
+			}
+			for(Node node : result.nodes()) {
+				if(!previous.nodes().contains(node)) {
+					output.addedNodes.add(node);
+				}
+			}
+			for(Edge edge : result.edges()) {
+				if(!previous.edges().contains(edge)) {
+					output.addedEdges.add(edge);
+				}
+			}
+			return output;
+		}
+	}
+
+}
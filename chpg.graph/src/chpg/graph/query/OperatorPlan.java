@@ -0,0 +1,29 @@
+package chpg.graph.query;
+
+import chpg.graph.Graph;
+
+/**
+ * A query plan that applies a graph operation to its evaluated inputs
+ */
+class OperatorPlan extends QueryPlan {
+
+	/**
+	 * A graph operation over the evaluated inputs of a plan
+	 */
+	interface Operation {
+		Graph apply(Graph[] inputs);
+	}
+
+	private final Operation operation;
+
+	OperatorPlan(String operator, Operation operation, Object[] parameters, QueryPlan... inputs) {
+		super(operator, parameters, inputs);
+		this.operation = operation;
+	}
+
+	@Override
+	protected Graph execute(Graph[] inputs) {
+		return operation.apply(inputs);
+	}
+
+}
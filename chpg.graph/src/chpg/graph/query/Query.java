@@ -1,13 +1,49 @@
 package chpg.graph.query;
 
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import chpg.graph.AsyncExecution;
+import chpg.graph.AttributePredicate;
 import chpg.graph.Edge;
+import chpg.graph.ExecutionContext;
 import chpg.graph.Graph;
+import chpg.graph.Graph.TraversalStrategy;
+import chpg.graph.GraphElement;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.GraphElementPredicates;
 import chpg.graph.GraphElementSet;
 import chpg.graph.Node;
+import chpg.graph.Node.NodeDirection;
+import chpg.graph.PathExpression;
+import chpg.graph.PropertyGraph;
+import chpg.graph.index.AdjacencyIndex;
+import chpg.graph.index.ShortestPaths;
+import chpg.graph.query.OperatorPlan.Operation;
+import chpg.graph.query.SelectionPlan.Filter;
+import chpg.graph.query.pattern.Match;
+import chpg.graph.query.pattern.Pattern;
+import chpg.graph.query.pattern.PatternMatcher;
 
+/**
+ * A lazily evaluated query over a graph.
+ * 
+ * Each query operation returns a new query that extends the query plan of this
+ * query, nothing is computed until the query is evaluated or its results are
+ * streamed. Literal arguments (nodes, edges and graph element sets) are captured
+ * by reference and read at evaluation time. The result of evaluate is retained,
+ * so repeated evaluations of the same query return the same graph.
+ */
 public class Query {
 
-	private Graph graph;
+	private final QueryPlan plan;
 	private Graph referenceGraph;
 	
 	/**
@@ -16,7 +52,7 @@ public class Query {
 	 */
 	public Query(Graph graph) {
 		if(graph != null) {
-			this.graph = graph;
+			this.plan = new GraphPlan(graph);
 			this.referenceGraph = null;
 		} else {
 			throw new IllegalArgumentException("Graph must be non-null");
@@ -30,7 +66,7 @@ public class Query {
 	 */
 	public Query(Graph graph, Graph referenceGraph) {
 		if(graph != null) {
-			this.graph = graph;
+			this.plan = new GraphPlan(graph);
 			if(referenceGraph != null) {
 				this.referenceGraph = referenceGraph;
 			} else {
@@ -41,6 +77,21 @@ public class Query {
 		}
 	}
 	
+	/**
+	 * Constructs a new query for the given query plan and an optional (may be null)
+	 * reference graph for querying containment relationships
+	 * @param plan
+	 * @param referenceGraph
+	 */
+	public Query(QueryPlan plan, Graph referenceGraph) {
+		if(plan != null) {
+			this.plan = plan;
+			this.referenceGraph = referenceGraph;
+		} else {
+			throw new IllegalArgumentException("Query plan must be non-null");
+		}
+	}
+	
 	/**
 	 * Returns the underlying reference graph used for containment queries
 	 * @return
@@ -57,8 +108,129 @@ public class Query {
 		this.referenceGraph = referenceGraph;
 	}
 	
+	/**
+	 * Returns the query plan of this query
+	 * @return
+	 */
+	public QueryPlan getPlan() {
+		return plan;
+	}
+	
+	/**
+	 * Evaluates the query and returns the resulting graph
+	 * @return
+	 */
 	public Graph evaluate() {
-		return graph;
+		Graph result = plan.evaluate();
+		plan.memoize(result);
+		return result;
+	}
+	
+	/**
+	 * Evaluates the query using the given cache, the result is shared with other
+	 * evaluations of an equivalent query and must not be modified. A cached result
+	 * is reused until a node or edge is added to or removed from a graph the query
+	 * depends on, or the name, tags or attributes of any graph element change.
+	 * @param cache
+	 * @return
+	 */
+	public Graph evaluate(QueryCache cache) {
+		return cache.evaluate(this);
+	}
+
+	/**
+	 * Evaluates the query within the given execution context, the evaluation
+	 * stops with an ExecutionLimitException if the context is cancelled or one of
+	 * its limits is exceeded
+	 * 
+	 * @param context
+	 * @return
+	 */
+	public Graph evaluate(ExecutionContext context) {
+		return context.execute(this::evaluate);
+	}
+
+	/**
+	 * Evaluates the query on the default executor of asynchronous operations
+	 * (virtual threads on JDK 21 and later), see AsyncExecution
+	 *
+	 * @return
+	 */
+	public CompletableFuture<Graph> evaluateAsync() {
+		return evaluateAsync(AsyncExecution.getDefaultExecutor());
+	}
+
+	/**
+	 * Evaluates the query on the given executor
+	 * @param executor
+	 * @return
+	 */
+	public CompletableFuture<Graph> evaluateAsync(Executor executor) {
+		return AsyncExecution.submit(this::evaluate, executor);
+	}
+
+	/**
+	 * Evaluates the query within the given execution context on the given
+	 * executor. Cancelling the context stops the evaluation, the future then
+	 * completes exceptionally with an ExecutionLimitException.
+	 *
+	 * @param context
+	 * @param executor
+	 * @return
+	 */
+	public CompletableFuture<Graph> evaluateAsync(ExecutionContext context, Executor executor) {
+		return AsyncExecution.submit(() -> evaluate(context), executor);
+	}
+
+	/**
+	 * Evaluates the query and keeps the result current as the queried graphs are
+	 * modified, see MaterializedView
+	 *
+	 * @return
+	 */
+	public MaterializedView materialize() {
+		return new MaterializedView(this);
+	}
+
+	/**
+	 * Returns the operator tree of the query without evaluating it
+	 * @return
+	 */
+	public String explain() {
+		return QueryProfile.explain(plan);
+	}
+
+	/**
+	 * Evaluates every operator of the query and returns the measured operator
+	 * tree, the result of the profile is retained as the result of this query
+	 * @return
+	 */
+	public QueryProfile explainAnalyze() {
+		QueryProfile profile = QueryProfile.analyze(plan);
+		plan.memoize(profile.getResult());
+		return profile;
+	}
+
+	/**
+	 * Returns a stream of the nodes of the query result.
+	 * 
+	 * Traversals and selections produce their results incrementally, so
+	 * short-circuiting operations (such as findFirst, anyMatch or limit) only
+	 * compute as much of the result as they consume. Other operations are
+	 * evaluated in full before the stream starts.
+	 * 
+	 * @return
+	 */
+	public Stream<Node> nodeStream() {
+		return plan.nodeStream();
+	}
+	
+	/**
+	 * Returns a stream of the edges of the query result, see nodeStream
+	 * @return
+	 */
+	public Stream<Edge> edgeStream() {
+		return plan.edgeStream();
 	}
 	
 	/**
@@ -67,11 +239,7 @@ public class Query {
 	 * @return
 	 */
 	public Query nodes() {
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.nodes()), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.nodes()));
-		}
+		return selectNodes("allNodes", in -> in[0].toGraph(in[0].nodes()), prototype -> node -> true);
 	}
 
 	/**
@@ -80,11 +248,7 @@ public class Query {
 	 * @return
 	 */
 	public Query edges() {
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.edges()), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.edges()));
-		}
+		return selectEdges("allEdges", in -> in[0].toGraph(in[0].edges()), prototype -> edge -> true);
 	}
 	
 	/**
@@ -93,7 +257,171 @@ public class Query {
 	 * @return
 	 */
 	public boolean isEmpty() {
-		return graph.isEmpty();
+		// only needs to find a single node of the result
+		return !plan.nodeStream().findAny().isPresent();
+	}
+	
+	/**
+	 * Returns the number of nodes of the query result
+	 * 
+	 * Aggregations consume the node or edge stream of the query (see nodeStream),
+	 * so selections are counted as they are streamed without building a graph.
+	 * 
+	 * @return
+	 */
+	public long countNodes() {
+		return Aggregations.count(plan.nodeStream());
+	}
+	
+	/**
+	 * Returns the number of edges of the query result
+	 * 
+	 * @return
+	 */
+	public long countEdges() {
+		return Aggregations.count(plan.edgeStream());
+	}
+	
+	/**
+	 * Counts the nodes of the query result per tag. Without tags every tag of a
+	 * node is counted, otherwise the given tags are counted (including nodes
+	 * tagged with a tag implied in the schema, as with nodesTaggedWithAny).
+	 * 
+	 * @param tags
+	 * @return
+	 */
+	public Map<String,Long> countNodesByTag(String... tags) {
+		return Aggregations.countByTag(plan.nodeStream(), plan.getPrototype(), tags);
+	}
+	
+	/**
+	 * Counts the edges of the query result per tag, see countNodesByTag
+	 * 
+	 * @param tags
+	 * @return
+	 */
+	public Map<String,Long> countEdgesByTag(String... tags) {
+		return Aggregations.countByTag(plan.edgeStream(), plan.getPrototype(), tags);
+	}
+	
+	/**
+	 * Counts the nodes of the query result per value of the given attribute,
+	 * nodes without the attribute are not counted
+	 * 
+	 * @param attribute
+	 * @return
+	 */
+	public Map<Object,Long> countNodesByAttribute(String attribute) {
+		return Aggregations.countByAttribute(plan.nodeStream(), attribute);
+	}
+	
+	/**
+	 * Counts the edges of the query result per value of the given attribute,
+	 * edges without the attribute are not counted
+	 * 
+	 * @param attribute
+	 * @return
+	 */
+	public Map<Object,Long> countEdgesByAttribute(String attribute) {
+		return Aggregations.countByAttribute(plan.edgeStream(), attribute);
+	}
+	
+	/**
+	 * Counts the nodes of the query result per container along CHPG.Contains
+	 * edges (or CHPG.Contains subtypes) of the reference graph, or of the queried
+	 * graph if no reference graph is set. Nodes without a container are not
+	 * counted.
+	 * 
+	 * @return
+	 */
+	public Map<Node,Long> countNodesByContainer() {
+		Graph containment = referenceGraph != null ? referenceGraph : plan.getPrototype();
+		return Aggregations.countByContainer(plan.nodeStream(), containment);
+	}
+	
+	/**
+	 * Returns the degree of each node of the query result in the queried graph
+	 * 
+	 * @param direction
+	 * @return
+	 */
+	public Map<Node,Integer> degrees(NodeDirection direction) {
+		return Aggregations.degrees(plan.nodeStream(), plan.getPrototype(), direction);
+	}
+	
+	/**
+	 * Returns the count, sum, minimum, average and maximum of the numeric values
+	 * of the given attribute of the nodes of the query result
+	 * 
+	 * @param attribute
+	 * @return
+	 */
+	public DoubleSummaryStatistics nodeStatistics(String attribute) {
+		return Aggregations.statistics(plan.nodeStream(), attribute);
+	}
+	
+	/**
+	 * Returns the count, sum, minimum, average and maximum of the numeric values
+	 * of the given attribute of the edges of the query result
+	 * 
+	 * @param attribute
+	 * @return
+	 */
+	public DoubleSummaryStatistics edgeStatistics(String attribute) {
+		return Aggregations.statistics(plan.edgeStream(), attribute);
+	}
+	
+	/**
+	 * Returns the k greatest nodes of the query result in the given order,
+	 * greatest first. Only k nodes are retained while the result is streamed.
+	 * 
+	 * @param k
+	 * @param comparator
+	 * @return
+	 */
+	public List<Node> topNodes(int k, Comparator<? super Node> comparator) {
+		return Aggregations.top(plan.nodeStream(), k, comparator);
+	}
+	
+	/**
+	 * Returns the k greatest edges of the query result in the given order,
+	 * greatest first. Only k edges are retained while the result is streamed.
+	 * 
+	 * @param k
+	 * @param comparator
+	 * @return
+	 */
+	public List<Edge> topEdges(int k, Comparator<? super Edge> comparator) {
+		return Aggregations.top(plan.edgeStream(), k, comparator);
+	}
+	
+	/**
+	 * Returns the k nodes of the query result with the greatest degree in the
+	 * queried graph, greatest first
+	 * 
+	 * @param k
+	 * @param direction
+	 * @return
+	 */
+	public List<Node> topNodesByDegree(int k, NodeDirection direction) {
+		AdjacencyIndex index = AdjacencyIndex.of(plan.getPrototype());
+		return Aggregations.top(plan.nodeStream(), k, Comparator.comparingInt(node -> Aggregations.degree(index, node, direction)));
+	}
+	
+	/**
+	 * Returns the k nodes of the query result with the greatest numeric value of
+	 * the given attribute, greatest first. Nodes without a numeric value are
+	 * skipped.
+	 * 
+	 * @param k
+	 * @param attribute
+	 * @return
+	 */
+	public List<Node> topNodesByAttribute(int k, String attribute) {
+		if(attribute == null) {
+			throw new IllegalArgumentException("Attribute must be non-null");
+		}
+		return Aggregations.top(plan.nodeStream().filter(node -> Aggregations.hasNumericAttr(node, attribute)), k, Aggregations.byAttribute(attribute));
 	}
 	
 	/**
@@ -103,11 +431,7 @@ public class Query {
 	 * @return
 	 */
 	public Query leaves(){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.leaves()), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.leaves()));
-		}
+		return apply("leaves", in -> in[0].toGraph(in[0].leaves()));
 	}
 	
 	/**
@@ -117,11 +441,7 @@ public class Query {
 	 * @return
 	 */
 	public Query roots(){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.roots()), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.roots()));
-		}
+		return apply("roots", in -> in[0].toGraph(in[0].roots()));
 	}
 	
 	/**
@@ -132,11 +452,7 @@ public class Query {
 	 * @return The set of nodes reachable from incoming edges to the given nodes
 	 */
 	public Query predecessors(Node... origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.predecessors(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.predecessors(origin)));
-		}
+		return apply("predecessors", in -> in[0].toGraph(in[0].predecessors(origin)), (Object[]) origin);
 	}
 	
 	/**
@@ -147,11 +463,7 @@ public class Query {
 	 * @return The set of nodes reachable from incoming edges to the given nodes
 	 */
 	public Query predecessors(GraphElementSet<Node> origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.predecessors(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.predecessors(origin)));
-		}
+		return apply("predecessors", in -> in[0].toGraph(in[0].predecessors(origin)), origin);
 	}
 
 	/**
@@ -162,11 +474,7 @@ public class Query {
 	 * @return The set of nodes reachable from incoming edges to the given nodes
 	 */
 	public Query predecessors(Graph origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.predecessors(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.predecessors(origin)));
-		}
+		return combine("predecessors", in -> in[0].toGraph(in[0].predecessors(in[1])), new GraphPlan(origin));
 	}
 	
 	/**
@@ -177,7 +485,7 @@ public class Query {
 	 * @return The set of nodes reachable from incoming edges to the given nodes
 	 */
 	public Query predecessors(Query origin){
-		return predecessors(origin.evaluate());
+		return combine("predecessors", in -> in[0].toGraph(in[0].predecessors(in[1])), origin.plan);
 	}
 	
 	/**
@@ -188,11 +496,7 @@ public class Query {
 	 * @return The set of nodes reachable from outgoing edges from the given nodes
 	 */
 	public Query successors(Node... origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.successors(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.successors(origin)));
-		}
+		return apply("successors", in -> in[0].toGraph(in[0].successors(origin)), (Object[]) origin);
 	}
 	
 	/**
@@ -203,11 +507,7 @@ public class Query {
 	 * @return The set of nodes reachable from outgoing edges from the given nodes
 	 */
 	public Query successors(GraphElementSet<Node> origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.successors(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.successors(origin)));
-		}
+		return apply("successors", in -> in[0].toGraph(in[0].successors(origin)), origin);
 	}
 	
 	/**
@@ -218,11 +518,7 @@ public class Query {
 	 * @return The set of nodes reachable from outgoing edges from the given nodes
 	 */
 	public Query successors(Graph origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.successors(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.successors(origin)));
-		}
+		return combine("successors", in -> in[0].toGraph(in[0].successors(in[1])), new GraphPlan(origin));
 	}
 	
 	/**
@@ -233,7 +529,7 @@ public class Query {
 	 * @return The set of nodes reachable from outgoing edges from the given nodes
 	 */
 	public Query successors(Query origin){
-		return successors(origin.evaluate());
+		return combine("successors", in -> in[0].toGraph(in[0].successors(in[1])), origin.plan);
 	}
 	
 	/**
@@ -247,11 +543,7 @@ public class Query {
 	 * @return
 	 */
 	public Query forwardStep(Node... origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.forwardStep(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.forwardStep(origin)));
-		}
+		return apply("forwardStep", in -> in[0].forwardStep(origin), (Object[]) origin);
 	}
 	
 	/**
@@ -265,11 +557,7 @@ public class Query {
 	 * @return
 	 */
 	public Query forwardStep(GraphElementSet<Node> origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.forwardStep(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.forwardStep(origin)));
-		}
+		return apply("forwardStep", in -> in[0].forwardStep(origin), origin);
 	}
 	
 	/**
@@ -283,11 +571,7 @@ public class Query {
 	 * @return
 	 */
 	public Query forwardStep(Graph origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.forwardStep(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.forwardStep(origin)));
-		}
+		return combine("forwardStep", in -> in[0].forwardStep(in[1]), new GraphPlan(origin));
 	}
 	
 	/**
@@ -301,7 +585,7 @@ public class Query {
 	 * @return
 	 */
 	public Query forwardStep(Query origin){
-		return forwardStep(origin.evaluate());
+		return combine("forwardStep", in -> in[0].forwardStep(in[1]), origin.plan);
 	}
 	
 	/**
@@ -315,11 +599,7 @@ public class Query {
 	 * @return
 	 */
 	public Query reverseStep(Node... origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.reverseStep(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.reverseStep(origin)));
-		}
+		return apply("reverseStep", in -> in[0].reverseStep(origin), (Object[]) origin);
 	}
 	
 	/**
@@ -333,11 +613,7 @@ public class Query {
 	 * @return
 	 */
 	public Query reverseStep(GraphElementSet<Node> origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.reverseStep(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.reverseStep(origin)));
-		}
+		return apply("reverseStep", in -> in[0].reverseStep(origin), origin);
 	}
 	
 	/**
@@ -351,11 +627,7 @@ public class Query {
 	 * @return
 	 */
 	public Query reverseStep(Graph origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.reverseStep(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.reverseStep(origin)));
-		}
+		return combine("reverseStep", in -> in[0].reverseStep(in[1]), new GraphPlan(origin));
 	}
 	
 	/**
@@ -369,7 +641,7 @@ public class Query {
 	 * @return
 	 */
 	public Query reverseStep(Query origin){
-		return reverseStep(origin.evaluate());
+		return combine("reverseStep", in -> in[0].reverseStep(in[1]), origin.plan);
 	}
 	
 	/**
@@ -381,11 +653,7 @@ public class Query {
 	 * @return
 	 */
 	public Query union(Node... nodes){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.union(nodes)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.union(nodes)));
-		}
+		return apply("union", in -> in[0].union(nodes), (Object[]) nodes);
 	}
 	
 	/**
@@ -397,11 +665,7 @@ public class Query {
 	 * @return
 	 */
 	public Query union(Edge... edges){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.union(edges)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.union(edges)));
-		}
+		return apply("union", in -> in[0].union(edges), (Object[]) edges);
 	}
 	
 	/**
@@ -413,11 +677,7 @@ public class Query {
 	 * @return
 	 */
 	public Query union(Graph... graphs){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.union(graphs)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.union(graphs)));
-		}
+		return combine("union", in -> in[0].union(arguments(in)), plans(graphs));
 	}
 	
 	/**
@@ -429,11 +689,7 @@ public class Query {
 	 * @return
 	 */
 	public Query union(Query... queries){
-		Graph[] graphs = new Graph[queries.length];
-		for(int i=0; i<queries.length; i++) {
-			graphs[i] = queries[i].evaluate();
-		}
-		return union(graphs);
+		return combine("union", in -> in[0].union(arguments(in)), plans(queries));
 	}
 	
 	/**
@@ -453,11 +709,7 @@ public class Query {
 	 * @return
 	 */
 	public Query difference(Node... nodes){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.difference(nodes)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.difference(nodes)));
-		}
+		return apply("difference", in -> in[0].difference(nodes), (Object[]) nodes);
 	}
 	
 	/**
@@ -477,11 +729,7 @@ public class Query {
 	 * @return
 	 */
 	public Query difference(Edge... edges){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.difference(edges)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.difference(edges)));
-		}
+		return apply("difference", in -> in[0].difference(edges), (Object[]) edges);
 	}
 	
 	/**
@@ -501,11 +749,7 @@ public class Query {
 	 * @return
 	 */
 	public Query difference(Graph... graphs){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.difference(graphs)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.difference(graphs)));
-		}
+		return combine("difference", in -> in[0].difference(arguments(in)), plans(graphs));
 	}
 	
 	/**
@@ -525,11 +769,7 @@ public class Query {
 	 * @return
 	 */
 	public Query difference(Query... queries){
-		Graph[] graphs = new Graph[queries.length];
-		for(int i=0; i<queries.length; i++) {
-			graphs[i] = queries[i].evaluate();
-		}
-		return difference(graphs);
+		return combine("difference", in -> in[0].difference(arguments(in)), plans(queries));
 	}
 	
 	/**
@@ -539,11 +779,7 @@ public class Query {
 	 * @return
 	 */
 	public Query differenceEdges(Edge... edges){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.differenceEdges(edges)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.differenceEdges(edges)));
-		}
+		return apply("differenceEdges", in -> in[0].differenceEdges(edges), (Object[]) edges);
 	}
 	
 	/**
@@ -553,11 +789,7 @@ public class Query {
 	 * @return
 	 */
 	public Query differenceEdges(Graph... graphs){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.differenceEdges(graphs)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.differenceEdges(graphs)));
-		}
+		return combine("differenceEdges", in -> in[0].differenceEdges(arguments(in)), plans(graphs));
 	}
 	
 	/**
@@ -567,11 +799,7 @@ public class Query {
 	 * @return
 	 */
 	public Query differenceEdges(Query... queries){
-		Graph[] graphs = new Graph[queries.length];
-		for(int i=0; i<queries.length; i++) {
-			graphs[i] = queries[i].evaluate();
-		}
-		return differenceEdges(graphs);
+		return combine("differenceEdges", in -> in[0].differenceEdges(arguments(in)), plans(queries));
 	}
 	
 	/**
@@ -583,11 +811,7 @@ public class Query {
 	 * @return
 	 */
 	public Query intersection(Node... nodes){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.intersection(nodes)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.intersection(nodes)));
-		}
+		return apply("intersection", in -> in[0].intersection(nodes), (Object[]) nodes);
 	}
 	
 	/**
@@ -599,11 +823,7 @@ public class Query {
 	 * @return
 	 */
 	public Query intersection(Edge... edges){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.intersection(edges)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.intersection(edges)));
-		}
+		return apply("intersection", in -> in[0].intersection(edges), (Object[]) edges);
 	}
 	
 	/**
@@ -615,11 +835,7 @@ public class Query {
 	 * @return
 	 */
 	public Query intersection(Graph... graphs){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.intersection(graphs)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.intersection(graphs)));
-		}
+		return combine("intersection", in -> in[0].intersection(arguments(in)), plans(graphs));
 	}
 	
 	/**
@@ -631,11 +847,7 @@ public class Query {
 	 * @return
 	 */
 	public Query intersection(Query... queries){
-		Graph[] graphs = new Graph[queries.length];
-		for(int i=0; i<queries.length; i++) {
-			graphs[i] = queries[i].evaluate();
-		}
-		return intersection(graphs);
+		return combine("intersection", in -> in[0].intersection(arguments(in)), plans(queries));
 	}
 	
 	/**
@@ -647,11 +859,7 @@ public class Query {
 	 * @return
 	 */
 	public Query betweenStep(Node from, Node to){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.betweenStep(from, to)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.betweenStep(from, to)));
-		}
+		return apply("betweenStep", in -> in[0].betweenStep(from, to), from, to);
 	}
 	
 	/**
@@ -663,11 +871,7 @@ public class Query {
 	 * @return
 	 */
 	public Query betweenStep(GraphElementSet<Node> from, GraphElementSet<Node> to){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.betweenStep(from, to)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.betweenStep(from, to)));
-		}
+		return apply("betweenStep", in -> in[0].betweenStep(from, to), from, to);
 	}
 	
 	/**
@@ -679,11 +883,7 @@ public class Query {
 	 * @return
 	 */
 	public Query betweenStep(Graph from, Graph to){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.betweenStep(from, to)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.betweenStep(from, to)));
-		}
+		return combine("betweenStep", in -> in[0].betweenStep(in[1], in[2]), new GraphPlan(from), new GraphPlan(to));
 	}
 	
 	/**
@@ -695,7 +895,7 @@ public class Query {
 	 * @return
 	 */
 	public Query betweenStep(Query from, Query to){
-		return betweenStep(from.evaluate(), to.evaluate());
+		return combine("betweenStep", in -> in[0].betweenStep(in[1], in[2]), from.plan, to.plan);
 	}
 	
 	/**
@@ -710,11 +910,7 @@ public class Query {
 	 * @return
 	 */
 	public Query between(Node from, Node to) {
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.between(from, to)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.between(from, to)));
-		}
+		return apply("between", in -> in[0].between(from, to), from, to);
 	}
 	
 	/**
@@ -729,11 +925,7 @@ public class Query {
 	 * @return
 	 */
 	public Query between(GraphElementSet<Node> from, GraphElementSet<Node> to) {
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.between(from, to)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.between(from, to)));
-		}
+		return apply("between", in -> in[0].between(from, to), from, to);
 	}
 	
 	/**
@@ -748,11 +940,7 @@ public class Query {
 	 * @return
 	 */
 	public Query between(Graph from, Graph to) {
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.between(from.nodes(), to.nodes())), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.between(from.nodes(), to.nodes())));
-		}
+		return combine("between", in -> in[0].between(in[1].nodes(), in[2].nodes()), new GraphPlan(from), new GraphPlan(to));
 	}
 	
 	/**
@@ -767,7 +955,7 @@ public class Query {
 	 * @return
 	 */
 	public Query between(Query from, Query to) {
-		return between(from.evaluate(), to.evaluate());
+		return combine("between", in -> in[0].between(in[1].nodes(), in[2].nodes()), from.plan, to.plan);
 	}
 
 	/**
@@ -778,11 +966,7 @@ public class Query {
 	 * @return
 	 */
 	public Query forward(Node... origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.forward(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.forward(origin)));
-		}
+		return traverse("forward", in -> in[0].forward(origin), NodeDirection.OUT, Graph.UNBOUNDED_DEPTH, null, null, new GraphElementHashSet<Node>(origin), params((Object[]) origin));
 	}
 	
 	/**
@@ -793,11 +977,7 @@ public class Query {
 	 * @return
 	 */
 	public Query forward(GraphElementSet<Node> origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.forward(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.forward(origin)));
-		}
+		return traverse("forward", in -> in[0].forward(origin), NodeDirection.OUT, Graph.UNBOUNDED_DEPTH, null, null, origin, params(origin));
 	}
 	
 	/**
@@ -808,11 +988,7 @@ public class Query {
 	 * @return
 	 */
 	public Query forward(Graph origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.forward(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.forward(origin)));
-		}
+		return forward(new Query(origin));
 	}
 	
 	/**
@@ -823,79 +999,303 @@ public class Query {
 	 * @return
 	 */
 	public Query forward(Query origin){
-		return forward(origin.evaluate());
+		return traverse("forward", in -> in[0].forward(in[1]), NodeDirection.OUT, Graph.UNBOUNDED_DEPTH, null, null, origin.plan, params());
 	}
 	
 	/**
 	 * From this graph, selects the subgraph reachable from the given nodes
-	 * using reverse transitive traversal.
+	 * using forward transitive traversal with the given traversal strategy.
 	 * 
 	 * @param origin
+	 * @param strategy
 	 * @return
 	 */
-	public Query reverse(Node... origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.reverse(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.reverse(origin)));
-		}
+	public Query forward(GraphElementSet<Node> origin, TraversalStrategy strategy){
+		return traverse("forward", in -> in[0].forward(origin, strategy), NodeDirection.OUT, Graph.UNBOUNDED_DEPTH, null, null, origin, params(origin, strategy));
 	}
 	
 	/**
 	 * From this graph, selects the subgraph reachable from the given nodes
-	 * using reverse transitive traversal.
+	 * using forward transitive traversal with the given traversal strategy.
 	 * 
 	 * @param origin
+	 * @param strategy
 	 * @return
 	 */
-	public Query reverse(GraphElementSet<Node> origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.reverse(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.reverse(origin)));
-		}
+	public Query forward(Graph origin, TraversalStrategy strategy){
+		return forward(new Query(origin), strategy);
 	}
 	
 	/**
 	 * From this graph, selects the subgraph reachable from the given nodes
-	 * using reverse transitive traversal.
+	 * using forward transitive traversal with the given traversal strategy.
 	 * 
 	 * @param origin
+	 * @param strategy
 	 * @return
 	 */
-	public Query reverse(Graph origin){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.reverse(origin)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.reverse(origin)));
-		}
+	public Query forward(Query origin, TraversalStrategy strategy){
+		return traverse("forward", in -> in[0].forward(in[1], strategy), NodeDirection.OUT, Graph.UNBOUNDED_DEPTH, null, null, origin.plan, params(strategy));
 	}
 	
 	/**
 	 * From this graph, selects the subgraph reachable from the given nodes
-	 * using reverse transitive traversal.
+	 * using forward transitive traversal along paths of at most maxDepth edges.
 	 * 
 	 * @param origin
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
 	 * @return
 	 */
-	public Query reverse(Query origin){
-		return reverse(origin.evaluate());
+	public Query forward(GraphElementSet<Node> origin, int maxDepth){
+		return forward(origin, maxDepth, null, null);
 	}
 	
 	/**
-	 * Yields the induced graph formed from the nodes in the current graph and all
-	 * of the edges in the given graph that connect pairs of nodes in the current
-	 * graph.
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using forward transitive traversal along paths of at most maxDepth edges.
 	 * 
-	 * @param graphs
+	 * @param origin
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Query forward(Graph origin, int maxDepth){
+		return forward(new Query(origin), maxDepth, null, null);
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using forward transitive traversal along paths of at most maxDepth edges.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Query forward(Query origin, int maxDepth){
+		return forward(origin, maxDepth, null, null);
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using forward transitive traversal along paths of at most maxDepth edges,
+	 * stopping at nodes that satisfy stopAt and not traversing edges that
+	 * satisfy excluded.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @param stopAt the nodes to stop at, or null
+	 * @param excluded the edges not to traverse, or null
+	 * @return
+	 */
+	public Query forward(GraphElementSet<Node> origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded){
+		return traverse("forward", in -> in[0].forward(origin, maxDepth, stopAt, excluded), NodeDirection.OUT, maxDepth, stopAt, excluded, origin, params(origin, maxDepth, stopAt, excluded));
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using forward transitive traversal along paths of at most maxDepth edges,
+	 * stopping at nodes that satisfy stopAt and not traversing edges that
+	 * satisfy excluded.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @param stopAt the nodes to stop at, or null
+	 * @param excluded the edges not to traverse, or null
+	 * @return
+	 */
+	public Query forward(Graph origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded){
+		return forward(new Query(origin), maxDepth, stopAt, excluded);
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using forward transitive traversal along paths of at most maxDepth edges,
+	 * stopping at nodes that satisfy stopAt and not traversing edges that
+	 * satisfy excluded.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @param stopAt the nodes to stop at, or null
+	 * @param excluded the edges not to traverse, or null
+	 * @return
+	 */
+	public Query forward(Query origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded){
+		return traverse("forward", in -> in[0].forward(in[1], maxDepth, stopAt, excluded), NodeDirection.OUT, maxDepth, stopAt, excluded, origin.plan, params(maxDepth, stopAt, excluded));
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal.
+	 * 
+	 * @param origin
+	 * @return
+	 */
+	public Query reverse(Node... origin){
+		return traverse("reverse", in -> in[0].reverse(origin), NodeDirection.IN, Graph.UNBOUNDED_DEPTH, null, null, new GraphElementHashSet<Node>(origin), params((Object[]) origin));
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal.
+	 * 
+	 * @param origin
+	 * @return
+	 */
+	public Query reverse(GraphElementSet<Node> origin){
+		return traverse("reverse", in -> in[0].reverse(origin), NodeDirection.IN, Graph.UNBOUNDED_DEPTH, null, null, origin, params(origin));
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal.
+	 * 
+	 * @param origin
+	 * @return
+	 */
+	public Query reverse(Graph origin){
+		return reverse(new Query(origin));
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal.
+	 * 
+	 * @param origin
+	 * @return
+	 */
+	public Query reverse(Query origin){
+		return traverse("reverse", in -> in[0].reverse(in[1]), NodeDirection.IN, Graph.UNBOUNDED_DEPTH, null, null, origin.plan, params());
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal with the given traversal strategy.
+	 * 
+	 * @param origin
+	 * @param strategy
+	 * @return
+	 */
+	public Query reverse(GraphElementSet<Node> origin, TraversalStrategy strategy){
+		return traverse("reverse", in -> in[0].reverse(origin, strategy), NodeDirection.IN, Graph.UNBOUNDED_DEPTH, null, null, origin, params(origin, strategy));
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal with the given traversal strategy.
+	 * 
+	 * @param origin
+	 * @param strategy
+	 * @return
+	 */
+	public Query reverse(Graph origin, TraversalStrategy strategy){
+		return reverse(new Query(origin), strategy);
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal with the given traversal strategy.
+	 * 
+	 * @param origin
+	 * @param strategy
+	 * @return
+	 */
+	public Query reverse(Query origin, TraversalStrategy strategy){
+		return traverse("reverse", in -> in[0].reverse(in[1], strategy), NodeDirection.IN, Graph.UNBOUNDED_DEPTH, null, null, origin.plan, params(strategy));
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal along paths of at most maxDepth edges.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Query reverse(GraphElementSet<Node> origin, int maxDepth){
+		return reverse(origin, maxDepth, null, null);
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal along paths of at most maxDepth edges.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Query reverse(Graph origin, int maxDepth){
+		return reverse(new Query(origin), maxDepth, null, null);
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal along paths of at most maxDepth edges.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Query reverse(Query origin, int maxDepth){
+		return reverse(origin, maxDepth, null, null);
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal along paths of at most maxDepth edges,
+	 * stopping at nodes that satisfy stopAt and not traversing edges that
+	 * satisfy excluded.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @param stopAt the nodes to stop at, or null
+	 * @param excluded the edges not to traverse, or null
+	 * @return
+	 */
+	public Query reverse(GraphElementSet<Node> origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded){
+		return traverse("reverse", in -> in[0].reverse(origin, maxDepth, stopAt, excluded), NodeDirection.IN, maxDepth, stopAt, excluded, origin, params(origin, maxDepth, stopAt, excluded));
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal along paths of at most maxDepth edges,
+	 * stopping at nodes that satisfy stopAt and not traversing edges that
+	 * satisfy excluded.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @param stopAt the nodes to stop at, or null
+	 * @param excluded the edges not to traverse, or null
+	 * @return
+	 */
+	public Query reverse(Graph origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded){
+		return reverse(new Query(origin), maxDepth, stopAt, excluded);
+	}
+	
+	/**
+	 * From this graph, selects the subgraph reachable from the given nodes
+	 * using reverse transitive traversal along paths of at most maxDepth edges,
+	 * stopping at nodes that satisfy stopAt and not traversing edges that
+	 * satisfy excluded.
+	 * 
+	 * @param origin
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @param stopAt the nodes to stop at, or null
+	 * @param excluded the edges not to traverse, or null
+	 * @return
+	 */
+	public Query reverse(Query origin, int maxDepth, Predicate<? super Node> stopAt, Predicate<? super Edge> excluded){
+		return traverse("reverse", in -> in[0].reverse(in[1], maxDepth, stopAt, excluded), NodeDirection.IN, maxDepth, stopAt, excluded, origin.plan, params(maxDepth, stopAt, excluded));
+	}
+	
+	/**
+	 * Yields the induced graph formed from the nodes in the current graph and all
+	 * of the edges in the given graph that connect pairs of nodes in the current
+	 * graph.
+	 * 
+	 * @param graphs
 	 * @return
 	 */
 	public Query induce(Edge... edges){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.induce(edges)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.induce(edges)));
-		}
+		return apply("induce", in -> in[0].induce(edges), (Object[]) edges);
 	}
 	
 	/**
@@ -907,11 +1307,7 @@ public class Query {
 	 * @return
 	 */
 	public Query induce(Graph... graphs){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.induce(graphs)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.induce(graphs)));
-		}
+		return combine("induce", in -> in[0].induce(arguments(in)), plans(graphs));
 	}
 	
 	/**
@@ -923,11 +1319,7 @@ public class Query {
 	 * @return
 	 */
 	public Query induce(GraphElementSet<Edge> edges){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.induce(edges)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.induce(edges)));
-		}
+		return apply("induce", in -> in[0].induce(edges), edges);
 	}
 	
 	/**
@@ -939,11 +1331,180 @@ public class Query {
 	 * @return
 	 */
 	public Query induce(Query... queries){
-		Graph[] graphs = new Graph[queries.length];
-		for(int i=0; i<queries.length; i++) {
-			graphs[i] = queries[i].evaluate();
-		}
-		return induce(graphs);
+		return combine("induce", in -> in[0].induce(arguments(in)), plans(queries));
+	}
+
+	/**
+	 * Selects the subgraph of all nodes and edges bound by any match of the given
+	 * pattern in this graph
+	 * 
+	 * @param pattern
+	 * @return
+	 */
+	public Query match(Pattern pattern){
+		return apply("match", in -> new PatternMatcher(in[0]).match(pattern), pattern);
+	}
+
+	/**
+	 * Returns a lazy stream of the matches of the given pattern in the result of
+	 * this query, the query is evaluated before the stream starts
+	 * 
+	 * @param pattern
+	 * @return
+	 */
+	public Stream<Match> matches(Pattern pattern){
+		return new PatternMatcher(evaluate()).matches(pattern);
+	}
+
+	/**
+	 * From this graph, selects the subgraph of the paths from the given nodes
+	 * whose edge tags match the given path expression (see Graph.regularPaths).
+	 * 
+	 * @param origin
+	 * @param expression
+	 * @return
+	 */
+	public Query regularPaths(GraphElementSet<Node> origin, PathExpression expression){
+		return regularPaths(origin, expression, Graph.UNBOUNDED_DEPTH);
+	}
+	
+	/**
+	 * From this graph, selects the subgraph of the paths from the given nodes
+	 * whose edge tags match the given path expression (see Graph.regularPaths).
+	 * 
+	 * @param origin
+	 * @param expression
+	 * @return
+	 */
+	public Query regularPaths(Graph origin, PathExpression expression){
+		return regularPaths(new Query(origin), expression, Graph.UNBOUNDED_DEPTH);
+	}
+	
+	/**
+	 * From this graph, selects the subgraph of the paths from the given nodes
+	 * whose edge tags match the given path expression (see Graph.regularPaths).
+	 * 
+	 * @param origin
+	 * @param expression
+	 * @return
+	 */
+	public Query regularPaths(Query origin, PathExpression expression){
+		return regularPaths(origin, expression, Graph.UNBOUNDED_DEPTH);
+	}
+	
+	/**
+	 * From this graph, selects the subgraph of the paths of at most maxDepth
+	 * edges from the given nodes whose edge tags match the given path expression.
+	 * 
+	 * @param origin
+	 * @param expression
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Query regularPaths(GraphElementSet<Node> origin, PathExpression expression, int maxDepth){
+		return apply("regularPaths", in -> in[0].regularPaths(origin, expression, maxDepth), origin, expression, maxDepth);
+	}
+	
+	/**
+	 * From this graph, selects the subgraph of the paths of at most maxDepth
+	 * edges from the given nodes whose edge tags match the given path expression.
+	 * 
+	 * @param origin
+	 * @param expression
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Query regularPaths(Graph origin, PathExpression expression, int maxDepth){
+		return regularPaths(new Query(origin), expression, maxDepth);
+	}
+	
+	/**
+	 * From this graph, selects the subgraph of the paths of at most maxDepth
+	 * edges from the given nodes whose edge tags match the given path expression.
+	 * 
+	 * @param origin
+	 * @param expression
+	 * @param maxDepth the maximum path length, or Graph.UNBOUNDED_DEPTH
+	 * @return
+	 */
+	public Query regularPaths(Query origin, PathExpression expression, int maxDepth){
+		return combine("regularPaths", in -> in[0].regularPaths(in[1], expression, maxDepth), params(expression, maxDepth), origin.plan);
+	}
+
+	/**
+	 * From this graph, selects a path with the fewest edges from the given from
+	 * node to the given to node (see Graph.shortestPath).
+	 * 
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public Query shortestPath(Node from, Node to){
+		return shortestPath(new GraphElementHashSet<Node>(from), new GraphElementHashSet<Node>(to), null);
+	}
+	
+	/**
+	 * From this graph, selects a shortest path from any of the nodes in from to
+	 * any of the nodes in to along the edges tagged with one of the given tags,
+	 * measured by the given numeric edge attribute or by the number of edges if
+	 * the weight attribute is null (see Graph.shortestPath).
+	 * 
+	 * @param from
+	 * @param to
+	 * @param weightAttribute
+	 * @param edgeTags
+	 * @return
+	 */
+	public Query shortestPath(GraphElementSet<Node> from, GraphElementSet<Node> to, String weightAttribute, String... edgeTags){
+		return apply("shortestPath", in -> in[0].shortestPath(from, to, weightAttribute, edgeTags), from, to, weightAttribute, Arrays.asList(edgeTags));
+	}
+	
+	/**
+	 * From this graph, selects a shortest path from any of the nodes in from to
+	 * any of the nodes in to along the edges tagged with one of the given tags,
+	 * measured by the given numeric edge attribute or by the number of edges if
+	 * the weight attribute is null (see Graph.shortestPath).
+	 * 
+	 * @param from
+	 * @param to
+	 * @param weightAttribute
+	 * @param edgeTags
+	 * @return
+	 */
+	public Query shortestPath(Graph from, Graph to, String weightAttribute, String... edgeTags){
+		return shortestPath(new Query(from), new Query(to), weightAttribute, edgeTags);
+	}
+	
+	/**
+	 * From this graph, selects a shortest path from any of the nodes in from to
+	 * any of the nodes in to along the edges tagged with one of the given tags,
+	 * measured by the given numeric edge attribute or by the number of edges if
+	 * the weight attribute is null (see Graph.shortestPath).
+	 * 
+	 * @param from
+	 * @param to
+	 * @param weightAttribute
+	 * @param edgeTags
+	 * @return
+	 */
+	public Query shortestPath(Query from, Query to, String weightAttribute, String... edgeTags){
+		return combine("shortestPath", in -> in[0].shortestPath(in[1], in[2], weightAttribute, edgeTags), params(weightAttribute, Arrays.asList(edgeTags)), from.plan, to.plan);
+	}
+	
+	/**
+	 * From this graph, selects a shortest path from the given from node to the
+	 * given to node with an A* search guided by the given heuristic (see
+	 * Graph.shortestPath).
+	 * 
+	 * @param from
+	 * @param to
+	 * @param heuristic
+	 * @param weightAttribute
+	 * @param edgeTags
+	 * @return
+	 */
+	public Query shortestPath(Node from, Node to, ShortestPaths.Heuristic heuristic, String weightAttribute, String... edgeTags){
+		return apply("shortestPath", in -> in[0].shortestPath(from, to, heuristic, weightAttribute, edgeTags), from, to, heuristic, weightAttribute, Arrays.asList(edgeTags));
 	}
 
 	/**
@@ -953,11 +1514,7 @@ public class Query {
 	 * @return
 	 */
 	public Query nodes(String... tags){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.nodes(tags)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.nodes(tags)));
-		}
+		return selectNodes("nodes", in -> in[0].toGraph(in[0].nodes(tags)), prototype -> taggedWithAny(prototype, tags), (Object[]) tags);
 	}
 	
 	/**
@@ -968,11 +1525,7 @@ public class Query {
 	 * @return
 	 */
 	public Query nodesTaggedWithAny(String... tags){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.nodesTaggedWithAny(tags)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.nodesTaggedWithAny(tags)));
-		}
+		return selectNodes("nodesTaggedWithAny", in -> in[0].toGraph(in[0].nodesTaggedWithAny(tags)), prototype -> taggedWithAny(prototype, tags), (Object[]) tags);
 	}
 	
 	/**
@@ -983,11 +1536,7 @@ public class Query {
 	 * @return
 	 */
 	public Query nodesTaggedWithAll(String... tags){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.nodesTaggedWithAll(tags)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.nodesTaggedWithAll(tags)));
-		}
+		return selectNodes("nodesTaggedWithAll", in -> in[0].toGraph(in[0].nodesTaggedWithAll(tags)), prototype -> taggedWithAll(prototype, tags), (Object[]) tags);
 	}
 	
 	/**
@@ -997,11 +1546,7 @@ public class Query {
 	 * @return
 	 */
 	public Query edges(String... tags){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.edges(tags)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.edges(tags)));
-		}
+		return selectEdges("edges", in -> in[0].toGraph(in[0].edges(tags)), prototype -> taggedWithAny(prototype, tags), (Object[]) tags);
 	}
 	
 	/**
@@ -1012,11 +1557,7 @@ public class Query {
 	 * @return
 	 */
 	public Query edgesTaggedWithAny(String... tags){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.edgesTaggedWithAny(tags)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.edgesTaggedWithAny(tags)));
-		}
+		return selectEdges("edgesTaggedWithAny", in -> in[0].toGraph(in[0].edgesTaggedWithAny(tags)), prototype -> taggedWithAny(prototype, tags), (Object[]) tags);
 	}
 	
 	/**
@@ -1027,11 +1568,7 @@ public class Query {
 	 * @return
 	 */
 	public Query edgesTaggedWithAll(String... tags){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.edgesTaggedWithAll(tags)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.edgesTaggedWithAll(tags)));
-		}
+		return selectEdges("edgesTaggedWithAll", in -> in[0].toGraph(in[0].edgesTaggedWithAll(tags)), prototype -> taggedWithAll(prototype, tags), (Object[]) tags);
 	}
 	
 	/**
@@ -1040,11 +1577,7 @@ public class Query {
 	 * @return
 	 */
 	public Query selectEdges(String attribute){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.selectEdges(attribute)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.selectEdges(attribute)));
-		}
+		return selectEdges("selectEdges", in -> in[0].toGraph(in[0].selectEdges(attribute)), prototype -> GraphElementPredicates.hasAttr(attribute), attribute);
 	}
 	
 	/**
@@ -1053,11 +1586,20 @@ public class Query {
 	 * @return
 	 */
 	public Query selectEdges(String attribute, Object... values){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.selectEdges(attribute, values)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.selectEdges(attribute, values)));
+		return selectEdges("selectEdges", in -> in[0].toGraph(in[0].selectEdges(attribute, values)), prototype -> attrEquals(attribute, values), attribute, values);
+	}
+	
+	/**
+	 * Select subgraph containing edges that match the given attribute predicate.
+	 * Attribute indexes of the graph are used if they answer the predicate.
+	 * @param predicate
+	 * @return
+	 */
+	public Query selectEdges(AttributePredicate predicate){
+		if(predicate == null) {
+			throw new IllegalArgumentException("Predicate must be non-null");
 		}
+		return selectEdges("selectEdges", in -> in[0].toGraph(in[0].selectEdges(predicate)), prototype -> predicate, predicate);
 	}
 	
 	/**
@@ -1066,11 +1608,7 @@ public class Query {
 	 * @return
 	 */
 	public Query selectEdgesByName(String... names){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.selectEdgesByName(names)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.selectEdgesByName(names)));
-		}
+		return selectEdges("selectEdgesByName", in -> in[0].toGraph(in[0].selectEdgesByName(names)), prototype -> GraphElementPredicates.named(names), (Object[]) names);
 	}
 	
 	/**
@@ -1079,11 +1617,7 @@ public class Query {
 	 * @return
 	 */
 	public Query selectNodesByName(String... names){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.selectNodesByName(names)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.selectNodesByName(names)));
-		}
+		return selectNodes("selectNodesByName", in -> in[0].toGraph(in[0].selectNodesByName(names)), prototype -> GraphElementPredicates.named(names), (Object[]) names);
 	}
 	
 	/**
@@ -1092,11 +1626,7 @@ public class Query {
 	 * @return
 	 */
 	public Query selectNodes(String attribute){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.selectNodes(attribute)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.selectNodes(attribute)));
-		}
+		return selectNodes("selectNodes", in -> in[0].toGraph(in[0].selectNodes(attribute)), prototype -> GraphElementPredicates.hasAttr(attribute), attribute);
 	}
 	
 	/**
@@ -1105,11 +1635,20 @@ public class Query {
 	 * @return
 	 */
 	public Query selectNodes(String attribute, Object... values){
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(graph.selectNodes(attribute, values)), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(graph.selectNodes(attribute, values)));
+		return selectNodes("selectNodes", in -> in[0].toGraph(in[0].selectNodes(attribute, values)), prototype -> attrEquals(attribute, values), attribute, values);
+	}
+	
+	/**
+	 * Select subgraph containing nodes that match the given attribute predicate.
+	 * Attribute indexes of the graph are used if they answer the predicate.
+	 * @param predicate
+	 * @return
+	 */
+	public Query selectNodes(AttributePredicate predicate){
+		if(predicate == null) {
+			throw new IllegalArgumentException("Predicate must be non-null");
 		}
+		return selectNodes("selectNodes", in -> in[0].toGraph(in[0].selectNodes(predicate)), prototype -> predicate, predicate);
 	}
 	
 	/**
@@ -1120,11 +1659,7 @@ public class Query {
 		if(referenceGraph == null) {
 			throw new IllegalArgumentException("Reference graph must be set to query children relationships");
 		}
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(referenceGraph.successors(graph.nodes())), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(referenceGraph.successors(graph.nodes())));
-		}
+		return combine("children", in -> in[0].toGraph(in[1].successors(in[0].nodes())), new GraphPlan(referenceGraph));
 	}
 	
 	/**
@@ -1135,11 +1670,7 @@ public class Query {
 		if(referenceGraph == null) {
 			throw new IllegalArgumentException("Reference graph must be set to query parent relationships");
 		}
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(referenceGraph.predecessors(graph.nodes())), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(referenceGraph.predecessors(graph.nodes())));
-		}
+		return combine("parent", in -> in[0].toGraph(in[1].predecessors(in[0].nodes())), new GraphPlan(referenceGraph));
 	}
 	
 	/**
@@ -1150,11 +1681,7 @@ public class Query {
 		if(referenceGraph == null) {
 			throw new IllegalArgumentException("Reference graph must be set to query contained relationships");
 		}
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(referenceGraph.forward(graph.nodes()).nodes()), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(referenceGraph.forward(graph.nodes()).nodes()));
-		}
+		return combine("contained", in -> in[0].toGraph(in[1].forward(in[0].nodes()).nodes()), new GraphPlan(referenceGraph));
 	}
 	
 	/**
@@ -1165,11 +1692,96 @@ public class Query {
 		if(referenceGraph == null) {
 			throw new IllegalArgumentException("Reference graph must be set to query containers relationships");
 		}
-		if(referenceGraph != null) {
-			return new Query(graph.toGraph(referenceGraph.reverse(graph.nodes()).nodes()), referenceGraph);
-		} else {
-			return new Query(graph.toGraph(referenceGraph.reverse(graph.nodes()).nodes()));
+		return combine("containers", in -> in[0].toGraph(in[1].reverse(in[0].nodes()).nodes()), new GraphPlan(referenceGraph));
+	}
+	
+	private Query apply(String operator, Operation operation, Object... parameters) {
+		return new Query(new OperatorPlan(operator, operation, parameters, plan), referenceGraph);
+	}
+	
+	private Query combine(String operator, Operation operation, QueryPlan... arguments) {
+		return new Query(new OperatorPlan(operator, operation, null, inputs(arguments)), referenceGraph);
+	}
+	
+	private Query combine(String operator, Operation operation, Object[] parameters, QueryPlan... arguments) {
+		return new Query(new OperatorPlan(operator, operation, parameters, inputs(arguments)), referenceGraph);
+	}
+	
+	private Query selectNodes(String operator, Operation operation, Filter<Node> filter, Object... parameters) {
+		return new Query(SelectionPlan.nodes(operator, operation, filter, parameters, plan), referenceGraph);
+	}
+	
+	private Query selectEdges(String operator, Operation operation, Filter<Edge> filter, Object... parameters) {
+		return new Query(SelectionPlan.edges(operator, operation, filter, parameters, plan), referenceGraph);
+	}
+	
+	private Query traverse(String operator, Operation operation, NodeDirection direction, int maxDepth,
+			Predicate<? super Node> stopAt, Predicate<? super Edge> excluded, GraphElementSet<Node> origin, Object[] parameters) {
+		return new Query(new TraversalPlan(operator, operation, direction, maxDepth, stopAt, excluded, origin, parameters, plan), referenceGraph);
+	}
+	
+	private Query traverse(String operator, Operation operation, NodeDirection direction, int maxDepth,
+			Predicate<? super Node> stopAt, Predicate<? super Edge> excluded, QueryPlan origin, Object[] parameters) {
+		return new Query(new TraversalPlan(operator, operation, direction, maxDepth, stopAt, excluded, null, parameters, plan, origin), referenceGraph);
+	}
+	
+	private QueryPlan[] inputs(QueryPlan... arguments) {
+		QueryPlan[] inputs = new QueryPlan[arguments.length + 1];
+		inputs[0] = plan;
+		System.arraycopy(arguments, 0, inputs, 1, arguments.length);
+		return inputs;
+	}
+	
+	private static Object[] params(Object... parameters) {
+		return parameters;
+	}
+	
+	private static QueryPlan[] plans(Graph... graphs) {
+		QueryPlan[] plans = new QueryPlan[graphs.length];
+		for(int i=0; i<graphs.length; i++) {
+			plans[i] = new GraphPlan(graphs[i]);
+		}
+		return plans;
+	}
+	
+	private static QueryPlan[] plans(Query... queries) {
+		QueryPlan[] plans = new QueryPlan[queries.length];
+		for(int i=0; i<queries.length; i++) {
+			plans[i] = queries[i].plan;
+		}
+		return plans;
+	}
+	
+	/**
+	 * Returns the evaluated argument graphs of a plan (all inputs but the first)
+	 */
+	private static Graph[] arguments(Graph[] inputs) {
+		return Arrays.copyOfRange(inputs, 1, inputs.length);
+	}
+	
+	/**
+	 * Tag selections consider the tag hierarchy of the schema, which is only known
+	 * for property graphs, other graphs are evaluated in full
+	 */
+	private static Predicate<GraphElement> taggedWithAny(Graph prototype, String... tags) {
+		if(prototype instanceof PropertyGraph) {
+			return GraphElementPredicates.taggedWithAny(((PropertyGraph) prototype).getInheritedTags(tags));
+		}
+		return null;
+	}
+	
+	private static Predicate<GraphElement> taggedWithAll(Graph prototype, String... tags) {
+		if(prototype instanceof PropertyGraph) {
+			return GraphElementPredicates.taggedWithAll(((PropertyGraph) prototype).getInheritedTags(tags));
+		}
+		return null;
+	}
+	
+	private static Predicate<GraphElement> attrEquals(String attribute, Object... values) {
+		if(attribute == null || values == null) {
+			return element -> false;
 		}
+		return GraphElementPredicates.attrEquals(attribute, values);
 	}
 	
 }
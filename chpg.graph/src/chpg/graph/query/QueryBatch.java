@@ -0,0 +1,299 @@
+package chpg.graph.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import chpg.graph.ExecutionContext;
+import chpg.graph.Graph;
+import chpg.graph.GraphElementCollection;
+
+/**
+ * Evaluates a batch of queries, sharing common subexpressions between them.
+ *
+ * The plans of the queries are merged into a single operator graph in which
+ * equivalent subplans (the same operators with equal parameters applied to the
+ * same graphs, see QueryCache) are represented once. Each distinct operator is
+ * evaluated once as soon as its inputs are available and its result is shared
+ * by every query that depends on it, so independent branches of the batch are
+ * evaluated in parallel on the executor of the batch.
+ *
+ * Results of shared subplans are shared between the queries of the batch and
+ * must not be modified. If the batch is evaluated within an ExecutionContext,
+ * the context is checked by the evaluating thread while it waits for the
+ * results and pending operators are skipped once the context stops the
+ * evaluation. The operators themselves run on the threads of the executor,
+ * without the context.
+ */
+public class QueryBatch {
+
+	/**
+	 * The interval in milliseconds at which a waiting evaluation checks its execution context
+	 */
+	private static final long CHECK_INTERVAL = 10;
+
+	private final Executor executor;
+	private final List<Query> queries = new ArrayList<Query>();
+
+	private int operatorCount = 0;
+	private int evaluatedOperatorCount = 0;
+
+	/**
+	 * Constructs a batch that evaluates operators on the common fork join pool
+	 */
+	public QueryBatch() {
+		this(ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructs a batch that evaluates operators on the given executor
+	 * @param executor
+	 */
+	public QueryBatch(Executor executor) {
+		if(executor == null) {
+			throw new IllegalArgumentException("Executor must be non-null");
+		}
+		this.executor = executor;
+	}
+
+	/**
+	 * Adds the given query to the batch and returns the position of its result
+	 * @param query
+	 * @return
+	 */
+	public int add(Query query) {
+		if(query == null) {
+			throw new IllegalArgumentException("Query must be non-null");
+		}
+		queries.add(query);
+		return queries.size() - 1;
+	}
+
+	/**
+	 * Adds the given queries to the batch
+	 * @param queries
+	 */
+	public void addAll(Query... queries) {
+		for(Query query : queries) {
+			add(query);
+		}
+	}
+
+	/**
+	 * Returns the queries of the batch
+	 * @return
+	 */
+	public List<Query> getQueries() {
+		return Collections.unmodifiableList(queries);
+	}
+
+	/**
+	 * Evaluates all queries of the batch and returns their results in the order
+	 * the queries were added. The results are retained by the queries, as with
+	 * Query.evaluate.
+	 *
+	 * @return
+	 */
+	public List<Graph> evaluate() {
+		Map<QueryPlan,Operator> operators = new IdentityHashMap<QueryPlan,Operator>();
+		Map<List<Object>,Operator> distinct = new HashMap<List<Object>,Operator>();
+		List<Operator> roots = new ArrayList<Operator>();
+		int[] count = new int[1];
+		for(Query query : queries) {
+			roots.add(merge(query.getPlan(), operators, distinct, count));
+		}
+		operatorCount = count[0];
+		evaluatedOperatorCount = 0;
+		for(Operator operator : distinct.values()) {
+			if(!operator.plan.isMemoized()) {
+				evaluatedOperatorCount++;
+			}
+		}
+
+		Cancellation cancellation = new Cancellation();
+		CompletableFuture<?>[] futures = new CompletableFuture<?>[roots.size()];
+		for(int i=0; i<futures.length; i++) {
+			futures[i] = schedule(roots.get(i), cancellation);
+		}
+		await(CompletableFuture.allOf(futures), cancellation);
+
+		List<Graph> results = new ArrayList<Graph>(roots.size());
+		for(int i=0; i<roots.size(); i++) {
+			Graph result = roots.get(i).result.join();
+			queries.get(i).getPlan().memoize(result);
+			results.add(result);
+		}
+		return results;
+	}
+
+	/**
+	 * Returns the number of operators of the queries of the last evaluation,
+	 * counting shared subplans once per query
+	 *
+	 * @return
+	 */
+	public int getOperatorCount() {
+		return operatorCount;
+	}
+
+	/**
+	 * Returns the number of distinct operators evaluated by the last evaluation
+	 * @return
+	 */
+	public int getEvaluatedOperatorCount() {
+		return evaluatedOperatorCount;
+	}
+
+	/**
+	 * Returns the operator of the given plan, merging it with an equivalent
+	 * operator if one exists
+	 */
+	private static Operator merge(QueryPlan plan, Map<QueryPlan,Operator> operators, Map<List<Object>,Operator> distinct, int[] count) {
+		count[0]++;
+		Operator operator = operators.get(plan);
+		if(operator != null) {
+			for(QueryPlan input : plan.getInputs()) {
+				countOperators(input, count);
+			}
+			return operator;
+		}
+		List<Operator> inputs = new ArrayList<Operator>();
+		for(QueryPlan input : plan.getInputs()) {
+			inputs.add(merge(input, operators, distinct, count));
+		}
+		List<Object> key = key(plan, inputs);
+		operator = distinct.get(key);
+		if(operator == null) {
+			operator = new Operator(plan, inputs);
+			distinct.put(key, operator);
+		}
+		operators.put(plan, operator);
+		return operator;
+	}
+
+	private static void countOperators(QueryPlan plan, int[] count) {
+		count[0]++;
+		for(QueryPlan input : plan.getInputs()) {
+			countOperators(input, count);
+		}
+	}
+
+	/**
+	 * Returns the canonical key of the given plan, inputs are represented by the
+	 * identity of their merged operators
+	 */
+	private static List<Object> key(QueryPlan plan, List<Operator> inputs) {
+		List<GraphElementCollection<?>> dependencies = new ArrayList<GraphElementCollection<?>>();
+		if(plan instanceof GraphPlan) {
+			return Arrays.asList((Object) plan.getOperator(), new QueryCache.Identity(((GraphPlan) plan).getGraph()));
+		}
+		List<Object> key = new ArrayList<Object>();
+		key.add(plan.getOperator());
+		for(Object parameter : plan.getParameters()) {
+			key.add(QueryCache.canonicalize(parameter, dependencies));
+		}
+		for(Operator input : inputs) {
+			key.add(new QueryCache.Identity(input));
+		}
+		return key;
+	}
+
+	/**
+	 * Schedules the evaluation of the given operator after its inputs
+	 */
+	private CompletableFuture<Graph> schedule(Operator operator, Cancellation cancellation) {
+		synchronized(operator) {
+			if(operator.result != null) {
+				return operator.result;
+			}
+			if(operator.plan.isMemoized()) {
+				operator.result = CompletableFuture.completedFuture(operator.plan.evaluate());
+				return operator.result;
+			}
+			final CompletableFuture<?>[] inputs = new CompletableFuture<?>[operator.inputs.size()];
+			for(int i=0; i<inputs.length; i++) {
+				inputs[i] = schedule(operator.inputs.get(i), cancellation);
+			}
+			operator.result = CompletableFuture.allOf(inputs).thenApplyAsync(ignored -> {
+				if(cancellation.cancelled) {
+					throw new CancellationException();
+				}
+				Graph[] graphs = new Graph[inputs.length];
+				for(int i=0; i<graphs.length; i++) {
+					graphs[i] = (Graph) inputs[i].join();
+				}
+				return operator.plan.execute(graphs);
+			}, executor);
+			return operator.result;
+		}
+	}
+
+	/**
+	 * Waits for the given future, checking the execution context of the current thread
+	 */
+	private static void await(CompletableFuture<?> future, Cancellation cancellation) {
+		ExecutionContext context = ExecutionContext.current();
+		try {
+			while(true) {
+				try {
+					future.get(CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+					return;
+				} catch (TimeoutException e) {
+					if(context != null) {
+						context.check();
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			cancellation.cancelled = true;
+			Thread.currentThread().interrupt();
+			throw new CancellationException("Batch evaluation was interrupted");
+		} catch (ExecutionException e) {
+			cancellation.cancelled = true;
+			Throwable cause = e.getCause();
+			while(cause instanceof CompletionException && cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			if(cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if(cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new CompletionException(cause);
+		} catch (RuntimeException e) {
+			cancellation.cancelled = true;
+			throw e;
+		}
+	}
+
+	/**
+	 * A distinct operator of the merged operator graph
+	 */
+	private static class Operator {
+		private final QueryPlan plan;
+		private final List<Operator> inputs;
+		private CompletableFuture<Graph> result = null;
+
+		private Operator(QueryPlan plan, List<Operator> inputs) {
+			this.plan = plan;
+			this.inputs = inputs;
+		}
+	}
+
+	private static class Cancellation {
+		private volatile boolean cancelled = false;
+	}
+
+}
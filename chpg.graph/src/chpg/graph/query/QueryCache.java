@@ -0,0 +1,450 @@
+package chpg.graph.query;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import chpg.graph.Graph;
+import chpg.graph.GraphElement;
+import chpg.graph.GraphElementCollection;
+
+/**
+ * A cache of query results keyed on the canonical query plan.
+ *
+ * Two queries share a cache entry if their plans apply the same operators with
+ * equal parameters to the same graphs. Graphs and graph element sets are
+ * compared by identity and their modification counts are recorded with each
+ * entry, so an entry is invalidated as soon as a node or edge is added to or
+ * removed from any graph or set the query depends on. Entries also record the
+ * property modification count of graph elements (see
+ * GraphElement.getPropertyModificationCount), so changing the name, tags or
+ * attributes of any graph element invalidates all entries.
+ *
+ * The cache is bounded by a maximum number of entries and by an estimated
+ * memory budget, the least recently used entries are evicted first. Cached
+ * results are shared between all hits and must not be modified.
+ */
+public class QueryCache {
+
+	/**
+	 * The default estimated memory budget (64 MB)
+	 */
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024L * 1024L;
+
+	/**
+	 * The default maximum number of cached results
+	 */
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+	/**
+	 * Rough estimate of the retained size of a graph element in a result graph
+	 * (a hash set entry plus its share of the hash table)
+	 */
+	private static final long BYTES_PER_ELEMENT = 48;
+
+	/**
+	 * Rough estimate of the fixed size of a result graph
+	 */
+	private static final long BYTES_PER_GRAPH = 256;
+
+	private final int maxEntries;
+	private final long maxBytes;
+
+	// access ordered, so iteration starts at the least recently used entry
+	private final LinkedHashMap<Key,Entry> entries = new LinkedHashMap<Key,Entry>(16, 0.75f, true);
+	private long bytes = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+	private long invalidations = 0;
+
+	/**
+	 * Constructs a cache with the default bounds
+	 */
+	public QueryCache() {
+		this(DEFAULT_MAX_ENTRIES, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Constructs a cache with the given bounds
+	 * @param maxEntries the maximum number of cached results
+	 * @param maxBytes the estimated memory budget of the cached results in bytes
+	 */
+	public QueryCache(int maxEntries, long maxBytes) {
+		if(maxEntries < 0) {
+			throw new IllegalArgumentException("Maximum entries must be non-negative");
+		}
+		if(maxBytes < 0) {
+			throw new IllegalArgumentException("Maximum bytes must be non-negative");
+		}
+		this.maxEntries = maxEntries;
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Returns the maximum number of cached results
+	 * @return
+	 */
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * Returns the estimated memory budget of the cached results in bytes
+	 * @return
+	 */
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	/**
+	 * Returns the result of the given query, evaluating the query only if no
+	 * current result is cached
+	 *
+	 * @param query
+	 * @return
+	 */
+	public Graph evaluate(Query query) {
+		return evaluate(query.getPlan());
+	}
+
+	/**
+	 * Returns the result of the given query plan, evaluating the plan only if no
+	 * current result is cached
+	 *
+	 * @param plan
+	 * @return
+	 */
+	public Graph evaluate(QueryPlan plan) {
+		List<GraphElementCollection<?>> dependencies = new ArrayList<GraphElementCollection<?>>();
+		Key key = new Key(canonicalize(plan, dependencies));
+		synchronized(this) {
+			Entry entry = entries.get(key);
+			if(entry != null) {
+				if(entry.isCurrent()) {
+					hits++;
+					return entry.result;
+				}
+				remove(key, entry);
+				invalidations++;
+			}
+			misses++;
+		}
+		// the plan is evaluated outside of the lock, concurrent misses of the same plan may evaluate it twice
+		Entry entry = new Entry(dependencies);
+		// retained results of queries are snapshots that may be older than the recorded versions
+		Graph result = plan.recompute();
+		entry.result = result;
+		entry.bytes = estimateBytes(result);
+		synchronized(this) {
+			if(entry.bytes <= maxBytes && maxEntries > 0) {
+				Entry previous = entries.put(key, entry);
+				if(previous != null) {
+					bytes -= previous.bytes;
+				}
+				bytes += entry.bytes;
+				evict();
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Removes all cached results of queries that depend on the given graph
+	 * @param graph
+	 */
+	public synchronized void invalidate(Graph graph) {
+		Iterator<Map.Entry<Key,Entry>> iterator = entries.entrySet().iterator();
+		while(iterator.hasNext()) {
+			Entry entry = iterator.next().getValue();
+			if(entry.dependsOn(graph.nodes()) || entry.dependsOn(graph.edges())) {
+				iterator.remove();
+				bytes -= entry.bytes;
+				invalidations++;
+			}
+		}
+	}
+
+	/**
+	 * Removes all cached results
+	 */
+	public synchronized void clear() {
+		invalidations += entries.size();
+		entries.clear();
+		bytes = 0;
+	}
+
+	/**
+	 * Returns a snapshot of the cache statistics
+	 * @return
+	 */
+	public synchronized Statistics getStatistics() {
+		return new Statistics(hits, misses, evictions, invalidations, entries.size(), bytes);
+	}
+
+	/**
+	 * Resets the hit, miss, eviction and invalidation counters
+	 */
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		evictions = 0;
+		invalidations = 0;
+	}
+
+	/**
+	 * Drops stale entries and then the least recently used entries until the
+	 * cache is within its bounds
+	 */
+	private void evict() {
+		if(entries.size() <= maxEntries && bytes <= maxBytes) {
+			return;
+		}
+		Iterator<Entry> iterator = entries.values().iterator();
+		while(iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if(!entry.isCurrent()) {
+				iterator.remove();
+				bytes -= entry.bytes;
+				invalidations++;
+			}
+		}
+		iterator = entries.values().iterator();
+		while((entries.size() > maxEntries || bytes > maxBytes) && iterator.hasNext()) {
+			Entry entry = iterator.next();
+			iterator.remove();
+			bytes -= entry.bytes;
+			evictions++;
+		}
+	}
+
+	private void remove(Key key, Entry entry) {
+		entries.remove(key);
+		bytes -= entry.bytes;
+	}
+
+	/**
+	 * Returns a rough estimate of the retained size of the given result graph
+	 * @param graph
+	 * @return
+	 */
+	static long estimateBytes(Graph graph) {
+		return BYTES_PER_GRAPH + BYTES_PER_ELEMENT * ((long) graph.nodes().size() + (long) graph.edges().size());
+	}
+
+	/**
+	 * Returns the canonical form of the given plan and collects the graph element
+	 * collections the plan depends on
+	 */
+	private static List<Object> canonicalize(QueryPlan plan, List<GraphElementCollection<?>> dependencies) {
+		List<Object> result = new ArrayList<Object>();
+		if(plan instanceof GraphPlan) {
+			Graph graph = ((GraphPlan) plan).getGraph();
+			dependencies.add(graph.nodes());
+			dependencies.add(graph.edges());
+			result.add(new Identity(graph));
+			return result;
+		}
+		result.add(plan.getOperator());
+		List<Object> parameters = new ArrayList<Object>();
+		for(Object parameter : plan.getParameters()) {
+			parameters.add(canonicalize(parameter, dependencies));
+		}
+		result.add(parameters);
+		for(QueryPlan input : plan.getInputs()) {
+			result.add(canonicalize(input, dependencies));
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the canonical form of the given operator parameter and collects the
+	 * graph element collections the parameter refers to
+	 */
+	static Object canonicalize(Object parameter, List<GraphElementCollection<?>> dependencies) {
+		if(parameter instanceof GraphElementCollection) {
+			dependencies.add((GraphElementCollection<?>) parameter);
+			return new Identity(parameter);
+		} else if(parameter instanceof Object[]) {
+			List<Object> elements = new ArrayList<Object>();
+			for(Object element : (Object[]) parameter) {
+				elements.add(canonicalize(element, dependencies));
+			}
+			return elements;
+		} else {
+			// graph elements, strings, numbers and enums compare by value, predicates by identity
+			return parameter;
+		}
+	}
+
+	/**
+	 * Compares the wrapped object by identity
+	 */
+	static class Identity {
+		private final Object object;
+
+		Identity(Object object) {
+			this.object = object;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(object);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Identity && ((Identity) obj).object == object;
+		}
+	}
+
+	private static class Key {
+		private final List<Object> plan;
+		private final int hashCode;
+
+		private Key(List<Object> plan) {
+			this.plan = plan;
+			this.hashCode = plan.hashCode();
+		}
+
+		@Override
+		public int hashCode() {
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && ((Key) obj).hashCode == hashCode && ((Key) obj).plan.equals(plan);
+		}
+	}
+
+	private static class Entry {
+		private final GraphElementCollection<?>[] dependencies;
+		private final long[] versions;
+		private final long propertyVersion;
+		private Graph result;
+		private long bytes;
+
+		/**
+		 * Records the versions of the dependencies before the plan is evaluated, so
+		 * a modification during the evaluation invalidates the entry
+		 */
+		private Entry(List<GraphElementCollection<?>> dependencies) {
+			this.propertyVersion = GraphElement.getPropertyModificationCount();
+			this.dependencies = dependencies.toArray(new GraphElementCollection<?>[dependencies.size()]);
+			this.versions = new long[this.dependencies.length];
+			for(int i=0; i<versions.length; i++) {
+				versions[i] = this.dependencies[i].getModificationCount();
+			}
+		}
+
+		private boolean isCurrent() {
+			if(GraphElement.getPropertyModificationCount() != propertyVersion) {
+				return false;
+			}
+			for(int i=0; i<versions.length; i++) {
+				if(dependencies[i].getModificationCount() != versions[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private boolean dependsOn(GraphElementCollection<?> collection) {
+			for(GraphElementCollection<?> dependency : dependencies) {
+				if(dependency == collection) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * A snapshot of the statistics of a query cache
+	 */
+	public static class Statistics {
+		private final long hits;
+		private final long misses;
+		private final long evictions;
+		private final long invalidations;
+		private final int entries;
+		private final long bytes;
+
+		private Statistics(long hits, long misses, long evictions, long invalidations, int entries, long bytes) {
+			this.hits = hits;
+			this.misses = misses;
+			this.evictions = evictions;
+			this.invalidations = invalidations;
+			this.entries = entries;
+			this.bytes = bytes;
+		}
+
+		/**
+		 * Returns the number of evaluations answered from the cache
+		 * @return
+		 */
+		public long getHits() {
+			return hits;
+		}
+
+		/**
+		 * Returns the number of evaluations that were not answered from the cache
+		 * @return
+		 */
+		public long getMisses() {
+			return misses;
+		}
+
+		/**
+		 * Returns the fraction of evaluations answered from the cache
+		 * @return
+		 */
+		public double getHitRate() {
+			long requests = hits + misses;
+			return requests == 0 ? 0.0 : (double) hits / requests;
+		}
+
+		/**
+		 * Returns the number of entries evicted to stay within the cache bounds
+		 * @return
+		 */
+		public long getEvictions() {
+			return evictions;
+		}
+
+		/**
+		 * Returns the number of entries dropped because a graph they depend on was modified or invalidated
+		 * @return
+		 */
+		public long getInvalidations() {
+			return invalidations;
+		}
+
+		/**
+		 * Returns the number of cached results
+		 * @return
+		 */
+		public int getEntries() {
+			return entries;
+		}
+
+		/**
+		 * Returns the estimated size of the cached results in bytes
+		 * @return
+		 */
+		public long getBytes() {
+			return bytes;
+		}
+
+		@Override
+		public String toString() {
+			return "QueryCache.Statistics [hits=" + hits + ", misses=" + misses + ", evictions=" + evictions
+					+ ", invalidations=" + invalidations + ", entries=" + entries + ", bytes=" + bytes + "]";
+		}
+	}
+
+}
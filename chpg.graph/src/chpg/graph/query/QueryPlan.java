@@ -0,0 +1,235 @@
+package chpg.graph.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Stream;
+
+import chpg.graph.Edge;
+import chpg.graph.ExecutionContext;
+import chpg.graph.Graph;
+import chpg.graph.GraphElement;
+import chpg.graph.GraphElementSet;
+import chpg.graph.Node;
+
+/**
+ * A node in the operator tree of a query.
+ *
+ * Each plan node names the operator it applies, the literal parameters of the
+ * operator and the plans of its input graphs. Plans are only evaluated on
+ * demand, so that building a query is cheap and results can be streamed or
+ * evaluated in full as needed.
+ */
+public abstract class QueryPlan {
+
+	private final String operator;
+	private final List<Object> parameters;
+	private final List<QueryPlan> inputs;
+
+	/**
+	 * The result of an explicit evaluation of this plan, see Query.evaluate
+	 */
+	private volatile Graph evaluation = null;
+
+	protected QueryPlan(String operator, Object[] parameters, QueryPlan... inputs) {
+		this.operator = operator;
+		this.parameters = parameters == null ? Collections.emptyList() : Collections.unmodifiableList(Arrays.asList(parameters));
+		this.inputs = Collections.unmodifiableList(new ArrayList<QueryPlan>(Arrays.asList(inputs)));
+	}
+
+	/**
+	 * Returns the name of the operator of this plan
+	 * @return
+	 */
+	public String getOperator() {
+		return operator;
+	}
+
+	/**
+	 * Returns the literal parameters of the operator of this plan
+	 * @return
+	 */
+	public List<Object> getParameters() {
+		return parameters;
+	}
+
+	/**
+	 * Returns the plans of the input graphs of the operator of this plan
+	 * @return
+	 */
+	public List<QueryPlan> getInputs() {
+		return inputs;
+	}
+
+	/**
+	 * Returns the graph the results of this plan are derived from, results are
+	 * graphs of the same type (and schema) as this graph
+	 *
+	 * @return
+	 */
+	public Graph getPrototype() {
+		return inputs.get(0).getPrototype();
+	}
+
+	/**
+	 * Evaluates this plan and returns the resulting graph
+	 *
+	 * @return
+	 */
+	public Graph evaluate() {
+		Graph result = evaluation;
+		if(result != null) {
+			return result;
+		}
+		Graph[] graphs = new Graph[inputs.size()];
+		for(int i=0; i<graphs.length; i++) {
+			graphs[i] = inputs.get(i).evaluate();
+		}
+		return checked(execute(graphs));
+	}
+
+	/**
+	 * Evaluates this plan ignoring the retained results of this plan and its inputs
+	 *
+	 * @return
+	 */
+	Graph recompute() {
+		Graph[] graphs = new Graph[inputs.size()];
+		for(int i=0; i<graphs.length; i++) {
+			graphs[i] = inputs.get(i).recompute();
+		}
+		return checked(execute(graphs));
+	}
+
+	/**
+	 * Checks the size of the given result against the execution context of the
+	 * current thread (if any)
+	 *
+	 * @param result
+	 * @return
+	 */
+	static Graph checked(Graph result) {
+		ExecutionContext.checkpoint((long) result.nodes().size() + (long) result.edges().size());
+		return result;
+	}
+
+	/**
+	 * Retains the given result of this plan for subsequent evaluations
+	 *
+	 * @param result
+	 */
+	void memoize(Graph result) {
+		this.evaluation = result;
+	}
+
+	/**
+	 * Returns true if this plan has a retained result
+	 *
+	 * @return
+	 */
+	boolean isMemoized() {
+		return evaluation != null;
+	}
+
+	/**
+	 * Applies the operator of this plan to the evaluated input graphs
+	 *
+	 * @param inputs
+	 * @return
+	 */
+	protected abstract Graph execute(Graph[] inputs);
+
+	/**
+	 * Returns a stream of the nodes of the result of this plan
+	 *
+	 * @return
+	 */
+	public Stream<Node> nodeStream() {
+		Graph result = evaluation;
+		if(result != null) {
+			return result.nodes().stream();
+		}
+		return streamNodes();
+	}
+
+	/**
+	 * Returns a stream of the edges of the result of this plan
+	 *
+	 * @return
+	 */
+	public Stream<Edge> edgeStream() {
+		Graph result = evaluation;
+		if(result != null) {
+			return result.edges().stream();
+		}
+		return streamEdges();
+	}
+
+	/**
+	 * Streams the nodes of the result of this plan, by default the plan is
+	 * evaluated in full. Operators that can produce their results incrementally
+	 * override this method.
+	 *
+	 * @return
+	 */
+	protected Stream<Node> streamNodes() {
+		return evaluate().nodes().stream();
+	}
+
+	/**
+	 * Streams the edges of the result of this plan, by default the plan is
+	 * evaluated in full. Operators that can produce their results incrementally
+	 * override this method.
+	 *
+	 * @return
+	 */
+	protected Stream<Edge> streamEdges() {
+		return evaluate().edges().stream();
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder(operator);
+		result.append("(");
+		String separator = "";
+		for(QueryPlan input : inputs) {
+			result.append(separator);
+			result.append(input.toString());
+			separator = ", ";
+		}
+		for(Object parameter : parameters) {
+			result.append(separator);
+			result.append(format(parameter));
+			separator = ", ";
+		}
+		result.append(")");
+		return result.toString();
+	}
+
+	/**
+	 * Formats a literal operator parameter
+	 */
+	static String format(Object parameter) {
+		if(parameter instanceof String) {
+			return "\"" + parameter + "\"";
+		} else if(parameter instanceof GraphElement) {
+			return (parameter instanceof Node ? "node#" : "edge#") + ((GraphElement) parameter).getAddress();
+		} else if(parameter instanceof GraphElementSet) {
+			return "{" + ((GraphElementSet<?>) parameter).size() + " elements}";
+		} else if(parameter instanceof Object[]) {
+			StringBuilder result = new StringBuilder("[");
+			String separator = "";
+			for(Object element : (Object[]) parameter) {
+				result.append(separator);
+				result.append(format(element));
+				separator = ", ";
+			}
+			result.append("]");
+			return result.toString();
+		} else {
+			return String.valueOf(parameter);
+		}
+	}
+
+}
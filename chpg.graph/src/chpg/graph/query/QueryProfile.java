@@ -0,0 +1,255 @@
+package chpg.graph.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import chpg.graph.ExecutionStatistics;
+import chpg.graph.Graph;
+
+/**
+ * The measured execution of a query plan (EXPLAIN ANALYZE).
+ *
+ * A profile mirrors the operator tree of the plan. Each operator is evaluated
+ * after its inputs, so the wall time, allocations, scanned nodes and edges and
+ * used indexes of an operator only account for the operator itself and not for
+ * its inputs. Elements are counted as the number of nodes plus the number of
+ * edges of a graph. Allocations are measured per thread and are only available
+ * on JVMs that support thread allocation accounting.
+ */
+public class QueryProfile {
+
+	private final QueryPlan plan;
+	private final List<QueryProfile> inputs;
+	private final Graph result;
+	private final long time;
+	private final long allocatedBytes;
+	private final long nodesScanned;
+	private final long edgesScanned;
+	private final Set<String> indexes;
+
+	private QueryProfile(QueryPlan plan, List<QueryProfile> inputs, Graph result, long time, long allocatedBytes, ExecutionStatistics statistics) {
+		this.plan = plan;
+		this.inputs = Collections.unmodifiableList(inputs);
+		this.result = result;
+		this.time = time;
+		this.allocatedBytes = allocatedBytes;
+		this.nodesScanned = statistics.getNodesScanned();
+		this.edgesScanned = statistics.getEdgesScanned();
+		this.indexes = statistics.getIndexes();
+	}
+
+	/**
+	 * Evaluates the given plan, measuring each operator. Retained results are
+	 * ignored, so that every operator of the plan is executed.
+	 *
+	 * @param plan
+	 * @return
+	 */
+	public static QueryProfile analyze(QueryPlan plan) {
+		List<QueryProfile> inputs = new ArrayList<QueryProfile>();
+		Graph[] graphs = new Graph[plan.getInputs().size()];
+		for(int i=0; i<graphs.length; i++) {
+			QueryProfile input = analyze(plan.getInputs().get(i));
+			inputs.add(input);
+			graphs[i] = input.getResult();
+		}
+		ExecutionStatistics statistics = ExecutionStatistics.start();
+		long allocated = ExecutionStatistics.allocatedBytes();
+		long start = System.nanoTime();
+		Graph result;
+		try {
+			result = QueryPlan.checked(plan.execute(graphs));
+		} finally {
+			statistics.stop();
+		}
+		long time = System.nanoTime() - start;
+		if(allocated >= 0) {
+			allocated = ExecutionStatistics.allocatedBytes() - allocated;
+		}
+		return new QueryProfile(plan, inputs, result, time, allocated, statistics);
+	}
+
+	/**
+	 * Returns the operator tree of the given plan without evaluating it (EXPLAIN)
+	 * @param plan
+	 * @return
+	 */
+	public static String explain(QueryPlan plan) {
+		StringBuilder result = new StringBuilder();
+		explain(plan, "", result);
+		return result.toString();
+	}
+
+	private static void explain(QueryPlan plan, String indent, StringBuilder result) {
+		result.append(indent);
+		result.append(describe(plan));
+		if(plan.isMemoized()) {
+			result.append(" [retained]");
+		}
+		result.append(System.lineSeparator());
+		for(QueryPlan input : plan.getInputs()) {
+			explain(input, indent + "  ", result);
+		}
+	}
+
+	/**
+	 * Returns the operator and parameters of the given plan, without its inputs
+	 */
+	private static String describe(QueryPlan plan) {
+		if(plan instanceof GraphPlan) {
+			return plan.toString();
+		}
+		StringBuilder result = new StringBuilder(plan.getOperator());
+		result.append("(");
+		String separator = "";
+		for(Object parameter : plan.getParameters()) {
+			result.append(separator);
+			result.append(QueryPlan.format(parameter));
+			separator = ", ";
+		}
+		result.append(")");
+		return result.toString();
+	}
+
+	/**
+	 * Returns the measured plan
+	 * @return
+	 */
+	public QueryPlan getPlan() {
+		return plan;
+	}
+
+	/**
+	 * Returns the profiles of the inputs of the plan
+	 * @return
+	 */
+	public List<QueryProfile> getInputs() {
+		return inputs;
+	}
+
+	/**
+	 * Returns the result of the plan
+	 * @return
+	 */
+	public Graph getResult() {
+		return result;
+	}
+
+	/**
+	 * Returns the wall time of the operator in nanoseconds, excluding its inputs
+	 * @return
+	 */
+	public long getTime() {
+		return time;
+	}
+
+	/**
+	 * Returns the wall time of the plan in nanoseconds, including its inputs
+	 * @return
+	 */
+	public long getTotalTime() {
+		long total = time;
+		for(QueryProfile input : inputs) {
+			total += input.getTotalTime();
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the operator, or -1 if allocations
+	 * could not be measured
+	 *
+	 * @return
+	 */
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	/**
+	 * Returns the number of nodes and edges of the inputs of the operator
+	 * @return
+	 */
+	public long getElementsIn() {
+		long elements = 0;
+		for(QueryProfile input : inputs) {
+			elements += input.getElementsOut();
+		}
+		return elements;
+	}
+
+	/**
+	 * Returns the number of nodes and edges of the result of the operator
+	 * @return
+	 */
+	public long getElementsOut() {
+		return (long) result.nodes().size() + (long) result.edges().size();
+	}
+
+	/**
+	 * Returns the number of nodes scanned by the operator
+	 * @return
+	 */
+	public long getNodesScanned() {
+		return nodesScanned;
+	}
+
+	/**
+	 * Returns the number of edges scanned by the operator
+	 * @return
+	 */
+	public long getEdgesScanned() {
+		return edgesScanned;
+	}
+
+	/**
+	 * Returns the indexes used or built by the operator
+	 * @return
+	 */
+	public Set<String> getIndexes() {
+		return indexes;
+	}
+
+	/**
+	 * Returns the profile of the operator with the largest wall time in this plan
+	 * @return
+	 */
+	public QueryProfile getSlowestOperator() {
+		QueryProfile slowest = this;
+		for(QueryProfile input : inputs) {
+			QueryProfile candidate = input.getSlowestOperator();
+			if(candidate.time > slowest.time) {
+				slowest = candidate;
+			}
+		}
+		return slowest;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder();
+		toString("", result);
+		return result.toString();
+	}
+
+	private void toString(String indent, StringBuilder result) {
+		result.append(indent);
+		result.append(describe(plan));
+		result.append(String.format(" time=%.3f ms", time / 1000000.0));
+		result.append(", in=" + getElementsIn());
+		result.append(", out=" + getElementsOut());
+		result.append(", scanned=" + nodesScanned + " nodes/" + edgesScanned + " edges");
+		if(allocatedBytes >= 0) {
+			result.append(", allocated=" + allocatedBytes + " bytes");
+		}
+		if(!indexes.isEmpty()) {
+			result.append(", indexes=" + indexes);
+		}
+		result.append(System.lineSeparator());
+		for(QueryProfile input : inputs) {
+			input.toString(indent + "  ", result);
+		}
+	}
+
+}
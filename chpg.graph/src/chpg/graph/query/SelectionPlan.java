@@ -0,0 +1,98 @@
+package chpg.graph.query;
+
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.Node;
+
+/**
+ * A query plan that selects the nodes or the edges of its input that match a
+ * predicate. Selections are streamed by filtering the stream of the input, so
+ * the input is only consumed as far as the downstream operations require.
+ */
+class SelectionPlan extends OperatorPlan {
+
+	/**
+	 * Creates the selection predicate for graphs of the given prototype, returns
+	 * null if the selection cannot be expressed as a predicate for the prototype
+	 */
+	interface Filter<E> {
+		Predicate<? super E> create(Graph prototype);
+	}
+
+	private final Filter<Node> nodeFilter;
+	private final Filter<Edge> edgeFilter;
+
+	private SelectionPlan(String operator, Operation operation, Filter<Node> nodeFilter, Filter<Edge> edgeFilter, Object[] parameters, QueryPlan input) {
+		super(operator, operation, parameters, input);
+		this.nodeFilter = nodeFilter;
+		this.edgeFilter = edgeFilter;
+	}
+
+	/**
+	 * Returns a plan that selects the nodes of the input, the result has no edges
+	 */
+	static SelectionPlan nodes(String operator, Operation operation, Filter<Node> filter, Object[] parameters, QueryPlan input) {
+		return new SelectionPlan(operator, operation, filter, null, parameters, input);
+	}
+
+	/**
+	 * Returns a plan that selects the edges of the input, the result contains the
+	 * selected edges and their endpoints
+	 */
+	static SelectionPlan edges(String operator, Operation operation, Filter<Edge> filter, Object[] parameters, QueryPlan input) {
+		return new SelectionPlan(operator, operation, null, filter, parameters, input);
+	}
+
+	/**
+	 * Returns the node filter, or null if this plan selects edges
+	 */
+	Filter<Node> getNodeFilter() {
+		return nodeFilter;
+	}
+
+	/**
+	 * Returns the edge filter, or null if this plan selects nodes
+	 */
+	Filter<Edge> getEdgeFilter() {
+		return edgeFilter;
+	}
+
+	private QueryPlan getInput() {
+		return getInputs().get(0);
+	}
+
+	@Override
+	protected Stream<Node> streamNodes() {
+		if(nodeFilter != null) {
+			Predicate<? super Node> predicate = nodeFilter.create(getPrototype());
+			if(predicate != null) {
+				return getInput().nodeStream().filter(predicate);
+			}
+		} else {
+			Predicate<? super Edge> predicate = edgeFilter.create(getPrototype());
+			if(predicate != null) {
+				return getInput().edgeStream().filter(predicate).flatMap(edge -> Stream.of(edge.from(), edge.to())).distinct();
+			}
+		}
+		return super.streamNodes();
+	}
+
+	@Override
+	protected Stream<Edge> streamEdges() {
+		if(nodeFilter != null) {
+			if(nodeFilter.create(getPrototype()) != null) {
+				return Stream.empty();
+			}
+		} else {
+			Predicate<? super Edge> predicate = edgeFilter.create(getPrototype());
+			if(predicate != null) {
+				return getInput().edgeStream().filter(predicate);
+			}
+		}
+		return super.streamEdges();
+	}
+
+}
@@ -0,0 +1,101 @@
+package chpg.graph.query;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.GraphElementSet;
+import chpg.graph.Node;
+import chpg.graph.Node.NodeDirection;
+import chpg.graph.index.AdjacencyIndex;
+import chpg.graph.index.BreadthFirstSearch;
+
+/**
+ * A query plan for a forward or reverse traversal of its first input. The
+ * origin of the traversal is either a literal set of nodes or the graph of the
+ * second input.
+ *
+ * Streams of a traversal are produced by a breadth first search that only
+ * advances as far as needed, so short-circuiting stream operations stop the
+ * traversal early. The streams always use a top-down search, the traversal
+ * strategy only affects full evaluations.
+ */
+class TraversalPlan extends OperatorPlan {
+
+	private final NodeDirection direction;
+	private final int maxDepth;
+	private final Predicate<? super Node> stopAt;
+	private final Predicate<? super Edge> excluded;
+	private final GraphElementSet<Node> origin;
+
+	TraversalPlan(String operator, Operation operation, NodeDirection direction, int maxDepth,
+			Predicate<? super Node> stopAt, Predicate<? super Edge> excluded,
+			GraphElementSet<Node> origin, Object[] parameters, QueryPlan... inputs) {
+		super(operator, operation, parameters, inputs);
+		this.direction = direction;
+		this.maxDepth = maxDepth;
+		this.stopAt = stopAt;
+		this.excluded = excluded;
+		this.origin = origin;
+	}
+
+	NodeDirection getDirection() {
+		return direction;
+	}
+
+	int getMaxDepth() {
+		return maxDepth;
+	}
+
+	Predicate<? super Node> getStopAt() {
+		return stopAt;
+	}
+
+	Predicate<? super Edge> getExcluded() {
+		return excluded;
+	}
+
+	/**
+	 * Returns the literal origin, or null if the origin is the second input
+	 */
+	GraphElementSet<Node> getOrigin() {
+		return origin;
+	}
+
+	@Override
+	protected Stream<Node> streamNodes() {
+		Graph graph = getInputs().get(0).evaluate();
+		GraphElementSet<Node> originNodes = origin != null ? origin : getInputs().get(1).evaluate().nodes();
+		AdjacencyIndex index = AdjacencyIndex.of(graph);
+		int[] sources = index.getNodeOrdinals(originNodes);
+		// origin nodes that are not part of the graph are part of the result, but cannot be expanded
+		Stream<Node> unindexed = originNodes.stream().filter(node -> index.getNodeOrdinal(node) < 0);
+		Iterator<Node> reached = BreadthFirstSearch.nodeIterator(index, sources, direction, maxDepth, stopAt, excluded);
+		return Stream.concat(unindexed, stream(reached));
+	}
+
+	@Override
+	protected Stream<Edge> streamEdges() {
+		Graph graph = getInputs().get(0).evaluate();
+		Graph originGraph = origin != null ? null : getInputs().get(1).evaluate();
+		GraphElementSet<Node> originNodes = origin != null ? origin : originGraph.nodes();
+		AdjacencyIndex index = AdjacencyIndex.of(graph);
+		int[] sources = index.getNodeOrdinals(originNodes);
+		Stream<Edge> traversed = stream(BreadthFirstSearch.edgeIterator(index, sources, direction, maxDepth, stopAt, excluded));
+		if(originGraph == null || originGraph.edges().isEmpty()) {
+			return traversed;
+		}
+		GraphElementSet<Edge> originEdges = originGraph.edges();
+		return Stream.concat(originEdges.stream(), traversed.filter(edge -> !originEdges.contains(edge)));
+	}
+
+	private static <E> Stream<E> stream(Iterator<E> iterator) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.DISTINCT | Spliterator.NONNULL), false);
+	}
+
+}
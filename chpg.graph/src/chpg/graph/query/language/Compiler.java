@@ -0,0 +1,397 @@
+package chpg.graph.query.language;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.GraphElement;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.GraphElementSet;
+import chpg.graph.Node;
+import chpg.graph.PathExpression;
+import chpg.graph.query.Query;
+
+/**
+ * Checks the syntax tree of a query against the known operators and compiles it
+ * into a Query for a given set of parameter values
+ */
+class Compiler {
+
+	private static final int VARIADIC = Integer.MAX_VALUE;
+
+	/**
+	 * The minimum and maximum number of arguments of each operator
+	 */
+	private static final Map<String,int[]> OPERATORS = new HashMap<String,int[]>();
+
+	static {
+		for(String operator : new String[] { "nodes", "edges" }) {
+			OPERATORS.put(operator, new int[] { 0, VARIADIC });
+		}
+		for(String operator : new String[] { "nodesTaggedWithAny", "nodesTaggedWithAll", "edgesTaggedWithAny", "edgesTaggedWithAll",
+				"selectNodesByName", "selectEdgesByName" }) {
+			OPERATORS.put(operator, new int[] { 1, VARIADIC });
+		}
+		for(String operator : new String[] { "selectNodes", "selectEdges" }) {
+			OPERATORS.put(operator, new int[] { 1, VARIADIC });
+		}
+		for(String operator : new String[] { "leaves", "roots", "children", "parent", "contained", "containers" }) {
+			OPERATORS.put(operator, new int[] { 0, 0 });
+		}
+		for(String operator : new String[] { "predecessors", "successors", "forwardStep", "reverseStep" }) {
+			OPERATORS.put(operator, new int[] { 1, 1 });
+		}
+		for(String operator : new String[] { "forward", "reverse" }) {
+			OPERATORS.put(operator, new int[] { 1, 2 });
+		}
+		for(String operator : new String[] { "between", "betweenStep" }) {
+			OPERATORS.put(operator, new int[] { 2, 2 });
+		}
+		OPERATORS.put("regularPaths", new int[] { 2, 3 });
+		OPERATORS.put("shortestPath", new int[] { 2, VARIADIC });
+		for(String operator : new String[] { "union", "difference", "differenceEdges", "intersection", "induce" }) {
+			OPERATORS.put(operator, new int[] { 1, VARIADIC });
+		}
+	}
+
+	private Compiler() {}
+
+	/**
+	 * Checks that all operators of the given expression are known and applied to
+	 * a valid number of arguments and collects the parameter names
+	 */
+	static void check(String query, Expression expression, Set<String> parameters) {
+		if(expression instanceof Expression.Parameter) {
+			parameters.add(((Expression.Parameter) expression).name);
+		} else if(expression instanceof Expression.Call) {
+			Expression.Call call = (Expression.Call) expression;
+			int[] arity = OPERATORS.get(call.operator);
+			if(arity == null) {
+				throw new QuerySyntaxException("Unknown operator " + call.operator, query, call.position);
+			}
+			if(call.arguments.size() < arity[0] || call.arguments.size() > arity[1]) {
+				throw new QuerySyntaxException("Operator " + call.operator + " does not accept " + call.arguments.size() + " arguments", query, call.position);
+			}
+			if(call.receiver instanceof Expression.Literal) {
+				throw new QuerySyntaxException("Operator " + call.operator + " cannot be applied to " + call.receiver, query, call.position);
+			}
+			check(query, call.receiver, parameters);
+			for(Expression argument : call.arguments) {
+				check(query, argument, parameters);
+			}
+		}
+	}
+
+	/**
+	 * Compiles the given expression into a query
+	 */
+	static Query compile(Expression expression, QueryEngine engine, Map<String,?> parameters) {
+		return toQuery(value(expression, engine, parameters), engine, expression);
+	}
+
+	private static Object value(Expression expression, QueryEngine engine, Map<String,?> parameters) {
+		if(expression instanceof Expression.Literal) {
+			return ((Expression.Literal) expression).value;
+		} else if(expression instanceof Expression.Parameter) {
+			String name = ((Expression.Parameter) expression).name;
+			if(!parameters.containsKey(name)) {
+				throw new IllegalArgumentException("Parameter $" + name + " is not bound");
+			}
+			return parameters.get(name);
+		} else if(expression instanceof Expression.Name) {
+			String name = ((Expression.Name) expression).name;
+			Graph graph = engine.getGraph(name);
+			if(graph == null) {
+				throw new IllegalArgumentException("Unknown graph " + name);
+			}
+			return graph;
+		} else {
+			Expression.Call call = (Expression.Call) expression;
+			Query receiver = toQuery(value(call.receiver, engine, parameters), engine, call.receiver);
+			List<Object> arguments = new ArrayList<Object>(call.arguments.size());
+			for(Expression argument : call.arguments) {
+				arguments.add(value(argument, engine, parameters));
+			}
+			return apply(receiver, call, arguments, engine);
+		}
+	}
+
+	private static Query apply(Query receiver, Expression.Call call, List<Object> arguments, QueryEngine engine) {
+		switch(call.operator) {
+			case "nodes":
+				return arguments.isEmpty() ? receiver.nodes() : receiver.nodes(strings(call, arguments, 0));
+			case "edges":
+				return arguments.isEmpty() ? receiver.edges() : receiver.edges(strings(call, arguments, 0));
+			case "nodesTaggedWithAny":
+				return receiver.nodesTaggedWithAny(strings(call, arguments, 0));
+			case "nodesTaggedWithAll":
+				return receiver.nodesTaggedWithAll(strings(call, arguments, 0));
+			case "edgesTaggedWithAny":
+				return receiver.edgesTaggedWithAny(strings(call, arguments, 0));
+			case "edgesTaggedWithAll":
+				return receiver.edgesTaggedWithAll(strings(call, arguments, 0));
+			case "selectNodesByName":
+				return receiver.selectNodesByName(strings(call, arguments, 0));
+			case "selectEdgesByName":
+				return receiver.selectEdgesByName(strings(call, arguments, 0));
+			case "selectNodes":
+				if(arguments.size() == 1) {
+					return receiver.selectNodes(string(call, arguments.get(0)));
+				}
+				return receiver.selectNodes(string(call, arguments.get(0)), values(arguments, 1));
+			case "selectEdges":
+				if(arguments.size() == 1) {
+					return receiver.selectEdges(string(call, arguments.get(0)));
+				}
+				return receiver.selectEdges(string(call, arguments.get(0)), values(arguments, 1));
+			case "leaves":
+				return receiver.leaves();
+			case "roots":
+				return receiver.roots();
+			case "children":
+				return receiver.children();
+			case "parent":
+				return receiver.parent();
+			case "contained":
+				return receiver.contained();
+			case "containers":
+				return receiver.containers();
+			case "predecessors":
+			case "successors":
+			case "forwardStep":
+			case "reverseStep":
+			case "forward":
+			case "reverse":
+				return traverse(receiver, call, arguments, engine);
+			case "between":
+			case "betweenStep":
+				return between(receiver, call, arguments, engine);
+			case "regularPaths":
+				return regularPaths(receiver, call, arguments, engine);
+			case "shortestPath":
+				return shortestPath(receiver, call, arguments, engine);
+			default:
+				Query result = receiver;
+				for(Object argument : arguments) {
+					result = combine(result, call, argument, engine);
+				}
+				return result;
+		}
+	}
+
+	private static Query traverse(Query receiver, Expression.Call call, List<Object> arguments, QueryEngine engine) {
+		Object origin = arguments.get(0);
+		if(arguments.size() == 2) {
+			int depth = integer(call, arguments.get(1));
+			GraphElementSet<Node> nodes = nodes(origin);
+			if(nodes != null) {
+				return call.operator.equals("forward") ? receiver.forward(nodes, depth) : receiver.reverse(nodes, depth);
+			}
+			Query query = toQuery(origin, engine, call);
+			return call.operator.equals("forward") ? receiver.forward(query, depth) : receiver.reverse(query, depth);
+		}
+		if(origin instanceof Node || origin instanceof Node[]) {
+			// node literals compare by address, so equivalent queries share cached results
+			Node[] array = origin instanceof Node ? new Node[] { (Node) origin } : (Node[]) origin;
+			switch(call.operator) {
+				case "predecessors": return receiver.predecessors(array);
+				case "successors": return receiver.successors(array);
+				case "forwardStep": return receiver.forwardStep(array);
+				case "reverseStep": return receiver.reverseStep(array);
+				case "forward": return receiver.forward(array);
+				default: return receiver.reverse(array);
+			}
+		}
+		GraphElementSet<Node> nodes = nodes(origin);
+		if(nodes != null) {
+			switch(call.operator) {
+				case "predecessors": return receiver.predecessors(nodes);
+				case "successors": return receiver.successors(nodes);
+				case "forwardStep": return receiver.forwardStep(nodes);
+				case "reverseStep": return receiver.reverseStep(nodes);
+				case "forward": return receiver.forward(nodes);
+				default: return receiver.reverse(nodes);
+			}
+		}
+		Query query = toQuery(origin, engine, call);
+		switch(call.operator) {
+			case "predecessors": return receiver.predecessors(query);
+			case "successors": return receiver.successors(query);
+			case "forwardStep": return receiver.forwardStep(query);
+			case "reverseStep": return receiver.reverseStep(query);
+			case "forward": return receiver.forward(query);
+			default: return receiver.reverse(query);
+		}
+	}
+
+	private static Query regularPaths(Query receiver, Expression.Call call, List<Object> arguments, QueryEngine engine) {
+		PathExpression expression;
+		try {
+			expression = PathExpression.parse(string(call, arguments.get(1)));
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Operator " + call.operator + ": " + e.getMessage(), e);
+		}
+		int depth = arguments.size() == 3 ? integer(call, arguments.get(2)) : Graph.UNBOUNDED_DEPTH;
+		GraphElementSet<Node> nodes = nodes(arguments.get(0));
+		if(nodes != null) {
+			return receiver.regularPaths(nodes, expression, depth);
+		}
+		return receiver.regularPaths(toQuery(arguments.get(0), engine, call), expression, depth);
+	}
+
+	private static Query shortestPath(Query receiver, Expression.Call call, List<Object> arguments, QueryEngine engine) {
+		// an optional weight attribute (null counts edges) followed by the edge tags to follow
+		String weightAttribute = arguments.size() > 2 && arguments.get(2) != null ? string(call, arguments.get(2)) : null;
+		String[] edgeTags = arguments.size() > 3 ? strings(call, arguments, 3) : new String[0];
+		GraphElementSet<Node> from = nodes(arguments.get(0));
+		GraphElementSet<Node> to = nodes(arguments.get(1));
+		if(from != null && to != null) {
+			return receiver.shortestPath(from, to, weightAttribute, edgeTags);
+		}
+		Graph prototype = receiver.getPlan().getPrototype();
+		Query fromQuery = from != null ? new Query(prototype.toGraph(from)) : toQuery(arguments.get(0), engine, call);
+		Query toQuery = to != null ? new Query(prototype.toGraph(to)) : toQuery(arguments.get(1), engine, call);
+		return receiver.shortestPath(fromQuery, toQuery, weightAttribute, edgeTags);
+	}
+
+	private static Query between(Query receiver, Expression.Call call, List<Object> arguments, QueryEngine engine) {
+		GraphElementSet<Node> from = nodes(arguments.get(0));
+		GraphElementSet<Node> to = nodes(arguments.get(1));
+		boolean step = call.operator.equals("betweenStep");
+		if(arguments.get(0) instanceof Node && arguments.get(1) instanceof Node) {
+			Node fromNode = (Node) arguments.get(0);
+			Node toNode = (Node) arguments.get(1);
+			return step ? receiver.betweenStep(fromNode, toNode) : receiver.between(fromNode, toNode);
+		}
+		if(from != null && to != null) {
+			return step ? receiver.betweenStep(from, to) : receiver.between(from, to);
+		}
+		// a node origin mixed with a graph origin is converted to a graph of the receiver's type
+		Graph prototype = receiver.getPlan().getPrototype();
+		Query fromQuery = from != null ? new Query(prototype.toGraph(from)) : toQuery(arguments.get(0), engine, call);
+		Query toQuery = to != null ? new Query(prototype.toGraph(to)) : toQuery(arguments.get(1), engine, call);
+		return step ? receiver.betweenStep(fromQuery, toQuery) : receiver.between(fromQuery, toQuery);
+	}
+
+	private static Query combine(Query receiver, Expression.Call call, Object argument, QueryEngine engine) {
+		String operator = call.operator;
+		if(argument instanceof Node || argument instanceof Node[]) {
+			Node[] nodes = argument instanceof Node ? new Node[] { (Node) argument } : (Node[]) argument;
+			switch(operator) {
+				case "union": return receiver.union(nodes);
+				case "difference": return receiver.difference(nodes);
+				case "intersection": return receiver.intersection(nodes);
+				default: throw new IllegalArgumentException("Operator " + operator + " does not accept nodes");
+			}
+		}
+		if(argument instanceof Edge || argument instanceof Edge[]) {
+			Edge[] edges = argument instanceof Edge ? new Edge[] { (Edge) argument } : (Edge[]) argument;
+			switch(operator) {
+				case "union": return receiver.union(edges);
+				case "difference": return receiver.difference(edges);
+				case "differenceEdges": return receiver.differenceEdges(edges);
+				case "intersection": return receiver.intersection(edges);
+				default: return receiver.induce(edges);
+			}
+		}
+		Query query = toQuery(argument, engine, call);
+		switch(operator) {
+			case "union": return receiver.union(query);
+			case "difference": return receiver.difference(query);
+			case "differenceEdges": return receiver.differenceEdges(query);
+			case "intersection": return receiver.intersection(query);
+			default: return receiver.induce(query);
+		}
+	}
+
+	private static Query toQuery(Object value, QueryEngine engine, Expression expression) {
+		if(value instanceof Query) {
+			return (Query) value;
+		} else if(value instanceof Graph) {
+			Graph referenceGraph = engine.getReferenceGraph();
+			return referenceGraph != null ? new Query((Graph) value, referenceGraph) : new Query((Graph) value);
+		} else {
+			throw new IllegalArgumentException("Expected a graph but found " + describe(value) + " in " + expression);
+		}
+	}
+
+	/**
+	 * Returns the given node origin as a set, or null if the value is not a node origin
+	 */
+	@SuppressWarnings("unchecked")
+	private static GraphElementSet<Node> nodes(Object value) {
+		if(value instanceof Node) {
+			return new GraphElementHashSet<Node>((Node) value);
+		} else if(value instanceof Node[]) {
+			return new GraphElementHashSet<Node>((Node[]) value);
+		} else if(value instanceof GraphElementSet && allNodes((GraphElementSet<? extends GraphElement>) value)) {
+			return (GraphElementSet<Node>) value;
+		}
+		return null;
+	}
+
+	private static boolean allNodes(GraphElementSet<? extends GraphElement> set) {
+		for(GraphElement element : set) {
+			if(!(element instanceof Node)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String[] strings(Expression.Call call, List<Object> arguments, int from) {
+		List<String> result = new ArrayList<String>();
+		for(Object value : flatten(arguments.subList(from, arguments.size()))) {
+			result.add(string(call, value));
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	private static Object[] values(List<Object> arguments, int from) {
+		List<Object> result = flatten(arguments.subList(from, arguments.size()));
+		return result.toArray(new Object[result.size()]);
+	}
+
+	/**
+	 * Expands array and collection parameter values into individual arguments
+	 */
+	private static List<Object> flatten(List<Object> arguments) {
+		List<Object> result = new ArrayList<Object>();
+		for(Object argument : arguments) {
+			if(argument instanceof Object[]) {
+				for(Object value : (Object[]) argument) {
+					result.add(value);
+				}
+			} else if(argument instanceof Collection) {
+				result.addAll((Collection<?>) argument);
+			} else {
+				result.add(argument);
+			}
+		}
+		return result;
+	}
+
+	private static String string(Expression.Call call, Object value) {
+		if(value instanceof String) {
+			return (String) value;
+		}
+		throw new IllegalArgumentException("Operator " + call.operator + " expected a string but found " + describe(value));
+	}
+
+	private static int integer(Expression.Call call, Object value) {
+		if(value instanceof Integer) {
+			return (Integer) value;
+		}
+		throw new IllegalArgumentException("Operator " + call.operator + " expected an integer but found " + describe(value));
+	}
+
+	private static String describe(Object value) {
+		return value == null ? "null" : value.getClass().getSimpleName() + " " + value;
+	}
+
+}
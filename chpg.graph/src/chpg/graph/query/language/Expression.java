@@ -0,0 +1,97 @@
+package chpg.graph.query.language;
+
+import java.util.List;
+
+/**
+ * The syntax tree of a query
+ */
+abstract class Expression {
+
+	final int position;
+
+	Expression(int position) {
+		this.position = position;
+	}
+
+	/**
+	 * A reference to a named graph of the query engine
+	 */
+	static class Name extends Expression {
+		final String name;
+
+		Name(String name, int position) {
+			super(position);
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+
+	/**
+	 * A parameter that is bound when a prepared statement is executed
+	 */
+	static class Parameter extends Expression {
+		final String name;
+
+		Parameter(String name, int position) {
+			super(position);
+			this.name = name;
+		}
+
+		@Override
+		public String toString() {
+			return "$" + name;
+		}
+	}
+
+	/**
+	 * A string, number or boolean literal
+	 */
+	static class Literal extends Expression {
+		final Object value;
+
+		Literal(Object value, int position) {
+			super(position);
+			this.value = value;
+		}
+
+		@Override
+		public String toString() {
+			return value instanceof String ? "\"" + value + "\"" : String.valueOf(value);
+		}
+	}
+
+	/**
+	 * An operator applied to a receiver, the set operators (+, - and &amp;) are
+	 * represented as calls of union, difference and intersection
+	 */
+	static class Call extends Expression {
+		final Expression receiver;
+		final String operator;
+		final List<Expression> arguments;
+
+		Call(Expression receiver, String operator, List<Expression> arguments, int position) {
+			super(position);
+			this.receiver = receiver;
+			this.operator = operator;
+			this.arguments = arguments;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder result = new StringBuilder();
+			result.append(receiver).append('.').append(operator).append('(');
+			for(int i=0; i<arguments.size(); i++) {
+				if(i > 0) {
+					result.append(", ");
+				}
+				result.append(arguments.get(i));
+			}
+			return result.append(')').toString();
+		}
+	}
+
+}
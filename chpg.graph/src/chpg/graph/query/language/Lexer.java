@@ -0,0 +1,123 @@
+package chpg.graph.query.language;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits the text of a query into tokens
+ */
+class Lexer {
+
+	enum Kind {
+		IDENTIFIER, PARAMETER, STRING, NUMBER, LEFT_PARENTHESIS, RIGHT_PARENTHESIS, COMMA, DOT, PLUS, MINUS, AMPERSAND, END
+	}
+
+	static class Token {
+		final Kind kind;
+		final String text;
+		final Object value;
+		final int position;
+
+		Token(Kind kind, String text, Object value, int position) {
+			this.kind = kind;
+			this.text = text;
+			this.value = value;
+			this.position = position;
+		}
+
+		@Override
+		public String toString() {
+			return kind == Kind.END ? "end of query" : "'" + text + "'";
+		}
+	}
+
+	private Lexer() {}
+
+	static List<Token> tokenize(String query) {
+		List<Token> tokens = new ArrayList<Token>();
+		int i = 0;
+		while(i < query.length()) {
+			char c = query.charAt(i);
+			if(Character.isWhitespace(c)) {
+				i++;
+			} else if(c == '/' && i + 1 < query.length() && query.charAt(i + 1) == '/') {
+				// comments extend to the end of the line
+				while(i < query.length() && query.charAt(i) != '\n') {
+					i++;
+				}
+			} else if(Character.isJavaIdentifierStart(c) && c != '$') {
+				int start = i;
+				while(i < query.length() && isIdentifierPart(query.charAt(i))) {
+					i++;
+				}
+				String text = query.substring(start, i);
+				tokens.add(new Token(Kind.IDENTIFIER, text, text, start));
+			} else if(c == '$') {
+				int start = i++;
+				while(i < query.length() && isIdentifierPart(query.charAt(i))) {
+					i++;
+				}
+				if(i == start + 1) {
+					throw new QuerySyntaxException("Expected a parameter name", query, start);
+				}
+				tokens.add(new Token(Kind.PARAMETER, query.substring(start, i), query.substring(start + 1, i), start));
+			} else if(c == '"' || c == '\'') {
+				int start = i++;
+				StringBuilder value = new StringBuilder();
+				while(true) {
+					if(i >= query.length()) {
+						throw new QuerySyntaxException("Unterminated string", query, start);
+					}
+					char next = query.charAt(i++);
+					if(next == c) {
+						break;
+					} else if(next == '\\' && i < query.length()) {
+						value.append(query.charAt(i++));
+					} else {
+						value.append(next);
+					}
+				}
+				tokens.add(new Token(Kind.STRING, query.substring(start, i), value.toString(), start));
+			} else if(Character.isDigit(c)) {
+				int start = i;
+				while(i < query.length() && (Character.isDigit(query.charAt(i)) || query.charAt(i) == '.')) {
+					i++;
+				}
+				String text = query.substring(start, i);
+				Object value;
+				try {
+					if(text.contains(".")) {
+						value = Double.parseDouble(text);
+					} else {
+						long number = Long.parseLong(text);
+						value = number <= Integer.MAX_VALUE ? (Object) (int) number : (Object) number;
+					}
+				} catch (NumberFormatException e) {
+					throw new QuerySyntaxException("Malformed number " + text, query, start);
+				}
+				tokens.add(new Token(Kind.NUMBER, text, value, start));
+			} else {
+				Kind kind;
+				switch(c) {
+					case '(': kind = Kind.LEFT_PARENTHESIS; break;
+					case ')': kind = Kind.RIGHT_PARENTHESIS; break;
+					case ',': kind = Kind.COMMA; break;
+					case '.': kind = Kind.DOT; break;
+					case '+': kind = Kind.PLUS; break;
+					case '-': kind = Kind.MINUS; break;
+					case '&': kind = Kind.AMPERSAND; break;
+					default: throw new QuerySyntaxException("Unexpected character '" + c + "'", query, i);
+				}
+				tokens.add(new Token(kind, String.valueOf(c), null, i));
+				i++;
+			}
+		}
+		tokens.add(new Token(Kind.END, "", null, query.length()));
+		return tokens;
+	}
+
+	private static boolean isIdentifierPart(char c) {
+		return Character.isJavaIdentifierPart(c) && c != '$';
+	}
+
+}
@@ -0,0 +1,128 @@
+package chpg.graph.query.language;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import chpg.graph.query.language.Lexer.Kind;
+import chpg.graph.query.language.Lexer.Token;
+
+/**
+ * A recursive descent parser for the CHPG/QL grammar
+ * 
+ * <pre>
+ * expression := term (('+' | '-') term)*
+ * term       := chain ('&amp;' chain)*
+ * chain      := primary ('.' IDENTIFIER '(' (expression (',' expression)*)? ')')*
+ * primary    := IDENTIFIER | PARAMETER | STRING | NUMBER | 'true' | 'false' | '(' expression ')'
+ * </pre>
+ */
+class Parser {
+
+	private final String query;
+	private final List<Token> tokens;
+	private int next = 0;
+
+	private Parser(String query) {
+		this.query = query;
+		this.tokens = Lexer.tokenize(query);
+	}
+
+	static Expression parse(String query) {
+		Parser parser = new Parser(query);
+		Expression expression = parser.expression();
+		parser.expect(Kind.END);
+		return expression;
+	}
+
+	private Token peek() {
+		return tokens.get(next);
+	}
+
+	private boolean accept(Kind kind) {
+		if(peek().kind == kind) {
+			next++;
+			return true;
+		}
+		return false;
+	}
+
+	private Token expect(Kind kind) {
+		Token token = peek();
+		if(token.kind != kind) {
+			throw new QuerySyntaxException("Unexpected " + token, query, token.position);
+		}
+		next++;
+		return token;
+	}
+
+	private Expression expression() {
+		Expression result = term();
+		while(true) {
+			Token token = peek();
+			if(accept(Kind.PLUS)) {
+				result = new Expression.Call(result, "union", Collections.singletonList(term()), token.position);
+			} else if(accept(Kind.MINUS)) {
+				result = new Expression.Call(result, "difference", Collections.singletonList(term()), token.position);
+			} else {
+				return result;
+			}
+		}
+	}
+
+	private Expression term() {
+		Expression result = chain();
+		while(true) {
+			Token token = peek();
+			if(accept(Kind.AMPERSAND)) {
+				result = new Expression.Call(result, "intersection", Collections.singletonList(chain()), token.position);
+			} else {
+				return result;
+			}
+		}
+	}
+
+	private Expression chain() {
+		Expression result = primary();
+		while(accept(Kind.DOT)) {
+			Token operator = expect(Kind.IDENTIFIER);
+			expect(Kind.LEFT_PARENTHESIS);
+			List<Expression> arguments = new ArrayList<Expression>();
+			if(!accept(Kind.RIGHT_PARENTHESIS)) {
+				do {
+					arguments.add(expression());
+				} while(accept(Kind.COMMA));
+				expect(Kind.RIGHT_PARENTHESIS);
+			}
+			result = new Expression.Call(result, operator.text, arguments, operator.position);
+		}
+		return result;
+	}
+
+	private Expression primary() {
+		Token token = peek();
+		switch(token.kind) {
+			case IDENTIFIER:
+				next++;
+				if(token.text.equals("true") || token.text.equals("false")) {
+					return new Expression.Literal(Boolean.valueOf(token.text), token.position);
+				}
+				return new Expression.Name(token.text, token.position);
+			case PARAMETER:
+				next++;
+				return new Expression.Parameter((String) token.value, token.position);
+			case STRING:
+			case NUMBER:
+				next++;
+				return new Expression.Literal(token.value, token.position);
+			case LEFT_PARENTHESIS:
+				next++;
+				Expression result = expression();
+				expect(Kind.RIGHT_PARENTHESIS);
+				return result;
+			default:
+				throw new QuerySyntaxException("Unexpected " + token, query, token.position);
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+package chpg.graph.query.language;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import chpg.graph.Graph;
+import chpg.graph.query.Query;
+
+/**
+ * A parsed and checked CHPG/QL query that can be executed repeatedly with
+ * different parameter values. Prepared statements are immutable and may be
+ * shared between threads.
+ */
+public class PreparedStatement {
+
+	private final QueryEngine engine;
+	private final String text;
+	private final Expression expression;
+	private final Set<String> parameters;
+
+	PreparedStatement(QueryEngine engine, String text) {
+		this.engine = engine;
+		this.text = text;
+		this.expression = Parser.parse(text);
+		Set<String> parameters = new LinkedHashSet<String>();
+		Compiler.check(text, expression, parameters);
+		this.parameters = Collections.unmodifiableSet(parameters);
+	}
+
+	/**
+	 * Returns the text of the query
+	 * @return
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * Returns the names of the parameters of the query (without the $ prefix)
+	 * @return
+	 */
+	public Set<String> getParameterNames() {
+		return parameters;
+	}
+
+	/**
+	 * Returns the query for the given parameter values. Parameters may be bound to
+	 * graphs, queries, nodes, edges, graph element sets, strings, numbers and
+	 * booleans, or arrays and collections of strings and values for variadic
+	 * operators.
+	 * 
+	 * @param parameters
+	 * @return
+	 */
+	public Query bind(Map<String,?> parameters) {
+		return Compiler.compile(expression, engine, parameters);
+	}
+
+	/**
+	 * Returns the query for the given alternating parameter names and values
+	 * @param namesAndValues
+	 * @return
+	 */
+	public Query bind(Object... namesAndValues) {
+		if(namesAndValues.length % 2 != 0) {
+			throw new IllegalArgumentException("Parameters must be given as name and value pairs");
+		}
+		Map<String,Object> parameters = new HashMap<String,Object>();
+		for(int i=0; i<namesAndValues.length; i+=2) {
+			String name = String.valueOf(namesAndValues[i]);
+			parameters.put(name.startsWith("$") ? name.substring(1) : name, namesAndValues[i+1]);
+		}
+		return bind(parameters);
+	}
+
+	/**
+	 * Evaluates the query for the given parameter values using the cache of the
+	 * query engine
+	 * 
+	 * @param parameters
+	 * @return
+	 */
+	public Graph execute(Map<String,?> parameters) {
+		return bind(parameters).evaluate(engine.getResultCache());
+	}
+
+	/**
+	 * Evaluates the query for the given alternating parameter names and values
+	 * using the cache of the query engine
+	 * 
+	 * @param namesAndValues
+	 * @return
+	 */
+	public Graph execute(Object... namesAndValues) {
+		return bind(namesAndValues).evaluate(engine.getResultCache());
+	}
+
+	@Override
+	public String toString() {
+		return expression.toString();
+	}
+
+}
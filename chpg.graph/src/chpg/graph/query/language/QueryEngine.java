@@ -0,0 +1,169 @@
+package chpg.graph.query.language;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import chpg.graph.Graph;
+import chpg.graph.query.Query;
+import chpg.graph.query.QueryCache;
+
+/**
+ * Parses, compiles and executes CHPG/QL queries against a set of named graphs.
+ * 
+ * A query is a chain of Query operators applied to a named graph, for example
+ * 
+ * <pre>
+ * universe.nodes("XCSG.Function").selectNodesByName($name).reverse(universe.edges("XCSG.Call").nodes())
+ * </pre>
+ * 
+ * Operators take the same arguments as the corresponding Query methods, written
+ * as string, number and boolean literals, nested queries or $parameters. The
+ * infix operators +, - and &amp; denote union, difference and intersection
+ * (&amp; binds tighter than + and -), parentheses group subexpressions and //
+ * starts a comment that extends to the end of the line.
+ * 
+ * Prepared statements are cached by query text, so repeated queries are only
+ * parsed and checked once. Results of executed statements are cached in a
+ * QueryCache, which drops them once the graphs or the properties of graph
+ * elements change.
+ */
+public class QueryEngine {
+
+	/**
+	 * The default maximum number of cached prepared statements
+	 */
+	public static final int DEFAULT_MAX_STATEMENTS = 256;
+
+	private final Map<String,Graph> graphs = new ConcurrentHashMap<String,Graph>();
+	private volatile Graph referenceGraph = null;
+	private final QueryCache resultCache;
+	private final LinkedHashMap<String,PreparedStatement> statements;
+
+	/**
+	 * Constructs a query engine with a default result cache and statement cache
+	 */
+	public QueryEngine() {
+		this(new QueryCache(), DEFAULT_MAX_STATEMENTS);
+	}
+
+	/**
+	 * Constructs a query engine with the given result cache and maximum number of
+	 * cached prepared statements
+	 * @param resultCache
+	 * @param maxStatements
+	 */
+	public QueryEngine(QueryCache resultCache, final int maxStatements) {
+		if(resultCache == null) {
+			throw new IllegalArgumentException("Result cache must be non-null");
+		}
+		this.resultCache = resultCache;
+		this.statements = new LinkedHashMap<String,PreparedStatement>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String,PreparedStatement> eldest) {
+				return size() > maxStatements;
+			}
+		};
+	}
+
+	/**
+	 * Binds the given graph to the given name
+	 * @param name
+	 * @param graph
+	 */
+	public void setGraph(String name, Graph graph) {
+		if(graph == null) {
+			graphs.remove(name);
+		} else {
+			graphs.put(name, graph);
+		}
+	}
+
+	/**
+	 * Returns the graph bound to the given name, or null if no graph is bound to the name
+	 * @param name
+	 * @return
+	 */
+	public Graph getGraph(String name) {
+		return graphs.get(name);
+	}
+
+	/**
+	 * Sets the reference graph used for containment queries
+	 * @param referenceGraph
+	 */
+	public void setReferenceGraph(Graph referenceGraph) {
+		this.referenceGraph = referenceGraph;
+	}
+
+	/**
+	 * Returns the reference graph used for containment queries
+	 * @return
+	 */
+	public Graph getReferenceGraph() {
+		return referenceGraph;
+	}
+
+	/**
+	 * Returns the cache of query results
+	 * @return
+	 */
+	public QueryCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Returns the prepared statement for the given query text, parsing the text
+	 * only if the statement is not cached
+	 * 
+	 * @param query
+	 * @return
+	 * @throws QuerySyntaxException if the query is not well formed
+	 */
+	public PreparedStatement prepare(String query) {
+		synchronized(statements) {
+			PreparedStatement statement = statements.get(query);
+			if(statement != null) {
+				return statement;
+			}
+		}
+		PreparedStatement statement = new PreparedStatement(this, query);
+		synchronized(statements) {
+			statements.put(query, statement);
+		}
+		return statement;
+	}
+
+	/**
+	 * Returns the number of cached prepared statements
+	 * @return
+	 */
+	public int getPreparedStatementCount() {
+		synchronized(statements) {
+			return statements.size();
+		}
+	}
+
+	/**
+	 * Compiles the given query with the given alternating parameter names and values
+	 * @param query
+	 * @param namesAndValues
+	 * @return
+	 */
+	public Query query(String query, Object... namesAndValues) {
+		return prepare(query).bind(namesAndValues);
+	}
+
+	/**
+	 * Executes the given query with the given alternating parameter names and values
+	 * @param query
+	 * @param namesAndValues
+	 * @return
+	 */
+	public Graph execute(String query, Object... namesAndValues) {
+		return prepare(query).execute(namesAndValues);
+	}
+
+}
@@ -0,0 +1,35 @@
+package chpg.graph.query.language;
+
+/**
+ * Thrown when the text of a query is not a well formed CHPG/QL query
+ */
+public class QuerySyntaxException extends IllegalArgumentException {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String query;
+	private final int position;
+
+	public QuerySyntaxException(String message, String query, int position) {
+		super(message + " at position " + position + ": " + query);
+		this.query = query;
+		this.position = position;
+	}
+
+	/**
+	 * Returns the text of the query
+	 * @return
+	 */
+	public String getQuery() {
+		return query;
+	}
+
+	/**
+	 * Returns the character offset of the error in the query text
+	 * @return
+	 */
+	public int getPosition() {
+		return position;
+	}
+
+}
@@ -0,0 +1,90 @@
+package chpg.graph.query.pattern;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.Node;
+
+/**
+ * A match of a pattern, binding each node variable to a graph node and each
+ * edge variable to a graph edge
+ */
+public class Match {
+
+	private final Pattern pattern;
+	private final Node[] nodes;
+	private final Edge[] edges;
+
+	Match(Pattern pattern, Node[] nodes, Edge[] edges) {
+		this.pattern = pattern;
+		this.nodes = nodes;
+		this.edges = edges;
+	}
+
+	/**
+	 * Returns the matched pattern
+	 * @return
+	 */
+	public Pattern getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * Returns the node bound to the given node variable
+	 * @param node
+	 * @return
+	 */
+	public Node getNode(PatternNode node) {
+		return nodes[node.getIndex()];
+	}
+
+	/**
+	 * Returns the node bound to the node variable with the given name
+	 * @param name
+	 * @return
+	 */
+	public Node getNode(String name) {
+		PatternNode node = pattern.getNode(name);
+		if(node == null) {
+			throw new IllegalArgumentException("Pattern has no node named " + name);
+		}
+		return getNode(node);
+	}
+
+	/**
+	 * Returns the edge bound to the given edge variable
+	 * @param edge
+	 * @return
+	 */
+	public Edge getEdge(PatternEdge edge) {
+		return edges[edge.getIndex()];
+	}
+
+	/**
+	 * Adds the bound nodes and edges to the given graph
+	 * @param graph
+	 */
+	public void addTo(Graph graph) {
+		for(Node node : nodes) {
+			graph.nodes().add(node);
+		}
+		for(Edge edge : edges) {
+			graph.edges().add(edge);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("Match [");
+		String separator = "";
+		for(PatternNode node : pattern.getNodes()) {
+			result.append(separator);
+			result.append(node.getName());
+			result.append("=");
+			result.append(getNode(node));
+			separator = ", ";
+		}
+		result.append("]");
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,128 @@
+package chpg.graph.query.pattern;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A small pattern graph whose node and edge variables carry tag, attribute and
+ * custom constraints, see PatternMatcher.
+ *
+ * <pre>
+ * Pattern pattern = new Pattern();
+ * PatternNode type = pattern.node("type").tagged("Y");
+ * PatternNode method = pattern.node("method").tagged("XCSG.Method");
+ * PatternNode callee = pattern.node("callee").attribute("name", "X");
+ * pattern.edge(type, method).tagged("XCSG.Contains");
+ * pattern.edge(method, callee).tagged("XCSG.Call");
+ * </pre>
+ *
+ * By default matches are injective (subgraph isomorphisms): distinct pattern
+ * nodes match distinct graph nodes and distinct pattern edges match distinct
+ * graph edges. Non-injective patterns match homomorphisms instead.
+ */
+public class Pattern {
+
+	private final Map<String,PatternNode> nodes = new LinkedHashMap<String,PatternNode>();
+	private final List<PatternEdge> edges = new ArrayList<PatternEdge>();
+	private boolean injective = true;
+
+	/**
+	 * Constructs an empty injective pattern
+	 */
+	public Pattern() {}
+
+	/**
+	 * Adds a node variable with the given name
+	 * @param name
+	 * @return
+	 */
+	public PatternNode node(String name) {
+		if(name == null) {
+			throw new IllegalArgumentException("Pattern node name must be non-null");
+		}
+		if(nodes.containsKey(name)) {
+			throw new IllegalArgumentException("Pattern already has a node named " + name);
+		}
+		PatternNode node = new PatternNode(name, nodes.size());
+		nodes.put(name, node);
+		return node;
+	}
+
+	/**
+	 * Adds an edge variable between the given node variables of this pattern
+	 * @param from
+	 * @param to
+	 * @return
+	 */
+	public PatternEdge edge(PatternNode from, PatternNode to) {
+		if(from == null || to == null || nodes.get(from.getName()) != from || nodes.get(to.getName()) != to) {
+			throw new IllegalArgumentException("Pattern edges must connect nodes of the same pattern");
+		}
+		PatternEdge edge = new PatternEdge(from, to, edges.size());
+		edges.add(edge);
+		return edge;
+	}
+
+	/**
+	 * Returns the node variable with the given name or null
+	 * @param name
+	 * @return
+	 */
+	public PatternNode getNode(String name) {
+		return nodes.get(name);
+	}
+
+	/**
+	 * Returns the node variables in the order they were added
+	 * @return
+	 */
+	public List<PatternNode> getNodes() {
+		return Collections.unmodifiableList(new ArrayList<PatternNode>(nodes.values()));
+	}
+
+	/**
+	 * Returns the edge variables in the order they were added
+	 * @return
+	 */
+	public List<PatternEdge> getEdges() {
+		return Collections.unmodifiableList(edges);
+	}
+
+	/**
+	 * Returns true if distinct variables must match distinct graph elements
+	 * @return
+	 */
+	public boolean isInjective() {
+		return injective;
+	}
+
+	/**
+	 * Sets whether distinct variables must match distinct graph elements
+	 * @param injective
+	 */
+	public void setInjective(boolean injective) {
+		this.injective = injective;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder result = new StringBuilder("Pattern [");
+		String separator = "";
+		for(PatternNode node : nodes.values()) {
+			result.append(separator);
+			result.append(node);
+			separator = ", ";
+		}
+		for(PatternEdge edge : edges) {
+			result.append(separator);
+			result.append(edge);
+			separator = ", ";
+		}
+		result.append("]");
+		return result.toString();
+	}
+
+}
@@ -0,0 +1,84 @@
+package chpg.graph.query.pattern;
+
+import java.util.function.Predicate;
+
+import chpg.graph.Edge;
+
+/**
+ * An edge variable of a pattern, matched by a graph edge from the node matched
+ * by its from variable to the node matched by its to variable
+ */
+public class PatternEdge extends PatternElement<Edge> {
+
+	private final PatternNode from;
+	private final PatternNode to;
+
+	PatternEdge(PatternNode from, PatternNode to, int index) {
+		super(index);
+		this.from = from;
+		this.to = to;
+	}
+
+	/**
+	 * Returns the pattern node matched by the origin of the edge
+	 * @return
+	 */
+	public PatternNode from() {
+		return from;
+	}
+
+	/**
+	 * Returns the pattern node matched by the destination of the edge
+	 * @return
+	 */
+	public PatternNode to() {
+		return to;
+	}
+
+	/**
+	 * Requires the matched edge to be tagged with all of the given tags
+	 * @param tags
+	 * @return this pattern edge
+	 */
+	public PatternEdge tagged(String... tags) {
+		addTags(tags);
+		return this;
+	}
+
+	/**
+	 * Requires the matched edge to have the given attribute
+	 * @param attribute
+	 * @return this pattern edge
+	 */
+	public PatternEdge attribute(String attribute) {
+		addAttribute(attribute);
+		return this;
+	}
+
+	/**
+	 * Requires the matched edge to have the given attribute with one of the given values
+	 * @param attribute
+	 * @param values
+	 * @return this pattern edge
+	 */
+	public PatternEdge attribute(String attribute, Object... values) {
+		addAttribute(attribute, values);
+		return this;
+	}
+
+	/**
+	 * Requires the matched edge to satisfy the given predicate
+	 * @param constraint
+	 * @return this pattern edge
+	 */
+	public PatternEdge where(Predicate<? super Edge> constraint) {
+		addConstraint(constraint);
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return from + "-[" + (getTags().isEmpty() ? "" : ":" + String.join(":", getTags())) + "]->" + to;
+	}
+
+}
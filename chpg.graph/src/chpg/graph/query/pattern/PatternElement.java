@@ -0,0 +1,105 @@
+package chpg.graph.query.pattern;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import chpg.graph.GraphElement;
+import chpg.graph.GraphElementPredicates;
+
+/**
+ * The constraints of a node or edge of a pattern. Tag constraints are
+ * evaluated with the tag selections of the matched graph (so tag hierarchies
+ * are respected), attribute and custom constraints are evaluated per candidate.
+ *
+ * @param <E> the type of the matched graph elements
+ */
+public abstract class PatternElement<E extends GraphElement> {
+
+	private final int index;
+	private final Set<String> tags = new LinkedHashSet<String>();
+	private final List<Predicate<? super E>> constraints = new ArrayList<Predicate<? super E>>();
+
+	PatternElement(int index) {
+		this.index = index;
+	}
+
+	/**
+	 * Returns the position of this element in its pattern
+	 * @return
+	 */
+	int getIndex() {
+		return index;
+	}
+
+	/**
+	 * Requires the matched element to be tagged with all of the given tags
+	 * @param tags
+	 */
+	void addTags(String... tags) {
+		this.tags.addAll(Arrays.asList(tags));
+	}
+
+	/**
+	 * Requires the matched element to satisfy the given predicate
+	 * @param constraint
+	 */
+	void addConstraint(Predicate<? super E> constraint) {
+		if(constraint == null) {
+			throw new IllegalArgumentException("Constraint must be non-null");
+		}
+		constraints.add(constraint);
+	}
+
+	/**
+	 * Requires the matched element to have the given attribute
+	 * @param attribute
+	 */
+	void addAttribute(String attribute) {
+		constraints.add(GraphElementPredicates.hasAttr(attribute));
+	}
+
+	/**
+	 * Requires the matched element to have the given attribute with one of the given values
+	 * @param attribute
+	 * @param values
+	 */
+	void addAttribute(String attribute, Object... values) {
+		constraints.add(GraphElementPredicates.attrEquals(attribute, values));
+	}
+
+	/**
+	 * Returns the tags the matched element must be tagged with
+	 * @return
+	 */
+	public Set<String> getTags() {
+		return Collections.unmodifiableSet(tags);
+	}
+
+	/**
+	 * Returns true if the given element satisfies the attribute and custom constraints of this element
+	 * @param element
+	 * @return
+	 */
+	boolean accepts(E element) {
+		for(Predicate<? super E> constraint : constraints) {
+			if(!constraint.test(element)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if this element has any constraints
+	 * @return
+	 */
+	boolean isConstrained() {
+		return !tags.isEmpty() || !constraints.isEmpty();
+	}
+
+}
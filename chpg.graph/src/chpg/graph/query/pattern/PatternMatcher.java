@@ -0,0 +1,496 @@
+package chpg.graph.query.pattern;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import chpg.graph.Edge;
+import chpg.graph.ExecutionContext;
+import chpg.graph.Graph;
+import chpg.graph.Node;
+import chpg.graph.index.AdjacencyIndex;
+
+/**
+ * Finds the matches of patterns in a graph.
+ *
+ * The matcher is a VF2 style backtracking search over the pattern variables.
+ * Before the search the candidates of each node variable are computed from the
+ * tag selections of the graph, the attribute and custom constraints and the
+ * degree of the variable in the pattern, and then refined until every
+ * candidate has, for each of its pattern edges, a matching graph edge to a
+ * candidate of the adjacent variable. The variables are then ordered so that
+ * the most selective variable is matched first and every following variable
+ * is adjacent to an already matched variable whenever the pattern is
+ * connected, so that its candidates are drawn from the neighbors of a matched
+ * node rather than from the whole graph. Finally the edge variables are bound
+ * to the graph edges between the matched nodes.
+ *
+ * Matches are produced lazily, the search only advances as far as needed to
+ * produce the next match. The search honors the execution context of the
+ * thread that created the iterator.
+ */
+public class PatternMatcher {
+
+	private final Graph graph;
+	private final AdjacencyIndex index;
+
+	/**
+	 * Constructs a matcher for the given graph, the graph must not be modified
+	 * while matches are produced
+	 *
+	 * @param graph
+	 */
+	public PatternMatcher(Graph graph) {
+		if(graph == null) {
+			throw new IllegalArgumentException("Graph must be non-null");
+		}
+		this.graph = graph;
+		this.index = AdjacencyIndex.of(graph);
+	}
+
+	/**
+	 * Returns a lazy stream of the matches of the given pattern
+	 * @param pattern
+	 * @return
+	 */
+	public Stream<Match> matches(Pattern pattern) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(pattern), Spliterator.NONNULL), false);
+	}
+
+	/**
+	 * Returns a lazy iterator over the matches of the given pattern
+	 * @param pattern
+	 * @return
+	 */
+	public Iterator<Match> iterator(Pattern pattern) {
+		return new Search(new Plan(pattern));
+	}
+
+	/**
+	 * Returns the graph of all nodes and edges bound by any match of the given pattern
+	 * @param pattern
+	 * @return
+	 */
+	public Graph match(Pattern pattern) {
+		Graph result = graph.empty();
+		Iterator<Match> matches = iterator(pattern);
+		while(matches.hasNext()) {
+			matches.next().addTo(result);
+		}
+		return result;
+	}
+
+	/**
+	 * The candidates and variable order of a pattern
+	 */
+	private class Plan {
+		private final Pattern pattern;
+		private final List<PatternNode> nodes;
+		private final List<PatternEdge> edges;
+		private final BitSet[] nodeCandidates;
+		private final BitSet[] edgeCandidates;
+
+		// the pattern node index matched at each position
+		private final int[] order;
+		// the pattern edge used to generate the candidates at each position, or -1
+		private final int[] anchors;
+		// the pattern edges to check at each position
+		private final int[][] checks;
+		private final int[][] rootCandidates;
+
+		private Plan(Pattern pattern) {
+			this.pattern = pattern;
+			this.nodes = pattern.getNodes();
+			this.edges = pattern.getEdges();
+			this.edgeCandidates = new BitSet[edges.size()];
+			for(PatternEdge edge : edges) {
+				edgeCandidates[edge.getIndex()] = edgeCandidates(edge);
+			}
+			this.nodeCandidates = new BitSet[nodes.size()];
+			for(PatternNode node : nodes) {
+				nodeCandidates[node.getIndex()] = nodeCandidates(node);
+			}
+			refine();
+
+			this.order = new int[nodes.size()];
+			this.anchors = new int[nodes.size()];
+			this.checks = new int[nodes.size()][];
+			this.rootCandidates = new int[nodes.size()][];
+			computeOrder();
+		}
+
+		private BitSet edgeCandidates(PatternEdge edge) {
+			if(!edge.isConstrained()) {
+				return null;
+			}
+			BitSet candidates = new BitSet(index.edgeCount());
+			if(edge.getTags().isEmpty()) {
+				candidates.set(0, index.edgeCount());
+			} else {
+				for(Edge e : graph.edgesTaggedWithAll(edge.getTags().toArray(new String[0]))) {
+					int ordinal = index.getEdgeOrdinal(e);
+					if(ordinal >= 0) {
+						candidates.set(ordinal);
+					}
+				}
+			}
+			for(int e = candidates.nextSetBit(0); e >= 0; e = candidates.nextSetBit(e + 1)) {
+				if(!edge.accepts(index.getEdge(e))) {
+					candidates.clear(e);
+				}
+			}
+			return candidates;
+		}
+
+		private BitSet nodeCandidates(PatternNode node) {
+			int outDegree = 0;
+			int inDegree = 0;
+			for(PatternEdge edge : edges) {
+				if(edge.from() == node) {
+					outDegree++;
+				}
+				if(edge.to() == node) {
+					inDegree++;
+				}
+			}
+			if(!pattern.isInjective()) {
+				// several pattern edges may be bound to the same graph edge
+				outDegree = Math.min(outDegree, 1);
+				inDegree = Math.min(inDegree, 1);
+			}
+			BitSet candidates = new BitSet(index.nodeCount());
+			if(node.getTags().isEmpty()) {
+				candidates.set(0, index.nodeCount());
+			} else {
+				for(Node n : graph.nodesTaggedWithAll(node.getTags().toArray(new String[0]))) {
+					int ordinal = index.getNodeOrdinal(n);
+					if(ordinal >= 0) {
+						candidates.set(ordinal);
+					}
+				}
+			}
+			for(int n = candidates.nextSetBit(0); n >= 0; n = candidates.nextSetBit(n + 1)) {
+				if(index.outDegree(n) < outDegree || index.inDegree(n) < inDegree || !node.accepts(index.getNode(n))) {
+					candidates.clear(n);
+				}
+			}
+			return candidates;
+		}
+
+		/**
+		 * Removes candidates that have no matching edge to a candidate of an
+		 * adjacent variable until the candidates are stable
+		 */
+		private void refine() {
+			boolean changed = true;
+			while(changed) {
+				changed = false;
+				for(PatternEdge edge : edges) {
+					BitSet from = nodeCandidates[edge.from().getIndex()];
+					BitSet to = nodeCandidates[edge.to().getIndex()];
+					BitSet allowed = edgeCandidates[edge.getIndex()];
+					BitSet supportedFrom = new BitSet(index.nodeCount());
+					BitSet supportedTo = new BitSet(index.nodeCount());
+					for(int n = from.nextSetBit(0); n >= 0; n = from.nextSetBit(n + 1)) {
+						for(int i = 0; i < index.outDegree(n); i++) {
+							int e = index.outEdge(n, i);
+							int successor = index.to(e);
+							if(to.get(successor) && (allowed == null || allowed.get(e)) && (edge.from() != edge.to() || successor == n)) {
+								supportedFrom.set(n);
+								supportedTo.set(successor);
+							}
+						}
+					}
+					if(!supportedFrom.equals(from) || !supportedTo.equals(to)) {
+						from.and(supportedFrom);
+						to.and(supportedTo);
+						changed = true;
+					}
+				}
+			}
+		}
+
+		private void computeOrder() {
+			boolean[] ordered = new boolean[nodes.size()];
+			for(int position = 0; position < order.length; position++) {
+				int best = -1;
+				int bestConnections = -1;
+				for(int u = 0; u < nodes.size(); u++) {
+					if(ordered[u]) {
+						continue;
+					}
+					int connections = 0;
+					for(PatternEdge edge : edges) {
+						int from = edge.from().getIndex();
+						int to = edge.to().getIndex();
+						if((from == u && to != u && ordered[to]) || (to == u && from != u && ordered[from])) {
+							connections++;
+						}
+					}
+					if(connections > bestConnections || (connections == bestConnections
+							&& nodeCandidates[u].cardinality() < nodeCandidates[best].cardinality())) {
+						best = u;
+						bestConnections = connections;
+					}
+				}
+				order[position] = best;
+				ordered[best] = true;
+
+				anchors[position] = -1;
+				int checkCount = 0;
+				int[] positionChecks = new int[edges.size()];
+				for(PatternEdge edge : edges) {
+					int from = edge.from().getIndex();
+					int to = edge.to().getIndex();
+					if((from == best || to == best) && ordered[from] && ordered[to]) {
+						positionChecks[checkCount++] = edge.getIndex();
+						if(anchors[position] < 0 && from != to) {
+							anchors[position] = edge.getIndex();
+						}
+					}
+				}
+				checks[position] = Arrays.copyOf(positionChecks, checkCount);
+				if(anchors[position] < 0) {
+					BitSet candidates = nodeCandidates[best];
+					int[] roots = new int[candidates.cardinality()];
+					int i = 0;
+					for(int n = candidates.nextSetBit(0); n >= 0; n = candidates.nextSetBit(n + 1)) {
+						roots[i++] = n;
+					}
+					rootCandidates[position] = roots;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The state of a backtracking search, the first levels bind the node
+	 * variables in the order of the plan and the remaining levels bind the edge
+	 * variables
+	 */
+	private class Search implements Iterator<Match> {
+		private final Plan plan;
+		private final int nodeCount;
+		private final int levels;
+		private final ExecutionContext context;
+
+		private final int[] nodeBindings;
+		private final int[] edgeBindings;
+		private final BitSet usedNodes;
+		private final BitSet usedEdges;
+
+		private final int[][] options;
+		private final int[] cursors;
+		private final boolean[] bound;
+		private int level = 0;
+
+		private Match next = null;
+		private boolean exhausted;
+
+		private Search(Plan plan) {
+			this.plan = plan;
+			this.nodeCount = plan.nodes.size();
+			this.levels = nodeCount + plan.edges.size();
+			this.context = ExecutionContext.current();
+			this.nodeBindings = new int[nodeCount];
+			this.edgeBindings = new int[plan.edges.size()];
+			this.usedNodes = new BitSet(index.nodeCount());
+			this.usedEdges = new BitSet(index.edgeCount());
+			this.options = new int[levels][];
+			this.cursors = new int[levels];
+			this.bound = new boolean[levels];
+			this.exhausted = nodeCount == 0;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if(next == null && !exhausted) {
+				next = advance();
+				exhausted = next == null;
+			}
+			return next != null;
+		}
+
+		@Override
+		public Match next() {
+			if(!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			Match match = next;
+			next = null;
+			return match;
+		}
+
+		private Match advance() {
+			while(level >= 0) {
+				if(context != null) {
+					context.check();
+				}
+				if(options[level] == null) {
+					options[level] = options(level);
+					cursors[level] = 0;
+				}
+				if(bound[level]) {
+					unbind(level);
+				}
+				if(cursors[level] < options[level].length) {
+					int choice = options[level][cursors[level]++];
+					if(bind(level, choice)) {
+						if(level == levels - 1) {
+							return match();
+						}
+						level++;
+						options[level] = null;
+					}
+				} else {
+					options[level] = null;
+					level--;
+				}
+			}
+			return null;
+		}
+
+		private int[] options(int level) {
+			if(level >= nodeCount) {
+				PatternEdge edge = plan.edges.get(level - nodeCount);
+				return edges(nodeBindings[edge.from().getIndex()], nodeBindings[edge.to().getIndex()], plan.edgeCandidates[edge.getIndex()]);
+			}
+			int anchor = plan.anchors[level];
+			if(anchor < 0) {
+				return plan.rootCandidates[level];
+			}
+			PatternEdge edge = plan.edges.get(anchor);
+			BitSet allowed = plan.edgeCandidates[anchor];
+			int u = plan.order[level];
+			int[] result;
+			int size = 0;
+			if(edge.to().getIndex() == u) {
+				int from = nodeBindings[edge.from().getIndex()];
+				result = new int[index.outDegree(from)];
+				for(int i = 0; i < result.length; i++) {
+					int e = index.outEdge(from, i);
+					if(allowed == null || allowed.get(e)) {
+						result[size++] = index.to(e);
+					}
+				}
+			} else {
+				int to = nodeBindings[edge.to().getIndex()];
+				result = new int[index.inDegree(to)];
+				for(int i = 0; i < result.length; i++) {
+					int e = index.inEdge(to, i);
+					if(allowed == null || allowed.get(e)) {
+						result[size++] = index.from(e);
+					}
+				}
+			}
+			// parallel edges lead to the same neighbor more than once
+			Arrays.sort(result, 0, size);
+			int unique = 0;
+			for(int i = 0; i < size; i++) {
+				if(unique == 0 || result[unique - 1] != result[i]) {
+					result[unique++] = result[i];
+				}
+			}
+			return Arrays.copyOf(result, unique);
+		}
+
+		/**
+		 * Returns the ordinals of the allowed edges from the given node to the given node
+		 */
+		private int[] edges(int from, int to, BitSet allowed) {
+			int[] result = new int[index.outDegree(from)];
+			int size = 0;
+			for(int i = 0; i < result.length; i++) {
+				int e = index.outEdge(from, i);
+				if(index.to(e) == to && (allowed == null || allowed.get(e))) {
+					result[size++] = e;
+				}
+			}
+			return Arrays.copyOf(result, size);
+		}
+
+		private boolean hasEdge(int from, int to, BitSet allowed) {
+			if(index.outDegree(from) <= index.inDegree(to)) {
+				for(int i = 0; i < index.outDegree(from); i++) {
+					int e = index.outEdge(from, i);
+					if(index.to(e) == to && (allowed == null || allowed.get(e))) {
+						return true;
+					}
+				}
+			} else {
+				for(int i = 0; i < index.inDegree(to); i++) {
+					int e = index.inEdge(to, i);
+					if(index.from(e) == from && (allowed == null || allowed.get(e))) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * Binds the variable of the given level to the given choice if the binding is feasible
+		 */
+		private boolean bind(int level, int choice) {
+			boolean injective = plan.pattern.isInjective();
+			if(level >= nodeCount) {
+				if(injective && usedEdges.get(choice)) {
+					return false;
+				}
+				edgeBindings[level - nodeCount] = choice;
+				if(injective) {
+					usedEdges.set(choice);
+				}
+				bound[level] = true;
+				return true;
+			}
+			int u = plan.order[level];
+			if(!plan.nodeCandidates[u].get(choice) || (injective && usedNodes.get(choice))) {
+				return false;
+			}
+			nodeBindings[u] = choice;
+			for(int check : plan.checks[level]) {
+				PatternEdge edge = plan.edges.get(check);
+				if(!hasEdge(nodeBindings[edge.from().getIndex()], nodeBindings[edge.to().getIndex()], plan.edgeCandidates[check])) {
+					return false;
+				}
+			}
+			if(injective) {
+				usedNodes.set(choice);
+			}
+			bound[level] = true;
+			return true;
+		}
+
+		private void unbind(int level) {
+			bound[level] = false;
+			if(!plan.pattern.isInjective()) {
+				return;
+			}
+			if(level >= nodeCount) {
+				usedEdges.clear(edgeBindings[level - nodeCount]);
+			} else {
+				usedNodes.clear(nodeBindings[plan.order[level]]);
+			}
+		}
+
+		private Match match() {
+			Node[] nodes = new Node[nodeCount];
+			for(int u = 0; u < nodeCount; u++) {
+				nodes[u] = index.getNode(nodeBindings[u]);
+			}
+			Edge[] edges = new Edge[edgeBindings.length];
+			for(int e = 0; e < edges.length; e++) {
+				edges[e] = index.getEdge(edgeBindings[e]);
+			}
+			return new Match(plan.pattern, nodes, edges);
+		}
+	}
+
+}
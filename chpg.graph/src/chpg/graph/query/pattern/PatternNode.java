@@ -0,0 +1,73 @@
+package chpg.graph.query.pattern;
+
+import java.util.function.Predicate;
+
+import chpg.graph.Node;
+
+/**
+ * A node variable of a pattern
+ */
+public class PatternNode extends PatternElement<Node> {
+
+	private final String name;
+
+	PatternNode(String name, int index) {
+		super(index);
+		this.name = name;
+	}
+
+	/**
+	 * Returns the name of the variable
+	 * @return
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * Requires the matched node to be tagged with all of the given tags
+	 * @param tags
+	 * @return this pattern node
+	 */
+	public PatternNode tagged(String... tags) {
+		addTags(tags);
+		return this;
+	}
+
+	/**
+	 * Requires the matched node to have the given attribute
+	 * @param attribute
+	 * @return this pattern node
+	 */
+	public PatternNode attribute(String attribute) {
+		addAttribute(attribute);
+		return this;
+	}
+
+	/**
+	 * Requires the matched node to have the given attribute with one of the given values
+	 * @param attribute
+	 * @param values
+	 * @return this pattern node
+	 */
+	public PatternNode attribute(String attribute, Object... values) {
+		addAttribute(attribute, values);
+		return this;
+	}
+
+	/**
+	 * Requires the matched node to satisfy the given predicate
+	 * @param constraint
+	 * @return this pattern node
+	 */
+	public PatternNode where(Predicate<? super Node> constraint) {
+		addConstraint(constraint);
+		return this;
+	}
+
+	@Override
+	public String toString() {
+		return "(" + name + (getTags().isEmpty() ? "" : ":" + String.join(":", getTags())) + ")";
+	}
+
+}
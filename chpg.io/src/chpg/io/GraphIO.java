@@ -8,7 +8,10 @@ import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
+import chpg.graph.AsyncExecution;
 import chpg.graph.Edge;
 import chpg.graph.Graph;
 import chpg.graph.Node;
@@ -120,6 +123,52 @@ public class GraphIO {
 		serializedGraph.writeTo(fos);
 	}
 	
+	/**
+	 * Exports the given graph on the default executor of asynchronous operations,
+	 * the future completes exceptionally with the IOException if the export fails
+	 * @param graph
+	 * @param output
+	 * @return
+	 */
+	public static CompletableFuture<Void> exportGraphAsync(Graph graph, File output) {
+		return exportGraphAsync(graph, output, AsyncExecution.getDefaultExecutor());
+	}
+	
+	/**
+	 * Exports the given graph on the given executor, the graph must not be
+	 * modified until the future completes
+	 * @param graph
+	 * @param output
+	 * @param executor
+	 * @return
+	 */
+	public static CompletableFuture<Void> exportGraphAsync(Graph graph, File output, Executor executor) {
+		return AsyncExecution.submit(() -> {
+			exportGraph(graph, output);
+			return null;
+		}, executor);
+	}
+	
+	/**
+	 * Imports a graph on the default executor of asynchronous operations, the
+	 * future completes exceptionally with the IOException if the import fails
+	 * @param input
+	 * @return
+	 */
+	public static CompletableFuture<PropertyGraph> importGraphAsync(File input) {
+		return importGraphAsync(input, AsyncExecution.getDefaultExecutor());
+	}
+	
+	/**
+	 * Imports a graph on the given executor
+	 * @param input
+	 * @param executor
+	 * @return
+	 */
+	public static CompletableFuture<PropertyGraph> importGraphAsync(File input, Executor executor) {
+		return AsyncExecution.submit(() -> importGraph(input), executor);
+	}
+	
 	public static PropertyGraph importGraph(File input) throws FileNotFoundException, IOException {
 		GraphSerialization.SerializedGraph deserializedGraph
 		  = GraphSerialization.SerializedGraph.newBuilder()
@@ -0,0 +1,115 @@
+package chpg.tests.algorithms;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.algorithms.ControlDependenceBatch;
+import chpg.graph.algorithms.ControlDependenceGraph;
+import chpg.graph.algorithms.DominanceGraph;
+import chpg.graph.algorithms.UniqueEntryExitGraph;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestControlDependenceBatch {
+
+	private static UniqueEntryExitGraph randomGraph(Random random, SchemaGraph schema, int size) {
+		PropertyGraph graph = new PropertyGraph(schema);
+		List<Node> nodes = new ArrayList<Node>();
+		for(int i = 0; i < size; i++) {
+			Node node = new Node();
+			graph.add(node);
+			nodes.add(node);
+		}
+		for(int i = 1; i < size - 1; i++) {
+			graph.add(new Edge(nodes.get(random.nextInt(i)), nodes.get(i)));
+			graph.add(new Edge(nodes.get(i), nodes.get(i + 1 + random.nextInt(size - i - 1))));
+		}
+		graph.add(new Edge(nodes.get(0), nodes.get(size - 1)));
+		for(int i = 0; i < size / 3; i++) {
+			graph.add(new Edge(nodes.get(random.nextInt(size)), nodes.get(random.nextInt(size))));
+		}
+		return new UniqueEntryExitGraph(graph, nodes.get(0), nodes.get(size - 1));
+	}
+
+	private static Set<List<Node>> edges(PropertyGraph graph) {
+		Set<List<Node>> edges = new HashSet<List<Node>>();
+		for(Edge edge : graph.edges()) {
+			List<Node> endpoints = new ArrayList<Node>();
+			endpoints.add(edge.from());
+			endpoints.add(edge.to());
+			edges.add(endpoints);
+		}
+		return edges;
+	}
+
+	@Test
+	public void testBatchMatchesSequential() {
+		Random random = new Random(5);
+		SchemaGraph schema = new SchemaGraph();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			ControlDependenceBatch batch = new ControlDependenceBatch(pool);
+			for(int i = 0; i < 200; i++) {
+				batch.add(randomGraph(random, schema, 2 + random.nextInt(60)));
+			}
+			List<ControlDependenceBatch.Result> results = batch.evaluate();
+			if(results.size() != 200) {
+				fail("Batch should return 200 results, found " + results.size());
+			}
+			for(int i = 0; i < results.size(); i++) {
+				ControlDependenceBatch.Result result = results.get(i);
+				if(!result.isSuccessful()) {
+					fail("Graph " + i + " failed: " + result.getError());
+				}
+				if(result.getPosition() != i || result.getControlFlowGraph() != batch.getGraphs().get(i)) {
+					fail("Results should be returned in the order of the graphs");
+				}
+				UniqueEntryExitGraph graph = result.getControlFlowGraph();
+				if(!edges(result.getDominanceGraph()).equals(edges(new DominanceGraph(graph, false)))) {
+					fail("Dominance graph " + i + " should match the sequential computation");
+				}
+				if(!edges(result.getPostDominanceGraph()).equals(edges(new DominanceGraph(graph, true)))) {
+					fail("Post-dominance graph " + i + " should match the sequential computation");
+				}
+				if(!edges(result.getControlDependenceGraph()).equals(edges(new ControlDependenceGraph(graph)))) {
+					fail("Control dependence graph " + i + " should match the sequential computation");
+				}
+				if(result.getControlDependenceGraph().getSchema() != schema) {
+					fail("Results should share the schema of the control flow graphs");
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testStream() {
+		Random random = new Random(9);
+		SchemaGraph schema = new SchemaGraph();
+		ControlDependenceBatch batch = new ControlDependenceBatch();
+		for(int i = 0; i < 50; i++) {
+			batch.add(randomGraph(random, schema, 2 + random.nextInt(20)));
+		}
+		Set<Integer> positions = batch.stream().map(ControlDependenceBatch.Result::getPosition).collect(Collectors.toSet());
+		if(positions.size() != 50) {
+			fail("The stream should return each graph once, found " + positions.size());
+		}
+		long first = batch.stream().limit(1).count();
+		if(first != 1) {
+			fail("A stream can be consumed partially");
+		}
+	}
+
+}
@@ -0,0 +1,300 @@
+package chpg.tests.algorithms;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.algorithms.BitVectors;
+import chpg.graph.algorithms.DataflowProblem.Direction;
+import chpg.graph.algorithms.DataflowResult;
+import chpg.graph.algorithms.DataflowSolver;
+import chpg.graph.algorithms.GenKillProblem;
+import chpg.graph.algorithms.UniqueEntryExitGraph;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestDataflow {
+
+	private PropertyGraph graph;
+	private Map<String, Node> nodes;
+	private Map<Node, int[][]> sets;
+
+	private Node node(String name) {
+		Node node = nodes.get(name);
+		if(node == null) {
+			node = new Node();
+			node.putAttr("name", name);
+			graph.add(node);
+			nodes.put(name, node);
+		}
+		return node;
+	}
+
+	private void edge(String from, String to) {
+		graph.add(new Edge(node(from), node(to)));
+	}
+
+	private void genKill(String name, int[] gen, int[] kill) {
+		sets.put(node(name), new int[][] { gen, kill });
+	}
+
+	private void reset() {
+		graph = new PropertyGraph(new SchemaGraph());
+		nodes = new HashMap<String, Node>();
+		sets = new HashMap<Node, int[][]>();
+	}
+
+	private GenKillProblem problem(Direction direction, int bits, boolean may) {
+		final Map<Node, int[][]> sets = this.sets;
+		return new GenKillProblem(direction, bits, may) {
+			@Override
+			protected void gen(Node node, long[] gen) {
+				if(sets.containsKey(node)) {
+					for(int bit : sets.get(node)[0]) {
+						BitVectors.set(gen, bit);
+					}
+				}
+			}
+
+			@Override
+			protected void kill(Node node, long[] kill) {
+				if(sets.containsKey(node)) {
+					for(int bit : sets.get(node)[1]) {
+						BitVectors.set(kill, bit);
+					}
+				}
+			}
+		};
+	}
+
+	private static BitSet bits(int... bits) {
+		BitSet set = new BitSet();
+		for(int bit : bits) {
+			set.set(bit);
+		}
+		return set;
+	}
+
+	private void expect(DataflowResult result, String name, boolean before, BitSet expected) {
+		long[] value = before ? result.getValueBefore(node(name)) : result.getValueAfter(node(name));
+		BitSet actual = BitVectors.toBitSet(value);
+		if(!actual.equals(expected)) {
+			fail("Expected " + expected + (before ? " before " : " after ") + name + " but found " + actual);
+		}
+	}
+
+	@Test
+	public void testReachingDefinitions() {
+		reset();
+		// d1: x = ...; while(...) { d2: x = ...; } with definitions d1 = 0 and d2 = 1
+		edge("entry", "d1");
+		edge("d1", "h");
+		edge("h", "d2");
+		edge("d2", "h");
+		edge("h", "exit");
+		genKill("d1", new int[] { 0 }, new int[] { 1 });
+		genKill("d2", new int[] { 1 }, new int[] { 0 });
+		DataflowResult result = DataflowSolver.solve(new UniqueEntryExitGraph(graph, node("entry"), node("exit")), problem(Direction.FORWARD, 2, true));
+		expect(result, "d1", true, bits());
+		expect(result, "d1", false, bits(0));
+		expect(result, "h", true, bits(0, 1));
+		expect(result, "d2", false, bits(1));
+		expect(result, "exit", true, bits(0, 1));
+		if(!result.isSetAfter(node("exit"), 0) || result.isSetBefore(node("entry"), 0)) {
+			fail("d1 should reach the exit but not the entry");
+		}
+		if(result.getValueBefore(new Node()) != null) {
+			fail("Nodes outside of the graph have no values");
+		}
+	}
+
+	@Test
+	public void testLiveness() {
+		reset();
+		// a: x = ...; b: y = x; c: use y, with variables x = 0 and y = 1 (gen = use, kill = def)
+		edge("entry", "a");
+		edge("a", "b");
+		edge("b", "c");
+		edge("c", "exit");
+		genKill("a", new int[0], new int[] { 0 });
+		genKill("b", new int[] { 0 }, new int[] { 1 });
+		genKill("c", new int[] { 1 }, new int[0]);
+		DataflowResult result = DataflowSolver.solve(new UniqueEntryExitGraph(graph, node("entry"), node("exit")), problem(Direction.BACKWARD, 2, true));
+		expect(result, "a", true, bits());
+		expect(result, "a", false, bits(0));
+		expect(result, "b", true, bits(0));
+		expect(result, "b", false, bits(1));
+		expect(result, "c", true, bits(1));
+		expect(result, "c", false, bits());
+	}
+
+	@Test
+	public void testAvailableExpressions() {
+		reset();
+		// expression 0 is computed on both branches, expression 1 only on one of them and killed in the loop
+		edge("entry", "a");
+		edge("entry", "b");
+		edge("a", "c");
+		edge("b", "c");
+		edge("c", "d");
+		edge("d", "c");
+		edge("c", "exit");
+		genKill("a", new int[] { 0 }, new int[0]);
+		genKill("b", new int[] { 0, 1 }, new int[0]);
+		genKill("d", new int[0], new int[] { 1 });
+		DataflowResult result = DataflowSolver.solve(new UniqueEntryExitGraph(graph, node("entry"), node("exit")), problem(Direction.FORWARD, 2, false));
+		expect(result, "entry", true, bits());
+		expect(result, "b", false, bits(0, 1));
+		expect(result, "c", true, bits(0));
+		expect(result, "d", false, bits(0));
+		expect(result, "exit", true, bits(0));
+	}
+
+	private UniqueEntryExitGraph randomGraph(Random random, int bits) {
+		reset();
+		int size = 2 + random.nextInt(30);
+		List<String> names = new ArrayList<String>();
+		for(int i = 0; i < size; i++) {
+			names.add("n" + i);
+			node("n" + i);
+			int[] gen = new int[random.nextInt(8)];
+			int[] kill = new int[random.nextInt(8)];
+			for(int j = 0; j < gen.length; j++) {
+				gen[j] = random.nextInt(bits);
+			}
+			for(int j = 0; j < kill.length; j++) {
+				kill[j] = random.nextInt(bits);
+			}
+			genKill("n" + i, gen, kill);
+		}
+		edge("n0", "n" + (size - 1));
+		int edges = random.nextInt(size * 2);
+		for(int i = 0; i < edges; i++) {
+			edge(names.get(random.nextInt(size)), names.get(random.nextInt(size)));
+		}
+		return new UniqueEntryExitGraph(graph, node("n0"), node("n" + (size - 1)));
+	}
+
+	/**
+	 * Computes the solution by round robin iteration over BitSets, returns the values after each node
+	 */
+	private Map<Node, BitSet> roundRobin(UniqueEntryExitGraph cfg, Direction direction, int bits, boolean may) {
+		Map<Node, BitSet> after = new HashMap<Node, BitSet>();
+		for(Node node : cfg.nodes()) {
+			BitSet top = new BitSet();
+			if(!may) {
+				top.set(0, bits);
+			}
+			after.put(node, top);
+		}
+		Node root = direction == Direction.FORWARD ? cfg.getEntryNode() : cfg.getExitNode();
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			for(Node node : cfg.nodes()) {
+				BitSet in = new BitSet();
+				if(!may) {
+					in.set(0, bits);
+				}
+				if(node == root && !may) {
+					// the meet with the empty boundary value
+					in.clear();
+				}
+				for(Node predecessor : direction == Direction.FORWARD ? cfg.predecessors(node) : cfg.successors(node)) {
+					if(may) {
+						in.or(after.get(predecessor));
+					} else {
+						in.and(after.get(predecessor));
+					}
+				}
+				int[][] genKill = sets.get(node);
+				for(int bit : genKill[1]) {
+					in.clear(bit);
+				}
+				for(int bit : genKill[0]) {
+					in.set(bit);
+				}
+				if(!in.equals(after.get(node))) {
+					after.put(node, in);
+					changed = true;
+				}
+			}
+		}
+		return after;
+	}
+
+	@Test
+	public void testRandomProblems() {
+		Random random = new Random(7);
+		int bits = 150;
+		for(int round = 0; round < 200; round++) {
+			UniqueEntryExitGraph cfg = randomGraph(random, bits);
+			Direction direction = random.nextBoolean() ? Direction.FORWARD : Direction.BACKWARD;
+			boolean may = random.nextBoolean();
+			DataflowResult result = DataflowSolver.solve(cfg, problem(direction, bits, may));
+			Map<Node, BitSet> expected = roundRobin(cfg, direction, bits, may);
+			for(Node node : cfg.nodes()) {
+				long[] value = direction == Direction.FORWARD ? result.getValueAfter(node) : result.getValueBefore(node);
+				if(!BitVectors.toBitSet(value).equals(expected.get(node))) {
+					fail("round " + round + ": the solution of the " + (may ? "may " : "must ") + direction + " problem differs from round robin iteration at " + node.getAttr("name"));
+				}
+			}
+			if(result.getEvaluations() < cfg.nodes().size()) {
+				fail("round " + round + ": every node should be evaluated at least once");
+			}
+		}
+	}
+
+	@Test
+	public void testSolveAll() {
+		Random random = new Random(11);
+		final int bits = 100;
+		List<UniqueEntryExitGraph> graphs = new ArrayList<UniqueEntryExitGraph>();
+		final Map<UniqueEntryExitGraph, GenKillProblem> problems = new HashMap<UniqueEntryExitGraph, GenKillProblem>();
+		for(int i = 0; i < 40; i++) {
+			UniqueEntryExitGraph cfg = randomGraph(random, bits);
+			graphs.add(cfg);
+			problems.put(cfg, problem(i % 2 == 0 ? Direction.FORWARD : Direction.BACKWARD, bits, i % 3 != 0));
+		}
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<DataflowResult> results = DataflowSolver.solveAll(graphs, cfg -> problems.get(cfg), pool);
+			if(results.size() != graphs.size()) {
+				fail("Expected one result per graph");
+			}
+			for(int i = 0; i < graphs.size(); i++) {
+				UniqueEntryExitGraph cfg = graphs.get(i);
+				DataflowResult expected = DataflowSolver.solve(cfg, problems.get(cfg));
+				if(results.get(i).getGraph() != cfg) {
+					fail("Results should be in the order of the graphs");
+				}
+				for(Node node : cfg.nodes()) {
+					if(!Arrays.equals(results.get(i).getValueBefore(node), expected.getValueBefore(node))
+							|| !Arrays.equals(results.get(i).getValueAfter(node), expected.getValueAfter(node))) {
+						fail("Parallel and sequential solutions should be equal");
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		try {
+			DataflowSolver.solveAll(graphs, cfg -> problems.get(cfg), null);
+			fail("A null pool should be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,224 @@
+package chpg.tests.algorithms;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.algorithms.ControlDependenceGraph;
+import chpg.graph.algorithms.DominanceGraph;
+import chpg.graph.algorithms.UniqueEntryExitGraph;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestDominanceGraph {
+
+	private static final String NAME = "name";
+
+	private static List<Node> nodes(PropertyGraph graph, int count) {
+		List<Node> nodes = new ArrayList<Node>();
+		for(int i = 0; i < count; i++) {
+			Node node = new Node();
+			node.putAttr(NAME, "n" + i);
+			graph.add(node);
+			nodes.add(node);
+		}
+		return nodes;
+	}
+
+	private static void edge(PropertyGraph graph, Node from, Node to) {
+		graph.add(new Edge(from, to));
+	}
+
+	/**
+	 * Returns a random graph in which every node is reachable from node 0 and reaches the last node
+	 */
+	private static UniqueEntryExitGraph randomGraph(Random random, int size, int extraEdges) {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> nodes = nodes(graph, size);
+		for(int i = 1; i < size - 1; i++) {
+			edge(graph, nodes.get(random.nextInt(i)), nodes.get(i));
+			edge(graph, nodes.get(i), nodes.get(i + 1 + random.nextInt(size - i - 1)));
+		}
+		edge(graph, nodes.get(0), nodes.get(size - 1));
+		for(int i = 0; i < extraEdges; i++) {
+			edge(graph, nodes.get(random.nextInt(size)), nodes.get(random.nextInt(size)));
+		}
+		return new UniqueEntryExitGraph(graph, nodes.get(0), nodes.get(size - 1));
+	}
+
+	/**
+	 * Computes the dominator sets of the nodes by the iterative data flow equations
+	 */
+	private static Map<Node,Set<Node>> dominatorSets(PropertyGraph graph, Node root, boolean invert) {
+		Map<Node,Set<Node>> dominators = new HashMap<Node,Set<Node>>();
+		Set<Node> all = new HashSet<Node>();
+		for(Node node : graph.nodes()) {
+			all.add(node);
+		}
+		for(Node node : all) {
+			dominators.put(node, node == root ? new HashSet<Node>(java.util.Collections.singleton(root)) : new HashSet<Node>(all));
+		}
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			for(Node node : all) {
+				if(node == root) {
+					continue;
+				}
+				Set<Node> intersection = null;
+				for(Node predecessor : invert ? graph.successors(node) : graph.predecessors(node)) {
+					if(intersection == null) {
+						intersection = new HashSet<Node>(dominators.get(predecessor));
+					} else {
+						intersection.retainAll(dominators.get(predecessor));
+					}
+				}
+				if(intersection == null) {
+					intersection = new HashSet<Node>();
+				}
+				intersection.add(node);
+				if(!intersection.equals(dominators.get(node))) {
+					dominators.put(node, intersection);
+					changed = true;
+				}
+			}
+		}
+		return dominators;
+	}
+
+	private static void checkDominance(UniqueEntryExitGraph graph, boolean invert) {
+		Node root = invert ? graph.getExitNode() : graph.getEntryNode();
+		DominanceGraph dominance = new DominanceGraph(graph, invert);
+		Map<Node,Set<Node>> expected = dominatorSets(graph, root, invert);
+		Map<Node,Node> idoms = dominance.getIdoms();
+		for(Node node : graph.nodes()) {
+			// the immediate dominator is the strict dominator with the largest dominator set
+			Node expectedIdom = null;
+			for(Node dominator : expected.get(node)) {
+				if(dominator != node && (expectedIdom == null || expected.get(dominator).size() > expected.get(expectedIdom).size())) {
+					expectedIdom = dominator;
+				}
+			}
+			if(idoms.get(node) != expectedIdom) {
+				fail("Wrong immediate dominator of " + node.getAttr(NAME) + ": expected "
+						+ (expectedIdom == null ? null : expectedIdom.getAttr(NAME)) + ", found "
+						+ (idoms.get(node) == null ? null : idoms.get(node).getAttr(NAME)));
+			}
+		}
+		// the dominance frontier of d contains n if d dominates a predecessor of n but does not strictly dominate n
+		for(Node d : graph.nodes()) {
+			Set<Node> frontier = new HashSet<Node>();
+			for(Node n : graph.nodes()) {
+				boolean strictlyDominates = d != n && expected.get(n).contains(d);
+				for(Node predecessor : invert ? graph.successors(n) : graph.predecessors(n)) {
+					if(expected.get(predecessor).contains(d) && !strictlyDominates) {
+						frontier.add(n);
+					}
+				}
+			}
+			if(!frontier.equals(dominance.getDominanceFrontiers().get(d))) {
+				fail("Wrong dominance frontier of " + d.getAttr(NAME) + ": expected " + frontier.size()
+						+ " nodes, found " + dominance.getDominanceFrontiers().get(d).size());
+			}
+		}
+		// dominators precede the nodes they dominate
+		List<Node> order = dominance.topologicalTraversal();
+		for(Map.Entry<Node,Node> idom : idoms.entrySet()) {
+			if(order.indexOf(idom.getValue()) > order.indexOf(idom.getKey())) {
+				fail("Immediate dominators should precede their nodes in the topological traversal");
+			}
+		}
+	}
+
+	@Test
+	public void testDiamond() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> n = nodes(graph, 4);
+		edge(graph, n.get(0), n.get(1));
+		edge(graph, n.get(0), n.get(2));
+		edge(graph, n.get(1), n.get(3));
+		edge(graph, n.get(2), n.get(3));
+		UniqueEntryExitGraph cfg = new UniqueEntryExitGraph(graph, n.get(0), n.get(3));
+		DominanceGraph dominance = new DominanceGraph(cfg, false);
+		for(int i = 1; i < 4; i++) {
+			if(dominance.getIdoms().get(n.get(i)) != n.get(0)) {
+				fail("The entry should immediately dominate n" + i);
+			}
+		}
+		if(dominance.getIdoms().containsKey(n.get(0))) {
+			fail("The entry should not have an immediate dominator");
+		}
+		if(dominance.edges(DominanceGraph.DOMINANCE_FRONTIER_EDGE).size() != 2) {
+			fail("The branches should have the join in their dominance frontiers");
+		}
+		ControlDependenceGraph cdg = new ControlDependenceGraph(cfg);
+		GraphElementHashSet<Node> dependents = new GraphElementHashSet<Node>();
+		for(Edge edge : cdg.edges(ControlDependenceGraph.CONTROL_DEPENDENCE_EDGE)) {
+			if(edge.from() != n.get(0)) {
+				fail("Only the branch should have control dependents");
+			}
+			dependents.add(edge.to());
+		}
+		if(dependents.size() != 2 || !dependents.contains(n.get(1)) || !dependents.contains(n.get(2))) {
+			fail("Both branches should be control dependent on the entry");
+		}
+	}
+
+	@Test
+	public void testLoop() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> n = nodes(graph, 5);
+		edge(graph, n.get(0), n.get(1));
+		edge(graph, n.get(1), n.get(2));
+		edge(graph, n.get(2), n.get(3));
+		edge(graph, n.get(3), n.get(1));
+		edge(graph, n.get(2), n.get(4));
+		edge(graph, n.get(0), n.get(0));
+		UniqueEntryExitGraph cfg = new UniqueEntryExitGraph(graph, n.get(0), n.get(4));
+		checkDominance(cfg, false);
+		checkDominance(cfg, true);
+	}
+
+	@Test
+	public void testRandomGraphs() {
+		Random random = new Random(3);
+		for(int i = 0; i < 100; i++) {
+			UniqueEntryExitGraph graph = randomGraph(random, 2 + random.nextInt(30), random.nextInt(20));
+			checkDominance(graph, false);
+			checkDominance(graph, true);
+		}
+	}
+
+	@Test
+	public void testExplicitRoots() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> n = nodes(graph, 5);
+		edge(graph, n.get(0), n.get(1));
+		edge(graph, n.get(1), n.get(4));
+		edge(graph, n.get(2), n.get(3));
+		edge(graph, n.get(3), n.get(1));
+		UniqueEntryExitGraph cfg = new UniqueEntryExitGraph(graph, n.get(0), n.get(4));
+		DominanceGraph dominance = new DominanceGraph(cfg, new GraphElementHashSet<Node>(n.get(2)), false);
+		if(dominance.getIdoms().get(n.get(3)) != n.get(2)) {
+			fail("The handler root should dominate its successor");
+		}
+		if(dominance.getIdoms().containsKey(n.get(1))) {
+			fail("A node reached from both roots should not have an immediate dominator");
+		}
+		if(dominance.getIdoms().get(n.get(4)) != n.get(1)) {
+			fail("The join should dominate the exit");
+		}
+	}
+
+}
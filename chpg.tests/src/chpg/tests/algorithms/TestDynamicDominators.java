@@ -0,0 +1,262 @@
+package chpg.tests.algorithms;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.algorithms.DominanceGraph;
+import chpg.graph.algorithms.DynamicDominators;
+import chpg.graph.algorithms.UniqueEntryExitGraph;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestDynamicDominators {
+
+	private static final String NAME = "name";
+
+	private static UniqueEntryExitGraph chain(List<Node> nodes, int size) {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		for(int i = 0; i < size; i++) {
+			Node node = new Node();
+			node.putAttr(NAME, "n" + i);
+			graph.add(node);
+			nodes.add(node);
+		}
+		for(int i = 0; i < size - 1; i++) {
+			graph.add(new Edge(nodes.get(i), nodes.get(i + 1)));
+		}
+		return new UniqueEntryExitGraph(graph, nodes.get(0), nodes.get(size - 1));
+	}
+
+	/**
+	 * Compares the maintained dominators with dominators computed from scratch
+	 */
+	private static void check(UniqueEntryExitGraph graph, DynamicDominators dynamic, boolean invert, String step) {
+		DominanceGraph expected = new DominanceGraph(graph, invert);
+		Map<Node,Node> idoms = dynamic.getIdoms();
+		if(!idoms.equals(expected.getIdoms())) {
+			fail(step + ": immediate dominators should match the recomputed dominators");
+		}
+		for(Node node : graph.nodes()) {
+			boolean reachable = expected.topologicalTraversal().contains(node);
+			if(dynamic.isReachable(node) != reachable) {
+				fail(step + ": wrong reachability of " + node.getAttr(NAME));
+			}
+			if(reachable && !dynamic.getDominanceFrontier(node).equals(expected.getDominanceFrontiers().get(node))) {
+				fail(step + ": wrong dominance frontier of " + node.getAttr(NAME));
+			}
+			for(Node other : graph.nodes()) {
+				boolean dominates = false;
+				if(reachable && expected.topologicalTraversal().contains(other)) {
+					for(Node dominator = other; dominator != null; dominator = idoms.get(dominator)) {
+						dominates |= dominator == node;
+					}
+				}
+				if(dynamic.dominates(node, other) != dominates) {
+					fail(step + ": wrong dominance of " + other.getAttr(NAME) + " by " + node.getAttr(NAME));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testInsertionsAndDeletions() {
+		List<Node> n = new ArrayList<Node>();
+		UniqueEntryExitGraph graph = chain(n, 6);
+		DynamicDominators dominators = new DynamicDominators(graph, false);
+		check(graph, dominators, false, "chain");
+		Edge shortcut = new Edge(n.get(1), n.get(4));
+		graph.add(shortcut);
+		if(dominators.getImmediateDominator(n.get(4)) != n.get(1)) {
+			fail("The shortcut should make n1 the immediate dominator of n4");
+		}
+		check(graph, dominators, false, "shortcut");
+		graph.remove(shortcut);
+		if(dominators.getImmediateDominator(n.get(4)) != n.get(3)) {
+			fail("Removing the shortcut should restore the immediate dominator of n4");
+		}
+		graph.remove(graph.edges().one());
+		check(graph, dominators, false, "deletion");
+		dominators.close();
+		graph.add(new Edge(n.get(0), n.get(5)));
+		if(dominators.getIncrementalUpdates() != 3) {
+			fail("A closed instance should not follow the graph");
+		}
+	}
+
+	@Test
+	public void testUnreachableRegions() {
+		List<Node> n = new ArrayList<Node>();
+		UniqueEntryExitGraph graph = chain(n, 4);
+		DynamicDominators dominators = new DynamicDominators(graph, false);
+		// a region that becomes reachable and has an edge back into the reachable nodes
+		Node a = new Node();
+		a.putAttr(NAME, "a");
+		Node b = new Node();
+		b.putAttr(NAME, "b");
+		graph.add(new Edge(a, b));
+		graph.add(new Edge(b, n.get(3)));
+		if(dominators.isReachable(a)) {
+			fail("New nodes should not be reachable");
+		}
+		Edge entry = new Edge(n.get(0), a);
+		graph.add(entry);
+		check(graph, dominators, false, "region");
+		if(dominators.getImmediateDominator(n.get(3)) != n.get(0)) {
+			fail("The new region should bypass n1 and n2");
+		}
+		graph.remove(entry);
+		check(graph, dominators, false, "region removal");
+		graph.remove(n.get(1));
+		check(graph, dominators, false, "node removal");
+	}
+
+	@Test
+	public void testRandomUpdates() {
+		Random random = new Random(17);
+		for(int round = 0; round < 20; round++) {
+			boolean invert = round % 2 == 1;
+			List<Node> n = new ArrayList<Node>();
+			UniqueEntryExitGraph graph = chain(n, 3 + random.nextInt(15));
+			DynamicDominators dominators = new DynamicDominators(graph, invert);
+			for(int step = 0; step < 40; step++) {
+				if(random.nextInt(3) > 0 || graph.edges().isEmpty()) {
+					Node from = n.get(random.nextInt(n.size()));
+					Node to = n.get(random.nextInt(n.size()));
+					if(random.nextInt(10) == 0) {
+						to = new Node();
+						to.putAttr(NAME, "n" + n.size());
+						n.add(to);
+					}
+					graph.add(new Edge(from, to));
+				} else {
+					List<Edge> edges = new ArrayList<Edge>();
+					for(Edge edge : graph.edges()) {
+						edges.add(edge);
+					}
+					graph.remove(edges.get(random.nextInt(edges.size())));
+				}
+				check(graph, dominators, invert, "round " + round + " step " + step);
+			}
+		}
+	}
+
+	/**
+	 * Computes the dominators of each node reachable from the root by round robin
+	 * iteration over sets, Dom(root) = {root} and Dom(n) = {n} + the intersection
+	 * of Dom(p) over the reachable predecessors p of n
+	 */
+	private static Map<Node, Set<Node>> dominatorSets(UniqueEntryExitGraph graph, boolean invert) {
+		Node root = invert ? graph.getExitNode() : graph.getEntryNode();
+		Set<Node> reachable = new HashSet<Node>();
+		Deque<Node> stack = new ArrayDeque<Node>();
+		reachable.add(root);
+		stack.push(root);
+		while(!stack.isEmpty()) {
+			for(Node successor : invert ? graph.predecessors(stack.pop()) : graph.successors(stack.pop())) {
+				if(reachable.add(successor)) {
+					stack.push(successor);
+				}
+			}
+		}
+		Map<Node, Set<Node>> dominators = new HashMap<Node, Set<Node>>();
+		for(Node node : reachable) {
+			Set<Node> initial = new HashSet<Node>();
+			if(node == root) {
+				initial.add(root);
+			} else {
+				initial.addAll(reachable);
+			}
+			dominators.put(node, initial);
+		}
+		boolean changed = true;
+		while(changed) {
+			changed = false;
+			for(Node node : reachable) {
+				if(node == root) {
+					continue;
+				}
+				Set<Node> value = new HashSet<Node>(reachable);
+				for(Node predecessor : invert ? graph.successors(node) : graph.predecessors(node)) {
+					if(reachable.contains(predecessor)) {
+						value.retainAll(dominators.get(predecessor));
+					}
+				}
+				value.add(node);
+				if(!value.equals(dominators.get(node))) {
+					dominators.put(node, value);
+					changed = true;
+				}
+			}
+		}
+		return dominators;
+	}
+
+	/**
+	 * Compares the maintained dominators with the dominator sets, independently of DominanceGraph
+	 */
+	private static void checkDominatorSets(UniqueEntryExitGraph graph, DynamicDominators dynamic, boolean invert, String step) {
+		Map<Node, Set<Node>> expected = dominatorSets(graph, invert);
+		for(Node node : graph.nodes()) {
+			Set<Node> dominators = expected.get(node);
+			if(dynamic.isReachable(node) != (dominators != null)) {
+				fail(step + ": wrong reachability of " + node.getAttr(NAME));
+			}
+			if(dominators == null) {
+				continue;
+			}
+			// the immediate dominator is the strict dominator dominated by all other strict dominators
+			Node idom = null;
+			for(Node dominator : dominators) {
+				if(dominator != node && expected.get(dominator).size() == dominators.size() - 1) {
+					idom = dominator;
+				}
+			}
+			if(dynamic.getImmediateDominator(node) != idom) {
+				fail(step + ": wrong immediate dominator of " + node.getAttr(NAME));
+			}
+			for(Node other : graph.nodes()) {
+				if(dynamic.dominates(other, node) != dominators.contains(other)) {
+					fail(step + ": wrong dominance of " + node.getAttr(NAME) + " by " + other.getAttr(NAME));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRandomUpdatesAgainstDominatorSets() {
+		Random random = new Random(23);
+		for(int round = 0; round < 30; round++) {
+			boolean invert = random.nextBoolean();
+			List<Node> n = new ArrayList<Node>();
+			UniqueEntryExitGraph graph = chain(n, 2 + random.nextInt(10));
+			DynamicDominators dominators = new DynamicDominators(graph, invert);
+			checkDominatorSets(graph, dominators, invert, "round " + round + " initial");
+			for(int step = 0; step < 30; step++) {
+				if(random.nextInt(2) == 0 || graph.edges().isEmpty()) {
+					graph.add(new Edge(n.get(random.nextInt(n.size())), n.get(random.nextInt(n.size()))));
+				} else {
+					List<Edge> edges = new ArrayList<Edge>();
+					for(Edge edge : graph.edges()) {
+						edges.add(edge);
+					}
+					graph.remove(edges.get(random.nextInt(edges.size())));
+				}
+				checkDominatorSets(graph, dominators, invert, "round " + round + " step " + step);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,294 @@
+package chpg.tests.algorithms;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.algorithms.IFDSProblem;
+import chpg.graph.algorithms.IFDSSolver;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestIFDSSolver {
+
+	private static final String CONTROL_FLOW = "XCSG.ControlFlow_Edge";
+	private static final String CALL = "XCSG.Call";
+	private static final String ZERO = "0";
+
+	private PropertyGraph graph;
+	private Map<String, Node> nodes;
+
+	private Node node(String name) {
+		Node node = nodes.get(name);
+		if(node == null) {
+			node = new Node();
+			node.putAttr("name", name);
+			graph.add(node);
+			nodes.put(name, node);
+		}
+		return node;
+	}
+
+	private void edge(String from, String to, String tag) {
+		Edge edge = new Edge(node(from), node(to));
+		edge.tags().add(tag);
+		graph.add(edge);
+	}
+
+	private void flow(String... names) {
+		for(int i = 0; i + 1 < names.length; i++) {
+			edge(names[i], names[i + 1], CONTROL_FLOW);
+		}
+	}
+
+	/**
+	 * Call sites pass the variable in their "argument" attribute to the parameter
+	 * "p" and assign the returned "p" to the variable in their "result" attribute
+	 */
+	private void call(String callSite, String callee, String argument, String result) {
+		edge(callSite, callee, CALL);
+		node(callSite).putAttr("argument", argument);
+		node(callSite).putAttr("result", result);
+	}
+
+	/**
+	 * A taint problem over variable names, other statements do not change variables
+	 */
+	private static class TaintProblem implements IFDSProblem<String> {
+		@Override
+		public String zeroValue() {
+			return ZERO;
+		}
+
+		@Override
+		public Collection<String> normalFlow(Node node, Node successor, String fact) {
+			return Collections.singleton(fact);
+		}
+
+		@Override
+		public Collection<String> callFlow(Node callSite, Node calleeEntry, String fact) {
+			if(fact.equals(ZERO)) {
+				return Collections.singleton(ZERO);
+			}
+			return fact.equals(callSite.getAttr("argument")) ? Collections.singleton("p") : Collections.<String>emptySet();
+		}
+
+		@Override
+		public Collection<String> returnFlow(Node callSite, Node calleeEntry, Node exit, Node returnSite, String fact) {
+			if(fact.equals(ZERO)) {
+				return Collections.singleton(ZERO);
+			}
+			return fact.equals("p") ? Collections.singleton((String) callSite.getAttr("result")) : Collections.<String>emptySet();
+		}
+
+		@Override
+		public Collection<String> callToReturnFlow(Node callSite, Node returnSite, String fact) {
+			return fact.equals(callSite.getAttr("result")) ? Collections.<String>emptySet() : Collections.singleton(fact);
+		}
+	}
+
+	/**
+	 * main: a = source(); b = id(a); c = id(k); sink(b) or sink(c); d = g()
+	 * where id returns its parameter and g returns a value from a source
+	 */
+	private void program() {
+		graph = new PropertyGraph(new SchemaGraph());
+		nodes = new HashMap<String, Node>();
+		flow("main", "b = id(a)", "c = id(k)", "d = g()", "branch");
+		flow("branch", "sink(b)");
+		flow("branch", "sink(c)");
+		flow("branch", "sink(d)");
+		call("b = id(a)", "id", "a", "b");
+		call("c = id(k)", "id", "k", "c");
+		call("d = g()", "g", "none", "d");
+		flow("id", "return p");
+		flow("g", "p = source()", "return p in g");
+	}
+
+	private IFDSSolver<String> solver() {
+		IFDSSolver<String> solver = new IFDSSolver<String>(graph, new TaintProblem(), CONTROL_FLOW, CALL);
+		solver.addSource(node("main"));
+		solver.addSource(node("b = id(a)"), "a");
+		solver.addSource(node("return p in g"), "p");
+		solver.addSink(node("sink(b)"));
+		solver.addSink(node("sink(c)"));
+		solver.addSink(node("sink(d)"));
+		return solver;
+	}
+
+	@Test
+	public void testContextSensitivity() {
+		program();
+		IFDSSolver.Result<String> result = solver().solve();
+		if(!result.getSinkFacts(node("sink(b)")).contains("b")) {
+			fail("The taint of a should flow through id to b");
+		}
+		if(result.getSinkFacts(node("sink(c)")).contains("c")) {
+			fail("The taint returned by id to the first call should not flow to the second call");
+		}
+		if(!result.getSinkFacts(node("sink(c)")).contains("a") || result.getReachedSinks().size() != 3) {
+			fail("a should reach all sinks past the calls");
+		}
+		if(!result.holds(node("return p"), "p") || !result.holds(node("sink(c)"), ZERO) || result.holds(node("main"), "a")) {
+			fail("Facts should hold exactly where they reach");
+		}
+		if(result.getSummaryCount() != 4) {
+			fail("Expected summaries of id for 0 and p and of g for 0 and the source in g, found " + result.getSummaryCount());
+		}
+		if(result.isStopped()) {
+			fail("The solution should be complete");
+		}
+	}
+
+	@Test
+	public void testReturnsPastSeeds() {
+		program();
+		IFDSSolver<String> solver = solver();
+		if(solver.solve().getSinkFacts(node("sink(d)")).contains("d")) {
+			fail("Facts from a source in a callee should not return to callers by default");
+		}
+		solver.setFollowReturnsPastSeeds(true);
+		IFDSSolver.Result<String> result = solver.solve();
+		if(!result.getSinkFacts(node("sink(d)")).contains("d")) {
+			fail("The source in g should return to the call of g");
+		}
+		if(result.getSinkFacts(node("sink(c)")).contains("c")) {
+			fail("Following returns past seeds should not return the taint of p in id to other calls");
+		}
+	}
+
+	@Test
+	public void testStopAtFirstSink() {
+		program();
+		IFDSSolver<String> solver = solver();
+		solver.setStopAtFirstSink(true);
+		IFDSSolver.Result<String> result = solver.solve();
+		if(!result.isStopped() || result.getReachedSinks().isEmpty()) {
+			fail("The solver should stop once a sink is reached");
+		}
+		if(result.getPathEdgeCount() > solver().solve().getPathEdgeCount()) {
+			fail("Stopping at the first sink should not find more path edges");
+		}
+	}
+
+	/**
+	 * A problem over integer facts whose flow functions are fixed pseudorandom
+	 * functions of the node names and facts
+	 */
+	private static class RandomProblem implements IFDSProblem<Integer> {
+		private final int facts;
+		private final long seed;
+
+		RandomProblem(int facts, long seed) {
+			this.facts = facts;
+			this.seed = seed;
+		}
+
+		private Collection<Integer> function(int kind, Node from, Node to, Integer fact) {
+			Set<Integer> result = new HashSet<Integer>();
+			if(fact == 0) {
+				result.add(0);
+			}
+			Random random = new Random(seed ^ (31L * (31L * (31L * kind + from.getAttr("name").hashCode()) + to.getAttr("name").hashCode()) + fact));
+			int count = random.nextInt(3);
+			for(int i = 0; i < count; i++) {
+				result.add(random.nextInt(facts));
+			}
+			return result;
+		}
+
+		@Override
+		public Integer zeroValue() {
+			return 0;
+		}
+
+		@Override
+		public Collection<Integer> normalFlow(Node node, Node successor, Integer fact) {
+			return function(0, node, successor, fact);
+		}
+
+		@Override
+		public Collection<Integer> callFlow(Node callSite, Node calleeEntry, Integer fact) {
+			return function(1, callSite, calleeEntry, fact);
+		}
+
+		@Override
+		public Collection<Integer> returnFlow(Node callSite, Node calleeEntry, Node exit, Node returnSite, Integer fact) {
+			return function(2, exit, returnSite, fact);
+		}
+
+		@Override
+		public Collection<Integer> callToReturnFlow(Node callSite, Node returnSite, Integer fact) {
+			return function(3, callSite, returnSite, fact);
+		}
+	}
+
+	@Test
+	public void testParallelSolution() {
+		Random random = new Random(5);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for(int round = 0; round < 30; round++) {
+				graph = new PropertyGraph(new SchemaGraph());
+				nodes = new HashMap<String, Node>();
+				int procedures = 1 + random.nextInt(6);
+				List<String> all = new ArrayList<String>();
+				for(int p = 0; p < procedures; p++) {
+					int size = 2 + random.nextInt(10);
+					for(int i = 0; i < size; i++) {
+						all.add("p" + p + "n" + i);
+						node("p" + p + "n" + i);
+					}
+					flow("p" + p + "n0", "p" + p + "n" + (size - 1));
+					for(int i = 0; i < size; i++) {
+						// the last node is the exit of the procedure
+						int from = random.nextInt(size - 1);
+						edge("p" + p + "n" + from, "p" + p + "n" + random.nextInt(size), CONTROL_FLOW);
+					}
+					for(int i = 0; i < 2; i++) {
+						edge("p" + p + "n" + random.nextInt(size - 1), "p" + random.nextInt(procedures) + "n0", CALL);
+					}
+				}
+				IFDSSolver<Integer> solver = new IFDSSolver<Integer>(graph, new RandomProblem(12, round), CONTROL_FLOW, CALL);
+				solver.addSource(node("p0n0"));
+				solver.addSource(node(all.get(random.nextInt(all.size()))), 1 + random.nextInt(11));
+				for(int i = 0; i < 3; i++) {
+					solver.addSink(node(all.get(random.nextInt(all.size()))));
+				}
+				solver.setFollowReturnsPastSeeds(random.nextBoolean());
+				IFDSSolver.Result<Integer> sequential = solver.solve();
+				IFDSSolver.Result<Integer> parallel = solver.solve(pool);
+				if(sequential.getPathEdgeCount() != parallel.getPathEdgeCount() || sequential.getSummaryCount() != parallel.getSummaryCount()) {
+					fail("round " + round + ": parallel and sequential solutions should have the same path edges and summaries");
+				}
+				for(Node node : graph.nodes()) {
+					if(!sequential.getFacts(node).equals(parallel.getFacts(node)) || !sequential.getSinkFacts(node).equals(parallel.getSinkFacts(node))) {
+						fail("round " + round + ": parallel and sequential solutions should be equal at " + node.getAttr("name"));
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		try {
+			new IFDSSolver<Integer>(graph, new RandomProblem(2, 0), CONTROL_FLOW, CALL).solve(null);
+			fail("A null pool should be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}
@@ -0,0 +1,269 @@
+package chpg.tests.algorithms;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.GraphElementSet;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.algorithms.DominanceGraph;
+import chpg.graph.algorithms.LoopNestingForest;
+import chpg.graph.algorithms.StrongComponents;
+import chpg.graph.algorithms.UniqueEntryExitGraph;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestLoopNestingForest {
+
+	private static final String NAME = "name";
+
+	private PropertyGraph graph;
+	private Map<String, Node> nodes;
+
+	private Node node(String name) {
+		Node node = nodes.get(name);
+		if(node == null) {
+			node = new Node();
+			node.putAttr(NAME, name);
+			graph.add(node);
+			nodes.put(name, node);
+		}
+		return node;
+	}
+
+	private Edge edge(String from, String to) {
+		Edge edge = new Edge(node(from), node(to));
+		graph.add(edge);
+		return edge;
+	}
+
+	private void reset() {
+		graph = new PropertyGraph(new SchemaGraph());
+		nodes = new HashMap<String, Node>();
+	}
+
+	@Test
+	public void testNestedLoops() {
+		reset();
+		edge("entry", "a");
+		edge("a", "b");
+		edge("b", "c");
+		Edge inner = edge("c", "b");
+		edge("c", "d");
+		Edge outer = edge("d", "a");
+		Edge exit = edge("d", "exit");
+		UniqueEntryExitGraph cfg = new UniqueEntryExitGraph(graph, node("entry"), node("exit"));
+		LoopNestingForest forest = new LoopNestingForest(cfg);
+		if(forest.getLoopCount() != 2 || !forest.isLoopHeader(node("a")) || !forest.isLoopHeader(node("b"))) {
+			fail("a and b should be the loop headers");
+		}
+		if(forest.getParentLoopHeader(node("b")) != node("a") || forest.getParentLoopHeader(node("a")) != null) {
+			fail("The loop of b should be nested in the loop of a");
+		}
+		String[] names = new String[] { "entry", "a", "b", "c", "d", "exit" };
+		int[] depths = new int[] { 0, 1, 2, 2, 1, 0 };
+		for(int i = 0; i < names.length; i++) {
+			if(forest.getLoopDepth(node(names[i])) != depths[i]) {
+				fail("Expected loop depth " + depths[i] + " of " + names[i] + " but found " + forest.getLoopDepth(node(names[i])));
+			}
+		}
+		if(forest.getLoopHeader(node("c")) != node("b") || forest.getLoopHeader(node("d")) != node("a") || forest.getLoopHeader(node("exit")) != null) {
+			fail("Wrong innermost loop headers");
+		}
+		if(forest.getLoopNodes(node("a")).size() != 4 || !forest.getLoopNodes(node("a")).contains(node("c"))) {
+			fail("The outer loop should contain a, b, c and d");
+		}
+		if(forest.isIrreducibleLoopHeader(node("a")) || !forest.getIrreducibleLoopEntryEdges().isEmpty()) {
+			fail("Nested natural loops are reducible");
+		}
+		GraphElementSet<Edge> backEdges = forest.getBackEdges();
+		if(backEdges.size() != 2 || !backEdges.contains(inner) || !backEdges.contains(outer)) {
+			fail("c -> b and d -> a should be the back edges");
+		}
+		GraphElementSet<Edge> exits = forest.getLoopExitEdges();
+		if(exits.size() != 2 || !exits.contains(exit)) {
+			fail("c -> d and d -> exit should be the loop exit edges");
+		}
+		// the forest links headers to the nodes of their loops
+		if(forest.edges().size() != 3 || forest.successors(node("a")).size() != 2 || forest.successors(node("b")).size() != 1) {
+			fail("The forest should have the edges a -> b, a -> d and b -> c");
+		}
+		forest.annotate();
+		if(!node("b").tags().contains(LoopNestingForest.LOOP_HEADER) || !inner.tags().contains(LoopNestingForest.LOOP_BACK_EDGE)
+				|| !exit.tags().contains(LoopNestingForest.LOOP_EXIT_EDGE)) {
+			fail("Annotation should tag headers, back edges and exit edges");
+		}
+		if(!Integer.valueOf(2).equals(node("c").getAttr(LoopNestingForest.LOOP_DEPTH_ATTRIBUTE)) || node("exit").getAttr(LoopNestingForest.LOOP_DEPTH_ATTRIBUTE) != null) {
+			fail("Annotation should record loop depths of the nodes in loops");
+		}
+		if(!node("c").getAttr(LoopNestingForest.LOOP_ATTRIBUTE).equals(1) || !node("d").getAttr(LoopNestingForest.LOOP_ATTRIBUTE).equals(0)) {
+			fail("Annotation should record the innermost loop of the nodes in loops");
+		}
+	}
+
+	@Test
+	public void testIrreducibleLoop() {
+		reset();
+		Edge toX = edge("entry", "x");
+		Edge toY = edge("entry", "y");
+		edge("x", "y");
+		edge("y", "x");
+		edge("x", "exit");
+		UniqueEntryExitGraph cfg = new UniqueEntryExitGraph(graph, node("entry"), node("exit"));
+		LoopNestingForest forest = new LoopNestingForest(cfg);
+		// the header is whichever of x and y the depth first search enters first
+		Node header = forest.isLoopHeader(node("x")) ? node("x") : node("y");
+		Node other = header == node("x") ? node("y") : node("x");
+		if(forest.getLoopCount() != 1 || !forest.isIrreducibleLoopHeader(header) || forest.getLoopHeader(other) != header) {
+			fail("x and y should form one irreducible loop");
+		}
+		GraphElementSet<Edge> entries = forest.getIrreducibleLoopEntryEdges();
+		if(entries.size() != 1 || !entries.contains(header == node("x") ? toY : toX)) {
+			fail("The edge from the entry to the node that is not the header should enter the irreducible loop");
+		}
+		// a self loop nested in the irreducible loop
+		edge("z", "z");
+		edge("x", "z");
+		edge("z", "y");
+		forest = new LoopNestingForest(new UniqueEntryExitGraph(graph, node("entry"), node("exit")));
+		if(!forest.isLoopHeader(node("z")) || forest.getLoopDepth(node("z")) != 2) {
+			fail("The self loop of z should be nested in the irreducible loop");
+		}
+		header = forest.getParentLoopHeader(node("z"));
+		if(header == null || !forest.isIrreducibleLoopHeader(header) || forest.getLoopNodes(header).size() != 3) {
+			fail("x, y and z should form one irreducible loop");
+		}
+	}
+
+	private static Set<Node> toSet(Iterable<Node> nodes) {
+		Set<Node> set = new HashSet<Node>();
+		for(Node node : nodes) {
+			set.add(node);
+		}
+		return set;
+	}
+
+	private static boolean dominates(Map<Node, Node> idoms, Node dominator, Node node) {
+		for(Node current = node; current != null; current = idoms.get(current)) {
+			if(current == dominator) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the natural loop of the given header: the header and the nodes that
+	 * reach the sources of its back edges without passing through the header
+	 */
+	private static Set<Node> naturalLoop(UniqueEntryExitGraph cfg, Map<Node, Node> idoms, Set<Node> reachable, Node header) {
+		Set<Node> loop = new HashSet<Node>();
+		loop.add(header);
+		Deque<Node> worklist = new ArrayDeque<Node>();
+		for(Node latch : cfg.predecessors(header)) {
+			if(reachable.contains(latch) && dominates(idoms, header, latch) && loop.add(latch)) {
+				worklist.add(latch);
+			}
+		}
+		while(!worklist.isEmpty()) {
+			for(Node predecessor : cfg.predecessors(worklist.remove())) {
+				if(reachable.contains(predecessor) && loop.add(predecessor)) {
+					worklist.add(predecessor);
+				}
+			}
+		}
+		return loop;
+	}
+
+	@Test
+	public void testRandomGraphs() {
+		Random random = new Random(23);
+		int reducible = 0;
+		for(int round = 0; round < 300; round++) {
+			PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+			List<Node> n = new ArrayList<Node>();
+			int size = 2 + random.nextInt(25);
+			for(int i = 0; i < size; i++) {
+				Node node = new Node();
+				graph.add(node);
+				n.add(node);
+			}
+			graph.add(new Edge(n.get(0), n.get(size - 1)));
+			int edges = random.nextInt(size * 3);
+			for(int i = 0; i < edges; i++) {
+				// mostly forward edges so that many graphs are reducible
+				int from = random.nextInt(size);
+				int to = random.nextInt(3) == 0 ? random.nextInt(size) : Math.min(size - 1, from + 1 + random.nextInt(3));
+				graph.add(new Edge(n.get(from), n.get(to)));
+			}
+			UniqueEntryExitGraph cfg = new UniqueEntryExitGraph(graph, n.get(0), n.get(size - 1));
+			LoopNestingForest forest = new LoopNestingForest(cfg);
+			Map<Node, Node> idoms = new DominanceGraph(cfg, false).getIdoms();
+			Set<Node> reachable = toSet(cfg.forward(n.get(0)).nodes());
+
+			// the outermost loops are the cyclic strongly connected components of the reachable nodes
+			PropertyGraph reachableGraph = new PropertyGraph(new SchemaGraph(), cfg.forward(n.get(0)));
+			StrongComponents components = new StrongComponents(reachableGraph);
+			for(int c = 0; c < components.count(); c++) {
+				GraphElementSet<Node> members = components.getMembers(c);
+				Node someMember = members.one();
+				Node header = forest.getLoopHeader(someMember);
+				while(header != null && forest.getParentLoopHeader(header) != null) {
+					header = forest.getParentLoopHeader(header);
+				}
+				if(components.isCyclic(c) != (header != null) || (header != null && !toSet(forest.getLoopNodes(header)).equals(toSet(members)))) {
+					fail("round " + round + ": outermost loops should be the cyclic strongly connected components");
+				}
+			}
+
+			// every loop induces a strongly connected subgraph
+			for(Node header : forest.getLoopHeaders()) {
+				GraphElementSet<Node> loop = forest.getLoopNodes(header);
+				if(new StrongComponents(cfg.toGraph(loop).induce(cfg.edges())).count() != 1) {
+					fail("round " + round + ": loops should be strongly connected");
+				}
+			}
+
+			// reducible graphs have the natural loops of their back edges
+			boolean isReducible = true;
+			for(Edge edge : cfg.edges()) {
+				if(reachable.contains(edge.from()) && forest.getBackEdges().contains(edge) && !dominates(idoms, edge.to(), edge.from())) {
+					isReducible = false;
+				}
+			}
+			if(isReducible != forest.getIrreducibleLoopEntryEdges().isEmpty()) {
+				fail("round " + round + ": irreducible loop entries should exist exactly for irreducible graphs");
+			}
+			if(isReducible) {
+				reducible++;
+				for(Node node : reachable) {
+					boolean header = false;
+					for(Node predecessor : cfg.predecessors(node)) {
+						header |= reachable.contains(predecessor) && dominates(idoms, node, predecessor);
+					}
+					if(header != forest.isLoopHeader(node)) {
+						fail("round " + round + ": loop headers should be the targets of back edges");
+					}
+					if(header && !toSet(forest.getLoopNodes(node)).equals(naturalLoop(cfg, idoms, reachable, node))) {
+						fail("round " + round + ": loops should be the natural loops of reducible graphs");
+					}
+				}
+			}
+		}
+		if(reducible < 50 || reducible > 250) {
+			fail("The random graphs should mix reducible and irreducible graphs, found " + reducible + " reducible graphs");
+		}
+	}
+
+}
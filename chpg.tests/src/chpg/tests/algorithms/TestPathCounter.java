@@ -0,0 +1,150 @@
+package chpg.tests.algorithms;
+
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.algorithms.PathCounter;
+import chpg.graph.algorithms.PathEnumerator;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestPathCounter {
+
+	private static List<Node> nodes(PropertyGraph graph, int count) {
+		List<Node> nodes = new ArrayList<Node>();
+		for(int i = 0; i < count; i++) {
+			Node node = new Node();
+			graph.add(node);
+			nodes.add(node);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Returns a chain of diamonds, with 2^diamonds paths from the first to the last node
+	 */
+	private static List<Node> ladder(PropertyGraph graph, int diamonds) {
+		List<Node> joins = nodes(graph, diamonds + 1);
+		for(int i = 0; i < diamonds; i++) {
+			for(Node branch : nodes(graph, 2)) {
+				graph.add(new Edge(joins.get(i), branch));
+				graph.add(new Edge(branch, joins.get(i + 1)));
+			}
+		}
+		return joins;
+	}
+
+	@Test
+	public void testLargeCounts() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> joins = ladder(graph, 100);
+		PathCounter counter = new PathCounter(graph, joins.get(0), new GraphElementHashSet<Node>(joins.get(100)), 0);
+		if(!counter.getCount().equals(BigInteger.ONE.shiftLeft(100))) {
+			fail("The ladder should have 2^100 paths, found " + counter.getCount());
+		}
+		if(!counter.isSaturated() || counter.getSaturatedCount() != Long.MAX_VALUE) {
+			fail("The long count should saturate");
+		}
+		PathEnumerator.Path path = counter.sample(new Random(1));
+		if(path.length() != 200 || path.getFrom() != joins.get(0) || path.getTo() != joins.get(100)) {
+			fail("A sampled path should cross the ladder");
+		}
+		PathCounter half = new PathCounter(graph, joins.get(0), new GraphElementHashSet<Node>(joins.get(50)), 0);
+		if(half.isSaturated() || half.getSaturatedCount() != 1L << 50) {
+			fail("Half of the ladder should have 2^50 paths, found " + half.getCount());
+		}
+	}
+
+	@Test
+	public void testLoopUnrolling() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> n = nodes(graph, 4);
+		graph.add(new Edge(n.get(0), n.get(1)));
+		graph.add(new Edge(n.get(1), n.get(2)));
+		graph.add(new Edge(n.get(2), n.get(1)));
+		graph.add(new Edge(n.get(2), n.get(3)));
+		for(int bound = 0; bound < 5; bound++) {
+			PathCounter counter = new PathCounter(graph, n.get(0), new GraphElementHashSet<Node>(n.get(3)), bound);
+			if(counter.getSaturatedCount() != bound + 1) {
+				fail("A loop unrolled " + bound + " times should give " + (bound + 1) + " paths, found " + counter.getCount());
+			}
+			PathEnumerator enumerator = new PathEnumerator(graph, n.get(0), new GraphElementHashSet<Node>(n.get(3)));
+			enumerator.setAllowRevisits(true);
+			enumerator.setMaxLength(3 + 2 * bound);
+			if(enumerator.stream().count() != bound + 1) {
+				fail("Unrolled paths should match the bounded enumeration");
+			}
+		}
+	}
+
+	@Test
+	public void testRandomAcyclicGraphs() {
+		Random random = new Random(29);
+		for(int round = 0; round < 50; round++) {
+			PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+			int size = 2 + random.nextInt(12);
+			List<Node> n = nodes(graph, size);
+			int edges = random.nextInt(size * 3);
+			for(int i = 0; i < edges; i++) {
+				int a = random.nextInt(size);
+				int b = random.nextInt(size);
+				if(a != b) {
+					graph.add(new Edge(n.get(Math.min(a, b)), n.get(Math.max(a, b))));
+				}
+			}
+			GraphElementHashSet<Node> targets = new GraphElementHashSet<Node>(n.get(size - 1));
+			if(random.nextBoolean()) {
+				targets.add(n.get(random.nextInt(size)));
+			}
+			PathCounter counter = new PathCounter(graph, n.get(0), targets, random.nextInt(3));
+			long expected = new PathEnumerator(graph, n.get(0), targets).stream().count();
+			if(counter.getSaturatedCount() != expected) {
+				fail("Round " + round + ": expected " + expected + " paths, found " + counter.getCount());
+			}
+		}
+	}
+
+	@Test
+	public void testUniformSampling() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> joins = ladder(graph, 3);
+		// a shortcut over the ladder and a branch into the middle
+		graph.add(new Edge(joins.get(0), joins.get(3)));
+		graph.add(new Edge(joins.get(0), joins.get(2)));
+		PathCounter counter = new PathCounter(graph, joins.get(0), new GraphElementHashSet<Node>(joins.get(3)), 0);
+		if(counter.getSaturatedCount() != 11) {
+			fail("Expected 11 paths, found " + counter.getCount());
+		}
+		Random random = new Random(31);
+		Map<List<Edge>,Integer> frequencies = new HashMap<List<Edge>,Integer>();
+		for(int i = 0; i < 11000; i++) {
+			List<Edge> path = new ArrayList<Edge>(counter.sample(random).getEdges());
+			Integer frequency = frequencies.get(path);
+			frequencies.put(path, frequency == null ? 1 : frequency + 1);
+		}
+		if(frequencies.size() != 11) {
+			fail("Sampling should find all 11 paths, found " + frequencies.size());
+		}
+		for(int frequency : frequencies.values()) {
+			if(frequency < 800 || frequency > 1200) {
+				fail("Paths should be sampled uniformly, found a path sampled " + frequency + " times in 11000");
+			}
+		}
+		PathCounter none = new PathCounter(graph, joins.get(3), new GraphElementHashSet<Node>(joins.get(0)), 0);
+		if(none.getSaturatedCount() != 0 || none.sample(random) != null) {
+			fail("There should be no paths back to the start");
+		}
+	}
+
+}
@@ -0,0 +1,160 @@
+package chpg.tests.algorithms;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.algorithms.PathEnumerator;
+import chpg.graph.algorithms.Paths;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestPathEnumerator {
+
+	private static List<Node> nodes(PropertyGraph graph, int count) {
+		List<Node> nodes = new ArrayList<Node>();
+		for(int i = 0; i < count; i++) {
+			Node node = new Node();
+			graph.add(node);
+			nodes.add(node);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Returns a chain of diamonds, with 2^diamonds paths from the first to the last node
+	 */
+	private static List<Node> ladder(PropertyGraph graph, int diamonds) {
+		List<Node> joins = nodes(graph, diamonds + 1);
+		for(int i = 0; i < diamonds; i++) {
+			for(Node branch : nodes(graph, 2)) {
+				graph.add(new Edge(joins.get(i), branch));
+				graph.add(new Edge(branch, joins.get(i + 1)));
+			}
+		}
+		return joins;
+	}
+
+	/**
+	 * Counts the simple paths by recursion
+	 */
+	private static int countPaths(PropertyGraph graph, Node node, Node to, Set<Node> visited) {
+		int count = 0;
+		visited.add(node);
+		for(Edge edge : graph.edges(node, Node.NodeDirection.OUT)) {
+			if(edge.to() == to) {
+				count++;
+			} else if(!visited.contains(edge.to())) {
+				count += countPaths(graph, edge.to(), to, visited);
+			}
+		}
+		visited.remove(node);
+		return count;
+	}
+
+	@Test
+	public void testLazyEnumeration() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> joins = ladder(graph, 60);
+		PathEnumerator enumerator = new PathEnumerator(graph, joins.get(0), new GraphElementHashSet<Node>(joins.get(60)));
+		Iterator<PathEnumerator.Path> paths = enumerator.iterator();
+		PathEnumerator.Path first = paths.next();
+		PathEnumerator.Path second = paths.next();
+		if(first.length() != 120 || second.length() != 120) {
+			fail("Paths through the ladder should have 120 edges");
+		}
+		if(first.getFrom() != joins.get(0) || first.getTo() != joins.get(60)) {
+			fail("Paths should start at the from node and end at the target");
+		}
+		if(first.getPrefix().getPrefix() != second.getPrefix().getPrefix()) {
+			fail("Consecutive paths should share the trie node of their common prefix");
+		}
+		List<Edge> edges = first.getEdges();
+		for(int i = 1; i < edges.size(); i++) {
+			if(edges.get(i - 1).to() != edges.get(i).from()) {
+				fail("Path edges should be consecutive");
+			}
+		}
+		if(enumerator.stream().limit(1000).count() != 1000) {
+			fail("A stream should enumerate the first 1000 of 2^60 paths");
+		}
+	}
+
+	@Test
+	public void testLimits() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> joins = ladder(graph, 5);
+		// a shortcut from the start to the end of the ladder
+		graph.add(new Edge(joins.get(0), joins.get(5)));
+		PathEnumerator enumerator = new PathEnumerator(graph, joins.get(0), new GraphElementHashSet<Node>(joins.get(5)));
+		if(enumerator.stream().count() != 33) {
+			fail("The ladder should have 33 paths");
+		}
+		enumerator.setMaxPaths(7);
+		if(enumerator.stream().count() != 7) {
+			fail("The enumeration should stop after 7 paths");
+		}
+		enumerator.setMaxPaths(Long.MAX_VALUE);
+		enumerator.setMaxLength(9);
+		List<PathEnumerator.Path> shortPaths = enumerator.stream().collect(Collectors.toList());
+		if(shortPaths.size() != 1 || shortPaths.get(0).length() != 1) {
+			fail("Only the shortcut should have at most 9 edges, found " + shortPaths.size() + " paths");
+		}
+	}
+
+	@Test
+	public void testCycles() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> n = nodes(graph, 3);
+		graph.add(new Edge(n.get(0), n.get(1)));
+		graph.add(new Edge(n.get(1), n.get(0)));
+		graph.add(new Edge(n.get(1), n.get(2)));
+		PathEnumerator enumerator = new PathEnumerator(graph, n.get(0), new GraphElementHashSet<Node>(n.get(2)));
+		if(enumerator.stream().count() != 1) {
+			fail("There should be one simple path");
+		}
+		enumerator.setAllowRevisits(true);
+		enumerator.setMaxLength(8);
+		Set<Integer> lengths = enumerator.stream().map(PathEnumerator.Path::length).collect(Collectors.toSet());
+		if(!lengths.equals(new HashSet<Integer>(java.util.Arrays.asList(2, 4, 6, 8)))) {
+			fail("Paths that revisit nodes should go around the cycle, found lengths " + lengths);
+		}
+	}
+
+	@Test
+	public void testRandomGraphs() {
+		Random random = new Random(23);
+		for(int round = 0; round < 50; round++) {
+			PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+			int size = 2 + random.nextInt(9);
+			List<Node> n = nodes(graph, size);
+			int edges = random.nextInt(size * 3);
+			for(int i = 0; i < edges; i++) {
+				graph.add(new Edge(n.get(random.nextInt(size)), n.get(random.nextInt(size))));
+			}
+			Node from = n.get(0);
+			Node to = n.get(size - 1);
+			int expected = countPaths(graph, from, to, new HashSet<Node>());
+			List<List<Edge>> paths = Paths.enumeratePaths(graph, from, to, false);
+			if(paths.size() != expected) {
+				fail("Round " + round + ": expected " + expected + " simple paths, found " + paths.size());
+			}
+			Set<List<Edge>> distinct = new HashSet<List<Edge>>(paths);
+			if(distinct.size() != paths.size()) {
+				fail("Round " + round + ": paths should not be repeated");
+			}
+		}
+	}
+
+}
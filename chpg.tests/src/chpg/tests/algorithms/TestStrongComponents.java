@@ -0,0 +1,174 @@
+package chpg.tests.algorithms;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.algorithms.CondensationGraph;
+import chpg.graph.algorithms.StrongComponents;
+import chpg.graph.index.AdjacencyIndex;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestStrongComponents {
+
+	private static List<Node> nodes(PropertyGraph graph, int size) {
+		List<Node> nodes = new ArrayList<Node>();
+		for(int i = 0; i < size; i++) {
+			Node node = new Node();
+			graph.add(node);
+			nodes.add(node);
+		}
+		return nodes;
+	}
+
+	/**
+	 * A graph of random cycles of random lengths with random edges between them
+	 */
+	private static PropertyGraph randomGraph(Random random, int size, int extraEdges) {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> nodes = nodes(graph, size);
+		int start = 0;
+		while(start < size) {
+			int length = Math.min(size - start, 1 + random.nextInt(20));
+			for(int i = 0; i < length - 1; i++) {
+				graph.add(new Edge(nodes.get(start + i), nodes.get(start + i + 1)));
+			}
+			if(random.nextBoolean()) {
+				graph.add(new Edge(nodes.get(start + length - 1), nodes.get(start)));
+			}
+			start += length;
+		}
+		for(int i = 0; i < extraEdges; i++) {
+			graph.add(new Edge(nodes.get(random.nextInt(size)), nodes.get(random.nextInt(size))));
+		}
+		return graph;
+	}
+
+	/**
+	 * Checks that both decompositions are the same partition and that both
+	 * number the components in reverse topological order
+	 */
+	private static void compare(AdjacencyIndex index, StrongComponents expected, StrongComponents actual, String step) {
+		if(expected.count() != actual.count()) {
+			fail(step + ": expected " + expected.count() + " components but found " + actual.count());
+		}
+		int[] mapping = new int[expected.count()];
+		Arrays.fill(mapping, -1);
+		for(int node = 0; node < index.nodeCount(); node++) {
+			int c = expected.component(node);
+			if(mapping[c] < 0) {
+				mapping[c] = actual.component(node);
+			} else if(mapping[c] != actual.component(node)) {
+				fail(step + ": the components should be the same partition of the nodes");
+			}
+		}
+		for(StrongComponents components : new StrongComponents[] { expected, actual }) {
+			for(int edge = 0; edge < index.edgeCount(); edge++) {
+				if(components.component(index.from(edge)) < components.component(index.to(edge))) {
+					fail(step + ": edges should lead from higher to lower component numbers");
+				}
+			}
+			for(int c = 0; c < components.count(); c++) {
+				for(int i = 0; i < components.size(c); i++) {
+					if(components.component(components.member(c, i)) != c) {
+						fail(step + ": members should belong to their component");
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testParallelMatchesSequential() {
+		Random random = new Random(11);
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for(int round = 0; round < 50; round++) {
+				int size = 1 + random.nextInt(200);
+				PropertyGraph graph = randomGraph(random, size, random.nextInt(size * 2));
+				AdjacencyIndex index = AdjacencyIndex.of(graph);
+				compare(index, new StrongComponents(index), new StrongComponents(index, pool), "round " + round);
+			}
+			// large enough to be split by forward-backward steps before the sequential threshold
+			for(int round = 0; round < 3; round++) {
+				int size = 30000;
+				PropertyGraph graph = randomGraph(random, size, round == 0 ? size / 2 : size + size / 4);
+				AdjacencyIndex index = AdjacencyIndex.of(graph);
+				compare(index, new StrongComponents(index), new StrongComponents(index, pool), "large round " + round);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testDeepGraphs() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> nodes = nodes(graph, 200000);
+		for(int i = 0; i < nodes.size() - 1; i++) {
+			graph.add(new Edge(nodes.get(i), nodes.get(i + 1)));
+		}
+		graph.add(new Edge(nodes.get(nodes.size() - 1), nodes.get(100000)));
+		AdjacencyIndex index = AdjacencyIndex.of(graph);
+		StrongComponents sequential = new StrongComponents(index);
+		if(sequential.count() != 100001) {
+			fail("Expected 100001 components but found " + sequential.count());
+		}
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			compare(index, sequential, new StrongComponents(index, pool), "deep graph");
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testCondensation() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> n = nodes(graph, 6);
+		// a loop of n1 and n2 called from n0, n3 with a self loop, n4 and n5 on their own
+		graph.add(new Edge(n.get(0), n.get(1)));
+		graph.add(new Edge(n.get(1), n.get(2)));
+		graph.add(new Edge(n.get(2), n.get(1)));
+		graph.add(new Edge(n.get(2), n.get(3)));
+		graph.add(new Edge(n.get(1), n.get(3)));
+		graph.add(new Edge(n.get(3), n.get(3)));
+		graph.add(new Edge(n.get(3), n.get(4)));
+		CondensationGraph condensation = new CondensationGraph(graph);
+		if(condensation.nodes().size() != 5 || condensation.edges().size() != 3) {
+			fail("Expected 5 components and 3 edges but found " + condensation.nodes().size() + " and " + condensation.edges().size());
+		}
+		Node loop = condensation.getComponentNode(n.get(1));
+		if(loop != condensation.getComponentNode(n.get(2)) || !condensation.getMembers(loop).contains(n.get(2)) || condensation.getMembers(loop).size() != 2) {
+			fail("n1 and n2 should form one component");
+		}
+		if(!loop.tags().contains(CondensationGraph.CYCLIC_COMPONENT) || !condensation.getComponentNode(n.get(3)).tags().contains(CondensationGraph.CYCLIC_COMPONENT)) {
+			fail("Components with cycles should be tagged");
+		}
+		if(condensation.getComponentNode(n.get(0)).tags().contains(CondensationGraph.CYCLIC_COMPONENT)) {
+			fail("Components without cycles should not be tagged");
+		}
+		if(condensation.successors(loop).size() != 1 || !condensation.successors(loop).contains(condensation.getComponentNode(n.get(3)))) {
+			fail("The two edges from the loop to n3 should be condensed into one");
+		}
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			CondensationGraph parallel = new CondensationGraph(graph, pool);
+			if(parallel.nodes().size() != 5 || parallel.edges().size() != 3) {
+				fail("The parallel condensation should have the same size");
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+}
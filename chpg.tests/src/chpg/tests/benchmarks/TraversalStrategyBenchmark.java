@@ -0,0 +1,142 @@
+package chpg.tests.benchmarks;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph.TraversalStrategy;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.Node;
+import chpg.graph.Node.NodeDirection;
+import chpg.graph.PropertyGraph;
+import chpg.graph.index.AdjacencyIndex;
+import chpg.graph.index.BreadthFirstSearch;
+
+/**
+ * Compares the top-down and direction-optimizing traversal strategies on graph
+ * shapes that are typical for program graphs.
+ *
+ * Low diameter graphs with a few high degree hubs (call graphs, data flow
+ * graphs) reach most of the graph in a few levels, which is where bottom-up
+ * steps pay off. Long, narrow graphs (control flow graphs) never grow a large
+ * frontier, so the search stays in top-down mode and both strategies should
+ * perform about the same. Wide trees (containment hierarchies) do grow a large
+ * frontier, but every node has a single parent, so bottom-up steps cannot skip
+ * any edges and only add the cost of sweeping the unvisited nodes.
+ * 
+ * The kernel columns measure the reachability search alone, the forward columns
+ * include building the result graph, which dominates for large results.
+ *
+ * Run as a Java application, optionally passing the number of nodes per graph.
+ */
+public class TraversalStrategyBenchmark {
+
+	private static final int WARMUP_ITERATIONS = 5;
+	private static final int MEASURED_ITERATIONS = 10;
+
+	public static void main(String[] args) {
+		int size = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+		Random rnd = new Random(0);
+		System.out.println(String.format("%-28s %10s %10s %14s %14s %14s %14s", "shape", "nodes", "edges", "kernel TD (ms)", "kernel DO (ms)", "forward TD (ms)", "forward DO (ms)"));
+		PropertyGraph graph = new PropertyGraph();
+		benchmark("scale-free (call graph)", graph, scaleFree(graph, size, 8, rnd));
+		graph = new PropertyGraph();
+		benchmark("dense random", graph, random(graph, size, 16, rnd));
+		graph = new PropertyGraph();
+		benchmark("ladder (control flow)", graph, ladder(graph, size));
+		graph = new PropertyGraph();
+		benchmark("tree (containment)", graph, tree(graph, size, 8));
+	}
+
+	private static void benchmark(String shape, PropertyGraph graph, Node root) {
+		AdjacencyIndex index = graph.getAdjacencyIndex();
+		int[] sources = new int[] { index.getNodeOrdinal(root) };
+		GraphElementHashSet<Node> origin = new GraphElementHashSet<Node>(root);
+
+		double kernelTopDown = time(() -> BreadthFirstSearch.topDown(index, sources, NodeDirection.OUT));
+		double kernelDirectionOptimizing = time(() -> BreadthFirstSearch.directionOptimizing(index, sources, NodeDirection.OUT));
+		double forwardTopDown = time(() -> graph.forward(origin, TraversalStrategy.TOP_DOWN));
+		double forwardDirectionOptimizing = time(() -> graph.forward(origin, TraversalStrategy.DIRECTION_OPTIMIZING));
+
+		BitSet reached = BreadthFirstSearch.topDown(index, sources, NodeDirection.OUT);
+		if(!reached.equals(BreadthFirstSearch.directionOptimizing(index, sources, NodeDirection.OUT))) {
+			throw new IllegalStateException("Traversal strategies disagree on " + shape);
+		}
+
+		System.out.println(String.format("%-28s %10d %10d %14.2f %14.2f %14.2f %14.2f", shape,
+				index.nodeCount(), index.edgeCount(), kernelTopDown, kernelDirectionOptimizing, forwardTopDown, forwardDirectionOptimizing));
+	}
+
+	private static double time(Runnable runnable) {
+		for(int i=0; i<WARMUP_ITERATIONS; i++) {
+			runnable.run();
+		}
+		long start = System.nanoTime();
+		for(int i=0; i<MEASURED_ITERATIONS; i++) {
+			runnable.run();
+		}
+		return (System.nanoTime() - start) / 1e6 / MEASURED_ITERATIONS;
+	}
+
+	private static List<Node> addNodes(PropertyGraph graph, int size) {
+		List<Node> nodes = new ArrayList<Node>(size);
+		for(int i=0; i<size; i++) {
+			Node node = new Node();
+			graph.add(node);
+			nodes.add(node);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Preferential attachment graph: new edges favor targets that already have many incoming edges
+	 */
+	private static Node scaleFree(PropertyGraph graph, int size, int averageDegree, Random rnd) {
+		List<Node> nodes = addNodes(graph, size);
+		List<Node> targets = new ArrayList<Node>();
+		targets.add(nodes.get(0));
+		for(int i=1; i<size; i++) {
+			Node from = nodes.get(i);
+			for(int j=0; j<averageDegree; j++) {
+				Node to = targets.get(rnd.nextInt(targets.size()));
+				graph.add(new Edge(from, to));
+				graph.add(new Edge(to, from));
+				targets.add(to);
+			}
+			targets.add(from);
+		}
+		return nodes.get(0);
+	}
+
+	private static Node random(PropertyGraph graph, int size, int averageDegree, Random rnd) {
+		List<Node> nodes = addNodes(graph, size);
+		for(int i=0; i<size * averageDegree; i++) {
+			graph.add(new Edge(nodes.get(rnd.nextInt(size)), nodes.get(rnd.nextInt(size))));
+		}
+		return nodes.get(0);
+	}
+
+	/**
+	 * Long chain of diamonds, resembling the control flow of a large method
+	 */
+	private static Node ladder(PropertyGraph graph, int size) {
+		List<Node> nodes = addNodes(graph, size);
+		for(int i=0; i+2<size; i+=2) {
+			graph.add(new Edge(nodes.get(i), nodes.get(i+1)));
+			graph.add(new Edge(nodes.get(i), nodes.get(i+2)));
+			graph.add(new Edge(nodes.get(i+1), nodes.get(i+2)));
+		}
+		return nodes.get(0);
+	}
+
+	private static Node tree(PropertyGraph graph, int size, int fanout) {
+		List<Node> nodes = addNodes(graph, size);
+		for(int i=1; i<size; i++) {
+			graph.add(new Edge(nodes.get((i-1) / fanout), nodes.get(i)));
+		}
+		return nodes.get(0);
+	}
+
+}
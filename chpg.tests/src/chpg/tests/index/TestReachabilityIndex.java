@@ -0,0 +1,122 @@
+package chpg.tests.index;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.index.ReachabilityIndex;
+import chpg.tests.traversals.TestGraphForwardTraversals;
+
+public class TestReachabilityIndex extends TestGraphForwardTraversals {
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+	}
+	
+	private void inspectReachable(ReachabilityIndex index, Node from, Node to, boolean expected) {
+		if(index.reachable(from, to) != expected) {
+			fail(from.getAttr(NAME) + (expected ? " should reach " : " should not reach ") + to.getAttr(NAME));
+		}
+	}
+	
+	@Test
+	public void testReachable() {
+		ReachabilityIndex index = new ReachabilityIndex(graph);
+		inspectReachable(index, a, g, true);
+		inspectReachable(index, c, b, true);
+		inspectReachable(index, b, c, true);
+		inspectReachable(index, f, f, true);
+		inspectReachable(index, g, a, false);
+		inspectReachable(index, e, g, false);
+		inspectReachable(index, a, f, false);
+		if(index.component(b) != index.component(c)) {
+			fail("b and c should be in the same strongly connected component");
+		}
+	}
+	
+	@Test
+	public void testInsertedEdges() {
+		ReachabilityIndex index = new ReachabilityIndex(graph);
+		Node h = new Node();
+		h.putAttr(NAME, "h");
+		index.insert(new Edge(g, a));
+		index.insert(new Edge(e, h));
+		inspectReachable(index, g, b, true);
+		inspectReachable(index, d, a, true);
+		inspectReachable(index, a, h, true);
+		inspectReachable(index, h, a, false);
+		inspectReachable(index, f, h, false);
+	}
+	
+	@Test
+	public void testRandomGraphsAgreeWithTraversals() {
+		Random rnd = new Random(30);
+		for(int trial=0; trial<20; trial++) {
+			PropertyGraph randomGraph = new PropertyGraph();
+			List<Node> nodes = new ArrayList<Node>();
+			for(int i=0; i<100; i++){
+				Node n = new Node();
+				randomGraph.add(n);
+				nodes.add(n);
+			}
+			int edges = rnd.nextInt(250);
+			for(int i=0; i<edges; i++){
+				randomGraph.add(new Edge(nodes.get(rnd.nextInt(100)), nodes.get(rnd.nextInt(100))));
+			}
+			GraphElementHashSet<Node> from = new GraphElementHashSet<Node>(new Node[] {nodes.get(rnd.nextInt(100)), nodes.get(rnd.nextInt(100))});
+			GraphElementHashSet<Node> to = new GraphElementHashSet<Node>(new Node[] {nodes.get(rnd.nextInt(100)), nodes.get(rnd.nextInt(100))});
+			Graph expected = randomGraph.between(from, to);
+			
+			ReachabilityIndex index = randomGraph.getReachabilityIndex();
+			inspectAgreement(randomGraph, index, nodes);
+			inspectBetween(expected, randomGraph.between(from, to));
+			
+			// insertions are applied to the cached index incrementally
+			for(int i=0; i<20; i++){
+				randomGraph.add(new Edge(nodes.get(rnd.nextInt(100)), nodes.get(rnd.nextInt(100))));
+			}
+			if(randomGraph.getReachabilityIndex() != index) {
+				fail("Edge insertions should not rebuild the reachability index");
+			}
+			inspectAgreement(randomGraph, index, nodes);
+			Graph indexed = randomGraph.between(from, to);
+			// removing and restoring an edge leaves the index stale, so between traverses the graph
+			Edge edge = randomGraph.edges().one();
+			randomGraph.remove(edge);
+			randomGraph.add(edge);
+			inspectBetween(randomGraph.between(from, to), indexed);
+		}
+	}
+	
+	private void inspectAgreement(Graph randomGraph, ReachabilityIndex index, List<Node> nodes) {
+		for(Node from : nodes) {
+			Graph forward = randomGraph.forward(from);
+			for(Node to : nodes) {
+				if(index.reachable(from, to) != forward.nodes().contains(to)) {
+					fail("Reachability index should agree with forward traversals");
+				}
+			}
+		}
+	}
+	
+	private void inspectBetween(Graph expected, Graph result) {
+		if(expected.nodes().size() != result.nodes().size() || !expected.nodes().containsAll(result.nodes())) {
+			fail("Indexed between should select the same nodes");
+		}
+		if(expected.edges().size() != result.edges().size() || !expected.edges().containsAll(result.edges())) {
+			fail("Indexed between should select the same edges");
+		}
+	}
+
+}
@@ -7,6 +7,7 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletionException;
 
 import org.junit.Test;
 
@@ -56,5 +57,33 @@ public class TestGraphIO {
 			fail("Imported graph should have the same number of edges as exported graph");
 		}
 	}
+	
+	@Test
+	public void testGraphIOAsync() throws IOException {
+		PropertyGraph graph = new PropertyGraph();
+		Node a = new Node();
+		Node b = new Node();
+		graph.add(a);
+		graph.add(b);
+		graph.add(new Edge(a, b));
+		
+		File tmp = File.createTempFile("test", "chpg");
+		GraphIO.exportGraphAsync(graph, tmp).join();
+		PropertyGraph graph2 = GraphIO.importGraphAsync(tmp).join();
+		tmp.delete();
+		
+		if(graph.nodes().size() != graph2.nodes().size() || graph.edges().size() != graph2.edges().size()) {
+			fail("Asynchronously imported graph should have the same nodes and edges as the exported graph");
+		}
+		
+		try {
+			GraphIO.importGraphAsync(tmp).join();
+			fail("Importing a missing file should fail");
+		} catch (CompletionException e) {
+			if(!(e.getCause() instanceof IOException)) {
+				fail("Importing a missing file should fail with an IOException, found " + e.getCause());
+			}
+		}
+	}
 
 }
@@ -0,0 +1,138 @@
+package chpg.tests.query;
+
+import static org.junit.Assert.fail;
+
+import java.util.Comparator;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Node;
+import chpg.graph.Node.NodeDirection;
+import chpg.graph.PropertyGraph;
+import chpg.graph.query.Query;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestAggregations {
+
+	private static final String SIZE = "size";
+	
+	private PropertyGraph graph;
+	private Node classA, classB, m1, m2, m3, m4;
+	
+	private Node node(String tag, int size) {
+		Node node = new Node();
+		node.tags().add(tag);
+		node.putAttr(SIZE, size);
+		graph.add(node);
+		return node;
+	}
+	
+	private Edge edge(Node from, Node to, String tag) {
+		Edge edge = new Edge(from, to);
+		edge.tags().add(tag);
+		graph.add(edge);
+		return edge;
+	}
+	
+	@Before
+	public void setUp() throws Exception {
+		graph = new PropertyGraph(new SchemaGraph());
+		classA = node("class", 100);
+		classB = node("class", 50);
+		m1 = node("method", 10);
+		m2 = node("method", 30);
+		m3 = node("method", 20);
+		m4 = node("method", 5);
+		edge(classA, m1, SchemaGraph.Contains);
+		edge(classA, m2, SchemaGraph.Contains);
+		edge(classA, m3, SchemaGraph.Contains);
+		edge(classB, m4, SchemaGraph.Contains);
+		edge(m1, m2, "call");
+		edge(m1, m3, "call");
+		edge(m1, m4, "call");
+		edge(m2, m3, "call");
+	}
+	
+	@Test
+	public void testCounts() {
+		Query query = new Query(graph);
+		if(query.nodes("method").countNodes() != 4) {
+			fail("There should be 4 methods");
+		}
+		if(query.edges("call").countEdges() != 4) {
+			fail("There should be 4 call edges");
+		}
+		Map<String,Long> tags = query.countNodesByTag();
+		if(tags.get("method") != 4 || tags.get("class") != 2) {
+			fail("Unexpected tag counts " + tags);
+		}
+		Map<String,Long> selected = query.countEdgesByTag("call", "missing");
+		if(selected.get("call") != 4 || selected.get("missing") != 0) {
+			fail("Unexpected selected tag counts " + selected);
+		}
+		m2.putAttr("visibility", "public");
+		m3.putAttr("visibility", "public");
+		m4.putAttr("visibility", "private");
+		Map<Object,Long> values = query.nodes("method").countNodesByAttribute("visibility");
+		if(values.size() != 2 || values.get("public") != 2 || values.get("private") != 1) {
+			fail("Unexpected attribute counts " + values);
+		}
+	}
+	
+	@Test
+	public void testContainers() {
+		Map<Node,Long> methodsPerClass = new Query(graph).nodes("method").countNodesByContainer();
+		if(methodsPerClass.size() != 2 || methodsPerClass.get(classA) != 3 || methodsPerClass.get(classB) != 1) {
+			fail("Unexpected methods per class " + methodsPerClass);
+		}
+	}
+	
+	@Test
+	public void testDegrees() {
+		Map<Node,Integer> degrees = new Query(graph).nodes("method").degrees(NodeDirection.OUT);
+		if(degrees.get(m1) != 3 || degrees.get(m2) != 1 || degrees.get(m4) != 0) {
+			fail("Unexpected out degrees " + degrees);
+		}
+		List<Node> top = new Query(graph).nodes().topNodesByDegree(2, NodeDirection.OUT);
+		if(top.size() != 2 || !top.contains(m1) || !top.contains(classA)) {
+			fail("The nodes with the greatest out degree should be m1 and classA");
+		}
+		List<Node> called = new Query(graph).nodes("method").topNodesByDegree(1, NodeDirection.IN);
+		if(called.size() != 1 || called.get(0) != m3) {
+			fail("The method with the greatest in degree should be m3");
+		}
+	}
+	
+	@Test
+	public void testStatistics() {
+		DoubleSummaryStatistics statistics = new Query(graph).nodes("method").nodeStatistics(SIZE);
+		if(statistics.getCount() != 4 || statistics.getSum() != 65 || statistics.getMin() != 5 || statistics.getMax() != 30) {
+			fail("Unexpected method size statistics " + statistics);
+		}
+		if(new Query(graph).edges().edgeStatistics(SIZE).getCount() != 0) {
+			fail("Edges have no size attribute");
+		}
+	}
+	
+	@Test
+	public void testTopK() {
+		m3.removeAttr(SIZE);
+		List<Node> largest = new Query(graph).nodes("method").topNodesByAttribute(2, SIZE);
+		if(largest.size() != 2 || largest.get(0) != m2 || largest.get(1) != m1) {
+			fail("The largest methods should be m2 and m1");
+		}
+		List<Node> all = new Query(graph).nodes().topNodes(10, Comparator.comparing(node -> (Integer) node.getAttr(SIZE), Comparator.nullsFirst(Comparator.naturalOrder())));
+		if(all.size() != 6 || all.get(0) != classA || all.get(5) != m3) {
+			fail("Top k larger than the result should return every node in order");
+		}
+		if(!new Query(graph).nodes().topNodes(0, Comparator.comparing(Node::getAddress)).isEmpty()) {
+			fail("Top 0 should be empty");
+		}
+	}
+	
+}
@@ -0,0 +1,67 @@
+package chpg.tests.query;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import chpg.graph.ExecutionContext;
+import chpg.graph.ExecutionLimitException;
+import chpg.graph.Graph;
+import chpg.graph.query.Query;
+import chpg.tests.traversals.TestGraphForwardTraversals;
+
+public class TestAsyncQueries extends TestGraphForwardTraversals {
+
+	@Test
+	public void testConcurrentEvaluations() {
+		Graph expected = graph.forward(b);
+		List<CompletableFuture<Graph>> futures = new ArrayList<CompletableFuture<Graph>>();
+		for(int i=0; i<100; i++) {
+			futures.add(new Query(graph).forward(b).evaluateAsync());
+		}
+		for(CompletableFuture<Graph> future : futures) {
+			Graph result = future.join();
+			if(result.nodes().size() != expected.nodes().size() || result.edges().size() != expected.edges().size()) {
+				fail("Concurrent evaluations should produce the same result");
+			}
+		}
+	}
+	
+	@Test
+	public void testExecutor() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			Graph result = new Query(graph).reverse(d).evaluateAsync(executor).join();
+			if(result.nodes().size() != graph.reverse(d).nodes().size()) {
+				fail("Evaluation on the given executor should produce the reverse traversal");
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testCancelledContext() {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			ExecutionContext context = new ExecutionContext();
+			context.cancel();
+			new Query(graph).forward(a).evaluateAsync(context, executor).join();
+			fail("Evaluation in a cancelled context should fail");
+		} catch (CompletionException e) {
+			if(!(e.getCause() instanceof ExecutionLimitException)) {
+				fail("Evaluation in a cancelled context should fail with an ExecutionLimitException, found " + e.getCause());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+}
@@ -0,0 +1,180 @@
+package chpg.tests.query;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import chpg.graph.AttributePredicate;
+import chpg.graph.Edge;
+import chpg.graph.GraphElementSet;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.query.Query;
+import chpg.graph.query.QueryProfile;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestAttributePredicates {
+
+	private static final String NAME = "name";
+	private static final String SIZE = "size";
+
+	private PropertyGraph graph;
+	private Node getX, getY, setX, run, main;
+
+	private Node node(String name, Object size) {
+		Node node = new Node();
+		node.putAttr(NAME, name);
+		if(size != null) {
+			node.putAttr(SIZE, size);
+		}
+		graph.add(node);
+		return node;
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		graph = new PropertyGraph(new SchemaGraph());
+		getX = node("getX", 3);
+		getY = node("getY", 4L);
+		setX = node("setX", 10.5);
+		run = node("run", 40);
+		main = node("main", null);
+		Edge edge = new Edge(main, run);
+		edge.putAttr(SIZE, 7);
+		graph.add(edge);
+	}
+
+	private static void expect(GraphElementSet<Node> actual, String description, Node... expected) {
+		if(actual.size() != expected.length) {
+			fail(description + " should select " + expected.length + " nodes, found " + actual.size());
+		}
+		for(Node node : expected) {
+			if(!actual.contains(node)) {
+				fail(description + " should select " + node.getAttr(NAME));
+			}
+		}
+	}
+
+	private void checkPredicates() {
+		expect(graph.selectNodes(AttributePredicate.exists(SIZE)), "exists", getX, getY, setX, run);
+		expect(graph.selectNodes(AttributePredicate.equalTo(NAME, "run")), "equalTo", run);
+		expect(graph.selectNodes(AttributePredicate.in(NAME, "run", "main", null, "missing")), "in", run, main);
+		expect(graph.selectNodes(AttributePredicate.in(SIZE, 3L, 4L)), "in with longs", getY);
+		expect(graph.selectNodes(AttributePredicate.between(SIZE, 4, 40)), "between", getY, setX, run);
+		expect(graph.selectNodes(AttributePredicate.lessThan(SIZE, 10.5)), "lessThan", getX, getY);
+		expect(graph.selectNodes(AttributePredicate.atMost(SIZE, 10.5)), "atMost", getX, getY, setX);
+		expect(graph.selectNodes(AttributePredicate.greaterThan(SIZE, 4)), "greaterThan", setX, run);
+		expect(graph.selectNodes(AttributePredicate.atLeast(SIZE, Long.MIN_VALUE)), "atLeast", getX, getY, setX, run);
+		expect(graph.selectNodes(AttributePredicate.between(NAME, "g", "r")), "string range", getX, getY, main);
+		expect(graph.selectNodes(AttributePredicate.startsWith(NAME, "get")), "startsWith", getX, getY);
+		expect(graph.selectNodes(AttributePredicate.matches(NAME, "[gs]etX")), "matches", getX, setX);
+		expect(graph.selectNodes(AttributePredicate.matches(NAME, "etX")), "matches in full");
+		expect(graph.selectNodes(AttributePredicate.startsWith(NAME, "get").and(AttributePredicate.atLeast(SIZE, 4))), "and", getY);
+		expect(graph.selectNodes(AttributePredicate.equalTo(NAME, "main").or(AttributePredicate.greaterThan(SIZE, 10))), "or", setX, run, main);
+		expect(graph.selectNodes(AttributePredicate.exists(SIZE).negate()), "negate", main);
+		expect(graph.selectNodes(AttributePredicate.matches(NAME, ".*X").and(AttributePredicate.exists(SIZE).negate().negate())), "double negation", getX, setX);
+	}
+
+	@Test
+	public void testPredicates() {
+		checkPredicates();
+		GraphElementSet<Edge> edges = graph.selectEdges(AttributePredicate.between(SIZE, 5, 8));
+		if(edges.size() != 1) {
+			fail("One edge should have a size between 5 and 8, found " + edges.size());
+		}
+		if(graph.selectNodes(SIZE, 3, 40).size() != 2) {
+			fail("selectNodes should select the nodes with sizes 3 or 40");
+		}
+	}
+
+	@Test
+	public void testIndexedPredicates() {
+		graph.createNodeAttributeIndex(NAME);
+		graph.createNodeAttributeIndex(SIZE);
+		checkPredicates();
+
+		// indexes are rebuilt after the graph is modified
+		Node getZ = node("getZ", 5);
+		expect(graph.selectNodes(AttributePredicate.startsWith(NAME, "get")), "startsWith after add", getX, getY, getZ);
+		graph.remove(getX);
+		expect(graph.selectNodes(AttributePredicate.between(SIZE, 0, 5)), "between after remove", getY, getZ);
+
+		// indexes are rebuilt after attribute values change
+		getY.putAttr(SIZE, 100);
+		expect(graph.selectNodes(AttributePredicate.between(SIZE, 0, 5)), "between after attribute change", getZ);
+		setX.putAttr(SIZE, 2);
+		expect(graph.selectNodes(AttributePredicate.between(SIZE, 0, 5)), "between after an attribute starts to match", setX, getZ);
+		expect(graph.selectNodes(SIZE, 2), "equality after an attribute starts to match", setX);
+		setX.putAttr(NAME, "getW");
+		expect(graph.selectNodes(AttributePredicate.startsWith(NAME, "get")), "startsWith after an attribute starts to match", setX, getY, getZ);
+	}
+
+	@Test
+	public void testQueryUsesIndex() {
+		graph.createNodeAttributeIndex(NAME);
+		Query query = new Query(graph).selectNodes(AttributePredicate.startsWith(NAME, "get").and(AttributePredicate.exists(SIZE)));
+		QueryProfile profile = query.explainAnalyze();
+		if(profile.getResult().nodes().size() != 2) {
+			fail("Query should select getX and getY, found " + profile.getResult().nodes().size());
+		}
+		boolean indexed = false;
+		for(String index : profile.getIndexes()) {
+			indexed |= index.startsWith("node attribute index");
+		}
+		if(!indexed) {
+			fail("Selection should use the attribute index, found " + profile.getIndexes());
+		}
+		if(profile.getNodesScanned() != 2) {
+			fail("Selection should only scan the 2 indexed candidates, found " + profile.getNodesScanned());
+		}
+		Query equivalent = new Query(graph).selectNodes(AttributePredicate.startsWith(NAME, "get").and(AttributePredicate.exists(SIZE)));
+		if(!query.getPlan().getParameters().equals(equivalent.getPlan().getParameters())) {
+			fail("Equivalent predicates should be equal");
+		}
+	}
+
+	@Test
+	public void testRandomPredicates() {
+		Random random = new Random(11);
+		for(int i = 0; i < 300; i++) {
+			Object size;
+			switch(random.nextInt(4)) {
+			case 0: size = random.nextInt(50); break;
+			case 1: size = (long) random.nextInt(50); break;
+			case 2: size = random.nextInt(500) / 10.0; break;
+			default: size = null;
+			}
+			node("n" + random.nextInt(100), size);
+		}
+		List<AttributePredicate> predicates = new ArrayList<AttributePredicate>();
+		for(int i = 0; i < 50; i++) {
+			int low = random.nextInt(50);
+			AttributePredicate predicate = AttributePredicate.between(SIZE, low, low + random.nextInt(20));
+			if(random.nextBoolean()) {
+				predicate = predicate.and(AttributePredicate.startsWith(NAME, "n" + random.nextInt(10)));
+			}
+			if(random.nextBoolean()) {
+				predicate = predicate.or(AttributePredicate.lessThan(SIZE, random.nextInt(10) + 0.5));
+			}
+			predicates.add(predicate);
+		}
+		List<GraphElementSet<Node>> scanned = new ArrayList<GraphElementSet<Node>>();
+		for(AttributePredicate predicate : predicates) {
+			scanned.add(graph.selectNodes(predicate));
+		}
+		graph.createNodeAttributeIndex(NAME);
+		graph.createNodeAttributeIndex(SIZE);
+		for(int i = 0; i < predicates.size(); i++) {
+			GraphElementSet<Node> indexed = graph.selectNodes(predicates.get(i));
+			if(indexed.size() != scanned.get(i).size() || !indexed.toStandardSet().containsAll(scanned.get(i).toStandardSet())) {
+				fail("Indexed selection of " + predicates.get(i) + " should match the scan");
+			}
+		}
+	}
+
+}
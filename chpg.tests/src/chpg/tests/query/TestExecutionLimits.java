@@ -0,0 +1,127 @@
+package chpg.tests.query;
+
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.ExecutionContext;
+import chpg.graph.ExecutionLimitException;
+import chpg.graph.ExecutionLimitException.Limit;
+import chpg.graph.Graph;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.algorithms.Paths;
+import chpg.graph.query.Query;
+import chpg.graph.schema.SchemaGraph;
+import chpg.tests.traversals.TestGraphForwardTraversals;
+
+public class TestExecutionLimits extends TestGraphForwardTraversals {
+
+	@Test
+	public void testWithinLimits() {
+		ExecutionContext context = new ExecutionContext();
+		context.setTimeout(1, TimeUnit.MINUTES);
+		context.setMaxResultSize(100);
+		Graph result = new Query(graph).forward(a).evaluate(context);
+		Graph expected = graph.forward(a);
+		if(result.nodes().size() != expected.nodes().size() || result.edges().size() != expected.edges().size()) {
+			fail("Evaluation within limits should produce the complete result");
+		}
+		if(ExecutionContext.current() != null) {
+			fail("Execution context should be removed after the evaluation");
+		}
+	}
+	
+	@Test
+	public void testCancellation() {
+		ExecutionContext context = new ExecutionContext();
+		context.cancel();
+		try {
+			new Query(graph).forward(a).evaluate(context);
+			fail("Evaluation of a cancelled query should stop");
+		} catch (ExecutionLimitException e) {
+			if(e.getLimit() != Limit.CANCELLED) {
+				fail("Evaluation should be cancelled, found " + e.getLimit());
+			}
+		}
+		if(ExecutionContext.current() != null) {
+			fail("Execution context should be removed after a cancelled evaluation");
+		}
+	}
+	
+	@Test
+	public void testDeadline() throws InterruptedException {
+		ExecutionContext context = new ExecutionContext();
+		context.setTimeout(0, TimeUnit.MILLISECONDS);
+		Thread.sleep(2);
+		try {
+			new Query(graph).forward(a).evaluate(context);
+			fail("Evaluation after the deadline should stop");
+		} catch (ExecutionLimitException e) {
+			if(e.getLimit() != Limit.DEADLINE) {
+				fail("Evaluation should exceed its deadline, found " + e.getLimit());
+			}
+			if(e.getElapsedTime() < 0) {
+				fail("Elapsed time should be non-negative, found " + e.getElapsedTime());
+			}
+		}
+	}
+	
+	@Test
+	public void testResultSize() {
+		ExecutionContext context = new ExecutionContext();
+		context.setMaxResultSize(3);
+		try {
+			new Query(graph).forward(a).evaluate(context);
+			fail("Evaluation exceeding the result size should stop");
+		} catch (ExecutionLimitException e) {
+			if(e.getLimit() != Limit.RESULT_SIZE) {
+				fail("Evaluation should exceed the result size, found " + e.getLimit());
+			}
+			if(e.getResultSize() <= 3) {
+				fail("Partial statistics should report a result larger than the limit, found " + e.getResultSize());
+			}
+		}
+	}
+	
+	@Test
+	public void testPathEnumerationBudget() {
+		// a ladder of 20 diamonds has 2^20 paths from the first to the last node
+		PropertyGraph ladder = new PropertyGraph(new SchemaGraph());
+		Node first = new Node();
+		ladder.add(first);
+		Node previous = first;
+		for(int i=0; i<20; i++) {
+			Node left = new Node();
+			Node right = new Node();
+			Node next = new Node();
+			ladder.add(left);
+			ladder.add(right);
+			ladder.add(next);
+			ladder.add(new Edge(previous, left));
+			ladder.add(new Edge(previous, right));
+			ladder.add(new Edge(left, next));
+			ladder.add(new Edge(right, next));
+			previous = next;
+		}
+		final Node last = previous;
+		ExecutionContext context = new ExecutionContext();
+		context.setMaxResultSize(100);
+		try {
+			List<List<Edge>> paths = context.execute(() -> Paths.enumeratePaths(ladder, first, last, true));
+			fail("Path enumeration should exceed the path budget, found " + paths.size() + " paths");
+		} catch (ExecutionLimitException e) {
+			if(e.getLimit() != Limit.RESULT_SIZE) {
+				fail("Path enumeration should exceed the result size, found " + e.getLimit());
+			}
+			if(e.getEdgesScanned() <= 0) {
+				fail("Partial statistics should report the scanned edges, found " + e.getEdgesScanned());
+			}
+		}
+	}
+	
+}
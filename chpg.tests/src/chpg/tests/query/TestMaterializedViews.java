@@ -0,0 +1,224 @@
+package chpg.tests.query;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.GraphElementSet;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.query.MaterializedView;
+import chpg.graph.query.Query;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestMaterializedViews {
+
+	private PropertyGraph graph;
+	private PropertyGraph other;
+	private Node a, b, c, d;
+
+	private Node node(PropertyGraph graph, String tag) {
+		Node node = new Node();
+		node.tags().add(tag);
+		graph.add(node);
+		return node;
+	}
+
+	private Edge edge(PropertyGraph graph, Node from, Node to, String tag) {
+		Edge edge = new Edge(from, to);
+		edge.tags().add(tag);
+		graph.add(edge);
+		return edge;
+	}
+
+	@Before
+	public void setUp() throws Exception {
+		graph = new PropertyGraph(new SchemaGraph());
+		other = new PropertyGraph(new SchemaGraph());
+		a = node(graph, "x");
+		b = node(graph, "y");
+		c = node(graph, "x");
+		d = node(graph, "y");
+		edge(graph, a, b, "call");
+		edge(graph, b, c, "call");
+		edge(graph, c, a, "call");
+		edge(graph, c, d, "data");
+		other.add(b);
+		other.add(c);
+	}
+
+	private static boolean same(GraphElementSet<?> expected, GraphElementSet<?> actual) {
+		return expected.size() == actual.size() && expected.toStandardCollection().containsAll(actual.toStandardCollection());
+	}
+
+	private static void check(MaterializedView view, Supplier<Query> query, String description) {
+		Graph expected = query.get().evaluate();
+		Graph actual = view.getResult();
+		if(!same(expected.nodes(), actual.nodes())) {
+			fail(description + ": view has nodes " + actual.nodes().size() + ", expected " + expected.nodes().size());
+		}
+		if(!same(expected.edges(), actual.edges())) {
+			fail(description + ": view has edges " + actual.edges().size() + ", expected " + expected.edges().size());
+		}
+	}
+
+	@Test
+	public void testSelection() {
+		Supplier<Query> query = () -> new Query(graph).edges("call");
+		MaterializedView view = query.get().materialize();
+		check(view, query, "initial");
+		Node e = node(graph, "x");
+		Edge edge = edge(graph, d, e, "call");
+		check(view, query, "added call");
+		graph.remove(edge);
+		check(view, query, "removed call");
+		graph.remove(c);
+		check(view, query, "removed node");
+		if(view.getRecomputations() != 0 || view.getRefreshes() != 0) {
+			fail("Selections should be maintained incrementally");
+		}
+		view.close();
+	}
+
+	@Test
+	public void testSetOperations() {
+		List<Supplier<Query>> queries = new ArrayList<Supplier<Query>>();
+		queries.add(() -> new Query(graph).nodes("x").union(new Query(other)));
+		queries.add(() -> new Query(graph).intersection(new Query(other)));
+		queries.add(() -> new Query(graph).difference(new Query(other)));
+		queries.add(() -> new Query(graph).differenceEdges(new Query(graph).edges("data")));
+		List<MaterializedView> views = new ArrayList<MaterializedView>();
+		for(Supplier<Query> query : queries) {
+			views.add(query.get().materialize());
+		}
+		Node e = node(graph, "x");
+		other.add(e);
+		edge(graph, e, a, "data");
+		other.remove(c);
+		other.add(a);
+		graph.remove(b);
+		edge(other, d, e, "call");
+		for(int i = 0; i < queries.size(); i++) {
+			check(views.get(i), queries.get(i), "query " + i);
+			if(views.get(i).getRecomputations() != 0) {
+				fail("Set operations should be maintained incrementally");
+			}
+			views.get(i).close();
+		}
+	}
+
+	@Test
+	public void testTraversal() {
+		Supplier<Query> forward = () -> new Query(graph).edges("call").forward(a);
+		Supplier<Query> reverse = () -> new Query(graph).reverse(new Query(graph).nodes("y"));
+		MaterializedView forwardView = forward.get().materialize();
+		MaterializedView reverseView = reverse.get().materialize();
+		check(forwardView, forward, "forward");
+		check(reverseView, reverse, "reverse");
+
+		// removing an edge of the cycle unreaches c, but a stays an origin
+		Edge bc = null;
+		for(Edge edge : graph.edges()) {
+			if(edge.from() == b && edge.to() == c) {
+				bc = edge;
+			}
+		}
+		graph.remove(bc);
+		check(forwardView, forward, "forward without b->c");
+		check(reverseView, reverse, "reverse without b->c");
+		edge(graph, a, c, "call");
+		check(forwardView, forward, "forward with a->c");
+		check(reverseView, reverse, "reverse with a->c");
+		node(graph, "y");
+		check(reverseView, reverse, "reverse with new origin");
+		if(forwardView.getRecomputations() != 0 || reverseView.getRecomputations() != 0) {
+			fail("Traversals should be maintained incrementally");
+		}
+		forwardView.close();
+		reverseView.close();
+	}
+
+	@Test
+	public void testRecomputation() {
+		Supplier<Query> query = () -> new Query(graph).edges("call").leaves().union(new Query(graph).nodes("y"));
+		MaterializedView view = query.get().materialize();
+		check(view, query, "initial");
+		Node e = node(graph, "x");
+		edge(graph, a, e, "call");
+		check(view, query, "added leaf");
+		if(view.getRecomputations() == 0) {
+			fail("Leaves should be recomputed");
+		}
+		view.close();
+		long updates = view.getIncrementalUpdates();
+		node(graph, "y");
+		if(view.getIncrementalUpdates() != updates) {
+			fail("Closed views should not be updated");
+		}
+	}
+
+	@Test
+	public void testDirectModification() {
+		Supplier<Query> query = () -> new Query(graph).nodes("x");
+		MaterializedView view = query.get().materialize();
+		Node e = new Node();
+		e.tags().add("x");
+		graph.nodes().add(e);
+		check(view, query, "direct modification");
+		if(view.getRefreshes() != 1) {
+			fail("Direct modifications should refresh the view");
+		}
+		view.close();
+	}
+
+	@Test
+	public void testRandomUpdates() {
+		Random random = new Random(7);
+		List<Node> nodes = new ArrayList<Node>();
+		for(Node node : graph.nodes()) {
+			nodes.add(node);
+		}
+		Supplier<Query> query = () -> new Query(graph).edges("call").forward(new Query(graph).nodes("x"))
+				.difference(new Query(other)).union(new Query(graph).edges("data"));
+		MaterializedView view = query.get().materialize();
+		for(int i = 0; i < 200; i++) {
+			int action = random.nextInt(5);
+			if(action == 0 || nodes.size() < 2) {
+				nodes.add(node(random.nextBoolean() ? graph : other, random.nextBoolean() ? "x" : "y"));
+			} else if(action == 1) {
+				Node from = nodes.get(random.nextInt(nodes.size()));
+				Node to = nodes.get(random.nextInt(nodes.size()));
+				edge(graph, from, to, random.nextInt(3) == 0 ? "data" : "call");
+			} else if(action == 2 && !graph.edges().isEmpty()) {
+				List<Edge> edges = new ArrayList<Edge>();
+				for(Edge edge : graph.edges()) {
+					edges.add(edge);
+				}
+				graph.remove(edges.get(random.nextInt(edges.size())));
+			} else if(action == 3) {
+				graph.remove(nodes.get(random.nextInt(nodes.size())));
+			} else {
+				Node node = nodes.get(random.nextInt(nodes.size()));
+				if(other.nodes().contains(node)) {
+					other.remove(node);
+				} else {
+					other.add(node);
+				}
+			}
+			check(view, query, "update " + i);
+		}
+		if(view.getRefreshes() != 0) {
+			fail("Updates through the graph should not refresh the view");
+		}
+		view.close();
+	}
+
+}
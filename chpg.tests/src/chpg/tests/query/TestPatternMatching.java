@@ -0,0 +1,209 @@
+package chpg.tests.query;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.query.Query;
+import chpg.graph.query.pattern.Match;
+import chpg.graph.query.pattern.Pattern;
+import chpg.graph.query.pattern.PatternMatcher;
+import chpg.graph.query.pattern.PatternNode;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestPatternMatching {
+
+	private static final String NAME = "name";
+	
+	private PropertyGraph graph;
+	private Node y1, y2, z, m1, m2, m3, m4, x;
+	
+	private Node node(String name, String tag) {
+		Node node = new Node();
+		node.putAttr(NAME, name);
+		node.tags().add(tag);
+		graph.add(node);
+		return node;
+	}
+	
+	private Edge edge(Node from, Node to, String tag) {
+		Edge edge = new Edge(from, to);
+		edge.tags().add(tag);
+		graph.add(edge);
+		return edge;
+	}
+	
+	@Before
+	public void setUp() throws Exception {
+		graph = new PropertyGraph(new SchemaGraph());
+		y1 = node("Y1", "Y");
+		y2 = node("Y2", "Y");
+		z = node("Z", "Z");
+		m1 = node("m1", "method");
+		m2 = node("m2", "method");
+		m3 = node("m3", "method");
+		m4 = node("m4", "method");
+		x = node("X", "method");
+		edge(y1, m1, "contains");
+		edge(y1, m2, "contains");
+		edge(y2, m3, "contains");
+		edge(z, m4, "contains");
+		edge(z, x, "contains");
+		edge(m1, x, "call");
+		edge(m3, x, "call");
+		edge(m3, x, "call");
+		edge(m4, x, "call");
+		edge(m2, m3, "call");
+	}
+	
+	private Pattern callerPattern() {
+		Pattern pattern = new Pattern();
+		PatternNode type = pattern.node("type").tagged("Y");
+		PatternNode method = pattern.node("method").tagged("method");
+		PatternNode callee = pattern.node("callee").attribute(NAME, "X");
+		pattern.edge(type, method).tagged("contains");
+		pattern.edge(method, callee).tagged("call");
+		return pattern;
+	}
+	
+	@Test
+	public void testMatches() {
+		Pattern pattern = callerPattern();
+		List<Match> matches = new ArrayList<Match>();
+		new PatternMatcher(graph).matches(pattern).forEach(matches::add);
+		// m3 calls X twice, so it matches once for each call edge
+		if(matches.size() != 3) {
+			fail("Pattern should have 3 matches, found " + matches);
+		}
+		for(Match match : matches) {
+			Node method = match.getNode("method");
+			if(method != m1 && method != m3) {
+				fail("Only m1 and m3 are methods of a Y calling X, found " + method.getAttr(NAME));
+			}
+			if(match.getNode("callee") != x) {
+				fail("Callee should be X, found " + match.getNode("callee").getAttr(NAME));
+			}
+			Edge call = match.getEdge(pattern.getEdges().get(1));
+			if(call.from() != method || call.to() != x) {
+				fail("Call edge should connect the matched method and callee");
+			}
+		}
+	}
+	
+	@Test
+	public void testQueryMatch() {
+		Graph result = new Query(graph).match(callerPattern()).evaluate();
+		if(result.nodes().size() != 5) {
+			fail("Match should select 5 nodes, found " + result.nodes().size());
+		}
+		if(result.edges().size() != 5) {
+			fail("Match should select 5 edges, found " + result.edges().size());
+		}
+		if(result.nodes().contains(m2) || result.nodes().contains(m4) || result.nodes().contains(z)) {
+			fail("Match should not select m2, m4 or Z");
+		}
+		if(!new Query(graph).matches(callerPattern()).findFirst().isPresent()) {
+			fail("Match stream should produce a first match");
+		}
+	}
+	
+	@Test
+	public void testInjectivity() {
+		PropertyGraph loop = new PropertyGraph(new SchemaGraph());
+		Node n = new Node();
+		loop.add(n);
+		loop.add(new Edge(n, n));
+		Pattern pattern = new Pattern();
+		PatternNode a = pattern.node("a");
+		PatternNode b = pattern.node("b");
+		pattern.edge(a, b);
+		if(new PatternMatcher(loop).matches(pattern).count() != 0) {
+			fail("Injective pattern should not match a self loop");
+		}
+		pattern.setInjective(false);
+		if(new PatternMatcher(loop).matches(pattern).count() != 1) {
+			fail("Non-injective pattern should match a self loop once");
+		}
+	}
+	
+	@Test
+	public void testRandomPatterns() {
+		Random random = new Random(42);
+		for(int trial = 0; trial < 20; trial++) {
+			PropertyGraph random_graph = new PropertyGraph(new SchemaGraph());
+			Node[] nodes = new Node[8];
+			for(int i = 0; i < nodes.length; i++) {
+				nodes[i] = new Node();
+				nodes[i].tags().add(random.nextBoolean() ? "A" : "B");
+				random_graph.add(nodes[i]);
+			}
+			for(int i = 0; i < 18; i++) {
+				random_graph.add(new Edge(nodes[random.nextInt(nodes.length)], nodes[random.nextInt(nodes.length)]));
+			}
+			// a path or triangle of three variables without parallel pattern edges
+			Pattern pattern = new Pattern();
+			PatternNode[] variables = new PatternNode[3];
+			for(int i = 0; i < variables.length; i++) {
+				variables[i] = pattern.node("v" + i);
+				if(random.nextBoolean()) {
+					variables[i].tagged(random.nextBoolean() ? "A" : "B");
+				}
+			}
+			int[][] pairs = { {0, 1}, {1, 2}, {2, 0} };
+			int edgeCount = 2 + random.nextInt(2);
+			for(int i = 0; i < edgeCount; i++) {
+				pattern.edge(variables[pairs[i][0]], variables[pairs[i][1]]);
+			}
+			
+			long expected = 0;
+			for(Node a : nodes) {
+				for(Node b : nodes) {
+					for(Node c : nodes) {
+						if(a == b || b == c || a == c) {
+							continue;
+						}
+						Node[] binding = { a, b, c };
+						boolean accepted = true;
+						for(int i = 0; i < variables.length; i++) {
+							for(String tag : variables[i].getTags()) {
+								accepted &= binding[i].tags().contains(tag);
+							}
+						}
+						if(!accepted) {
+							continue;
+						}
+						long product = 1;
+						for(int i = 0; i < edgeCount; i++) {
+							product *= count(random_graph, binding[pairs[i][0]], binding[pairs[i][1]]);
+						}
+						expected += product;
+					}
+				}
+			}
+			long actual = new PatternMatcher(random_graph).matches(pattern).count();
+			if(actual != expected) {
+				fail("Trial " + trial + " " + pattern + " should have " + expected + " matches, found " + actual);
+			}
+		}
+	}
+	
+	private static long count(Graph graph, Node from, Node to) {
+		long count = 0;
+		for(Edge edge : graph.edges()) {
+			if(edge.from() == from && edge.to() == to) {
+				count++;
+			}
+		}
+		return count;
+	}
+	
+}
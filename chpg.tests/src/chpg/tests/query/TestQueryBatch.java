@@ -0,0 +1,85 @@
+package chpg.tests.query;
+
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import chpg.graph.Graph;
+import chpg.graph.query.Query;
+import chpg.graph.query.QueryBatch;
+import chpg.tests.traversals.TestGraphForwardTraversals;
+
+public class TestQueryBatch extends TestGraphForwardTraversals {
+
+	private static void inspectResult(String description, Graph expected, Graph actual) {
+		if(expected.nodes().size() != actual.nodes().size() || !expected.nodes().containsAll(actual.nodes())) {
+			fail(description + " should have nodes " + expected.nodes() + ", found " + actual.nodes());
+		}
+		if(expected.edges().size() != actual.edges().size() || !expected.edges().containsAll(actual.edges())) {
+			fail(description + " should have edges " + expected.edges() + ", found " + actual.edges());
+		}
+	}
+	
+	private Query[] queries() {
+		return new Query[] {
+			new Query(graph).forward(b),
+			new Query(graph).forward(b).reverse(d),
+			new Query(graph).forward(b).selectNodes(NAME, "c"),
+			new Query(graph).reverse(d).selectNodes(NAME, "c")
+		};
+	}
+	
+	private void inspectBatch(QueryBatch batch) {
+		Query[] queries = queries();
+		batch.addAll(queries);
+		List<Graph> results = batch.evaluate();
+		Query[] expected = queries();
+		for(int i=0; i<expected.length; i++) {
+			inspectResult("Query " + i, expected[i].evaluate(), results.get(i));
+			if(queries[i].evaluate() != results.get(i)) {
+				fail("Query " + i + " should retain its batch result");
+			}
+		}
+		if(batch.getOperatorCount() != 11) {
+			fail("Batch should have 11 operators, found " + batch.getOperatorCount());
+		}
+		// graph, forward(b), reverse(d) of forward, selectNodes of forward, reverse(d) of graph, selectNodes of reverse
+		if(batch.getEvaluatedOperatorCount() != 6) {
+			fail("Batch should evaluate 6 distinct operators, found " + batch.getEvaluatedOperatorCount());
+		}
+	}
+	
+	@Test
+	public void testSharedSubplans() {
+		inspectBatch(new QueryBatch());
+	}
+	
+	@Test
+	public void testThreadPool() {
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			inspectBatch(new QueryBatch(executor));
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testSharedResults() {
+		QueryBatch batch = new QueryBatch();
+		int first = batch.add(new Query(graph).forward(a));
+		int second = batch.add(new Query(graph).forward(a));
+		List<Graph> results = batch.evaluate();
+		if(results.get(first) != results.get(second)) {
+			fail("Equivalent queries should share their result");
+		}
+		if(batch.getEvaluatedOperatorCount() != 2) {
+			fail("Batch should evaluate 2 distinct operators, found " + batch.getEvaluatedOperatorCount());
+		}
+	}
+	
+}
@@ -0,0 +1,161 @@
+package chpg.tests.query;
+
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.Node;
+import chpg.graph.query.Query;
+import chpg.graph.query.QueryCache;
+import chpg.graph.query.language.QueryEngine;
+import chpg.tests.traversals.TestGraphForwardTraversals;
+
+public class TestQueryCache extends TestGraphForwardTraversals {
+
+	private QueryCache cache;
+	
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		cache = new QueryCache();
+	}
+	
+	private void inspectStatistics(String description, long hits, long misses, long evictions, long invalidations) {
+		QueryCache.Statistics statistics = cache.getStatistics();
+		if(statistics.getHits() != hits) {
+			fail(description + " should have " + hits + " hits, found " + statistics);
+		}
+		if(statistics.getMisses() != misses) {
+			fail(description + " should have " + misses + " misses, found " + statistics);
+		}
+		if(statistics.getEvictions() != evictions) {
+			fail(description + " should have " + evictions + " evictions, found " + statistics);
+		}
+		if(statistics.getInvalidations() != invalidations) {
+			fail(description + " should have " + invalidations + " invalidations, found " + statistics);
+		}
+	}
+	
+	@Test
+	public void testEquivalentQueriesHit() {
+		Graph first = new Query(graph).forward(a).selectNodes(NAME, "d").evaluate(cache);
+		Graph second = new Query(graph).forward(a).selectNodes(NAME, "d").evaluate(cache);
+		if(first != second) {
+			fail("Equivalent queries should share a cached result");
+		}
+		if(first.nodes().size() != 1 || !first.nodes().contains(d)) {
+			fail("Cached result should include d");
+		}
+		inspectStatistics("Two equivalent queries", 1, 1, 0, 0);
+	}
+	
+	@Test
+	public void testDifferentQueriesMiss() {
+		new Query(graph).forward(a).evaluate(cache);
+		new Query(graph).forward(b).evaluate(cache);
+		new Query(graph).reverse(a).evaluate(cache);
+		inspectStatistics("Three different queries", 0, 3, 0, 0);
+	}
+	
+	@Test
+	public void testAllElementsAndNoTagsMiss() {
+		Query universe = new Query(graph);
+		if(universe.nodes().evaluate(cache).nodes().size() != graph.nodes().size()) {
+			fail("nodes() should select all nodes");
+		}
+		if(!universe.nodes(new String[0]).evaluate(cache).nodes().isEmpty()) {
+			fail("nodes() with no tags should select no nodes after nodes() is cached");
+		}
+		if(universe.edges().evaluate(cache).edges().size() != graph.edges().size()) {
+			fail("edges() should select all edges");
+		}
+		if(!universe.edges(new String[0]).evaluate(cache).edges().isEmpty()) {
+			fail("edges() with no tags should select no edges after edges() is cached");
+		}
+		inspectStatistics("All elements and elements with no tags", 0, 4, 0, 0);
+	}
+	
+	@Test
+	public void testAllNodesAndNoTagsMissInQueryLanguage() {
+		QueryEngine engine = new QueryEngine(cache, QueryEngine.DEFAULT_MAX_STATEMENTS);
+		engine.setGraph("universe", graph);
+		if(engine.execute("universe.nodes()").nodes().size() != graph.nodes().size()) {
+			fail("universe.nodes() should select all nodes");
+		}
+		if(!engine.execute("universe.nodes($t)", "t", new String[0]).nodes().isEmpty()) {
+			fail("universe.nodes($t) with no tags should select no nodes after universe.nodes() is cached");
+		}
+	}
+	
+	@Test
+	public void testMutationInvalidates() {
+		Query query = new Query(graph).forward(d);
+		query.evaluate(cache);
+		Node h = new Node();
+		graph.add(h);
+		graph.add(new Edge(g, h));
+		Graph result = query.evaluate(cache);
+		if(!result.nodes().contains(h)) {
+			fail("Forward from d should include h after h is added");
+		}
+		inspectStatistics("Query after mutation", 0, 2, 0, 1);
+	}
+	
+	@Test
+	public void testPropertyChangeInvalidates() {
+		Query query = new Query(graph).nodes("marked");
+		if(!query.evaluate(cache).nodes().isEmpty()) {
+			fail("No node should be marked yet");
+		}
+		d.tags().add("marked");
+		if(!query.evaluate(cache).nodes().contains(d)) {
+			fail("d should be selected after it is tagged");
+		}
+		Query selection = new Query(graph).selectNodes(NAME, "renamed");
+		selection.evaluate(cache);
+		d.putAttr(NAME, "renamed");
+		if(!selection.evaluate(cache).nodes().contains(d)) {
+			fail("d should be selected after its attribute changes");
+		}
+		inspectStatistics("Queries after property changes", 0, 4, 0, 2);
+	}
+	
+	@Test
+	public void testExplicitInvalidation() {
+		new Query(graph).forward(d).evaluate(cache);
+		cache.invalidate(graph);
+		new Query(graph).forward(d).evaluate(cache);
+		inspectStatistics("Query after invalidation", 0, 2, 0, 1);
+	}
+	
+	@Test
+	public void testLeastRecentlyUsedEviction() {
+		cache = new QueryCache(2, QueryCache.DEFAULT_MAX_BYTES);
+		new Query(graph).forward(a).evaluate(cache);
+		new Query(graph).forward(b).evaluate(cache);
+		new Query(graph).forward(a).evaluate(cache);
+		new Query(graph).forward(c).evaluate(cache);
+		// b was least recently used
+		new Query(graph).forward(a).evaluate(cache);
+		new Query(graph).forward(b).evaluate(cache);
+		inspectStatistics("Queries exceeding two entries", 2, 4, 2, 0);
+		if(cache.getStatistics().getEntries() != 2) {
+			fail("Cache should be limited to 2 entries");
+		}
+	}
+	
+	@Test
+	public void testMemoryBudget() {
+		cache = new QueryCache(QueryCache.DEFAULT_MAX_ENTRIES, 1);
+		new Query(graph).forward(a).evaluate(cache);
+		new Query(graph).forward(a).evaluate(cache);
+		inspectStatistics("Queries exceeding the memory budget", 0, 2, 0, 0);
+		if(cache.getStatistics().getBytes() != 0) {
+			fail("Cache should not retain results larger than the memory budget");
+		}
+	}
+
+}
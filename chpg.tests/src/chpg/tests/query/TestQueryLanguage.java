@@ -0,0 +1,132 @@
+package chpg.tests.query;
+
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import chpg.graph.Graph;
+import chpg.graph.GraphElement;
+import chpg.graph.GraphElementSet;
+import chpg.graph.Node;
+import chpg.graph.query.Query;
+import chpg.graph.query.language.PreparedStatement;
+import chpg.graph.query.language.QueryEngine;
+import chpg.graph.query.language.QuerySyntaxException;
+import chpg.tests.traversals.TestGraphForwardTraversals;
+
+public class TestQueryLanguage extends TestGraphForwardTraversals {
+
+	private QueryEngine engine;
+	
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+		engine = new QueryEngine();
+		engine.setGraph("universe", graph);
+	}
+	
+	private static <E extends GraphElement> void inspectSet(String description, GraphElementSet<E> expected, GraphElementSet<E> actual) {
+		if(expected.size() != actual.size()) {
+			fail(description + " should have " + expected.size() + " elements, found " + actual.size());
+		}
+		for(E element : expected) {
+			if(!actual.contains(element)) {
+				fail(description + " is missing " + element.getAttr(NAME));
+			}
+		}
+	}
+	
+	private void inspectResult(String query, Graph expected, Graph actual) {
+		inspectSet(query + " nodes", expected.nodes(), actual.nodes());
+		inspectSet(query + " edges", expected.edges(), actual.edges());
+	}
+	
+	@Test
+	public void testTraversals() {
+		Query universe = new Query(graph);
+		inspectResult("forward", universe.forward(b).evaluate(), engine.execute("universe.forward($origin)", "origin", b));
+		inspectResult("reverse", universe.reverse(d).evaluate(), engine.execute("universe.reverse($origin)", "origin", d));
+		inspectResult("bounded forward", universe.forward(a).evaluate(), engine.execute("universe.forward($origin, 10)", "origin", a));
+		inspectResult("successors", universe.successors(c).evaluate(), engine.execute("universe.successors($origin)", "origin", c));
+		inspectResult("between", universe.between(a, d).evaluate(), engine.execute("universe.between($from, $to)", "from", a, "to", d));
+	}
+	
+	@Test
+	public void testSelections() {
+		Query universe = new Query(graph);
+		inspectResult("selectNodes", universe.selectNodes(NAME, "a", "b").evaluate(), engine.execute("universe.selectNodes('name', 'a', \"b\")"));
+		inspectResult("nested origin", universe.forward(universe.selectNodes(NAME, "d")).evaluate(), 
+				engine.execute("universe.forward(universe.selectNodes('name', 'd')) // comment"));
+		inspectResult("leaves", universe.leaves().evaluate(), engine.execute("universe.leaves()"));
+	}
+	
+	@Test
+	public void testSetOperators() {
+		Query universe = new Query(graph);
+		Query forward = universe.forward(c);
+		Query reverse = universe.reverse(c);
+		inspectResult("union", forward.union(reverse).evaluate(), engine.execute("universe.forward($c) + universe.reverse($c)", "c", c));
+		inspectResult("difference", forward.difference(reverse).evaluate(), engine.execute("universe.forward($c) - universe.reverse($c)", "c", c));
+		inspectResult("intersection", forward.intersection(reverse).evaluate(), engine.execute("universe.forward($c) & universe.reverse($c)", "c", c));
+		inspectResult("precedence", universe.forward(a).difference(forward.intersection(reverse)).evaluate(), 
+				engine.execute("universe.forward($a) - universe.forward($c) & universe.reverse($c)", "a", a, "c", c));
+		inspectResult("grouping", universe.forward(a).difference(forward).intersection(reverse).evaluate(), 
+				engine.execute("(universe.forward($a) - universe.forward($c)) & universe.reverse($c)", "a", a, "c", c));
+	}
+	
+	@Test
+	public void testSyntaxErrors() {
+		try {
+			engine.prepare("universe.forward(");
+			fail("Unterminated argument list should be a syntax error");
+		} catch (QuerySyntaxException e) {
+			if(e.getPosition() != 17) {
+				fail("Syntax error should be at position 17, found " + e.getPosition());
+			}
+		}
+		try {
+			engine.prepare("universe.sideways($origin)");
+			fail("Unknown operator should be a syntax error");
+		} catch (QuerySyntaxException e) {
+			// expected
+		}
+		try {
+			engine.prepare("universe.between($origin)");
+			fail("Missing argument should be a syntax error");
+		} catch (QuerySyntaxException e) {
+			// expected
+		}
+		try {
+			engine.execute("galaxy.nodes()");
+			fail("Unbound graph should be an error");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			engine.execute("universe.forward($origin)");
+			fail("Unbound parameter should be an error");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testPreparedStatements() {
+		PreparedStatement statement = engine.prepare("universe.forward($origin)");
+		if(engine.prepare("universe.forward($origin)") != statement) {
+			fail("Prepared statements should be reused for the same query text");
+		}
+		if(engine.getPreparedStatementCount() != 1) {
+			fail("Engine should cache 1 prepared statement, found " + engine.getPreparedStatementCount());
+		}
+		if(!statement.getParameterNames().contains("origin") || statement.getParameterNames().size() != 1) {
+			fail("Prepared statement should have the parameter origin, found " + statement.getParameterNames());
+		}
+		Query universe = new Query(graph);
+		for(Node origin : new Node[]{ a, d, f }) {
+			inspectResult("forward " + origin.getAttr(NAME), universe.forward(origin).evaluate(), statement.execute("origin", origin));
+		}
+	}
+	
+}
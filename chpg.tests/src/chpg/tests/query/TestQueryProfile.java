@@ -0,0 +1,83 @@
+package chpg.tests.query;
+
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+
+import chpg.graph.Graph;
+import chpg.graph.query.Query;
+import chpg.graph.query.QueryProfile;
+import chpg.tests.traversals.TestGraphForwardTraversals;
+
+public class TestQueryProfile extends TestGraphForwardTraversals {
+
+	@Test
+	public void testExplain() {
+		Query query = new Query(graph).forward(new Query(graph).selectNodes(NAME, "c"));
+		String explanation = query.explain();
+		String[] lines = explanation.trim().split("\\R");
+		if(lines.length != 4) {
+			fail("Explanation should have 4 operators, found:\n" + explanation);
+		}
+		if(!lines[0].startsWith("forward")) {
+			fail("Explanation should start with the forward operator, found:\n" + explanation);
+		}
+		if(!lines[2].trim().startsWith("selectNodes(\"name\", [\"c\"])")) {
+			fail("Explanation should show the selection parameters, found:\n" + explanation);
+		}
+	}
+	
+	@Test
+	public void testAnalyze() {
+		Query query = new Query(graph).forward(new Query(graph).selectNodes(NAME, "c"));
+		Graph expected = graph.forward(c);
+		QueryProfile profile = query.explainAnalyze();
+		
+		if(profile.getResult().nodes().size() != expected.nodes().size() || profile.getResult().edges().size() != expected.edges().size()) {
+			fail("Profiled result should match the evaluated result");
+		}
+		if(profile.getElementsOut() != expected.nodes().size() + expected.edges().size()) {
+			fail("Forward should output " + (expected.nodes().size() + expected.edges().size()) + " elements, found " + profile.getElementsOut());
+		}
+		long universe = graph.nodes().size() + graph.edges().size();
+		if(profile.getElementsIn() != universe + 1) {
+			fail("Forward should input " + (universe + 1) + " elements, found " + profile.getElementsIn());
+		}
+		if(profile.getEdgesScanned() <= 0) {
+			fail("Forward should scan edges, found " + profile.getEdgesScanned());
+		}
+		boolean adjacency = false;
+		for(String index : profile.getIndexes()) {
+			adjacency |= index.startsWith("adjacency index");
+		}
+		if(!adjacency) {
+			fail("Forward should use the adjacency index, found " + profile.getIndexes());
+		}
+		QueryProfile selection = profile.getInputs().get(1);
+		if(selection.getNodesScanned() != graph.nodes().size()) {
+			fail("Selection should scan " + graph.nodes().size() + " nodes, found " + selection.getNodesScanned());
+		}
+		if(selection.getElementsOut() != 1) {
+			fail("Selection should output 1 element, found " + selection.getElementsOut());
+		}
+		if(profile.getTotalTime() < profile.getTime()) {
+			fail("Total time should include the operator time");
+		}
+		if(profile.toString().trim().split("\\R").length != 4) {
+			fail("Profile should have 4 operators, found:\n" + profile);
+		}
+	}
+	
+	@Test
+	public void testAnalyzeRetainsResult() {
+		Query query = new Query(graph).reverse(d);
+		QueryProfile profile = query.explainAnalyze();
+		if(query.evaluate() != profile.getResult()) {
+			fail("Evaluating an analyzed query should reuse the profiled result");
+		}
+		if(!query.explain().contains("[retained]")) {
+			fail("Explanation should show the retained result, found:\n" + query.explain());
+		}
+	}
+	
+}
@@ -0,0 +1,158 @@
+package chpg.tests.query;
+
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.Node;
+import chpg.graph.PathExpression;
+import chpg.graph.PropertyGraph;
+import chpg.graph.query.Query;
+import chpg.graph.query.language.QueryEngine;
+import chpg.graph.schema.SchemaEdge;
+import chpg.graph.schema.SchemaGraph;
+import chpg.graph.schema.SchemaNode;
+
+public class TestRegularPathQueries {
+
+	private PropertyGraph graph;
+	private Node a, b, c, d, e, f;
+	private Edge ab, bc, cd, ad, de, ef, fa;
+	
+	private Node node() {
+		Node node = new Node();
+		graph.add(node);
+		return node;
+	}
+	
+	private Edge edge(Node from, Node to, String tag) {
+		Edge edge = new Edge(from, to);
+		edge.tags().add(tag);
+		graph.add(edge);
+		return edge;
+	}
+	
+	@Before
+	public void setUp() throws Exception {
+		graph = new PropertyGraph(new SchemaGraph());
+		a = node();
+		b = node();
+		c = node();
+		d = node();
+		e = node();
+		f = node();
+		ab = edge(a, b, "call");
+		bc = edge(b, c, "override");
+		cd = edge(c, d, "dataflow");
+		ad = edge(a, d, "call");
+		de = edge(d, e, "dataflow");
+		ef = edge(e, f, "call");
+		fa = edge(f, a, "dataflow");
+	}
+	
+	private static boolean sameElements(Graph graph, Node[] nodes, Edge[] edges) {
+		if(graph.nodes().size() != nodes.length || graph.edges().size() != edges.length) {
+			return false;
+		}
+		for(Node node : nodes) {
+			if(!graph.nodes().contains(node)) {
+				return false;
+			}
+		}
+		for(Edge edge : edges) {
+			if(!graph.edges().contains(edge)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	@Test
+	public void testParse() {
+		PathExpression expression = PathExpression.parse("(call|override)* / dataflow");
+		if(!expression.toString().equals("(call | override)* dataflow")) {
+			fail("Unexpected canonical form " + expression);
+		}
+		if(!expression.equals(PathExpression.tag("call").or(PathExpression.tag("override")).star().then(PathExpression.tag("dataflow")))) {
+			fail("Parsed and constructed expressions should be equal");
+		}
+		if(!PathExpression.parse("^(a b+)").toString().equals("^b+ ^a")) {
+			fail("Inverse should reverse the sequence, found " + PathExpression.parse("^(a b+)"));
+		}
+		for(String malformed : new String[] { "", "(call", "call |", "*", "\"call" }) {
+			try {
+				PathExpression.parse(malformed);
+				fail("Expression " + malformed + " should be rejected");
+			} catch (IllegalArgumentException expected) {
+				// expected
+			}
+		}
+	}
+	
+	@Test
+	public void testRegularPaths() {
+		PathExpression expression = PathExpression.parse("(call | override)* dataflow");
+		Graph result = graph.regularPaths(graph.toGraph(a), expression);
+		// a-call->b-override->c-dataflow->d and a-call->d-dataflow->e
+		if(!sameElements(result, new Node[] { a, b, c, d, e }, new Edge[] { ab, bc, cd, ad, de })) {
+			fail("Unexpected regular path result " + result.nodes().size() + " nodes, " + result.edges().size() + " edges");
+		}
+		Graph bounded = graph.regularPaths(graph.toGraph(a), expression, 2);
+		if(!sameElements(bounded, new Node[] { a, d, e }, new Edge[] { ad, de })) {
+			fail("Bounded regular paths should only contain a-d-e");
+		}
+		Graph none = graph.regularPaths(graph.toGraph(b), PathExpression.parse("call"));
+		if(!sameElements(none, new Node[] { b }, new Edge[] {})) {
+			fail("Without a matching path only the origin should be selected");
+		}
+	}
+	
+	@Test
+	public void testCyclesAndInverse() {
+		// the whole cycle a-d-e-f-a matches (call dataflow)+, including the return to a
+		Graph cycle = graph.regularPaths(graph.toGraph(a), PathExpression.parse("(call dataflow)+"));
+		if(!sameElements(cycle, new Node[] { a, d, e, f }, new Edge[] { ad, de, ef, fa })) {
+			fail("Repetition should follow the cycle");
+		}
+		Graph callers = graph.regularPaths(graph.toGraph(d), PathExpression.parse("^call"));
+		if(!sameElements(callers, new Node[] { a, d }, new Edge[] { ad })) {
+			fail("Inverse edges should lead from d back to a");
+		}
+		Graph any = graph.regularPaths(graph.toGraph(e), PathExpression.parse("_ _"));
+		if(!sameElements(any, new Node[] { e, f, a }, new Edge[] { ef, fa })) {
+			fail("Wildcards should match any two edges");
+		}
+	}
+	
+	@Test
+	public void testTagHierarchy() {
+		// virtual edges are a kind of call edge
+		SchemaNode call = new SchemaNode("call");
+		SchemaNode subtag = new SchemaNode("virtual");
+		graph.getSchema().add(new SchemaEdge(call, subtag));
+		Edge virtual = edge(c, e, "virtual");
+		Graph result = graph.regularPaths(graph.toGraph(c), PathExpression.parse("call"));
+		if(!sameElements(result, new Node[] { c, e }, new Edge[] { virtual })) {
+			fail("Edges tagged with a subtag should match the tag");
+		}
+	}
+	
+	@Test
+	public void testQuery() {
+		PathExpression expression = PathExpression.parse("(call | override)* dataflow");
+		Graph result = new Query(graph).regularPaths(new Query(graph.toGraph(a)), expression).evaluate();
+		if(!sameElements(result, new Node[] { a, b, c, d, e }, new Edge[] { ab, bc, cd, ad, de })) {
+			fail("Query should select the same subgraph as the graph");
+		}
+		QueryEngine engine = new QueryEngine();
+		engine.setGraph("universe", graph);
+		Graph language = engine.execute("universe.regularPaths($origin, \"(call | override)* dataflow\", 2)", "origin", a);
+		if(!sameElements(language, new Node[] { a, d, e }, new Edge[] { ad, de })) {
+			fail("Query language should evaluate bounded regular paths");
+		}
+	}
+	
+}
@@ -0,0 +1,252 @@
+package chpg.tests.query;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+import chpg.graph.index.AdjacencyIndex;
+import chpg.graph.index.ShortestPaths;
+import chpg.graph.query.Query;
+import chpg.graph.query.language.QueryEngine;
+import chpg.graph.schema.SchemaGraph;
+
+public class TestShortestPaths {
+
+	private static final String WEIGHT = "weight";
+
+	private static Edge edge(PropertyGraph graph, Node from, Node to, String tag, int weight) {
+		Edge edge = new Edge(from, to);
+		edge.tags().add(tag);
+		edge.putAttr(WEIGHT, weight);
+		graph.add(edge);
+		return edge;
+	}
+
+	private static List<Node> nodes(PropertyGraph graph, int size) {
+		List<Node> nodes = new ArrayList<Node>();
+		for(int i = 0; i < size; i++) {
+			Node node = new Node();
+			graph.add(node);
+			nodes.add(node);
+		}
+		return nodes;
+	}
+
+	/**
+	 * Computes all distances from the given node with Bellman-Ford relaxation
+	 */
+	private static double[] distances(AdjacencyIndex index, int source, boolean weighted, String tag) {
+		double[] distances = new double[index.nodeCount()];
+		Arrays.fill(distances, Double.POSITIVE_INFINITY);
+		distances[source] = 0;
+		for(int round = 0; round < index.nodeCount(); round++) {
+			for(int e = 0; e < index.edgeCount(); e++) {
+				Edge edge = index.getEdge(e);
+				if(tag != null && !edge.tags().contains(tag)) {
+					continue;
+				}
+				double weight = weighted ? ((Integer) edge.getAttr(WEIGHT)) : 1;
+				distances[index.to(e)] = Math.min(distances[index.to(e)], distances[index.from(e)] + weight);
+			}
+		}
+		return distances;
+	}
+
+	private static void checkPath(AdjacencyIndex index, ShortestPaths.Result result, int source, int target, double distance, boolean weighted, String step) {
+		if(result.isFound() != (distance != Double.POSITIVE_INFINITY)) {
+			fail(step + ": expected " + (result.isFound() ? "no path" : "a path"));
+		}
+		if(!result.isFound()) {
+			return;
+		}
+		if(result.getDistance() != distance) {
+			fail(step + ": expected distance " + distance + " but found " + result.getDistance());
+		}
+		int node = source;
+		double length = 0;
+		for(int edge : result.getPath()) {
+			if(index.from(edge) != node) {
+				fail(step + ": path edges should be consecutive");
+			}
+			length += weighted ? (Integer) index.getEdge(edge).getAttr(WEIGHT) : 1;
+			node = index.to(edge);
+		}
+		if(node != target || result.getSource() != source || result.getTarget() != target) {
+			fail(step + ": path should lead from the source to the target");
+		}
+		if(length != distance) {
+			fail(step + ": path length " + length + " should be the distance " + distance);
+		}
+	}
+
+	@Test
+	public void testSearchesAgreeOnRandomGraphs() {
+		Random random = new Random(3);
+		ShortestPaths.Heuristic zero = (node, target) -> 0;
+		for(int round = 0; round < 60; round++) {
+			PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+			List<Node> nodes = nodes(graph, 2 + random.nextInt(30));
+			int edges = random.nextInt(nodes.size() * 3);
+			for(int i = 0; i < edges; i++) {
+				edge(graph, nodes.get(random.nextInt(nodes.size())), nodes.get(random.nextInt(nodes.size())), random.nextBoolean() ? "a" : "b", random.nextInt(10));
+			}
+			AdjacencyIndex index = AdjacencyIndex.of(graph);
+			String tag = round % 3 == 0 ? "a" : null;
+			ShortestPaths unweighted = new ShortestPaths(index, tag == null ? null : edge -> edge.tags().contains(tag), null);
+			ShortestPaths weighted = new ShortestPaths(index, tag == null ? null : edge -> edge.tags().contains(tag), WEIGHT);
+			for(int source = 0; source < index.nodeCount(); source++) {
+				double[] hops = distances(index, source, false, tag);
+				double[] weights = distances(index, source, true, tag);
+				for(int target = 0; target < index.nodeCount(); target++) {
+					String step = "round " + round + " " + source + " -> " + target;
+					int[] sources = new int[] { source };
+					int[] targets = new int[] { target };
+					checkPath(index, unweighted.breadthFirst(sources, targets), source, target, hops[target], false, step + " breadth first");
+					checkPath(index, unweighted.bidirectional(source, target), source, target, hops[target], false, step + " bidirectional breadth first");
+					checkPath(index, weighted.dijkstra(sources, targets), source, target, weights[target], true, step + " dijkstra");
+					checkPath(index, weighted.bidirectional(source, target), source, target, weights[target], true, step + " bidirectional dijkstra");
+					checkPath(index, weighted.aStar(source, target, zero), source, target, weights[target], true, step + " A*");
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testAStarOnGrid() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		int size = 30;
+		List<Node> nodes = nodes(graph, size * size);
+		for(int i = 0; i < nodes.size(); i++) {
+			nodes.get(i).putAttr("x", i % size);
+			nodes.get(i).putAttr("y", i / size);
+		}
+		for(int x = 0; x < size; x++) {
+			for(int y = 0; y < size; y++) {
+				Node node = nodes.get(y * size + x);
+				if(x + 1 < size) {
+					edge(graph, node, nodes.get(y * size + x + 1), "a", 1);
+					edge(graph, nodes.get(y * size + x + 1), node, "a", 1);
+				}
+				if(y + 1 < size) {
+					edge(graph, node, nodes.get((y + 1) * size + x), "a", 1);
+					edge(graph, nodes.get((y + 1) * size + x), node, "a", 1);
+				}
+			}
+		}
+		ShortestPaths.Heuristic manhattan = (node, target) ->
+				Math.abs((Integer) node.getAttr("x") - (Integer) target.getAttr("x")) + Math.abs((Integer) node.getAttr("y") - (Integer) target.getAttr("y"));
+		AdjacencyIndex index = AdjacencyIndex.of(graph);
+		ShortestPaths search = new ShortestPaths(index, null, WEIGHT);
+		int source = index.getNodeOrdinal(nodes.get(size * 10 + 2));
+		int target = index.getNodeOrdinal(nodes.get(size * 12 + 25));
+		ShortestPaths.Result aStar = search.aStar(source, target, manhattan);
+		ShortestPaths.Result dijkstra = search.dijkstra(new int[] { source }, new int[] { target });
+		if(aStar.getDistance() != 25 || dijkstra.getDistance() != 25) {
+			fail("Expected distance 25 but found " + aStar.getDistance() + " and " + dijkstra.getDistance());
+		}
+		if(aStar.getSettledCount() * 4 > dijkstra.getSettledCount()) {
+			fail("A* should settle far fewer nodes than Dijkstra, settled " + aStar.getSettledCount() + " and " + dijkstra.getSettledCount());
+		}
+		Graph path = graph.shortestPath(nodes.get(size * 10 + 2), nodes.get(size * 12 + 25), manhattan, WEIGHT);
+		if(path.edges().size() != 25 || path.nodes().size() != 26) {
+			fail("The A* witness path should have 25 edges");
+		}
+	}
+
+	@Test
+	public void testEarlyTermination() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> nodes = nodes(graph, 1000);
+		for(int i = 0; i < nodes.size() - 1; i++) {
+			edge(graph, nodes.get(i), nodes.get(i + 1), "a", 2);
+		}
+		AdjacencyIndex index = AdjacencyIndex.of(graph);
+		ShortestPaths search = new ShortestPaths(index, null, WEIGHT);
+		int first = index.getNodeOrdinal(nodes.get(0));
+		int[] targets = index.getNodeOrdinals(Arrays.asList(nodes.get(5), nodes.get(900)));
+		ShortestPaths.Result nearest = search.dijkstra(new int[] { first }, targets);
+		if(nearest.getTarget() != index.getNodeOrdinal(nodes.get(5)) || nearest.getDistance() != 10) {
+			fail("Dijkstra should stop at the nearest target");
+		}
+		if(nearest.getSettledCount() > 6) {
+			fail("Dijkstra should not search past the nearest target, settled " + nearest.getSettledCount());
+		}
+		search.setMaxDistance(100);
+		int last = index.getNodeOrdinal(nodes.get(999));
+		ShortestPaths.Result bounded = search.bidirectional(first, last);
+		if(bounded.isFound() || bounded.getSettledCount() > 110) {
+			fail("Searches should stop at the maximum distance, settled " + bounded.getSettledCount());
+		}
+		if(!search.bidirectional(first, index.getNodeOrdinal(nodes.get(50))).isFound()) {
+			fail("A path within the maximum distance should be found");
+		}
+	}
+
+	@Test
+	public void testInvalidWeights() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> nodes = nodes(graph, 2);
+		edge(graph, nodes.get(0), nodes.get(1), "a", -1);
+		try {
+			graph.shortestPath(graph.toGraph(nodes.get(0)), graph.toGraph(nodes.get(1)), WEIGHT);
+			fail("Negative weights should be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		try {
+			graph.shortestPath(graph.toGraph(nodes.get(0)), graph.toGraph(nodes.get(1)), "missing");
+			fail("Edges without a numeric weight should be rejected");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testQueries() {
+		PropertyGraph graph = new PropertyGraph(new SchemaGraph());
+		List<Node> n = nodes(graph, 5);
+		Edge direct = edge(graph, n.get(0), n.get(4), "call", 10);
+		Edge first = edge(graph, n.get(0), n.get(1), "call", 1);
+		Edge second = edge(graph, n.get(1), n.get(2), "dataflow", 1);
+		Edge third = edge(graph, n.get(2), n.get(4), "call", 1);
+		edge(graph, n.get(3), n.get(4), "call", 1);
+
+		Graph hops = graph.shortestPath(n.get(0), n.get(4));
+		if(hops.edges().size() != 1 || !hops.edges().contains(direct)) {
+			fail("The unweighted shortest path should be the direct edge");
+		}
+		Graph weighted = new Query(graph).shortestPath(new Query(graph.toGraph(n.get(0))), new Query(graph.toGraph(n.get(4))), WEIGHT).evaluate();
+		if(weighted.edges().size() != 3 || !weighted.edges().contains(first) || !weighted.edges().contains(second) || !weighted.edges().contains(third)) {
+			fail("The weighted shortest path should take the three light edges");
+		}
+		Graph tagged = new Query(graph).shortestPath(graph.toGraph(n.get(0)).nodes(), graph.toGraph(n.get(4)).nodes(), WEIGHT, "call").evaluate();
+		if(tagged.edges().size() != 1 || !tagged.edges().contains(direct)) {
+			fail("The tag filter should exclude the dataflow edge");
+		}
+		Graph none = new Query(graph).shortestPath(n.get(4), n.get(0)).evaluate();
+		if(!none.nodes().isEmpty()) {
+			fail("There should be no path against the edges");
+		}
+
+		QueryEngine engine = new QueryEngine();
+		engine.setGraph("universe", graph);
+		Graph language = engine.execute("universe.shortestPath($from, $to, \"weight\")", "from", n.get(0), "to", n.get(4));
+		if(language.edges().size() != 3 || !language.edges().contains(second)) {
+			fail("Query language should evaluate weighted shortest paths");
+		}
+		Graph languageTagged = engine.execute("universe.shortestPath($from, $to, \"weight\", \"call\")", "from", n.get(0), "to", n.get(4));
+		if(languageTagged.edges().size() != 1 || !languageTagged.edges().contains(direct)) {
+			fail("Query language should filter shortest paths by edge tags");
+		}
+	}
+
+}
@@ -4,13 +4,68 @@ import org.junit.runner.RunWith;
 import org.junit.runners.Suite;
 import org.junit.runners.Suite.SuiteClasses;
 
+import chpg.tests.algorithms.TestControlDependenceBatch;
+import chpg.tests.algorithms.TestDataflow;
+import chpg.tests.algorithms.TestDominanceGraph;
+import chpg.tests.algorithms.TestDynamicDominators;
+import chpg.tests.algorithms.TestIFDSSolver;
+import chpg.tests.algorithms.TestLoopNestingForest;
+import chpg.tests.algorithms.TestPathCounter;
+import chpg.tests.algorithms.TestPathEnumerator;
+import chpg.tests.algorithms.TestStrongComponents;
+import chpg.tests.index.TestReachabilityIndex;
+import chpg.tests.io.TestGraphIO;
+import chpg.tests.query.TestAggregations;
+import chpg.tests.query.TestAsyncQueries;
+import chpg.tests.query.TestAttributePredicates;
+import chpg.tests.query.TestExecutionLimits;
+import chpg.tests.query.TestMaterializedViews;
+import chpg.tests.query.TestPatternMatching;
+import chpg.tests.query.TestQueryBatch;
+import chpg.tests.query.TestQueryCache;
+import chpg.tests.query.TestQueryLanguage;
+import chpg.tests.query.TestQueryProfile;
+import chpg.tests.query.TestRegularPathQueries;
+import chpg.tests.query.TestShortestPaths;
+
 @RunWith(Suite.class)
 @SuiteClasses({ 
 				// forward
 				TestGraphForwardTraversals.class,
 				TestQueryForwardTraversals.class,
+				TestGraphDirectionOptimizingForwardTraversals.class,
+				TestQueryStreamTraversals.class,
+				// bounded
+				TestGraphBoundedTraversals.class,
 				// forward step
 				TestGraphForwardStepTraversals.class,
-				TestQueryForwardStepTraversals.class
+				TestQueryForwardStepTraversals.class,
+				// query
+				TestQueryCache.class,
+				TestQueryLanguage.class,
+				TestQueryProfile.class,
+				TestExecutionLimits.class,
+				TestQueryBatch.class,
+				TestAsyncQueries.class,
+				TestPatternMatching.class,
+				TestRegularPathQueries.class,
+				TestAggregations.class,
+				TestMaterializedViews.class,
+				TestAttributePredicates.class,
+				TestShortestPaths.class,
+				// index
+				TestReachabilityIndex.class,
+				// algorithms
+				TestDominanceGraph.class,
+				TestControlDependenceBatch.class,
+				TestDynamicDominators.class,
+				TestPathEnumerator.class,
+				TestPathCounter.class,
+				TestStrongComponents.class,
+				TestLoopNestingForest.class,
+				TestDataflow.class,
+				TestIFDSSolver.class,
+				// io
+				TestGraphIO.class
 			  })
 public class AllTests {}
@@ -0,0 +1,92 @@
+package chpg.tests.traversals;
+
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.GraphElementPredicates;
+import chpg.graph.Node;
+import chpg.graph.query.Query;
+
+public class TestGraphBoundedTraversals extends TestGraphForwardTraversals {
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+	}
+	
+	private void inspect(String description, Graph result, Node[] expectedNodes, Edge[] expectedEdges) {
+		if(result.nodes().size() != expectedNodes.length){
+			fail(description + " should include " + expectedNodes.length + " nodes");
+		}
+		for(Node node : expectedNodes) {
+			if(!result.nodes().contains(node)) {
+				fail(description + " should include " + node.getAttr(NAME));
+			}
+		}
+		if(result.edges().size() != expectedEdges.length){
+			fail(description + " should include " + expectedEdges.length + " edges");
+		}
+		for(Edge edge : expectedEdges) {
+			if(!result.edges().contains(edge)) {
+				fail(description + " should include " + edge.getAttr(NAME));
+			}
+		}
+	}
+	
+	@Test
+	public void testForwardADepth1Traversal() {
+		Graph result = graph.forward(new GraphElementHashSet<Node>(a), 1);
+		inspect("Forward from a with depth 1", result, new Node[] {a, b}, new Edge[] {e1});
+	}
+	
+	@Test
+	public void testForwardADepth2Traversal() {
+		Graph result = graph.forward(new GraphElementHashSet<Node>(a), 2);
+		inspect("Forward from a with depth 2", result, new Node[] {a, b, c}, new Edge[] {e1, e2});
+	}
+	
+	@Test
+	public void testForwardADepth3Traversal() {
+		Graph result = graph.forward(new GraphElementHashSet<Node>(a), 3);
+		inspect("Forward from a with depth 3", result, new Node[] {a, b, c, d}, new Edge[] {e1, e2, e3, e4});
+	}
+	
+	@Test
+	public void testForwardAUnboundedTraversal() {
+		Graph result = graph.forward(new GraphElementHashSet<Node>(a), Graph.UNBOUNDED_DEPTH);
+		super.inspectForwardA(result);
+	}
+	
+	@Test
+	public void testForwardAStopAtDTraversal() {
+		Graph result = graph.forward(new GraphElementHashSet<Node>(a), Graph.UNBOUNDED_DEPTH, 
+				GraphElementPredicates.attrEquals(NAME, "d"), null);
+		inspect("Forward from a stopping at d", result, new Node[] {a, b, c, d}, new Edge[] {e1, e2, e3, e4});
+	}
+	
+	@Test
+	public void testForwardAExcludingE4Traversal() {
+		Graph result = graph.forward(new GraphElementHashSet<Node>(a), Graph.UNBOUNDED_DEPTH, 
+				null, GraphElementPredicates.memberOf(new GraphElementHashSet<Edge>(e4)));
+		inspect("Forward from a excluding e4", result, new Node[] {a, b, c}, new Edge[] {e1, e2, e3});
+	}
+	
+	@Test
+	public void testReverseGDepth2Traversal() {
+		Graph result = graph.reverse(new GraphElementHashSet<Node>(g), 2);
+		inspect("Reverse from g with depth 2", result, new Node[] {g, d, c}, new Edge[] {e6, e4});
+	}
+	
+	@Test
+	public void testQueryForwardADepth2StopAtBTraversal() {
+		Graph result = new Query(graph).forward(new GraphElementHashSet<Node>(a), 2, 
+				GraphElementPredicates.attrEquals(NAME, "b"), null).evaluate();
+		inspect("Forward from a with depth 2 stopping at b", result, new Node[] {a, b}, new Edge[] {e1});
+	}
+
+}
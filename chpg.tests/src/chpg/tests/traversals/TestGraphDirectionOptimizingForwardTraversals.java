@@ -0,0 +1,93 @@
+package chpg.tests.traversals;
+
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.Graph.TraversalStrategy;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.Node;
+import chpg.graph.PropertyGraph;
+
+public class TestGraphDirectionOptimizingForwardTraversals extends TestGraphForwardTraversals {
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+	}
+
+	@Test
+	public void testForwardATraversal() {
+		Graph result = graph.forward(new GraphElementHashSet<Node>(a), TraversalStrategy.DIRECTION_OPTIMIZING);
+		super.inspectForwardA(result);
+	}
+	
+	@Test
+	public void testForwardBTraversal() {
+		Graph result = graph.forward(new GraphElementHashSet<Node>(b), TraversalStrategy.DIRECTION_OPTIMIZING);
+		super.inspectForwardB(result);
+	}
+	
+	@Test
+	public void testForwardCTraversal() {
+		Graph result = graph.forward(new GraphElementHashSet<Node>(c), TraversalStrategy.DIRECTION_OPTIMIZING);
+		super.inspectForwardC(result);
+	}
+	
+	@Test
+	public void testForwardEGTraversal() {
+		Graph result = graph.forward(new GraphElementHashSet<Node>(new Node[] {e, g}), TraversalStrategy.DIRECTION_OPTIMIZING);
+		super.inspectForwardEG(result);
+	}
+	
+	@Test
+	public void testForwardFTraversal() {
+		Graph result = graph.forward(new GraphElementHashSet<Node>(f), TraversalStrategy.DIRECTION_OPTIMIZING);
+		super.inspectForwardF(result);
+	}
+	
+	@Test
+	public void testRandomGraphStrategiesAgree() {
+		Random rnd = new Random(26);
+		for(int trial=0; trial<20; trial++) {
+			PropertyGraph randomGraph = new PropertyGraph();
+			List<Node> nodes = new ArrayList<Node>();
+			for(int i=0; i<200; i++){
+				Node n = new Node();
+				randomGraph.add(n);
+				nodes.add(n);
+			}
+			int edges = rnd.nextInt(1000);
+			for(int i=0; i<edges; i++){
+				randomGraph.add(new Edge(nodes.get(rnd.nextInt(200)), nodes.get(rnd.nextInt(200))));
+			}
+			GraphElementHashSet<Node> origin = new GraphElementHashSet<Node>(nodes.get(rnd.nextInt(200)));
+			
+			Graph topDown = randomGraph.forward(origin, TraversalStrategy.TOP_DOWN);
+			Graph directionOptimizing = randomGraph.forward(origin, TraversalStrategy.DIRECTION_OPTIMIZING);
+			if(topDown.nodes().size() != directionOptimizing.nodes().size() || !topDown.nodes().containsAll(directionOptimizing.nodes())) {
+				fail("Forward traversal strategies should select the same nodes");
+			}
+			if(topDown.edges().size() != directionOptimizing.edges().size() || !topDown.edges().containsAll(directionOptimizing.edges())) {
+				fail("Forward traversal strategies should select the same edges");
+			}
+			
+			topDown = randomGraph.reverse(origin, TraversalStrategy.TOP_DOWN);
+			directionOptimizing = randomGraph.reverse(origin, TraversalStrategy.DIRECTION_OPTIMIZING);
+			if(topDown.nodes().size() != directionOptimizing.nodes().size() || !topDown.nodes().containsAll(directionOptimizing.nodes())) {
+				fail("Reverse traversal strategies should select the same nodes");
+			}
+			if(topDown.edges().size() != directionOptimizing.edges().size() || !topDown.edges().containsAll(directionOptimizing.edges())) {
+				fail("Reverse traversal strategies should select the same edges");
+			}
+		}
+	}
+
+}
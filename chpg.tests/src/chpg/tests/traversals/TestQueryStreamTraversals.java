@@ -0,0 +1,114 @@
+package chpg.tests.traversals;
+
+import static org.junit.Assert.fail;
+
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import chpg.graph.Edge;
+import chpg.graph.Graph;
+import chpg.graph.GraphElementHashSet;
+import chpg.graph.Node;
+import chpg.graph.query.Query;
+
+public class TestQueryStreamTraversals extends TestGraphForwardTraversals {
+
+	@Before
+	public void setUp() throws Exception {
+		super.setUp();
+	}
+	
+	private void inspect(String description, Query query) {
+		Set<Node> streamedNodes = query.nodeStream().collect(Collectors.toSet());
+		Set<Edge> streamedEdges = query.edgeStream().collect(Collectors.toSet());
+		Graph result = query.evaluate();
+		if(streamedNodes.size() != result.nodes().size() || !result.nodes().containsAll(streamedNodes)) {
+			fail(description + " should stream the nodes of the evaluated result");
+		}
+		if(streamedEdges.size() != result.edges().size() || !result.edges().containsAll(streamedEdges)) {
+			fail(description + " should stream the edges of the evaluated result");
+		}
+	}
+	
+	@Test
+	public void testForwardAStream() {
+		inspect("Forward from a", new Query(graph).forward(a));
+	}
+	
+	@Test
+	public void testReverseGStream() {
+		inspect("Reverse from g", new Query(graph).reverse(g));
+	}
+	
+	@Test
+	public void testForwardFromGraphStream() {
+		Graph origin = graph.toGraph(graph.edges().filter(NAME, "e4"));
+		inspect("Forward from graph containing e4", new Query(graph).forward(origin));
+	}
+	
+	@Test
+	public void testForwardDepth2Stream() {
+		inspect("Forward from a with depth 2", new Query(graph).forward(new GraphElementHashSet<Node>(a), 2));
+	}
+	
+	@Test
+	public void testSelectionStream() {
+		inspect("Selection of d", new Query(graph).selectNodes(NAME, "d"));
+		inspect("Selection of e4", new Query(graph).selectEdges(NAME, "e4"));
+		inspect("Forward from a and selection of d", new Query(graph).forward(a).selectNodes(NAME, "d", "f"));
+	}
+	
+	@Test
+	public void testFindFirstDoesNotTraverse() {
+		AtomicInteger tests = new AtomicInteger();
+		Query query = new Query(graph).forward(new GraphElementHashSet<Node>(a), Graph.UNBOUNDED_DEPTH, node -> {
+			tests.incrementAndGet();
+			return false;
+		}, null);
+		Node first = query.nodeStream().findFirst().orElse(null);
+		if(first != a) {
+			fail("Forward from a should stream a first");
+		}
+		if(tests.get() != 0) {
+			fail("Forward from a should not expand any nodes to find the first node");
+		}
+		if(!query.nodeStream().anyMatch(node -> node == d)) {
+			fail("Forward from a should reach d");
+		}
+		if(tests.get() >= 6) {
+			fail("Forward from a should stop expanding nodes once d is reached");
+		}
+	}
+	
+	@Test
+	public void testLimitStream() {
+		if(new Query(graph).forward(a).nodeStream().limit(2).count() != 2) {
+			fail("Forward from a limited to 2 nodes should stream 2 nodes");
+		}
+	}
+	
+	@Test
+	public void testParallelStream() {
+		if(new Query(graph).forward(a).nodeStream().parallel().count() != 6) {
+			fail("Forward from a should stream 6 nodes in parallel");
+		}
+		if(graph.nodes().parallelStream().filter(node -> node.hasAttr(NAME)).count() != 7) {
+			fail("Graph should stream 7 named nodes in parallel");
+		}
+	}
+	
+	@Test
+	public void testIsEmpty() {
+		if(new Query(graph).selectNodes(NAME, "x").isEmpty() != true) {
+			fail("Selection of x should be empty");
+		}
+		if(new Query(graph).forward(f).isEmpty() != false) {
+			fail("Forward from f should not be empty");
+		}
+	}
+
+}